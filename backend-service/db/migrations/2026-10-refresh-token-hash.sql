@@ -0,0 +1,12 @@
+-- One-off migration for databases created before refresh tokens were stored as hashes.
+-- Run it once against the primary, by hand, after the release that issues "<owner>.<secret>" tokens is deployed.
+-- Fresh databases get the char(43) column from Hibernate and don't need it.
+--
+-- Rows from before hashing hold the raw 36-char uuid. The new code can't match them, because the client's
+-- token has no owner part, so their users sign in once more whether or not the rows are removed.
+-- This only clears them out so the column can be narrowed.
+
+DELETE FROM refresh_token WHERE CHAR_LENGTH(refresh_token) <> 43;
+
+-- ddl-auto only adds columns, it never changes the type of an existing one
+ALTER TABLE refresh_token MODIFY refresh_token CHAR(43) NOT NULL;
@@ -1,5 +1,6 @@
 package co.teamsphere.api.DTO;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
@@ -18,4 +19,8 @@ public class ChatDTO {
     private UUID createdBy;
     private Set<UUID> users;
     private List<UUID> messages;
+
+    // only set on group creation: requested members that don't exist and were left out
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<UUID> missingUserIds;
 }
@@ -3,6 +3,7 @@ package co.teamsphere.api.DTO;
 import lombok.Builder;
 import lombok.Data;
 
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Data
@@ -13,4 +14,6 @@ public class ChatSummaryDTO {
     private String chatImage;
     private UUID createdBy;
     private MessageDTO lastMessage;
+    private LocalDateTime lastActivity;
+    private int unreadCount;
 }
@@ -0,0 +1,10 @@
+package co.teamsphere.api.DTO;
+
+import java.util.UUID;
+
+/**
+ * The other member of a 1:1 chat, which is what a direct chat is named and pictured after in the chat list.
+ * Read as a JPQL constructor projection so member sets are never loaded just to find it.
+ */
+public record DirectChatPeerDTO(UUID chatId, String username, String profilePicture) {
+}
@@ -1,13 +1,19 @@
 package co.teamsphere.api.DTO;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+/**
+ * A message as the API returns it. History pages are mapped straight from the JDBC rows in
+ * {@code MessageRepository}, no {@code Messages} entity is built on the way.
+ */
 @Data
 @Builder
+@AllArgsConstructor
 public class MessageDTO {
     private UUID id;
     private String content;
@@ -0,0 +1,22 @@
+package co.teamsphere.api.DTO;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class MessagePageDTO {
+    // oldest message first, same as the old unpaged history
+    private List<MessageDTO> messages;
+
+    // pass back as ?before= to load older messages, null when the page is empty
+    private String beforeCursor;
+
+    // pass back as ?after= to load newer messages, null when the page is empty
+    private String afterCursor;
+
+    // whether more messages exist in the direction that was scanned
+    private boolean hasMore;
+}
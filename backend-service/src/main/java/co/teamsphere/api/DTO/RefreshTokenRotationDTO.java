@@ -0,0 +1,17 @@
+package co.teamsphere.api.DTO;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+@Builder
+public class RefreshTokenRotationDTO {
+    private UUID userId;
+
+    private String email;
+
+    // the new raw token for the client, the old one is dead once this exists
+    private String refreshToken;
+}
@@ -0,0 +1,10 @@
+package co.teamsphere.api.DTO;
+
+import java.util.UUID;
+
+/**
+ * What other users get to see of someone: enough to render a search result or a member list, nothing private.
+ * Read straight from the repository as a JPQL constructor projection, so no {@code User} entity is hydrated.
+ */
+public record UserSummaryDTO(UUID id, String username, String profilePicture) {
+}
@@ -24,7 +24,8 @@ public interface ChatDTOMapper {
         @Mapping(source = "admins", target = "admins", qualifiedByName = "usersToUserIds"),
         @Mapping(source = "createdBy.id", target = "createdBy"),
         @Mapping(source = "users", target = "users", qualifiedByName = "usersToUserIds"),
-        @Mapping(source = "messages", target = "messages", qualifiedByName = "messagesToMessageIds")
+        @Mapping(source = "messages", target = "messages", qualifiedByName = "messagesToMessageIds"),
+        @Mapping(target = "missingUserIds", ignore = true)
     })
     ChatDTO toChatDto(Chat chat);
 
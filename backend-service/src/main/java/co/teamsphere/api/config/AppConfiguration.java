@@ -1,15 +1,14 @@
 package co.teamsphere.api.config;
 
-import java.security.PublicKey;
 import java.util.Arrays;
 import java.util.Collections;
 
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import static org.springframework.security.config.http.SessionCreationPolicy.STATELESS;
-import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -19,25 +18,46 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import co.teamsphere.api.config.properties.AppProperties;
 import co.teamsphere.api.config.properties.Argon2Properties;
 import co.teamsphere.api.config.properties.JwtProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 
 @Configuration
+@Slf4j
 public class AppConfiguration {
     private final AppProperties appProperties;
 
-    private final PublicKey publicKey;
+    private final JwtKeySet jwtKeySet;
 
     private final JwtProperties jwtProperties;
 
+    private final TokenRevocationList tokenRevocationList;
+
     public AppConfiguration(AppProperties appProperties,
-                            PublicKey publicKey,
-                            JwtProperties jwtProperties) {
+                            JwtKeySet jwtKeySet,
+                            JwtProperties jwtProperties,
+                            TokenRevocationList tokenRevocationList) {
         this.appProperties = appProperties;
-        this.publicKey = publicKey;
+        this.jwtKeySet = jwtKeySet;
         this.jwtProperties = jwtProperties;
+        this.tokenRevocationList = tokenRevocationList;
+    }
+
+    @Bean
+    public JWTTokenValidator jwtTokenValidator(MeterRegistry meterRegistry) {
+        // one instance for HTTP and STOMP, so both share the verified-token cache
+        return new JWTTokenValidator(jwtKeySet, jwtProperties, tokenRevocationList, jwtProperties.getVerifiedTokenCacheSize(), meterRegistry);
+    }
+
+    @Bean
+    public FilterRegistrationBean<JWTTokenValidator> jwtTokenValidatorRegistration(JWTTokenValidator jwtTokenValidator) {
+        // it runs inside the security filter chain, keep boot from also adding it to the servlet chain
+        FilterRegistrationBean<JWTTokenValidator> registration = new FilterRegistrationBean<>(jwtTokenValidator);
+        registration.setEnabled(false);
+        return registration;
     }
 
     @Bean
-    public SecurityFilterChain securityAppConfig(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityAppConfig(HttpSecurity http, JWTTokenValidator jwtTokenValidator) throws Exception {
         http
                 .sessionManagement(session -> session.sessionCreationPolicy(STATELESS))
                 .authorizeHttpRequests(auth -> auth
@@ -45,7 +65,7 @@ public class AppConfiguration {
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
                         .anyRequest().permitAll()
                 )
-                .addFilterBefore(new JWTTokenValidator(publicKey, jwtProperties), UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(jwtTokenValidator, UsernamePasswordAuthenticationFilter.class)
                 .csrf(AbstractHttpConfigurer::disable)
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()));
 
@@ -53,13 +73,44 @@ public class AppConfiguration {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder(Argon2Properties argon2Properties) {
-        return new Argon2PasswordEncoder(
+    public PasswordEncoder passwordEncoder(Argon2Properties argon2Properties, MeterRegistry meterRegistry) {
+        int memoryCost = argon2Properties.getMemoryCost();
+        int iterations = argon2Properties.getIterations();
+
+        if (argon2Properties.getCalibrationMode() != Argon2Properties.CalibrationMode.OFF) {
+            var calibration = new Argon2Calibrator(argon2Properties).calibrate();
+            log.info("Argon2 calibration for target {} ms: configured m={} t={} took {} ms, calibrated m={} t={} takes {} ms",
+                    calibration.target().toMillis(),
+                    calibration.configuredMemoryCost(), calibration.configuredIterations(), calibration.configuredLatency().toMillis(),
+                    calibration.memoryCost(), calibration.iterations(), calibration.latency().toMillis());
+
+            if (argon2Properties.getCalibrationMode() == Argon2Properties.CalibrationMode.APPLY) {
+                memoryCost = calibration.memoryCost();
+                iterations = calibration.iterations();
+            } else if (calibration.differsFromConfigured()) {
+                log.warn("Argon2 parameters are off target on this host, consider argon2.memory-cost={} argon2.iterations={}",
+                        calibration.memoryCost(), calibration.iterations());
+            }
+        }
+
+        // existing hashes below the configured floor are rewritten on the next successful login. The floor comes
+        // from config only, never from calibration, so nodes on different hardware agree on what is outdated
+        var argon2 = new Argon2PolicyPasswordEncoder(
             argon2Properties.getSaltLength(), // size in bytes for salting length
             argon2Properties.getHashLength(), // size in bytes for hashing length
             argon2Properties.getParallelism(), // number of threads (we only need 1 in java apparetly)
-            argon2Properties.getMemoryCost(), // 64 mb in kb
-            argon2Properties.getIterations() // number of iterations
+            memoryCost, // 64 mb in kb
+            iterations, // number of iterations
+            argon2Properties.getMinMemoryCost() > 0 ? argon2Properties.getMinMemoryCost() : argon2Properties.getMemoryCost(),
+            argon2Properties.getMinIterations() > 0 ? argon2Properties.getMinIterations() : argon2Properties.getIterations()
+        );
+
+        return new BoundedPasswordEncoder(
+            argon2,
+            argon2Properties.getPoolSize(),
+            argon2Properties.getQueueCapacity(),
+            argon2Properties.getMaxWait(),
+            meterRegistry
         );
     }
 
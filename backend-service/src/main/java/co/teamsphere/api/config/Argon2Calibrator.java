@@ -0,0 +1,84 @@
+package co.teamsphere.api.config;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.UUID;
+
+import co.teamsphere.api.config.properties.Argon2Properties;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Benchmarks Argon2 on the current host and picks the cost that lands a single hash close to a target latency.
+ * Memory is the part of Argon2 that hurts GPU attackers, so iterations are traded first; memory is only
+ * halved (down to the OWASP floor of 19 MiB) when a single pass at the configured memory is already too slow.
+ */
+@Slf4j
+public class Argon2Calibrator {
+    // OWASP password storage cheat sheet minimum for argon2id
+    static final int MIN_MEMORY_COST_KB = 19 * 1024;
+
+    private final Argon2Properties argon2Properties;
+
+    public Argon2Calibrator(Argon2Properties argon2Properties) {
+        this.argon2Properties = argon2Properties;
+    }
+
+    public Result calibrate() {
+        Duration target = argon2Properties.getCalibrationTarget();
+        int memoryCost = argon2Properties.getMemoryCost();
+        int iterations = argon2Properties.getIterations();
+
+        long configuredNanos = measure(memoryCost, iterations);
+        // argon2 cost is close to linear in memory * iterations, so one sample is enough to extrapolate from
+        double nanosPerUnit = (double) configuredNanos / ((long) memoryCost * iterations);
+
+        int chosenIterations = (int) Math.max(1, target.toNanos() / (nanosPerUnit * memoryCost));
+        int chosenMemory = memoryCost;
+        if (chosenIterations == 1 && nanosPerUnit * memoryCost > target.toNanos()) {
+            chosenMemory = (int) Math.min(memoryCost, Math.max(MIN_MEMORY_COST_KB, target.toNanos() / nanosPerUnit));
+        }
+
+        long chosenNanos = chosenMemory == memoryCost && chosenIterations == iterations
+                ? configuredNanos
+                : measure(chosenMemory, chosenIterations);
+
+        return new Result(
+                memoryCost, iterations, Duration.ofNanos(configuredNanos),
+                chosenMemory, chosenIterations, Duration.ofNanos(chosenNanos),
+                target);
+    }
+
+    private long measure(int memoryCost, int iterations) {
+        var encoder = new Argon2PolicyPasswordEncoder(
+                argon2Properties.getSaltLength(),
+                argon2Properties.getHashLength(),
+                argon2Properties.getParallelism(),
+                memoryCost,
+                iterations);
+        String password = UUID.randomUUID().toString();
+
+        // first run pays for class loading and JIT, keep it out of the numbers
+        encoder.encode(password);
+
+        long[] samples = new long[Math.max(1, argon2Properties.getCalibrationSamples())];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            encoder.encode(password);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        long median = samples[samples.length / 2];
+        log.debug("Argon2 m={} t={} p={} took {} ms (median of {})",
+                memoryCost, iterations, argon2Properties.getParallelism(), median / 1_000_000, samples.length);
+        return median;
+    }
+
+    public record Result(int configuredMemoryCost, int configuredIterations, Duration configuredLatency,
+                         int memoryCost, int iterations, Duration latency,
+                         Duration target) {
+
+        public boolean differsFromConfigured() {
+            return memoryCost != configuredMemoryCost || iterations != configuredIterations;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package co.teamsphere.api.config;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+
+import co.teamsphere.api.utils.Argon2HashParameters;
+
+/**
+ * Argon2PasswordEncoder whose upgrade check runs against a fixed policy floor instead of the parameters it hashes
+ * with. Those can come from the per-host startup calibration, and nodes on different hardware comparing stored
+ * hashes against their own live cost would keep rehashing each other's passwords on every login. A hash is only
+ * rewritten when it is below the floor or doesn't have our type, version, parallelism, salt or hash length.
+ */
+public class Argon2PolicyPasswordEncoder extends Argon2PasswordEncoder {
+    private static final String TYPE = "argon2id";
+    private static final int VERSION = 19;
+
+    private final int saltLength;
+    private final int hashLength;
+    private final int parallelism;
+    private final int minMemoryCost;
+    private final int minIterations;
+
+    /**
+     * Encoder that treats anything weaker than the parameters it hashes with as outdated.
+     */
+    public Argon2PolicyPasswordEncoder(int saltLength, int hashLength, int parallelism, int memoryCost, int iterations) {
+        this(saltLength, hashLength, parallelism, memoryCost, iterations, memoryCost, iterations);
+    }
+
+    /**
+     * The floor is capped at the encoder's own cost, a hash this encoder just wrote is never outdated.
+     */
+    public Argon2PolicyPasswordEncoder(int saltLength, int hashLength, int parallelism, int memoryCost, int iterations,
+                                       int minMemoryCost, int minIterations) {
+        super(saltLength, hashLength, parallelism, memoryCost, iterations);
+        this.saltLength = saltLength;
+        this.hashLength = hashLength;
+        this.parallelism = parallelism;
+        this.minMemoryCost = Math.min(minMemoryCost, memoryCost);
+        this.minIterations = Math.min(minIterations, iterations);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // anything we can't read back is not ours to rewrite; matches() will reject it anyway
+        return Argon2HashParameters.parse(encodedPassword)
+                .map(params -> !TYPE.equals(params.type())
+                        || params.version() != VERSION
+                        || params.parallelism() != parallelism
+                        || params.saltLength() != saltLength
+                        || params.hashLength() != hashLength
+                        || params.memoryCost() < minMemoryCost
+                        || params.iterations() < minIterations)
+                .orElse(false);
+    }
+}
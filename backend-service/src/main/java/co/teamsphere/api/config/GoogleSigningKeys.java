@@ -0,0 +1,178 @@
+package co.teamsphere.api.config;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import co.teamsphere.api.config.properties.GoogleAuthProperties;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Google's ID token signing keys, fetched from their JWKS endpoint and kept in memory. Keys are refreshed in
+ * the background shortly before the {@code Cache-Control: max-age} of the last response runs out, so verifying
+ * a token never waits on the network. A failed refresh keeps the old keys: Google publishes keys days before
+ * using them and keeps them around well past their max-age.
+ */
+@Component
+@Slf4j
+public class GoogleSigningKeys extends SigningKeyResolverAdapter {
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    private final GoogleAuthProperties googleAuthProperties;
+
+    private final RestTemplate restTemplate;
+
+    private final Clock clock;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile KeySnapshot snapshot = new KeySnapshot(Map.of(), Instant.EPOCH);
+
+    private volatile Instant lastAttempt = Instant.EPOCH;
+
+    @Autowired
+    public GoogleSigningKeys(GoogleAuthProperties googleAuthProperties, RestTemplateBuilder restTemplateBuilder) {
+        this(googleAuthProperties, restTemplateBuilder, Clock.systemUTC());
+    }
+
+    GoogleSigningKeys(GoogleAuthProperties googleAuthProperties, RestTemplateBuilder restTemplateBuilder, Clock clock) {
+        this.googleAuthProperties = googleAuthProperties;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(googleAuthProperties.getConnectTimeout())
+                .setReadTimeout(googleAuthProperties.getReadTimeout())
+                .build();
+        this.clock = clock;
+    }
+
+    @Override
+    public PublicKey resolveSigningKey(JwsHeader header, Claims claims) {
+        // google only signs with RS256, anything else is someone trying their luck
+        if (!SignatureAlgorithm.RS256.getValue().equals(header.getAlgorithm())) {
+            throw new JwtException("Unexpected Google ID token algorithm: " + header.getAlgorithm());
+        }
+        if (header.getKeyId() == null) {
+            throw new JwtException("Google ID token has no kid");
+        }
+
+        PublicKey key = snapshot.keys().get(header.getKeyId());
+        if (key == null) {
+            // cold start, or a kid we haven't seen yet; refresh() is rate limited so forged kids stay cheap
+            refresh();
+            key = snapshot.keys().get(header.getKeyId());
+        }
+        if (key == null) {
+            throw new JwtException("Unknown Google signing key: " + header.getKeyId());
+        }
+        return key;
+    }
+
+    @Scheduled(fixedDelayString = "${google.auth.refresh-check-interval-ms:60000}")
+    public void refreshIfStale() {
+        if (!clock.instant().isBefore(snapshot.expiresAt().minus(googleAuthProperties.getRefreshAhead()))) {
+            refresh();
+        }
+    }
+
+    /**
+     * Fetches the key set unless another fetch happened within {@code minRefreshInterval}.
+     *
+     * @return true if new keys were loaded
+     */
+    boolean refresh() {
+        refreshLock.lock();
+        try {
+            Instant now = clock.instant();
+            // callers that queued up behind a fetch find it already done here
+            if (now.isBefore(lastAttempt.plus(googleAuthProperties.getMinRefreshInterval()))) {
+                return false;
+            }
+            lastAttempt = now;
+
+            ResponseEntity<Jwks> response = restTemplate.getForEntity(googleAuthProperties.getJwksUri(), Jwks.class);
+            Map<String, PublicKey> keys = toPublicKeys(response.getBody());
+            Duration ttl = ttl(response.getHeaders());
+
+            snapshot = new KeySnapshot(Map.copyOf(keys), now.plus(ttl));
+            log.info("Loaded {} Google signing keys {}, next refresh in about {}s", keys.size(), keys.keySet(), ttl.toSeconds());
+            return true;
+        } catch (RestClientException | GeneralSecurityException | IllegalArgumentException | IllegalStateException e) {
+            log.warn("Failed to refresh Google signing keys, keeping {} cached keys: {}", snapshot.keys().size(), e.getMessage());
+            return false;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private Duration ttl(HttpHeaders headers) {
+        Duration ttl = googleAuthProperties.getDefaultKeysTtl();
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null) {
+            Matcher matcher = MAX_AGE.matcher(cacheControl);
+            if (matcher.find()) {
+                ttl = Duration.ofSeconds(Long.parseLong(matcher.group(1)));
+            }
+        }
+        Duration floor = googleAuthProperties.getMinRefreshInterval();
+        return ttl.compareTo(floor) < 0 ? floor : ttl;
+    }
+
+    private static Map<String, PublicKey> toPublicKeys(Jwks jwks) throws GeneralSecurityException {
+        if (jwks == null || jwks.keys() == null) {
+            throw new IllegalStateException("Empty JWKS response");
+        }
+
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        Map<String, PublicKey> keys = new HashMap<>();
+        for (Jwk jwk : jwks.keys()) {
+            if (!"RSA".equals(jwk.kty()) || jwk.kid() == null || jwk.n() == null || jwk.e() == null) {
+                continue;
+            }
+            BigInteger modulus = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.n()));
+            BigInteger exponent = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.e()));
+            keys.put(jwk.kid(), keyFactory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+        }
+
+        if (keys.isEmpty()) {
+            throw new IllegalStateException("JWKS response has no usable RSA keys");
+        }
+        return keys;
+    }
+
+    private record KeySnapshot(Map<String, PublicKey> keys, Instant expiresAt) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Jwks(List<Jwk> keys) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Jwk(String kid, String kty, String alg, String n, String e) {
+    }
+}
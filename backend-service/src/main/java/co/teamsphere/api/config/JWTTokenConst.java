@@ -3,4 +3,6 @@ package co.teamsphere.api.config;
 
 public class JWTTokenConst {
     public static final String HEADER = "Authorization";
+    // issued-at in epoch millis; iat only has seconds, which is too coarse to compare against a revocation cutoff
+    public static final String ISSUED_AT_MILLIS = "iat_ms";
 }
@@ -24,11 +24,16 @@ import java.util.UUID;
 public class JWTTokenProvider {
     private final PrivateKey privateKey;
     private final JwtProperties jwtProperties;
+    private final JwtKeySet jwtKeySet;
+    private final SignatureAlgorithm signatureAlgorithm;
 
-    public JWTTokenProvider(PrivateKey privateKey, JwtProperties jwtProperties) {
+    public JWTTokenProvider(PrivateKey privateKey, JwtProperties jwtProperties, JwtKeySet jwtKeySet) {
         this.privateKey = privateKey;
         this.jwtProperties = jwtProperties;
-
+        this.jwtKeySet = jwtKeySet;
+        this.signatureAlgorithm = jwtProperties.getAlgorithm() != null
+                ? SignatureAlgorithm.forName(jwtProperties.getAlgorithm())
+                : SignatureAlgorithm.forSigningKey(privateKey);
     }
 
     public String generateJwtToken(Authentication authentication, UUID userId) {
@@ -39,15 +44,17 @@ public class JWTTokenProvider {
 
         return Jwts.builder()
                 .setHeaderParam("typ", "JWT")
+                .setHeaderParam("kid", jwtProperties.getKeyId())
                 .setIssuer("Teamsphere.co")
                 .setSubject(userId.toString())
                 .setAudience(jwtProperties.getAudience())
                 .setIssuedAt(currentDate)
                 .setNotBefore(currentDate)
                 .setExpiration(new Date(currentDate.getTime()+86400000))
+                .claim(JWTTokenConst.ISSUED_AT_MILLIS, currentDate.getTime())
                 .claim("email", authentication.getName())
                 .claim("authorities", authoritiesString)
-                .signWith(privateKey, SignatureAlgorithm.RS256)
+                .signWith(privateKey, signatureAlgorithm)
                 .compact();
     }
 
@@ -57,15 +64,17 @@ public class JWTTokenProvider {
 
         return Jwts.builder()
                 .setHeaderParam("typ", "JWT")
+                .setHeaderParam("kid", jwtProperties.getKeyId())
                 .setIssuer("Teamsphere.co")
                 .setSubject(userId.toString())
                 .setAudience(jwtProperties.getAudience())
                 .setIssuedAt(currentDate)
                 .setNotBefore(currentDate)
                 .setExpiration(new Date(currentDate.getTime()+86400000))
+                .claim(JWTTokenConst.ISSUED_AT_MILLIS, currentDate.getTime())
                 .claim("email", email)
                 .claim("authorities", "ROLE_USER")
-                .signWith(privateKey, SignatureAlgorithm.RS256)
+                .signWith(privateKey, signatureAlgorithm)
                 .compact();
     }
 
@@ -99,7 +108,7 @@ public class JWTTokenProvider {
 
         try {
             return Jwts.parserBuilder()
-                .setSigningKey(privateKey)
+                .setSigningKeyResolver(jwtKeySet)
                 .build()
                 .parseClaimsJws(actualToken)
                 .getBody();
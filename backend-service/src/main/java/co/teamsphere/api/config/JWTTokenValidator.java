@@ -1,7 +1,13 @@
 package co.teamsphere.api.config;
 import java.io.IOException;
-import java.security.PublicKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -11,10 +17,18 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import co.teamsphere.api.config.properties.JwtProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -24,13 +38,56 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class JWTTokenValidator extends OncePerRequestFilter {
-    private final PublicKey publicKey;
+    private final JwtKeySet jwtKeySet;
 
     private final JwtProperties jwtProperties;
 
-    public JWTTokenValidator(PublicKey publicKey, JwtProperties jwtProperties) {
-        this.publicKey = publicKey;
+    private final TokenRevocationList tokenRevocationList;
+
+    // sha-256 of the compact token -> claims we already verified the signature for, dropped at the token's exp
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    private final Timer verifyTimer;
+
+    private final Counter verifySecondsSaved;
+
+    public JWTTokenValidator(JwtKeySet jwtKeySet,
+                             JwtProperties jwtProperties,
+                             TokenRevocationList tokenRevocationList,
+                             long cacheSize,
+                             MeterRegistry meterRegistry) {
+        this.jwtKeySet = jwtKeySet;
         this.jwtProperties = jwtProperties;
+        this.tokenRevocationList = tokenRevocationList;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, token.expiresAt() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwtVerifiedTokens");
+
+        this.verifyTimer = Timer.builder("jwt.verify")
+                .description("Time spent verifying JWT signatures on cache misses")
+                .register(meterRegistry);
+        this.verifySecondsSaved = Counter.builder("jwt.verify.saved")
+                .description("Estimated signature verification time skipped by serving tokens from the cache")
+                .baseUnit("seconds")
+                .register(meterRegistry);
     }
 
     @SuppressWarnings("null")
@@ -48,27 +105,7 @@ public class JWTTokenValidator extends OncePerRequestFilter {
 
                 jwt = jwt.substring(7);
 
-                Claims claim = Jwts.parserBuilder()
-                        .setSigningKey(publicKey)
-                        .build()
-                        .parseClaimsJws(jwt)
-                        .getBody();
-
-                String audience = claim.getAudience();
-                if (!jwtProperties.getAudience().equals(audience)) {
-                    throw new JwtException("Invalid audience: " + audience);
-                }
-
-                String username = claim.get("email", String.class);
-                String authorities = claim.get("authorities", String.class);
-
-                if (username == null || authorities == null) {
-                    throw new JwtException("Missing email or authorities in JWT claims");
-                }
-
-                List<GrantedAuthority> auths = AuthorityUtils.commaSeparatedStringToAuthorityList(authorities);
-
-                Authentication auth = new UsernamePasswordAuthenticationToken(username, null ,auths);
+                Authentication auth = authenticate(jwt);
 
                 SecurityContextHolder.getContext().setAuthentication(auth);
             } catch (ExpiredJwtException e) {
@@ -90,4 +127,112 @@ public class JWTTokenValidator extends OncePerRequestFilter {
         // Continue with the filter chain if the JWT is valid or not present
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Verifies a compact access token (without the {@code Bearer } prefix) and returns the authentication for its
+     * owner. Shared by the HTTP filter and the STOMP CONNECT handshake so both go through the same cache,
+     * audience and revocation checks.
+     *
+     * @throws JwtException if the token is expired, malformed, for another audience or revoked
+     */
+    public Authentication authenticate(String jwt) {
+        VerifiedToken token = verify(jwt);
+
+        // audience is checked on every request, cache hit or not
+        if (!jwtProperties.getAudience().equals(token.audience())) {
+            throw new JwtException("Invalid audience: " + token.audience());
+        }
+
+        JwtPrincipal principal = token.principal();
+        // also applies to cache hits: logging out has to kill tokens we already verified
+        if (tokenRevocationList.isRevoked(principal.id(), token.issuedAt())) {
+            throw new JwtException("Token has been revoked for user: " + principal.id());
+        }
+
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.authorities());
+    }
+
+    private VerifiedToken verify(String jwt) {
+        String key = digest(jwt);
+        long now = System.currentTimeMillis();
+
+        VerifiedToken cached = verifiedTokens.getIfPresent(key);
+        // a retired key invalidates everything it signed, cached or not
+        if (cached != null && cached.isCurrent(now) && jwtKeySet.isActive(cached.keyId())) {
+            verifySecondsSaved.increment(verifyTimer.mean(TimeUnit.SECONDS));
+            return cached;
+        }
+
+        // not cached, or outside its nbf/exp window: let jjwt do the full check so it raises the right exception
+        long start = System.nanoTime();
+        Jws<Claims> jws = Jwts.parserBuilder()
+                .setSigningKeyResolver(jwtKeySet)
+                .build()
+                .parseClaimsJws(jwt);
+        verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        Claims claim = jws.getBody();
+        VerifiedToken token = toVerifiedToken(jws.getHeader().getKeyId(), claim);
+        if (claim.getExpiration() != null) {
+            verifiedTokens.put(key, token);
+        }
+        return token;
+    }
+
+    private static VerifiedToken toVerifiedToken(String keyId, Claims claim) {
+        String username = claim.get("email", String.class);
+        String authorities = claim.get("authorities", String.class);
+
+        if (username == null || authorities == null || claim.getSubject() == null) {
+            throw new JwtException("Missing subject, email or authorities in JWT claims");
+        }
+
+        UUID userId;
+        try {
+            userId = UUID.fromString(claim.getSubject());
+        } catch (IllegalArgumentException e) {
+            throw new JwtException("Invalid subject: " + claim.getSubject());
+        }
+
+        List<GrantedAuthority> auths = AuthorityUtils.commaSeparatedStringToAuthorityList(authorities);
+
+        // controllers read this through @AuthenticationPrincipal instead of re-parsing the token
+        JwtPrincipal principal = new JwtPrincipal(userId, username, auths);
+        return new VerifiedToken(
+                keyId,
+                principal,
+                claim.getAudience(),
+                issuedAtMillis(claim),
+                millis(claim.getNotBefore(), Long.MIN_VALUE),
+                millis(claim.getExpiration(), Long.MAX_VALUE));
+    }
+
+    // iat only has second precision; tokens from before the millisecond claim fall back to the start of that second
+    private static long issuedAtMillis(Claims claim) {
+        Long issuedAt = claim.get(JWTTokenConst.ISSUED_AT_MILLIS, Long.class);
+        if (issuedAt != null) {
+            return issuedAt;
+        }
+        return millis(claim.getIssuedAt(), Long.MIN_VALUE);
+    }
+
+    private static long millis(Date date, long fallback) {
+        return date != null ? date.getTime() : fallback;
+    }
+
+    private static String digest(String jwt) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(jwt.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // issuedAt, notBefore and expiresAt in epoch millis
+    private record VerifiedToken(String keyId, JwtPrincipal principal, String audience, long issuedAt, long notBefore, long expiresAt) {
+        boolean isCurrent(long now) {
+            return now >= notBefore && now < expiresAt;
+        }
+    }
 }
@@ -0,0 +1,79 @@
+package co.teamsphere.api.config;
+
+import java.security.Key;
+import java.security.PublicKey;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Public keys we accept access tokens from, looked up by the token's {@code kid} header. Holding more than one
+ * key lets us roll out a new signing key (or algorithm) while tokens signed with the old one are still live.
+ * Tokens without a {@code kid} are checked against the default key.
+ */
+@Slf4j
+public class JwtKeySet extends SigningKeyResolverAdapter {
+    public static final String DEFAULT_KEY_ID = "primary";
+
+    private final ConcurrentHashMap<String, VerificationKey> keys = new ConcurrentHashMap<>();
+
+    private final String defaultKeyId;
+
+    public JwtKeySet(String defaultKeyId) {
+        this.defaultKeyId = defaultKeyId;
+    }
+
+    public static JwtKeySet of(PublicKey publicKey) {
+        JwtKeySet keySet = new JwtKeySet(DEFAULT_KEY_ID);
+        keySet.register(DEFAULT_KEY_ID, null, publicKey);
+        return keySet;
+    }
+
+    /**
+     * @param algorithm the only algorithm this key may be used with, or null to allow any algorithm that fits the key type
+     */
+    public void register(String keyId, String algorithm, PublicKey publicKey) {
+        SignatureAlgorithm pinned = algorithm != null ? SignatureAlgorithm.forName(algorithm) : null;
+        keys.put(keyId, new VerificationKey(pinned, publicKey));
+        log.info("Registered JWT verification key: {} ({})", keyId, algorithm != null ? algorithm : publicKey.getAlgorithm());
+    }
+
+    public void retire(String keyId) {
+        if (keys.remove(keyId) != null) {
+            log.info("Retired JWT verification key: {}", keyId);
+        }
+    }
+
+    public boolean isActive(String keyId) {
+        return keys.containsKey(keyId != null ? keyId : defaultKeyId);
+    }
+
+    public Set<String> keyIds() {
+        return Set.copyOf(keys.keySet());
+    }
+
+    @Override
+    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+        String keyId = header.getKeyId() != null ? header.getKeyId() : defaultKeyId;
+
+        VerificationKey key = keys.get(keyId);
+        if (key == null) {
+            throw new JwtException("Unknown signing key: " + keyId);
+        }
+
+        if (key.algorithm() != null && !key.algorithm().getValue().equals(header.getAlgorithm())) {
+            throw new JwtException("Signing key " + keyId + " does not accept algorithm " + header.getAlgorithm());
+        }
+
+        return key.publicKey();
+    }
+
+    private record VerificationKey(SignatureAlgorithm algorithm, PublicKey publicKey) {
+    }
+}
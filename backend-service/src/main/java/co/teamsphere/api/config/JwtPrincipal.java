@@ -0,0 +1,23 @@
+package co.teamsphere.api.config;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * The caller behind a verified access token. Built once by {@link JWTTokenValidator} and handed to
+ * controllers with {@code @AuthenticationPrincipal}, so nothing downstream has to parse the JWT again.
+ */
+public record JwtPrincipal(UUID id, String email, List<GrantedAuthority> authorities) implements AuthenticatedPrincipal {
+
+    public JwtPrincipal {
+        authorities = List.copyOf(authorities);
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -0,0 +1,54 @@
+package co.teamsphere.api.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import co.teamsphere.api.exception.ChatException;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
+import co.teamsphere.api.services.MessageShardService;
+
+/**
+ * Operator tooling for message shards at {@code /actuator/messageshards}: list the shards, look up where a chat
+ * lives and move it ({@code POST /actuator/messageshards/{chatId}} with {@code {"target": "shard-name"}}).
+ * Not exposed over HTTP unless added to {@code management.endpoints.web.exposure.include}, and then only
+ * behind whatever protects the management port.
+ */
+@Component
+@Endpoint(id = "messageshards")
+public class MessageShardEndpoint {
+    private final MessageShardResolver messageShardResolver;
+
+    private final MessageShardService messageShardService;
+
+    public MessageShardEndpoint(MessageShardResolver messageShardResolver, MessageShardService messageShardService) {
+        this.messageShardResolver = messageShardResolver;
+        this.messageShardService = messageShardService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> shards() {
+        Map<String, Object> shards = new LinkedHashMap<>();
+        shards.put("shards", messageShardResolver.all().stream().map(MessageShard::name).toList());
+        shards.put("newChatShards", messageShardResolver.newChatShards().stream().map(MessageShard::name).toList());
+        return shards;
+    }
+
+    @ReadOperation
+    public Map<String, Object> placement(@Selector UUID chatId) {
+        return Map.of("chatId", chatId, "shard", messageShardResolver.forChat(chatId).name());
+    }
+
+    @WriteOperation
+    public Map<String, Object> move(@Selector UUID chatId, String target) throws ChatException {
+        int moved = messageShardService.moveChat(chatId, target);
+        return Map.of("chatId", chatId, "shard", target, "moved", moved);
+    }
+}
@@ -0,0 +1,88 @@
+package co.teamsphere.api.config;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import co.teamsphere.api.config.properties.MessageShardingProperties;
+import co.teamsphere.api.repository.ChatRepository;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Builds the message shards from {@code messages.sharding}. The primary shard is the application's own data
+ * source and transaction manager (so with read replicas on, its reads can still go to a replica); every
+ * configured shard gets its own Hikari pool.
+ */
+@Configuration
+@Slf4j
+public class MessageShardingConfig {
+
+    @Bean(destroyMethod = "close")
+    public MessageShardResolver messageShardResolver(DataSource dataSource,
+                                                     JdbcTemplate jdbcTemplate,
+                                                     PlatformTransactionManager transactionManager,
+                                                     DataSourceProperties dataSourceProperties,
+                                                     MessageShardingProperties properties,
+                                                     ChatRepository chatRepository) {
+        List<MessageShard> shards = new ArrayList<>();
+        shards.add(new MessageShard(MessageShardResolver.PRIMARY, jdbcTemplate, new TransactionTemplate(transactionManager)));
+
+        Properties primaryProperties = primaryDataSourceProperties(dataSource);
+        for (MessageShardingProperties.Shard shard : properties.getShards()) {
+            if (!StringUtils.hasText(shard.getName()) || MessageShardResolver.PRIMARY.equals(shard.getName())) {
+                throw new IllegalStateException("Every entry in messages.sharding.shards needs a name other than primary");
+            }
+            HikariDataSource pool = shardPool(shard, primaryProperties, dataSourceProperties, properties);
+            shards.add(new MessageShard(shard.getName(), new JdbcTemplate(pool), new TransactionTemplate(new DataSourceTransactionManager(pool))));
+        }
+
+        MessageShardResolver resolver = new MessageShardResolver(shards, properties.getNewChatShards(), chatRepository);
+        if (shards.size() > 1) {
+            log.info("Messages are sharded over {}, new chats go to {}", shards.stream().map(MessageShard::name).toList(),
+                    resolver.newChatShards().stream().map(MessageShard::name).toList());
+        }
+        return resolver;
+    }
+
+    // the pool's driver settings (e.g. rewriteBatchedStatements) apply to the shards too
+    private static Properties primaryDataSourceProperties(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getDataSourceProperties();
+            }
+        } catch (SQLException e) {
+            log.warn("Could not read the primary pool's data source properties, message shards start without them", e);
+        }
+        return new Properties();
+    }
+
+    private static HikariDataSource shardPool(MessageShardingProperties.Shard shard,
+                                              Properties primaryProperties,
+                                              DataSourceProperties dataSourceProperties,
+                                              MessageShardingProperties properties) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("message-shard-" + shard.getName());
+        pool.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        pool.setJdbcUrl(shard.getUrl());
+        pool.setUsername(StringUtils.hasText(shard.getUsername()) ? shard.getUsername() : dataSourceProperties.determineUsername());
+        pool.setPassword(StringUtils.hasText(shard.getPassword()) ? shard.getPassword() : dataSourceProperties.determinePassword());
+        pool.setDataSourceProperties(primaryProperties);
+        pool.setMaximumPoolSize(properties.getMaximumPoolSize());
+        return pool;
+    }
+}
@@ -37,7 +37,7 @@ public class RSAConfig {
         byte[] keyBytes = Base64.getDecoder().decode(key);
 
         PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(keyBytes);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        KeyFactory keyFactory = KeyFactory.getInstance(keyFamily(jwtProperties.getAlgorithm()));
         return keyFactory.generatePrivate(spec);
     }
 
@@ -47,7 +47,25 @@ public class RSAConfig {
             throw new IllegalStateException("Public Key Could Not Be Found!");
         }
 
-        var key = jwtProperties.getPublicKey()
+        return parsePublicKey(jwtProperties.getPublicKey(), jwtProperties.getAlgorithm());
+    }
+
+    @Bean
+    public JwtKeySet jwtKeySet(PublicKey publicKey, JwtProperties jwtProperties) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        JwtKeySet keySet = new JwtKeySet(jwtProperties.getKeyId());
+        keySet.register(jwtProperties.getKeyId(), jwtProperties.getAlgorithm(), publicKey);
+
+        // keys we no longer sign with (or don't sign with yet) but still accept during a rotation
+        for (JwtProperties.VerificationKey verificationKey : jwtProperties.getVerificationKeys()) {
+            keySet.register(verificationKey.getKeyId(), verificationKey.getAlgorithm(),
+                    parsePublicKey(verificationKey.getPublicKey(), verificationKey.getAlgorithm()));
+        }
+
+        return keySet;
+    }
+
+    private static PublicKey parsePublicKey(String pem, String algorithm) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        var key = pem
                 .replace("-----BEGIN PUBLIC KEY-----", "")
                 .replace("-----END PUBLIC KEY-----", "")
                 .replace("-----BEGINPUBLICKEY-----", "")
@@ -61,9 +79,17 @@ public class RSAConfig {
         byte[] keyBytes = Base64.getDecoder().decode(key);
 
         X509EncodedKeySpec spec = new X509EncodedKeySpec(keyBytes);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        KeyFactory keyFactory = KeyFactory.getInstance(keyFamily(algorithm));
         return keyFactory.generatePublic(spec);
     }
 
-
+    private static String keyFamily(String algorithm) {
+        if (algorithm == null || algorithm.startsWith("RS") || algorithm.startsWith("PS")) {
+            return "RSA";
+        }
+        if (algorithm.startsWith("ES")) {
+            return "EC";
+        }
+        throw new IllegalStateException("Unsupported JWT signing algorithm: " + algorithm);
+    }
 }
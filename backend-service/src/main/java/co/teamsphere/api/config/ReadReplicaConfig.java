@@ -0,0 +1,95 @@
+package co.teamsphere.api.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import co.teamsphere.api.config.properties.ReadReplicaProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Replaces the auto-configured data source with {@link ReplicaRoutingDataSource} when
+ * {@code datasource.read-replicas.enabled=true}. The primary pool is still built from {@code spring.datasource}
+ * (including {@code spring.datasource.hikari}), so turning replicas off gets back exactly the old setup.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.read-replicas", name = "enabled", havingValue = "true")
+@Slf4j
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties dataSourceProperties,
+                                                             ReadReplicaProperties properties,
+                                                             ReadYourWritesTracker readYourWritesTracker,
+                                                             MeterRegistry meterRegistry) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            ReadReplicaProperties.Replica replica = properties.getReplicas().get(i);
+            String name = StringUtils.hasText(replica.getName()) ? replica.getName() : "replica-" + i;
+            replicas.put(name, replicaPool(name, replica, primaryDataSource, dataSourceProperties, properties));
+        }
+        log.info("Routing read-only transactions to {} replicas", replicas.size());
+
+        // a lag reading older than one missed check plus max-lag can't vouch for the replicas anymore
+        Duration staleAfter = properties.getMaxLag().plusMillis(properties.getLagCheckIntervalMs());
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, readYourWritesTracker, properties.getMaxLag(), staleAfter, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * Hibernate's default for JPA holds the physical connection until the EntityManager closes, and with
+     * open-in-view that is the end of the request. The first transaction would pick the target for all of them, so
+     * a read-only lookup followed by a save sends the save to the replica. Releasing after each transaction lets
+     * every transaction be routed on its own.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer replicaConnectionHandling() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    private static HikariDataSource replicaPool(String name,
+                                                ReadReplicaProperties.Replica replica,
+                                                HikariDataSource primary,
+                                                DataSourceProperties dataSourceProperties,
+                                                ReadReplicaProperties properties) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("replica-" + name);
+        pool.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        pool.setJdbcUrl(replica.getUrl());
+        pool.setUsername(StringUtils.hasText(replica.getUsername()) ? replica.getUsername() : dataSourceProperties.determineUsername());
+        pool.setPassword(StringUtils.hasText(replica.getPassword()) ? replica.getPassword() : dataSourceProperties.determinePassword());
+        pool.setDataSourceProperties(primary.getDataSourceProperties());
+        pool.setMaximumPoolSize(properties.getMaximumPoolSize());
+        pool.setReadOnly(true);
+        return pool;
+    }
+}
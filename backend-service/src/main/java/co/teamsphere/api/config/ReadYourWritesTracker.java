@@ -0,0 +1,123 @@
+package co.teamsphere.api.config;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import co.teamsphere.api.config.properties.ReadReplicaProperties;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Remembers which users wrote something in the last {@code read-your-writes-window}, so their reads can skip
+ * the replicas until those have caught up. Without it a user who sends a message and reloads the chat can land
+ * on a replica that hasn't seen the message yet.
+ * <p>
+ * The in-memory pin only covers the node that took the write. Nothing makes routing sticky, so the time of the
+ * write also travels with the client: an HTTP write sets the {@value #LAST_WRITE_COOKIE} cookie, and clients that
+ * write over STOMP send their last write time in the {@value #LAST_WRITE_HEADER} header. Either one pins the
+ * request on any node. A client can only use them to send its own reads to the primary.
+ */
+@Component
+public class ReadYourWritesTracker {
+    public static final String LAST_WRITE_COOKIE = "last_write";
+    public static final String LAST_WRITE_HEADER = "X-Last-Write";
+
+    private static final int MAX_TRACKED_USERS = 100_000;
+    private static final String COOKIE_SET_ATTRIBUTE = ReadYourWritesTracker.class.getName() + ".cookieSet";
+
+    private final Cache<UUID, Boolean> recentWriters;
+
+    private final Duration window;
+
+    public ReadYourWritesTracker(ReadReplicaProperties properties) {
+        this.window = properties.getReadYourWritesWindow();
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(MAX_TRACKED_USERS)
+                .build();
+    }
+
+    public void recordWrite(UUID userId) {
+        if (userId == null) {
+            return;
+        }
+        recentWriters.put(userId, Boolean.TRUE);
+
+        ServletRequestAttributes attributes = currentRequestAttributes();
+        HttpServletResponse response = attributes != null ? attributes.getResponse() : null;
+        // once per request; a committed response can't take headers any more
+        if (response == null || response.isCommitted() || attributes.getRequest().getAttribute(COOKIE_SET_ATTRIBUTE) != null) {
+            return;
+        }
+        ResponseCookie cookie = ResponseCookie.from(LAST_WRITE_COOKIE, Long.toString(System.currentTimeMillis()))
+                .maxAge(window)
+                .path("/")
+                .httpOnly(true)
+                .secure(attributes.getRequest().isSecure())
+                .sameSite("Lax")
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        attributes.getRequest().setAttribute(COOKIE_SET_ATTRIBUTE, Boolean.TRUE);
+    }
+
+    public boolean isPinned(UUID userId) {
+        if (userId != null && recentWriters.getIfPresent(userId) != null) {
+            return true;
+        }
+        long lastWrite = clientLastWrite();
+        long age = System.currentTimeMillis() - lastWrite;
+        // a time far in the future is bogus, not a reason to pin forever
+        return lastWrite > 0 && Math.abs(age) < window.toMillis();
+    }
+
+    /**
+     * The authenticated user of the current request, or null on threads that don't serve one.
+     */
+    public static UUID currentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof JwtPrincipal principal) {
+            return principal.id();
+        }
+        return null;
+    }
+
+    // epoch millis of the client's last write from the header or cookie, 0 if neither is there or parses
+    private static long clientLastWrite() {
+        ServletRequestAttributes attributes = currentRequestAttributes();
+        if (attributes == null) {
+            return 0;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        long lastWrite = parseMillis(request.getHeader(LAST_WRITE_HEADER));
+        Cookie cookie = WebUtils.getCookie(request, LAST_WRITE_COOKIE);
+        return Math.max(lastWrite, cookie != null ? parseMillis(cookie.getValue()) : 0);
+    }
+
+    private static long parseMillis(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static ServletRequestAttributes currentRequestAttributes() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes ? attributes : null;
+    }
+}
@@ -0,0 +1,176 @@
+package co.teamsphere.api.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends connections for {@code @Transactional(readOnly = true)} work to a replica and everything else to the
+ * primary. Has to sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: the
+ * transaction managers ask for a connection before the read-only flag of the new transaction is visible, the
+ * proxy defers that until the first statement.
+ * <p>
+ * Reads fall back to the primary when no replica is within {@code max-lag}, when the last lag check is older than
+ * {@code staleAfter} (a stuck check says nothing about the replicas now), and for users who wrote something within
+ * the read-your-writes window.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+
+    private final List<String> replicaNames;
+
+    private final Map<String, DataSource> replicas;
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private final Duration maxLag;
+
+    private final long staleAfterNanos;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    // replicas currently within max-lag, replaced wholesale by each lag check
+    private volatile List<String> healthyReplicas = List.of();
+
+    private volatile long lastLagCheck = System.nanoTime();
+
+    private final Counter replicaReads;
+
+    private final Counter laggingFallbacks;
+
+    private final Counter pinnedReads;
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    Map<String, DataSource> replicas,
+                                    ReadYourWritesTracker readYourWritesTracker,
+                                    Duration maxLag,
+                                    Duration staleAfter,
+                                    MeterRegistry meterRegistry) {
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.replicaNames = List.copyOf(replicas.keySet());
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.maxLag = maxLag;
+        this.staleAfterNanos = staleAfter.toNanos();
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+
+        this.replicaReads = Counter.builder("db.reads.routed")
+                .tag("target", "replica")
+                .description("Read-only transactions served by a replica")
+                .register(meterRegistry);
+        this.laggingFallbacks = Counter.builder("db.reads.routed")
+                .tag("target", "primary_lagging")
+                .description("Read-only transactions sent to the primary because no replica was known to be within max lag")
+                .register(meterRegistry);
+        this.pinnedReads = Counter.builder("db.reads.routed")
+                .tag("target", "primary_pinned")
+                .description("Read-only transactions sent to the primary because the user just wrote something")
+                .register(meterRegistry);
+        Gauge.builder("db.replicas.healthy", this, routing -> routing.healthyReplicas.size())
+                .description("Replicas currently within max lag")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        UUID userId = ReadYourWritesTracker.currentUserId();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                readYourWritesTracker.recordWrite(userId);
+            }
+            return PRIMARY;
+        }
+
+        if (readYourWritesTracker.isPinned(userId)) {
+            pinnedReads.increment();
+            return PRIMARY;
+        }
+
+        List<String> healthy = healthyReplicas;
+        if (healthy.isEmpty() || System.nanoTime() - lastLagCheck > staleAfterNanos) {
+            laggingFallbacks.increment();
+            return PRIMARY;
+        }
+
+        replicaReads.increment();
+        return healthy.get(Math.floorMod(nextReplica.getAndIncrement(), healthy.size()));
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.read-replicas.lag-check-interval-ms:1000}")
+    public void checkReplicaLag() {
+        List<String> healthy = new ArrayList<>(replicaNames.size());
+        for (String name : replicaNames) {
+            try {
+                Optional<Duration> lag = replicaLag(replicas.get(name));
+                if (lag.isEmpty()) {
+                    log.warn("Replica {} is not replicating, keeping reads off it", name);
+                } else if (lag.get().compareTo(maxLag) > 0) {
+                    log.warn("Replica {} is {}s behind, keeping reads off it", name, lag.get().toSeconds());
+                } else {
+                    healthy.add(name);
+                }
+            } catch (Exception e) {
+                log.warn("Error checking lag of replica {}, keeping reads off it: {}", name, e.getMessage());
+            }
+        }
+
+        if (healthy.size() != healthyReplicas.size()) {
+            log.info("{} of {} replicas are serving reads", healthy.size(), replicaNames.size());
+        }
+        healthyReplicas = List.copyOf(healthy);
+        lastLagCheck = System.nanoTime();
+    }
+
+    /**
+     * How far the replica is behind its source, empty when replication isn't running. Needs the REPLICATION
+     * CLIENT privilege on the replica user.
+     */
+    Optional<Duration> replicaLag(DataSource replica) {
+        List<Map<String, Object>> status = new JdbcTemplate(replica).queryForList("SHOW REPLICA STATUS");
+        if (status.isEmpty()) {
+            return Optional.empty();
+        }
+        Object seconds = status.getFirst().get("Seconds_Behind_Source");
+        return seconds instanceof Number number ? Optional.of(Duration.ofSeconds(number.longValue())) : Optional.empty();
+    }
+
+    // the replica pools are created for this data source, the primary is a bean of its own and closed by the context
+    public void close() {
+        for (DataSource replica : replicas.values()) {
+            if (replica instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Error closing replica pool", e);
+                }
+            }
+        }
+    }
+
+    List<String> getHealthyReplicas() {
+        return healthyReplicas;
+    }
+}
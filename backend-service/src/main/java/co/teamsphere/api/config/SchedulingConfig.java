@@ -0,0 +1,33 @@
+package co.teamsphere.api.config;
+
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Short periodic jobs (inbox flush, revocation poll, replica lag check, search refresh, key refresh) share the
+ * default scheduler, sized by {@code spring.task.scheduling.pool.size}. The long batch jobs, message archiving and
+ * the refresh token reaper, run on {@link #MAINTENANCE_SCHEDULER} so an hour-long archive run can't hold up the rest.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    public static final String MAINTENANCE_SCHEDULER = "maintenanceScheduler";
+
+    // declaring any scheduler turns Boot's default one off, so it is declared here too from the same properties
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    // one thread per batch job, they never wait on each other either
+    @Bean(name = MAINTENANCE_SCHEDULER)
+    public ThreadPoolTaskScheduler maintenanceScheduler() {
+        return new ThreadPoolTaskSchedulerBuilder()
+                .poolSize(2)
+                .threadNamePrefix("maintenance-")
+                .build();
+    }
+}
@@ -0,0 +1,119 @@
+package co.teamsphere.api.config;
+
+import java.security.Principal;
+import java.util.UUID;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import co.teamsphere.api.services.ChatMembershipService;
+import io.jsonwebtoken.JwtException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Authenticates a STOMP session once, on CONNECT, and binds the {@link JwtPrincipal} to it. Later frames carry
+ * no token: SEND only needs the session to be authenticated and an application destination, and SUBSCRIBE to a
+ * group topic is checked against the cached chat membership, so regular message traffic does no auth work at all.
+ */
+@Component
+@Slf4j
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String GROUP_DESTINATION_PREFIX = "/group/";
+    private static final String APPLICATION_DESTINATION_PREFIX = "/app/";
+
+    private final JWTTokenValidator jwtTokenValidator;
+
+    private final ChatMembershipService chatMembershipService;
+
+    public StompAuthChannelInterceptor(JWTTokenValidator jwtTokenValidator, ChatMembershipService chatMembershipService) {
+        this.jwtTokenValidator = jwtTokenValidator;
+        this.chatMembershipService = chatMembershipService;
+    }
+
+    @SuppressWarnings("null")
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        switch (accessor.getCommand()) {
+            case CONNECT, STOMP -> accessor.setUser(authenticate(accessor.getFirstNativeHeader(JWTTokenConst.HEADER)));
+            case SUBSCRIBE -> authorizeSubscribe(principal(accessor), accessor.getDestination());
+            case SEND -> authorizeSend(principal(accessor), accessor.getDestination());
+            default -> {
+                // DISCONNECT, ACK, heartbeats... nothing to authorize
+            }
+        }
+        return message;
+    }
+
+    private Authentication authenticate(String header) {
+        if (header == null || !header.startsWith(BEARER_PREFIX)) {
+            throw new BadCredentialsException("Missing bearer token on STOMP CONNECT");
+        }
+        try {
+            Authentication auth = jwtTokenValidator.authenticate(header.substring(BEARER_PREFIX.length()));
+            log.debug("STOMP session authenticated for user: {}", auth.getName());
+            return auth;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.warn("Rejected STOMP CONNECT: {}", e.getMessage());
+            throw new BadCredentialsException("Invalid JWT token", e);
+        }
+    }
+
+    private void authorizeSubscribe(JwtPrincipal principal, String destination) {
+        // /user/** is resolved per session by spring, only group topics need a membership check
+        if (destination == null || !destination.startsWith(GROUP_DESTINATION_PREFIX)) {
+            return;
+        }
+
+        UUID chatId;
+        try {
+            chatId = UUID.fromString(destination.substring(GROUP_DESTINATION_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new AccessDeniedException("Unknown group destination: " + destination);
+        }
+
+        if (!chatMembershipService.isMember(chatId, principal.id())) {
+            log.warn("User: {} tried to subscribe to chat: {} without being a member", principal.id(), chatId);
+            throw new AccessDeniedException("Not a member of chat: " + chatId);
+        }
+    }
+
+    private static void authorizeSend(JwtPrincipal principal, String destination) {
+        // a SEND to /group/** or /user/** would go to the broker relay as is, straight into any chat's topic or any
+        // user's queue; clients only get to talk to the @MessageMapping handlers
+        if (destination == null || !destination.startsWith(APPLICATION_DESTINATION_PREFIX)) {
+            log.warn("User: {} tried to send to broker destination: {}", principal.id(), destination);
+            throw new AccessDeniedException("Clients can only send to " + APPLICATION_DESTINATION_PREFIX + " destinations");
+        }
+    }
+
+    private static JwtPrincipal principal(StompHeaderAccessor accessor) {
+        JwtPrincipal principal = principal(accessor.getUser());
+        if (principal == null) {
+            throw new AccessDeniedException("STOMP session is not authenticated");
+        }
+        return principal;
+    }
+
+    /**
+     * The {@link JwtPrincipal} bound at CONNECT, or null if the session never authenticated.
+     */
+    public static JwtPrincipal principal(Principal user) {
+        if (user instanceof Authentication auth && auth.getPrincipal() instanceof JwtPrincipal principal) {
+            return principal;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,37 @@
+package co.teamsphere.api.config;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-user "every access token issued before this instant is dead" cutoffs, checked by {@link JWTTokenValidator}
+ * on every request. One map lookup, no DB: the table behind it is replicated in by TokenRevocationService.
+ * Cutoffs only ever move forward, so applying the same update twice or out of order is harmless.
+ */
+@Component
+public class TokenRevocationList {
+    // userId -> epoch milli; tokens issued strictly before it are rejected
+    private final ConcurrentHashMap<UUID, Long> revokedBefore = new ConcurrentHashMap<>();
+
+    public void revokeBefore(UUID userId, long epochMilli) {
+        revokedBefore.merge(userId, epochMilli, Math::max);
+    }
+
+    public boolean isRevoked(UUID userId, long issuedAtEpochMilli) {
+        Long cutoff = revokedBefore.get(userId);
+        return cutoff != null && issuedAtEpochMilli < cutoff;
+    }
+
+    /**
+     * Drops cutoffs so old that every token they could reject has expired on its own anyway.
+     */
+    public void prune(long olderThanEpochMilli) {
+        revokedBefore.values().removeIf(cutoff -> cutoff < olderThanEpochMilli);
+    }
+
+    public int size() {
+        return revokedBefore.size();
+    }
+}
@@ -1,5 +1,7 @@
 package co.teamsphere.api.config.properties;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -14,4 +16,24 @@ public class Argon2Properties {
     private int parallelism;
     private int memoryCost;
     private int iterations;
+    // stored hashes below this cost are rewritten on the next login, 0 means memory-cost / iterations.
+    // with calibration-mode APPLY keep it at a cost every node can afford, it is capped at each node's own cost
+    private int minMemoryCost = 0;
+    private int minIterations = 0;
+
+    // bulkhead around hashing; each worker holds memoryCost kb while hashing
+    private int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int queueCapacity = 64;
+    private Duration maxWait = Duration.ofSeconds(5);
+
+    // startup benchmark: REPORT only logs what it would pick, APPLY hashes with the calibrated cost
+    private CalibrationMode calibrationMode = CalibrationMode.OFF;
+    private Duration calibrationTarget = Duration.ofMillis(250);
+    private int calibrationSamples = 3;
+
+    public enum CalibrationMode {
+        OFF,
+        REPORT,
+        APPLY
+    }
 }
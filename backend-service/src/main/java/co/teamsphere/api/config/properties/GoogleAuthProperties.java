@@ -0,0 +1,30 @@
+package co.teamsphere.api.config.properties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "google.auth")
+@Data
+public class GoogleAuthProperties {
+    // OAuth client ids of our frontends, an id token has to be issued to one of them
+    private List<String> clientIds = new ArrayList<>();
+    private List<String> issuers = new ArrayList<>(List.of("https://accounts.google.com", "accounts.google.com"));
+    private String jwksUri = "https://www.googleapis.com/oauth2/v3/certs";
+    // used when the key endpoint sends no max-age
+    private Duration defaultKeysTtl = Duration.ofHours(1);
+    // refresh this long before the keys expire, so logins never wait on the fetch
+    private Duration refreshAhead = Duration.ofMinutes(5);
+    // floor between fetches, bounds what a flood of tokens with unknown kids can cost us
+    private Duration minRefreshInterval = Duration.ofSeconds(30);
+    private long refreshCheckIntervalMs = 60_000;
+    private Duration clockSkew = Duration.ofSeconds(60);
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration readTimeout = Duration.ofSeconds(3);
+}
@@ -0,0 +1,17 @@
+package co.teamsphere.api.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "inbox")
+@Data
+public class InboxProperties {
+    // how long message/read events are coalesced in memory before being written to chat_inbox
+    private long flushIntervalMs = 500;
+    // seeds chat_inbox from chat_users and messages with a full-table scan; turn on for the one deploy that
+    // introduces chat_inbox, then off again
+    private boolean backfillOnStartup = false;
+}
@@ -3,6 +3,9 @@ package co.teamsphere.api.config.properties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import lombok.Data;
 
 @Component
@@ -12,4 +15,18 @@ public class JwtProperties {
     private String audience;
     private String publicKey;
     private String privateKey;
-}
\ No newline at end of file
+    // RS256/384/512, PS256/384/512 or ES256/384/512, the keys above have to match
+    private String algorithm = "RS256";
+    // sent as the kid header so validators can pick the right key while keys are being rotated
+    private String keyId = "primary";
+    private List<VerificationKey> verificationKeys = new ArrayList<>();
+    // max number of verified access tokens kept by JWTTokenValidator
+    private long verifiedTokenCacheSize = 10_000;
+
+    @Data
+    public static class VerificationKey {
+        private String keyId;
+        private String algorithm;
+        private String publicKey;
+    }
+}
@@ -0,0 +1,22 @@
+package co.teamsphere.api.config.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "login.throttle")
+@Data
+public class LoginThrottleProperties {
+    private Duration window = Duration.ofMinutes(15);
+    // resolution of the sliding window, more buckets = smoother expiry
+    private int buckets = 15;
+    private int maxFailuresPerEmail = 5;
+    // one ip can sit in front of a whole office or carrier NAT, so this is much looser than the per-email limit
+    private int maxFailuresPerIp = 100;
+    // bounds memory when an attacker sprays unique emails or rotates ips
+    private long maxTrackedKeys = 100_000;
+}
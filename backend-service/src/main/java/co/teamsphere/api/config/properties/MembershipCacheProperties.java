@@ -0,0 +1,21 @@
+package co.teamsphere.api.config.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "membership.cache")
+@Data
+public class MembershipCacheProperties {
+    // upper bound on the total number of member/admin ids held across all cached chats
+    private long maximumWeight = 1_000_000;
+    private Duration ttl = Duration.ofMinutes(10);
+    // how long a member removed on one node can still pass the check on the others
+    private long pollIntervalMs = 5_000;
+    // re-read a little behind the last poll so writes from nodes with a lagging clock aren't skipped
+    private Duration pollOverlap = Duration.ofSeconds(30);
+}
@@ -0,0 +1,30 @@
+package co.teamsphere.api.config.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "messages.archive")
+@Data
+public class MessageArchiveProperties {
+    // off by default; with more than one node the directory has to be a volume every node mounts, reads come from it too
+    private boolean enabled = false;
+    private String directory = "data/message-archive";
+    // messages older than this leave the messages table
+    private Duration archiveAfter = Duration.ofDays(180);
+    // messages per compressed block, which is also the granularity of the sparse index
+    private int blockSize = 256;
+    // caps one run so a single huge chat can't hold the job (and its deletes) for hours
+    private int maxMessagesPerChatPerRun = 50_000;
+    private int maxChatsPerRun = 1_000;
+    private long intervalMs = 3_600_000;
+    // segments are read through one mapping sliced at int offsets, so 2 GB is the hard ceiling; a chat whose
+    // segment is full keeps its remaining messages in the messages table
+    private long maxSegmentBytes = Integer.MAX_VALUE;
+    // chats whose index and mapped segment stay open for read-through
+    private int maxOpenChats = 1_000;
+}
@@ -0,0 +1,41 @@
+package co.teamsphere.api.config.properties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "messages.sharding")
+@Data
+public class MessageShardingProperties {
+    // databases for messages next to spring.datasource, which is always the shard named "primary".
+    // empty by default: every chat's messages stay on the primary exactly as before
+    private List<Shard> shards = new ArrayList<>();
+    // shards new chats are hashed over, empty means all of them (primary included). Leave a full shard out to
+    // stop it taking new chats, the chats already on it keep working
+    private List<String> newChatShards = new ArrayList<>();
+    private int maximumPoolSize = 10;
+    // a move waits this long after switching a chat's placement, for senders that looked the chat up just before
+    // the switch to finish writing to the old shard; keep it above messages.group-commit.ack-timeout and the
+    // replica max lag
+    private Duration moveSettleTime = Duration.ofSeconds(10);
+    private int moveBatchSize = 1_000;
+    // how long a move holds a chat against moves started on any node; keep it well above the longest move, a node
+    // that dies mid-move leaves the chat locked until it runs out
+    private Duration moveLockTimeout = Duration.ofHours(1);
+
+    @Data
+    public static class Shard {
+        private String name;
+        // the primary's spring.datasource.hikari.data-source-properties are copied over, e.g. rewriteBatchedStatements
+        private String url;
+        // fall back to spring.datasource.username/password when blank
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,23 @@
+package co.teamsphere.api.config.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "messages.group-commit")
+@Data
+public class MessageWriterProperties {
+    // off by default: every message is its own transaction, exactly as before
+    private boolean enabled = false;
+    // a batch is flushed as soon as it holds this many messages...
+    private int maxBatchSize = 200;
+    // ...or once the oldest message in it has waited this long
+    private Duration linger = Duration.ofMillis(5);
+    private int queueCapacity = 10_000;
+    // how long a sender waits for its batch to commit before giving up
+    private Duration ackTimeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,36 @@
+package co.teamsphere.api.config.properties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "datasource.read-replicas")
+@Data
+public class ReadReplicaProperties {
+    // off by default, everything keeps going to spring.datasource
+    private boolean enabled = false;
+    private List<Replica> replicas = new ArrayList<>();
+    // a replica further behind than this stops getting reads until it catches up
+    private Duration maxLag = Duration.ofSeconds(2);
+    // reads also go back to the primary when no lag check has finished for max-lag plus this long
+    private long lagCheckIntervalMs = 1_000;
+    // after a user writes, their reads stay on the primary this long; keep it above max-lag.
+    // carried to other nodes by the last_write cookie / X-Last-Write header, see ReadYourWritesTracker
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+    private int maximumPoolSize = 10;
+
+    @Data
+    public static class Replica {
+        private String name;
+        private String url;
+        // fall back to spring.datasource.username/password when blank
+        private String username;
+        private String password;
+    }
+}
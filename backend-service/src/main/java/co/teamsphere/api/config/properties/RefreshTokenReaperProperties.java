@@ -0,0 +1,20 @@
+package co.teamsphere.api.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "refresh-token.reaper")
+@Data
+public class RefreshTokenReaperProperties {
+    private boolean enabled = true;
+    private long intervalMs = 600_000;
+    private long initialDelayMs = 60_000;
+    // rows per delete transaction, keeps lock time and undo log small
+    private int batchSize = 500;
+    // caps one run so a large backlog is worked off over several intervals instead of all at once
+    private int maxBatchesPerRun = 100;
+    private long pauseBetweenBatchesMs = 100;
+}
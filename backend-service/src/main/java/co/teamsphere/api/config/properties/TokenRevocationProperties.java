@@ -0,0 +1,20 @@
+package co.teamsphere.api.config.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "jwt.revocation")
+@Data
+public class TokenRevocationProperties {
+    // how quickly a logout on one node reaches the others
+    private long pollIntervalMs = 5_000;
+    // re-read a little behind the last poll so writes from nodes with a lagging clock aren't skipped
+    private Duration pollOverlap = Duration.ofSeconds(30);
+    // must be at least the access token lifetime, older cutoffs can't match a live token
+    private Duration retention = Duration.ofHours(24);
+}
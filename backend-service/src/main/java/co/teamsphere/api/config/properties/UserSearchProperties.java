@@ -0,0 +1,24 @@
+package co.teamsphere.api.config.properties;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Component
+@ConfigurationProperties(prefix = "user.search")
+@Data
+public class UserSearchProperties {
+    // how often users created or renamed on other nodes are pulled into this node's index
+    private long refreshIntervalMs = 10_000;
+    // re-read a little behind the last refresh so writes from nodes with a lagging clock aren't skipped
+    private Duration refreshOverlap = Duration.ofSeconds(30);
+    private int defaultPageSize = 20;
+    private int maxPageSize = 50;
+    // trigram similarity a typo-tolerant match needs, 0..1
+    private double minSimilarity = 0.3;
+    // cap on names ranked for one- and two-letter queries
+    private int maxPrefixCandidates = 1_000;
+}
@@ -1,19 +1,12 @@
 package co.teamsphere.api.controller;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.util.Optional;
-import java.util.UUID;
-
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -23,26 +16,26 @@ import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 
 import co.teamsphere.api.config.JWTTokenProvider;
+import co.teamsphere.api.config.JwtPrincipal;
+import co.teamsphere.api.exception.LoginThrottledException;
+import co.teamsphere.api.exception.PasswordHashingUnavailableException;
 import co.teamsphere.api.exception.ProfileImageException;
 import co.teamsphere.api.exception.RefreshTokenException;
 import co.teamsphere.api.exception.UserException;
-import co.teamsphere.api.models.RefreshToken;
-import co.teamsphere.api.models.User;
-import co.teamsphere.api.repository.UserRepository;
 import co.teamsphere.api.request.LoginRequest;
 import co.teamsphere.api.request.RefreshTokenRequest;
 import co.teamsphere.api.request.SignupRequest;
 import co.teamsphere.api.response.AuthResponse;
 import co.teamsphere.api.services.AuthenticationService;
 import co.teamsphere.api.services.RefreshTokenService;
+import co.teamsphere.api.services.TokenRevocationService;
 import co.teamsphere.api.utils.GoogleAuthRequest;
-import co.teamsphere.api.utils.GoogleUserInfo;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
-import jakarta.transaction.Transactional;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 
@@ -56,21 +49,17 @@ public class AuthController {
 
     private final RefreshTokenService refreshTokenService;
 
-    private final UserRepository userRepository;
-
-    private final PasswordEncoder passwordEncoder;
+    private final TokenRevocationService tokenRevocationService;
 
     public AuthController(JWTTokenProvider jwtTokenProvider,
                           AuthenticationService authenticationService,
                           RefreshTokenService refreshTokenService,
-                          UserRepository userRepository,
-                          PasswordEncoder passwordEncoder
+                          TokenRevocationService tokenRevocationService
     ) {
         this.jwtTokenProvider = jwtTokenProvider;
         this.authenticationService = authenticationService;
         this.refreshTokenService = refreshTokenService;
-        this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @GetMapping("/verify")
@@ -108,8 +97,8 @@ public class AuthController {
                 )
             ),
         @ApiResponse(
-                responseCode = "400",
-                description = "Token is invalid or not provided"
+                responseCode = "401",
+                description = "Token is unknown, expired or already used"
             ),
         @ApiResponse(
                 responseCode = "500",
@@ -118,38 +107,19 @@ public class AuthController {
     })
     public ResponseEntity<?> refreshTest(@RequestBody RefreshTokenRequest request) throws RefreshTokenException {
         try {
-            // there is a way to do this with just optionals and maps, but you are a funny guy if you think im writing that out (its not readable)
             log.info("Processing refresh token request");
-            var refreshToken = refreshTokenService.findRefreshToken(request.getRefreshToken());
-
-            log.info("checking for refresh token: {}", refreshToken);
-            if (refreshToken.isEmpty()) {
-                log.error("Refresh Token was not found: {}", request.getRefreshToken());
-                throw new RefreshTokenException("Refresh Token is not valid!");
-            }
-
-            log.info("Verifying expiration of refresh token");
-            var rToken = refreshTokenService.verifyExpiration(refreshToken.get());
-            if (rToken == null) {
-                log.error("Refresh Token is expired: {}", request.getRefreshToken());
+            // one conditional update: checks the token exists and is unexpired and swaps in the new one
+            var rotation = refreshTokenService.rotateRefreshToken(request.getRefreshToken());
+            if (rotation.isEmpty()) {
                 var msg = new AuthResponse("Unauthorized", null, false);
                 return new ResponseEntity<>(msg, HttpStatus.UNAUTHORIZED);
             }
 
-            log.info("Generating new JWT token");
-            var user = rToken.getUser();
-            String jwtToken = jwtTokenProvider.generateJwtTokenFromEmail(user.getEmail(), user.getId());
-            String newRefreshToken = refreshTokenService.replaceRefreshToken(user.getEmail());
-            if (newRefreshToken == null) {
-                log.error("Error during refresh token replacement");
-                throw new Exception("Error during refresh token replacement");
-            }
-            var auth = new AuthResponse(jwtToken, newRefreshToken, true);
+            log.info("Generating new JWT token for user with ID: {}", rotation.get().getUserId());
+            String jwtToken = jwtTokenProvider.generateJwtTokenFromEmail(rotation.get().getEmail(), rotation.get().getUserId());
+            var auth = new AuthResponse(jwtToken, rotation.get().getRefreshToken(), true);
 
             return new ResponseEntity<>(auth, HttpStatus.OK);
-        } catch (RefreshTokenException e) {
-            log.error("Error during JWT token verification: ", e);
-            throw new RefreshTokenException("Token is invalid or not provided.");
         } catch (Exception e) {
             log.error("Error during JWT token verification: ", e);
             throw new RefreshTokenException("Something went Wrong.");
@@ -167,7 +137,8 @@ public class AuthController {
                             schema = @Schema(implementation = AuthResponse.class)
                 )
             ),
-        @ApiResponse(responseCode = "400", description = "Invalid input or user already exists")
+        @ApiResponse(responseCode = "400", description = "Invalid input or user already exists"),
+        @ApiResponse(responseCode = "503", description = "Too many concurrent authentications, retry shortly")
     })
     public ResponseEntity<AuthResponse> userSignupMethod (
             @Schema(description = "User details", implementation = SignupRequest.class)
@@ -186,6 +157,9 @@ public class AuthController {
         } catch (ProfileImageException e){
             log.warn("File type not accepted, {}", request.getFile().getContentType());
             throw new ProfileImageException("Profile Picture type is not allowed!");
+        } catch (PasswordHashingUnavailableException e) {
+            log.warn("Password hashing pool is saturated, rejecting signup for email: {}", request.getEmail());
+            throw e;
         } catch (Exception e) {
             log.error("Unexpected error during signup process", e);
             throw new UserException("Unexpected error during signup process");
@@ -203,15 +177,19 @@ public class AuthController {
                         schema = @Schema(implementation = AuthResponse.class)
                 )
             ),
-        @ApiResponse(responseCode = "401", description = "Invalid credentials")
+        @ApiResponse(responseCode = "401", description = "Invalid credentials"),
+        @ApiResponse(responseCode = "429", description = "Too many failed attempts for this email or client"),
+        @ApiResponse(responseCode = "503", description = "Too many concurrent authentications, retry shortly")
     })
     public ResponseEntity<AuthResponse> userLoginMethod(
             @Schema(description = "Login request body", implementation = LoginRequest.class)
-            @Valid @RequestBody LoginRequest loginRequest) throws UserException {
+            @Valid @RequestBody LoginRequest loginRequest,
+            HttpServletRequest httpRequest) throws UserException, LoginThrottledException {
         try {
             log.info("Processing login request for user with username: {}", loginRequest.getEmail());
 
-            AuthResponse authResponse = authenticationService.loginUser(loginRequest.getEmail(), loginRequest.getPassword());
+            // the real client address, server.forward-headers-strategy resolves it from X-Forwarded-For behind the proxy
+            AuthResponse authResponse = authenticationService.loginUser(loginRequest.getEmail(), loginRequest.getPassword(), httpRequest.getRemoteAddr());
 
             log.info("Login successful for user with username: {}", loginRequest.getEmail());
 
@@ -225,9 +203,26 @@ public class AuthController {
         }
     }
 
+    @PostMapping("/logout")
+    @Operation(summary = "Logout everywhere", description = "Revoke every access token and the refresh token of the calling user.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "All tokens revoked"),
+        @ApiResponse(responseCode = "401", description = "Token is invalid or not provided")
+    })
+    public ResponseEntity<Void> logoutMethod(@AuthenticationPrincipal JwtPrincipal principal) {
+        if (principal == null) {
+            return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+        }
+
+        log.info("Processing logout for user with ID: {}", principal.id());
+        tokenRevocationService.revokeAllTokens(principal.id());
+        refreshTokenService.deleteRefreshTokenByUserId(principal.id().toString());
+
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
     @PostMapping("/google")
-    @Transactional // move business logic to service layer
-    @Operation(summary = "Authenticate via Google", description = "login/signup via Google OAuth.")
+    @Operation(summary = "Authenticate via Google", description = "login/signup with a Google ID token, verified locally against Google's cached signing keys.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200",
                 description = "Authentication successful",
@@ -236,6 +231,7 @@ public class AuthController {
                         schema = @Schema(implementation = AuthResponse.class)
                 )
             ),
+        @ApiResponse(responseCode = "401", description = "Google ID token is invalid, expired or not issued to us"),
         @ApiResponse(responseCode = "500", description = "Google authentication failed")
     })
     public ResponseEntity<AuthResponse> authenticateWithGoogleMethod(
@@ -248,62 +244,17 @@ public class AuthController {
         try {
             log.info("Processing Google authentication request");
 
-            GoogleUserInfo googleUserInfo = request.getGoogleUserInfo();
-
-            String email = googleUserInfo.getEmail();
-            String username = googleUserInfo.getName();
-            String pictureUrl = googleUserInfo.getPicture();
-
-            // Check if user exists
-            User googleUser = null;
-            Optional<User> optionalUser = userRepository.findByEmail(email);
-            if (optionalUser.isPresent()) {
-                log.info("Existing user found with userId: {}", optionalUser.get().getId());
-                googleUser = optionalUser.get();
-            } else {
-                // Register a new user if not exists
-                var currentDateTime = LocalDateTime.now().atOffset(ZoneOffset.UTC);
-                var user = User.builder()
-                        .email(email)
-                        .username(username)
-                        .password(passwordEncoder.encode(UUID.randomUUID().toString())) // consider adding this cause a userpass field should NEVER be null
-                        .profilePicture(pictureUrl)
-                        .createdDate(currentDateTime)
-                        .lastUpdatedDate(currentDateTime)
-                        .build();
-
-                googleUser = userRepository.save(user);
-                log.info("New user created with email: {}", email);
-            }
-
-            // Just incase
-            if (googleUser == null) {
-                log.error("Error during Google authentication, user still came out as null!");
-                throw new Exception("Error during Google authentication!");
-            }
-
-            // Load UserDetails and set authentication context
-            Authentication authentication = new UsernamePasswordAuthenticationToken(email, null);
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-
-            // Generate JWT token
-            String token = jwtTokenProvider.generateJwtToken(authentication, googleUser.getId());
-            RefreshToken refreshToken = createRefreshToken(googleUser.getId().toString(), email);
-
-            AuthResponse authResponse = new AuthResponse(token, refreshToken.getRefreshToken(), true);
+            AuthResponse authResponse = authenticationService.loginWithGoogle(request);
             return new ResponseEntity<>(authResponse, HttpStatus.OK);
-        } catch (Exception e) {
+        } catch (BadCredentialsException e) {
+            log.warn("Rejected Google authentication: {}", e.getMessage());
+            return new ResponseEntity<>(new AuthResponse("Invalid Google ID token", "", false), HttpStatus.UNAUTHORIZED);
+        } catch (PasswordHashingUnavailableException e) {
+            log.warn("Password hashing pool is saturated, rejecting Google authentication");
+            throw e;
+        } catch (UserException e) {
             log.error("Error during Google authentication: ", e);
             return new ResponseEntity<>(new AuthResponse("Error during Google authentication!" + e.getMessage(), "", false), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
-
-    private RefreshToken createRefreshToken(String userID, String email) throws UserException {
-        RefreshToken refreshToken = refreshTokenService.findByUserId(userID);
-        if (refreshToken == null || refreshToken.getExpiredAt().compareTo(Instant.now()) < 0) {
-            refreshToken = refreshTokenService.createRefreshToken(email);
-        }
-
-        return refreshToken;
-    }
 }
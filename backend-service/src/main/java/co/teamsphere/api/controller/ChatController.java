@@ -3,16 +3,14 @@ package co.teamsphere.api.controller;
 import co.teamsphere.api.DTO.ChatDTO;
 import co.teamsphere.api.DTO.ChatSummaryDTO;
 import co.teamsphere.api.DTOmapper.ChatDTOMapper;
-import co.teamsphere.api.config.JWTTokenProvider;
+import co.teamsphere.api.config.JwtPrincipal;
 import co.teamsphere.api.exception.ChatException;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.Chat;
-import co.teamsphere.api.models.User;
 import co.teamsphere.api.request.GroupChatRequest;
 import co.teamsphere.api.request.RenameGroupChatRequest;
 import co.teamsphere.api.request.SingleChatRequest;
 import co.teamsphere.api.services.ChatService;
-import co.teamsphere.api.services.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -21,12 +19,12 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -42,21 +40,12 @@ public class ChatController {
 
     private final ChatService chatService;
 
-    private final UserService userService;
-
     private final ChatDTOMapper chatDTOMapper;
 
-    private final JWTTokenProvider jwtTokenProvider;
-
     public ChatController(ChatService chatService,
-                          UserService userService,
-                          ChatDTOMapper chatDTOMapper,
-                            JWTTokenProvider jwtTokenProvider
-    ) {
+                          ChatDTOMapper chatDTOMapper) {
         this.chatService = chatService;
-        this.userService = userService;
         this.chatDTOMapper = chatDTOMapper;
-        this.jwtTokenProvider = jwtTokenProvider;
     }
 
     @PostMapping("/single")
@@ -78,9 +67,9 @@ public class ChatController {
         @ApiResponse(responseCode = "400", description = "Bad request")
     })
     public ResponseEntity<ChatDTO> creatChatHandler(@RequestBody SingleChatRequest singleChatRequest,
-                                                    @RequestHeader("Authorization")  String jwt) throws UserException {
+                                                    @AuthenticationPrincipal JwtPrincipal principal) throws UserException {
         log.info("single chat --------");
-        UUID reqUserId = jwtTokenProvider.getIdFromToken(jwt);
+        UUID reqUserId = principal.id();
         Chat chat = chatService.createChat(reqUserId, singleChatRequest.getUserId(),false);
         ChatDTO chatDto = chatDTOMapper.toChatDto(chat);
         return new ResponseEntity<>(chatDto, HttpStatus.OK);
@@ -103,11 +92,10 @@ public class ChatController {
         @ApiResponse(responseCode = "400", description = "Bad request")
     })
     public ResponseEntity<ChatDTO> createGroupHandler(@RequestBody GroupChatRequest groupChatRequest,
-                                                      @RequestHeader("Authorization") String jwt)
+                                                      @AuthenticationPrincipal JwtPrincipal principal)
             throws UserException {
-        UUID reqUserId = jwtTokenProvider.getIdFromToken(jwt);
-        Chat chat = chatService.createGroup(groupChatRequest, reqUserId);
-        ChatDTO chatDto = chatDTOMapper.toChatDto(chat);
+        UUID reqUserId = principal.id();
+        ChatDTO chatDto = chatService.createGroup(groupChatRequest, reqUserId);
         return new ResponseEntity<>(chatDto, HttpStatus.OK);
     }
 
@@ -150,10 +138,9 @@ public class ChatController {
     })
     public ResponseEntity<ChatDTO> addUserToGroupHandler(@PathVariable UUID chatId,
                                                          @PathVariable UUID userId,
-                                                         @RequestHeader("Authorization") String jwt)
+                                                         @AuthenticationPrincipal JwtPrincipal principal)
             throws UserException, ChatException {
-        User reqUser = userService.findUserProfile(jwt);
-        Chat chat = chatService.addUserToGroup(userId, chatId, reqUser);
+        Chat chat = chatService.addUserToGroup(userId, chatId, principal.id());
         ChatDTO chatDto = chatDTOMapper.toChatDto(chat);
         return new ResponseEntity<>(chatDto, HttpStatus.OK);
     }
@@ -176,8 +163,8 @@ public class ChatController {
     })
     public ResponseEntity<ChatDTO> renameGroupHandler(@PathVariable UUID chatId,
                                                       @RequestBody RenameGroupChatRequest renameGroupRequest,
-                                                      @RequestHeader("Authorization") String jwt) throws ChatException, UserException {
-        UUID reqUserId = jwtTokenProvider.getIdFromToken(jwt);
+                                                      @AuthenticationPrincipal JwtPrincipal principal) throws ChatException, UserException {
+        UUID reqUserId = principal.id();
         Chat chat = chatService.renameGroup(chatId, renameGroupRequest.getGroupName(), reqUserId);
         ChatDTO chatDto = chatDTOMapper.toChatDto(chat);
         return new ResponseEntity<>(chatDto, HttpStatus.OK);
@@ -199,11 +186,11 @@ public class ChatController {
         @ApiResponse(responseCode = "404", description = "Chat or user not found"),
         @ApiResponse(responseCode = "403", description = "Unauthorized action")
     })
-    public ResponseEntity<ChatDTO> removeFromGroupHandler(@RequestHeader("Authorization") String jwt,
+    public ResponseEntity<ChatDTO> removeFromGroupHandler(@AuthenticationPrincipal JwtPrincipal principal,
                                                           @PathVariable UUID chatId,
                                                           @PathVariable UUID userId)
             throws UserException, ChatException {
-        UUID reqUser = jwtTokenProvider.getIdFromToken(jwt);
+        UUID reqUser = principal.id();
         Chat chat = chatService.removeFromGroup(chatId, userId, reqUser);
         ChatDTO chatDto = chatDTOMapper.toChatDto(chat);
         return new ResponseEntity<>(chatDto, HttpStatus.OK);
@@ -227,8 +214,8 @@ public class ChatController {
     })
     public ResponseEntity<ChatDTO> deleteChatHandler(@PathVariable UUID chatId,
                                                      @PathVariable UUID userId,
-                                                     @RequestHeader("Authorization") String jwt) throws ChatException, UserException{
-        UUID reqUserId = jwtTokenProvider.getIdFromToken(jwt);
+                                                     @AuthenticationPrincipal JwtPrincipal principal) throws ChatException, UserException{
+        UUID reqUserId = principal.id();
         Chat chat = chatService.deleteChat(chatId, userId, reqUserId);
         ChatDTO chatDto = chatDTOMapper.toChatDto(chat);
         return new ResponseEntity<>(chatDto, HttpStatus.OK);
@@ -250,12 +237,12 @@ public class ChatController {
         @ApiResponse(responseCode = "401", description = "Unauthorized")
     })
     public ResponseEntity<List<ChatSummaryDTO>> getChatSummariesHandler(
-            @RequestHeader("Authorization") String jwt,
+            @AuthenticationPrincipal JwtPrincipal principal,
             @RequestParam(value = "page", defaultValue = "0") int page,
             @RequestParam(value = "size", defaultValue = "10") int size) throws ChatException {
         try {
             log.info("Fetching chat summaries for user");
-            UUID userId = jwtTokenProvider.getIdFromToken(jwt);
+            UUID userId = principal.id();
             // Fetch chat summaries with pagination
             List<ChatSummaryDTO> chatSummaries = chatService.getChatSummaries(userId, page, size);
             log.info("Retrieved {} chat summaries for user ID: {}", chatSummaries.size(), userId);
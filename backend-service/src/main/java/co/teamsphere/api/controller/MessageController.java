@@ -1,8 +1,9 @@
 package co.teamsphere.api.controller;
 
 import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.DTO.MessagePageDTO;
 import co.teamsphere.api.DTOmapper.MessageDTOMapper;
-import co.teamsphere.api.config.JWTTokenProvider;
+import co.teamsphere.api.config.JwtPrincipal;
 import co.teamsphere.api.exception.ChatException;
 import co.teamsphere.api.exception.MessageException;
 import co.teamsphere.api.models.Messages;
@@ -17,16 +18,16 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -36,15 +37,12 @@ public class MessageController {
     private final MessageDTOMapper messageDTOMapper;
     private final UserService userService;
     private final MessageService messageService;
-    private final JWTTokenProvider jwtTokenProvider;
     public MessageController(UserService userService,
                              MessageService messageService,
-                             MessageDTOMapper messageDTOMapper,
-                             JWTTokenProvider jwtTokenProvider) {
+                             MessageDTOMapper messageDTOMapper) {
         this.userService = userService;
         this.messageService = messageService;
         this.messageDTOMapper = messageDTOMapper;
-        this.jwtTokenProvider = jwtTokenProvider;
     }
 
     @PostMapping("/create")
@@ -64,11 +62,11 @@ public class MessageController {
         @ApiResponse(responseCode = "400", description = "Bad request"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<MessageDTO> sendMessageHandler(@RequestHeader("Authorization")String jwt, @RequestBody SendMessageRequest req) throws ChatException {
+    public ResponseEntity<MessageDTO> sendMessageHandler(@AuthenticationPrincipal JwtPrincipal principal, @RequestBody SendMessageRequest req) throws ChatException {
         try {
             log.info("Processing send message request to userId: {}", req.getUserId());
 
-            UUID reqUserId = jwtTokenProvider.getIdFromToken(jwt);
+            UUID reqUserId = principal.id();
 
             // no matter what the userId is, we will always set the userId to the one in the JWT token
             req.setUserId(reqUserId);
@@ -86,7 +84,8 @@ public class MessageController {
         }
     }
 
-    @Operation(summary = "Get messages for a chat", description = "Retrieves all messages for a specific chat.")
+    @Operation(summary = "Get messages for a chat", description = "Retrieves a page of messages for a specific chat. "
+            + "Pass the beforeCursor of a page as 'before' to load older messages, or its afterCursor as 'after' to load newer ones.")
     @io.swagger.v3.oas.annotations.responses.ApiResponses({
         @ApiResponse(
                 responseCode = "202",
@@ -94,7 +93,7 @@ public class MessageController {
                 content = @Content(
                         mediaType = "application/json",
                         schema = @Schema(
-                                implementation = List.class
+                                implementation = MessagePageDTO.class
                         )
                 )
                 ),
@@ -102,19 +101,21 @@ public class MessageController {
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/chat/{chatId}")
-    public ResponseEntity<List<MessageDTO>> getChatsMessageHandler(@PathVariable UUID chatId, @RequestHeader("Authorization") String jwt) throws ChatException {
+    public ResponseEntity<MessagePageDTO> getChatsMessageHandler(@PathVariable UUID chatId,
+                                                                 @RequestParam(required = false) String before,
+                                                                 @RequestParam(required = false) String after,
+                                                                 @RequestParam(defaultValue = "50") int limit,
+                                                                 @AuthenticationPrincipal JwtPrincipal principal) throws ChatException {
         try {
             log.info("Processing get messages for chat with ID: {}", chatId);
 
-            UUID reqUserId = jwtTokenProvider.getIdFromToken(jwt);
+            UUID reqUserId = principal.id();
 
-            List<Messages> messages = messageService.getChatsMessages(chatId, reqUserId);
+            MessagePageDTO page = messageService.getChatsMessages(chatId, reqUserId, before, after, limit);
 
-            List<MessageDTO> messageDtos = messageDTOMapper.toMessageDtos(messages);
+            log.info("Retrieved {} messages for chat with ID: {}", page.getMessages().size(), chatId);
 
-            log.info("Retrieved {} messages for chat with ID: {}", messageDtos.size(), chatId);
-
-            return new ResponseEntity<>(messageDtos, HttpStatus.ACCEPTED);
+            return new ResponseEntity<>(page, HttpStatus.ACCEPTED);
         } catch (Exception e) {
             log.error("Error during get messages process for chat with ID: {}", chatId, e);
             throw new ChatException("Error during get messages process" + e);
@@ -137,11 +138,11 @@ public class MessageController {
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @DeleteMapping("/{messageId}")
-    public ResponseEntity<ApiResponses> deleteMessageHandler(@PathVariable UUID messageId, @RequestHeader("Authorization") String jwt) throws MessageException {
+    public ResponseEntity<ApiResponses> deleteMessageHandler(@PathVariable UUID messageId, @AuthenticationPrincipal JwtPrincipal principal) throws MessageException {
         try {
             log.info("Processing delete message request for message with ID: {}", messageId);
 
-            var userId = jwtTokenProvider.getIdFromToken(jwt);
+            var userId = principal.id();
 
             messageService.deleteMessage(messageId, userId);
 
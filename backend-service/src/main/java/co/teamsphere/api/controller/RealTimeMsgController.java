@@ -1,16 +1,14 @@
 package co.teamsphere.api.controller;
 
+import co.teamsphere.api.config.JwtPrincipal;
+import co.teamsphere.api.config.StompAuthChannelInterceptor;
 import co.teamsphere.api.exception.ChatException;
 import co.teamsphere.api.exception.UserException;
-import co.teamsphere.api.models.Chat;
 import co.teamsphere.api.models.Messages;
-import co.teamsphere.api.models.User;
 import co.teamsphere.api.request.SendMessageRequest;
-import co.teamsphere.api.services.ChatService;
+import co.teamsphere.api.services.ChatMembershipService;
 import co.teamsphere.api.services.MessageService;
-import co.teamsphere.api.services.UserService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
@@ -18,32 +16,35 @@ import org.springframework.messaging.handler.annotation.DestinationVariable;
 
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
-import java.util.Iterator;
+import java.security.Principal;
 
 @Slf4j
 public class RealTimeMsgController {
 
     private final SimpMessagingTemplate simpMessagingTemplate;
 
-    private final UserService userService;
-
     private final MessageService messageService;
 
-    private final ChatService chatService;
+    private final ChatMembershipService chatMembershipService;
 
     public RealTimeMsgController(SimpMessagingTemplate simpMessagingTemplate,
-                                 UserService userService,
                                  MessageService messageService,
-                                 ChatService chatService) {
+                                 ChatMembershipService chatMembershipService) {
         this.simpMessagingTemplate = simpMessagingTemplate;
-        this.userService = userService;
         this.messageService = messageService;
-        this.chatService = chatService;
+        this.chatMembershipService = chatMembershipService;
     }
 
     @MessageMapping("/message")
     @SendTo("/group/public")
-    public Messages receiveMessage(@Payload Messages messages){
+    public Messages receiveMessage(@Payload Messages messages, Principal principal) throws UserException {
+        // relays into the chat's topic, so only the chat's members may use it, same as subscribing to it
+        JwtPrincipal sender = StompAuthChannelInterceptor.principal(principal);
+        if (sender == null || messages.getChat() == null || messages.getChat().getId() == null
+                || !chatMembershipService.isMember(messages.getChat().getId(), sender.id())) {
+            log.warn("Rejected relay to a chat the sender is not a member of");
+            throw new UserException("Not a member of this chat");
+        }
 
         simpMessagingTemplate.convertAndSend("/group/"+ messages.getChat().getId().toString(), messages);
 
@@ -51,19 +52,18 @@ public class RealTimeMsgController {
     }
 
     @MessageMapping("/chat/{groupId}")
-    public Messages sendToUser(@Payload SendMessageRequest req, @Header("Authorization") String jwt, @DestinationVariable String groupId) throws ChatException, UserException {
+    public Messages sendToUser(@Payload SendMessageRequest req, Principal principal, @DestinationVariable String groupId) throws ChatException, UserException {
         try {
+            // authenticated once at CONNECT by StompAuthChannelInterceptor, nothing to parse or look up per frame
+            JwtPrincipal sender = StompAuthChannelInterceptor.principal(principal);
+            if (sender == null) {
+                throw new UserException("STOMP session is not authenticated");
+            }
+            req.setUserId(sender.id());
             log.info("Processing send message request for userId= {} to group: {}", req.getUserId(), groupId);
 
-            User user = userService.findUserProfile(jwt);
-            req.setUserId(user.getId());
-
-            Chat chat = chatService.findChatById(req.getChatId());
-
             Messages createdMessages = messageService.sendMessage(req);
 
-            User receiverUser = receiver(chat, user);
-
             simpMessagingTemplate.convertAndSendToUser(groupId, "/private", createdMessages);
 
             log.info("Message sent successfully to group: {} by userId: {}", groupId, req.getUserId());
@@ -77,16 +77,4 @@ public class RealTimeMsgController {
             throw new UserException("Error during send message process" + e);
         }
     }
-
-    public User receiver(Chat chat, User reqUser) {
-        Iterator<User> iterator = chat.getUsers().iterator();
-
-        User user1 = iterator.next(); // get first user
-        User user2 = iterator.next(); // get second user
-
-        if(user1.getId().equals(reqUser.getId())){
-            return user2;
-        }
-        return user1;
-    }
 }
@@ -1,24 +1,24 @@
 package co.teamsphere.api.controller;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
 
-import co.teamsphere.api.config.JWTTokenProvider;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import co.teamsphere.api.DTO.UserDTO;
+import co.teamsphere.api.DTO.UserSummaryDTO;
 import co.teamsphere.api.DTOmapper.UserDTOMapper;
+import co.teamsphere.api.config.JwtPrincipal;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.User;
 import co.teamsphere.api.request.UpdateUserRequest;
@@ -39,14 +39,10 @@ public class UserController {
 
     private final UserDTOMapper userDTOMapper;
 
-    private final JWTTokenProvider jwtTokenProvider;
-
     public UserController(UserService userService,
-                          UserDTOMapper  userDTOMapper,
-                          JWTTokenProvider jwtTokenProvider) {
+                          UserDTOMapper  userDTOMapper) {
         this.userService = userService;
         this.userDTOMapper = userDTOMapper;
-        this.jwtTokenProvider = jwtTokenProvider;
     }
 
     @PutMapping(value = "/update/{userId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -65,11 +61,11 @@ public class UserController {
         @ApiResponse(responseCode = "404", description = "User not found"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public ResponseEntity<UserDTO> updateUserHandler(@ModelAttribute UpdateUserRequest req, @PathVariable UUID userId, @RequestHeader("Authorization") String jwt) throws UserException {
+    public ResponseEntity<UserDTO> updateUserHandler(@ModelAttribute UpdateUserRequest req, @PathVariable UUID userId, @AuthenticationPrincipal JwtPrincipal principal) throws UserException {
         try {
             log.info("Processing update user request for user with ID: {}", userId);
 
-            UUID reqUserId = jwtTokenProvider.getIdFromToken(jwt);
+            UUID reqUserId = principal.id();
 
             User updatedUser = userService.updateUser(userId, req, reqUserId);
             UserDTO userDTO = userDTOMapper.toUserDTO(updatedUser);
@@ -99,13 +95,11 @@ public class UserController {
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/profile")
-    public ResponseEntity<UserDTO> getUserProfileHandler(@RequestHeader("Authorization") String jwt) {
+    public ResponseEntity<UserDTO> getUserProfileHandler(@AuthenticationPrincipal JwtPrincipal principal) {
         try {
             log.info("Processing get user profile request");
 
-            User user = userService.findUserProfile(jwt);
-
-            UserDTO userDTO = userDTOMapper.toUserDTO(user);
+            UserDTO userDTO = userService.findUserProfileById(principal.id());
 
             log.info("User profile retrieved successfully");
 
@@ -118,7 +112,7 @@ public class UserController {
         }
     }
 
-    @Operation(summary = "Search users by name", description = "Searches for users whose names match the provided query.")
+    @Operation(summary = "Search users by name", description = "Searches for users whose names match the provided query, best match first.")
     @ApiResponses({
         @ApiResponse(
                 responseCode = "202",
@@ -126,7 +120,7 @@ public class UserController {
                 content = @Content(
                         mediaType = "application/json",
                         schema = @Schema(
-                                implementation = HashSet.class
+                                implementation = UserSummaryDTO.class
                         )
                 )
                 ),
@@ -134,19 +128,19 @@ public class UserController {
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/search")
-    public ResponseEntity<HashSet<UserDTO>> searchUsersByName(@RequestParam("name") String name) {
+    public ResponseEntity<List<UserSummaryDTO>> searchUsersByName(@RequestParam("name") String name,
+                                                                  @RequestParam(value = "page", defaultValue = "0") int page,
+                                                                  @RequestParam(value = "size", defaultValue = "20") int size,
+                                                                  @RequestParam(value = "fuzzy", defaultValue = "false") boolean fuzzy) {
         try {
             log.info("Processing search users by name={}", name);
 
-            List<User> users = userService.searchUser(name);
-
-            HashSet<User> set = new HashSet<>(users);
-
-            HashSet<UserDTO> userDtos = userDTOMapper.toUserDtos(set);
+            // ranked, and only what other users may see: no email, no entity hydration
+            List<UserSummaryDTO> users = userService.searchUser(name, page, size, fuzzy);
 
             log.info("Users search completed successfully for name={}", name);
 
-            return new ResponseEntity<>(userDtos, HttpStatus.ACCEPTED);
+            return new ResponseEntity<>(users, HttpStatus.ACCEPTED);
         } catch (Exception e) {
             log.error("Error during search users process", e);
             // We might want to handle this exception differently.
@@ -1,5 +1,6 @@
 package co.teamsphere.api.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -38,6 +39,24 @@ public class GlobalException {
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<ErrorDetail> LoginThrottledExceptionHandler(LoginThrottledException loginThrottledException, WebRequest req){
+        ErrorDetail error = new ErrorDetail(loginThrottledException.getMessage(), req.getDescription(false), LocalDateTime.now().atOffset(ZoneOffset.UTC));
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(loginThrottledException.getRetryAfterSeconds()))
+                .body(error);
+    }
+
+    @ExceptionHandler(PasswordHashingUnavailableException.class)
+    public ResponseEntity<ErrorDetail> PasswordHashingUnavailableExceptionHandler(PasswordHashingUnavailableException passwordHashingUnavailableException, WebRequest req){
+        ErrorDetail error = new ErrorDetail(passwordHashingUnavailableException.getMessage(), req.getDescription(false), LocalDateTime.now().atOffset(ZoneOffset.UTC));
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorDetail> MethodArgumentNotValidExceptionHandler(MethodArgumentNotValidException methodArgumentNotValidException){
         String error = Objects.requireNonNull(methodArgumentNotValidException.getBindingResult().getFieldError()).getDefaultMessage();
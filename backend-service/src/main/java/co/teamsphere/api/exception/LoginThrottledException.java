@@ -0,0 +1,15 @@
+package co.teamsphere.api.exception;
+
+import lombok.Getter;
+
+@Getter
+public class LoginThrottledException extends Exception {
+
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+}
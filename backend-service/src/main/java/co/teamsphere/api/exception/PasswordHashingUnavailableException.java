@@ -0,0 +1,10 @@
+package co.teamsphere.api.exception;
+
+// unchecked on purpose: PasswordEncoder's contract has no room for checked exceptions
+public class PasswordHashingUnavailableException extends RuntimeException {
+
+    public PasswordHashingUnavailableException(String message) {
+        super(message);
+    }
+
+}
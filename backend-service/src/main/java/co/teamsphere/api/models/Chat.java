@@ -1,21 +1,23 @@
 package co.teamsphere.api.models;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -27,9 +29,10 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_chat_direct_key", columnNames = "direct_key"))
 public class Chat {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     private String chatName;
@@ -41,6 +44,26 @@ public class Chat {
 
     private Boolean isGroup;
 
+    // both members' ids in sorted order for 1:1 chats, null for groups; the unique index is what stops two
+    // people opening a DM at the same moment from ending up with two chats
+    @Column(name = "direct_key", length = 64)
+    private String directKey;
+
+    // name of the message shard holding this chat's messages, see MessageShardResolver; null for chats from
+    // before sharding, which live on the primary
+    @Column(name = "message_shard", length = 64)
+    private String messageShard;
+
+    // the shard a move switched this chat away from while its messages there still have to be caught up and
+    // deleted; set together with message_shard and cleared once the source is empty, so a rerun can finish the move
+    @Column(name = "message_shard_moving_from", length = 64)
+    private String messageShardMovingFrom;
+
+    // a move of this chat holds it until then, see MessageShardServiceImpl; a lease rather than a row lock, so
+    // a node that dies mid-move frees the chat once it runs out
+    @Column(name = "message_shard_move_locked_until")
+    private Instant messageShardMoveLockedUntil;
+
     @ManyToOne
     private User createdBy;
 
@@ -53,8 +76,19 @@ public class Chat {
     @ToString.Exclude // Exclude in toString to avoid recursion issues
     private Set<User> users = new HashSet<>();
 
+    // only ever holds messages on the primary shard, the other shards have no foreign key back to the chat
     @OneToMany(mappedBy = "chat", cascade = CascadeType.ALL, orphanRemoval = true)
     @ToString.Exclude // Exclude in toString to avoid recursion issues
     private List<Messages> messages = new ArrayList<>();
+
+    /**
+     * Order-independent key for the direct chat between two users. Hex digits compare the same way as the
+     * binary(16) ids do in MySQL, so the backfill query can build the identical key with MIN/MAX over chat_users.
+     */
+    public static String directKey(UUID userId, UUID otherUserId) {
+        String a = userId.toString().replace("-", "");
+        String b = otherUserId.toString().replace("-", "");
+        return a.compareTo(b) <= 0 ? a + b : b + a;
+    }
 }
 
@@ -0,0 +1,54 @@
+package co.teamsphere.api.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Denormalized per-user view of a chat used for the chat summaries list. One row per (user, chat)
+ * membership, kept up to date by {@link co.teamsphere.api.services.ChatInboxService} so the
+ * summaries page never has to touch the messages table.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@IdClass(ChatInboxId.class)
+@Table(name = "chat_inbox", indexes = {
+    @Index(name = "idx_chat_inbox_user_activity", columnList = "user_id, last_activity")
+})
+public class ChatInbox {
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Id
+    @Column(name = "chat_id")
+    private UUID chatId;
+
+    @Column(name = "last_message_id")
+    private UUID lastMessageId;
+
+    @Column(name = "last_message_preview")
+    private String lastMessagePreview;
+
+    @Column(name = "last_sender_id")
+    private UUID lastSenderId;
+
+    @Column(name = "last_activity")
+    private LocalDateTime lastActivity;
+
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+}
@@ -0,0 +1,16 @@
+package co.teamsphere.api.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatInboxId implements Serializable {
+    private UUID userId;
+    private UUID chatId;
+}
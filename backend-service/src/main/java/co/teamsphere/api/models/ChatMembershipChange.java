@@ -0,0 +1,35 @@
+package co.teamsphere.api.models;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Marks a chat whose members or admins changed, so every node can drop its cached copy of the chat's membership.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "chat_membership_change", indexes = {
+    // every node polls for rows changed since its last look
+    @Index(name = "idx_chat_membership_change_updated_at", columnList = "updated_at")
+})
+public class ChatMembershipChange {
+    @Id
+    @Column(name = "chat_id")
+    private UUID chatId;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -1,10 +1,12 @@
 package co.teamsphere.api.models;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -19,13 +21,18 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(indexes = {
+    // backs the keyset history queries in MessageRepository
+    @Index(name = "idx_messages_chat_ts_id", columnList = "chat_id, time_stamp, id")
+})
 public class Messages {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     private String content;
 
+    @Column(name = "time_stamp")
     private LocalDateTime timeStamp;
 
     private Boolean isRead;
@@ -34,6 +41,7 @@ public class Messages {
     private User username;
 
     @ManyToOne
+    @JoinColumn(name = "chat_id")
     private Chat chat;
 
     @Override
@@ -5,11 +5,12 @@ import java.util.UUID;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -20,17 +21,27 @@ import lombok.Data;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(indexes = {
+    // lets the reaper range-scan expired rows instead of walking the whole table
+    @Index(name = "idx_refresh_token_expired_at", columnList = "expired_at")
+})
 public class RefreshToken {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
     
-    @Column(nullable = false, unique = true)
+    // base64url sha-256 of the token handed to the client, always 43 chars
+    @Column(name = "refresh_token", nullable = false, unique = true, length = 43, columnDefinition = "char(43)")
     private String refreshToken;
 
+    // the token itself, only known to us right after it was issued
+    @Transient
+    private String rawToken;
+
     @OneToOne
     @JoinColumn(name = "user_id", referencedColumnName = "id")
     private User user;
 
+    @Column(name = "expired_at")
     private Instant expiredAt;
 }
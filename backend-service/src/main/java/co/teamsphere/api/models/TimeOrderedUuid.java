@@ -0,0 +1,18 @@
+package co.teamsphere.api.models;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+/**
+ * Generates the id as a time-ordered UUIDv7 instead of the random v4 of {@code GenerationType.UUID}. The column
+ * type is unchanged, rows created with v4 ids before the switch are read and joined exactly as before.
+ */
+@IdGeneratorType(TimeOrderedUuidGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TimeOrderedUuid {
+}
@@ -0,0 +1,36 @@
+package co.teamsphere.api.models;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "token_revocation", indexes = {
+    // every node polls for rows changed since its last look
+    @Index(name = "idx_token_revocation_updated_at", columnList = "updated_at")
+})
+public class TokenRevocation {
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    // access tokens issued before this instant are rejected
+    @Column(name = "revoked_before", nullable = false)
+    private Instant revokedBefore;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -1,9 +1,9 @@
 package co.teamsphere.api.models;
 
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import jakarta.persistence.Column;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -19,9 +19,13 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(indexes = {
+    // incremental refresh of the user search index
+    @Index(name = "idx_user_last_updated_date", columnList = "last_updated_date")
+})
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(unique = true)
@@ -39,7 +43,7 @@ public class User {
     @Column(nullable = false)
     private OffsetDateTime createdDate;
 
-    @Column(nullable = false)
+    @Column(name = "last_updated_date", nullable = false)
     private OffsetDateTime lastUpdatedDate;
 
     @Override
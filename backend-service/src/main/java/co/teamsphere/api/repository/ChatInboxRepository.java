@@ -0,0 +1,67 @@
+package co.teamsphere.api.repository;
+
+import co.teamsphere.api.models.ChatInbox;
+import co.teamsphere.api.models.ChatInboxId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ChatInboxRepository extends JpaRepository<ChatInbox, ChatInboxId> {
+
+    @Query("SELECT i FROM ChatInbox i WHERE i.userId = :userId ORDER BY i.lastActivity DESC, i.chatId DESC")
+    List<ChatInbox> findInboxPage(@Param("userId") UUID userId, Pageable pageable);
+
+    /**
+     * Applies a batch of coalesced messages to every member row of the chat. The last message columns only move
+     * forward so a late flush from another node can't roll the preview back.
+     */
+    @Modifying
+    @Query("UPDATE ChatInbox i SET "
+            + "i.lastMessageId = CASE WHEN i.lastActivity IS NULL OR i.lastActivity <= :activity THEN :messageId ELSE i.lastMessageId END, "
+            + "i.lastMessagePreview = CASE WHEN i.lastActivity IS NULL OR i.lastActivity <= :activity THEN :preview ELSE i.lastMessagePreview END, "
+            + "i.lastSenderId = CASE WHEN i.lastActivity IS NULL OR i.lastActivity <= :activity THEN :senderId ELSE i.lastSenderId END, "
+            + "i.lastActivity = CASE WHEN i.lastActivity IS NULL OR i.lastActivity <= :activity THEN :activity ELSE i.lastActivity END, "
+            + "i.unreadCount = i.unreadCount + :count "
+            + "WHERE i.chatId = :chatId")
+    int applyMessages(@Param("chatId") UUID chatId,
+                      @Param("messageId") UUID messageId,
+                      @Param("preview") String preview,
+                      @Param("senderId") UUID senderId,
+                      @Param("activity") LocalDateTime activity,
+                      @Param("count") int count);
+
+    @Modifying
+    @Query("UPDATE ChatInbox i SET i.unreadCount = :unread WHERE i.chatId = :chatId AND i.userId = :userId")
+    int setUnreadCount(@Param("chatId") UUID chatId, @Param("userId") UUID userId, @Param("unread") int unread);
+
+    @Modifying
+    @Query("DELETE FROM ChatInbox i WHERE i.chatId = :chatId AND i.userId = :userId")
+    int deleteMember(@Param("chatId") UUID chatId, @Param("userId") UUID userId);
+
+    @Modifying
+    @Query("DELETE FROM ChatInbox i WHERE i.chatId = :chatId")
+    int deleteChat(@Param("chatId") UUID chatId);
+
+    /**
+     * Seeds inbox rows for memberships that existed before the inbox table did. Safe to run repeatedly.
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO chat_inbox (user_id, chat_id, last_activity, unread_count) "
+            + "SELECT cu.user_id, cu.chat_id, (SELECT MAX(m.time_stamp) FROM messages m WHERE m.chat_id = cu.chat_id), 0 "
+            + "FROM chat_users cu", nativeQuery = true)
+    int backfillMemberships();
+
+    @Modifying
+    @Query(value = "UPDATE chat_inbox ci JOIN messages m ON m.chat_id = ci.chat_id AND m.time_stamp = ci.last_activity "
+            + "SET ci.last_message_id = m.id, ci.last_message_preview = m.content, ci.last_sender_id = m.username_id "
+            + "WHERE ci.last_message_id IS NULL", nativeQuery = true)
+    int backfillLastMessages();
+}
@@ -0,0 +1,51 @@
+package co.teamsphere.api.repository;
+
+import co.teamsphere.api.utils.UuidBytes;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Plain JDBC batch inserts for the membership rows written when a chat is created. Going through
+ * {@code Chat.getUsers()} would flush one INSERT per member, which for a 500 person group is 500 round-trips.
+ * With {@code rewriteBatchedStatements} on the MySQL driver each batch below goes out as a single multi-row
+ * INSERT. Both statements use INSERT IGNORE so a retried request can't fail on rows it already wrote.
+ */
+@Repository
+public class ChatMemberBatchRepository {
+    static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_MEMBER =
+            "INSERT IGNORE INTO chat_users (chat_id, user_id) VALUES (?, ?)";
+
+    private static final String INSERT_INBOX_ROW =
+            "INSERT IGNORE INTO chat_inbox (user_id, chat_id, last_activity, unread_count) VALUES (?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChatMemberBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertMembers(UUID chatId, Collection<UUID> userIds) {
+        byte[] chat = UuidBytes.toBytes(chatId);
+        jdbcTemplate.batchUpdate(INSERT_MEMBER, userIds, BATCH_SIZE, (ps, userId) -> {
+            ps.setBytes(1, chat);
+            ps.setBytes(2, UuidBytes.toBytes(userId));
+        });
+    }
+
+    public void insertInboxRows(UUID chatId, Collection<UUID> userIds, LocalDateTime activity) {
+        byte[] chat = UuidBytes.toBytes(chatId);
+        Timestamp lastActivity = Timestamp.valueOf(activity);
+        jdbcTemplate.batchUpdate(INSERT_INBOX_ROW, userIds, BATCH_SIZE, (ps, userId) -> {
+            ps.setBytes(1, UuidBytes.toBytes(userId));
+            ps.setBytes(2, chat);
+            ps.setTimestamp(3, lastActivity);
+        });
+    }
+}
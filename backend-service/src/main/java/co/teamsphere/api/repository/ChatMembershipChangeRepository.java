@@ -0,0 +1,28 @@
+package co.teamsphere.api.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import co.teamsphere.api.models.ChatMembershipChange;
+
+@Repository
+public interface ChatMembershipChangeRepository extends JpaRepository<ChatMembershipChange, UUID> {
+
+    @Modifying
+    @Query(value = "INSERT INTO chat_membership_change (chat_id, updated_at) VALUES (:chatId, :updatedAt) "
+            + "ON DUPLICATE KEY UPDATE updated_at = VALUES(updated_at)", nativeQuery = true)
+    int upsert(@Param("chatId") UUID chatId, @Param("updatedAt") Instant updatedAt);
+
+    List<ChatMembershipChange> findByUpdatedAtAfter(Instant updatedAt);
+
+    @Modifying
+    @Query("DELETE FROM ChatMembershipChange c WHERE c.updatedAt < :cutoff")
+    int deleteExpired(@Param("cutoff") Instant cutoff);
+}
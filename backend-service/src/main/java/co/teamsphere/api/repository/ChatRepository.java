@@ -1,14 +1,21 @@
 package co.teamsphere.api.repository;
 
+import co.teamsphere.api.DTO.DirectChatPeerDTO;
 import co.teamsphere.api.models.Chat;
-import co.teamsphere.api.models.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -18,9 +25,86 @@ public interface ChatRepository extends JpaRepository<Chat, UUID> {
     @Query("SELECT c FROM Chat c JOIN c.users u WHERE u.id = :userId")
     Page<Chat> findChatsByUserId(@Param("userId") UUID userId, Pageable pageable);
 
+    Optional<Chat> findByDirectKey(String directKey);
 
-    @Query("select c from Chat c Where c.isGroup=false And :user Member of c.users And :reqUser Member of c.users")
-    Chat findSingleChatByUsersId(@Param("user") User user, @Param("reqUser") User reqUser);
+    // a locking read sees rows committed after this transaction's snapshot, i.e. the chat a concurrent request just created
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT c FROM Chat c WHERE c.directKey = :directKey")
+    Optional<Chat> findByDirectKeyForShare(@Param("directKey") String directKey);
+
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO chat (id, is_group, created_by_id, direct_key, message_shard) "
+            + "VALUES (:id, false, :createdBy, :directKey, :messageShard)", nativeQuery = true)
+    int insertDirectChatIfAbsent(@Param("id") UUID id,
+                                 @Param("createdBy") UUID createdBy,
+                                 @Param("directKey") String directKey,
+                                 @Param("messageShard") String messageShard);
+
+    /**
+     * Keys 1:1 chats created before direct_key existed. Chats that would collide with an already keyed duplicate
+     * are skipped by the IGNORE and keep a null key.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE IGNORE chat c JOIN ("
+            + "SELECT cu.chat_id, CONCAT(LOWER(HEX(MIN(cu.user_id))), LOWER(HEX(MAX(cu.user_id)))) AS pair_key "
+            + "FROM chat_users cu GROUP BY cu.chat_id HAVING COUNT(*) = 2) p ON p.chat_id = c.id "
+            + "SET c.direct_key = p.pair_key WHERE c.is_group = false AND c.direct_key IS NULL", nativeQuery = true)
+    int backfillDirectKeys();
+
+    @Query("SELECT c FROM Chat c LEFT JOIN FETCH c.createdBy WHERE c.id IN :chatIds")
+    List<Chat> findAllWithCreatorByIdIn(@Param("chatIds") Collection<UUID> chatIds);
+
+    // one row per 1:1 chat on the page, group members are never read
+    @Query("SELECT new co.teamsphere.api.DTO.DirectChatPeerDTO(c.id, u.username, u.profilePicture) "
+            + "FROM Chat c JOIN c.users u WHERE c.id IN :chatIds AND c.isGroup = false AND u.id <> :userId")
+    List<DirectChatPeerDTO> findDirectChatPeers(@Param("chatIds") Collection<UUID> chatIds, @Param("userId") UUID userId);
+
+    @Query("SELECT u.id FROM Chat c JOIN c.users u WHERE c.id = :chatId")
+    List<UUID> findMemberIds(@Param("chatId") UUID chatId);
+
+    @Query("SELECT a.id FROM Chat c JOIN c.admins a WHERE c.id = :chatId")
+    List<UUID> findAdminIds(@Param("chatId") UUID chatId);
+
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO chat_users (chat_id, user_id) VALUES (:chatId, :userId)", nativeQuery = true)
+    int addMember(@Param("chatId") UUID chatId, @Param("userId") UUID userId);
+
+    @Modifying
+    @Query(value = "DELETE FROM chat_users WHERE chat_id = :chatId AND user_id = :userId", nativeQuery = true)
+    int removeMember(@Param("chatId") UUID chatId, @Param("userId") UUID userId);
+
+    @Query("SELECT c.messageShard FROM Chat c WHERE c.id = :chatId")
+    String findMessageShard(@Param("chatId") UUID chatId);
+
+    @Query("SELECT c.messageShardMovingFrom FROM Chat c WHERE c.id = :chatId")
+    String findMessageShardMovingFrom(@Param("chatId") UUID chatId);
+
+    // one statement, so the chat is never on the target without a record of the shard it still has to be emptied from
+    @Transactional
+    @Modifying
+    @Query("UPDATE Chat c SET c.messageShard = :messageShard, c.messageShardMovingFrom = :movingFrom WHERE c.id = :chatId")
+    int updateMessageShard(@Param("chatId") UUID chatId,
+                           @Param("messageShard") String messageShard,
+                           @Param("movingFrom") String movingFrom);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Chat c SET c.messageShardMovingFrom = NULL WHERE c.id = :chatId")
+    int finishMessageShardMove(@Param("chatId") UUID chatId);
+
+    // returns 0 while another move still holds the chat
+    @Transactional
+    @Modifying
+    @Query("UPDATE Chat c SET c.messageShardMoveLockedUntil = :lockedUntil WHERE c.id = :chatId "
+            + "AND (c.messageShardMoveLockedUntil IS NULL OR c.messageShardMoveLockedUntil < :now)")
+    int lockMessageShardMove(@Param("chatId") UUID chatId, @Param("now") Instant now, @Param("lockedUntil") Instant lockedUntil);
+
+    // only releases the lock this move took, not one a later move took after this one's expired
+    @Transactional
+    @Modifying
+    @Query("UPDATE Chat c SET c.messageShardMoveLockedUntil = NULL WHERE c.id = :chatId AND c.messageShardMoveLockedUntil = :lockedUntil")
+    int unlockMessageShardMove(@Param("chatId") UUID chatId, @Param("lockedUntil") Instant lockedUntil);
 
     Optional<Chat> findById(UUID chatId);
     void deleteById(UUID chatId);
@@ -0,0 +1,420 @@
+package co.teamsphere.api.repository;
+
+import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.config.properties.MessageArchiveProperties;
+import co.teamsphere.api.utils.MessageCursor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cold storage for archived messages, one append-only segment file per chat plus a sparse index next to it.
+ * <p>
+ * The segment is a run of Deflate-compressed blocks of up to {@code blockSize} messages, each block in
+ * (timeStamp, id) order and every block after the previous one. The index holds one fixed-size entry per block
+ * (first and last key, offset, length) and is small enough to keep in memory, so finding the page around a
+ * cursor is a binary search plus inflating one or two blocks. Segments are read through a read-only memory
+ * mapping; the page cache holds whatever is hot and nothing lands on the heap except the blocks being decoded.
+ * <p>
+ * Appends write and fsync the block before its index entry. A crash in between leaves bytes past the last
+ * indexed block, which readers ignore and the next append truncates. A segment never grows past
+ * {@code maxSegmentBytes} (at most 2 GB, the reach of an int offset into the mapping).
+ */
+@Repository
+@Slf4j
+public class MessageArchiveRepository {
+    private static final int BLOCK_MAGIC = 0x54534d42; // "TSMB"
+    private static final int BLOCK_HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int KEY_BYTES = Long.BYTES + Integer.BYTES + 2 * Long.BYTES;
+    static final int INDEX_ENTRY_BYTES = 2 * KEY_BYTES + Long.BYTES + 2 * Integer.BYTES;
+
+    private final MessageArchiveProperties properties;
+
+    private final Cache<UUID, ChatArchive> openArchives;
+
+    public MessageArchiveRepository(MessageArchiveProperties properties) {
+        this.properties = properties;
+        this.openArchives = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxOpenChats())
+                .build();
+    }
+
+    /**
+     * Appends messages that all sort after the chat's current watermark, in (timeStamp, id) order.
+     */
+    public void append(UUID chatId, List<MessageDTO> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Path segmentPath = segmentPath(chatId);
+        try {
+            Files.createDirectories(segmentPath.getParent());
+            try (FileChannel segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileChannel index = FileChannel.open(indexPath(chatId), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                List<IndexEntry> entries = readIndex(index, segment.size());
+                // drop whatever a crash left behind the last complete block/entry before appending
+                long segmentEnd = entries.isEmpty() ? 0 : entries.getLast().end();
+                segment.truncate(segmentEnd);
+                index.truncate((long) entries.size() * INDEX_ENTRY_BYTES);
+
+                MessageCursor watermark = entries.isEmpty() ? null : entries.getLast().last();
+                if (watermark != null && MessageCursor.of(messages.getFirst()).compareTo(watermark) <= 0) {
+                    throw new IllegalArgumentException("Messages for chat " + chatId + " do not sort after the archive watermark");
+                }
+
+                long maxSegmentBytes = Math.min(properties.getMaxSegmentBytes(), Integer.MAX_VALUE);
+                ByteBuffer newEntries = ByteBuffer.allocate(((messages.size() + properties.getBlockSize() - 1) / properties.getBlockSize()) * INDEX_ENTRY_BYTES);
+                long offset = segmentEnd;
+                for (int from = 0; from < messages.size(); from += properties.getBlockSize()) {
+                    List<MessageDTO> block = messages.subList(from, Math.min(from + properties.getBlockSize(), messages.size()));
+                    ByteBuffer encoded = encodeBlock(block);
+                    int length = encoded.remaining();
+                    if (offset + length > maxSegmentBytes) {
+                        // nothing of this call is indexed yet, the blocks written so far are dropped by the next append
+                        throw new IllegalStateException("Message archive segment of chat " + chatId + " is full at " + offset + " bytes");
+                    }
+                    writeFully(segment, encoded, offset);
+                    writeEntry(newEntries, new IndexEntry(MessageCursor.of(block.getFirst()), MessageCursor.of(block.getLast()), offset, length, block.size()));
+                    offset += length;
+                }
+                segment.force(false);
+
+                newEntries.flip();
+                writeFully(index, newEntries, index.size());
+                index.force(false);
+                log.debug("Archived {} messages up to offset {} for chat with ID: {}", messages.size(), offset, chatId);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error appending to message archive of chat " + chatId, e);
+        } finally {
+            openArchives.invalidate(chatId);
+        }
+    }
+
+    /**
+     * Drops a deleted chat's archive. Safe to call for chats that never had one.
+     */
+    public void deleteChat(UUID chatId) {
+        try {
+            Files.deleteIfExists(indexPath(chatId));
+            Files.deleteIfExists(segmentPath(chatId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error deleting message archive of chat " + chatId, e);
+        } finally {
+            openArchives.invalidate(chatId);
+        }
+    }
+
+    /**
+     * Key of the newest archived message, everything at or before it lives here and not in the messages table.
+     */
+    public Optional<MessageCursor> watermark(UUID chatId) {
+        List<IndexEntry> entries = open(chatId).entries();
+        return entries.isEmpty() ? Optional.empty() : Optional.of(entries.getLast().last());
+    }
+
+    /**
+     * Up to {@code limit} archived messages strictly before {@code before} (or the newest ones when null),
+     * newest first, matching {@code MessageRepository.findByChatIdBefore}.
+     */
+    public List<MessageDTO> findBefore(UUID chatId, MessageCursor before, int limit) {
+        ChatArchive archive = open(chatId);
+        List<MessageDTO> result = new ArrayList<>();
+        int block = before == null ? archive.entries().size() - 1 : archive.lastBlockStartingBefore(before);
+        for (; block >= 0 && result.size() < limit; block--) {
+            List<MessageDTO> decoded = archive.decode(chatId, block);
+            for (int i = decoded.size() - 1; i >= 0 && result.size() < limit; i--) {
+                MessageDTO message = decoded.get(i);
+                if (before == null || MessageCursor.of(message).compareTo(before) < 0) {
+                    result.add(message);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Up to {@code limit} archived messages strictly after {@code after}, oldest first, matching
+     * {@code MessageRepository.findByChatIdAfter}.
+     */
+    public List<MessageDTO> findAfter(UUID chatId, MessageCursor after, int limit) {
+        ChatArchive archive = open(chatId);
+        List<MessageDTO> result = new ArrayList<>();
+        for (int block = archive.firstBlockEndingAfter(after); block < archive.entries().size() && result.size() < limit; block++) {
+            for (MessageDTO message : archive.decode(chatId, block)) {
+                if (result.size() < limit && MessageCursor.of(message).compareTo(after) > 0) {
+                    result.add(message);
+                }
+            }
+        }
+        return result;
+    }
+
+    // the archiver may run on another node, so a cached index is only trusted while the index file is the size
+    // it was when we read it, which costs one stat per lookup
+    private ChatArchive open(UUID chatId) {
+        long indexSize = indexSize(chatId);
+        ChatArchive cached = openArchives.getIfPresent(chatId);
+        if (cached != null && cached.indexSize() == indexSize) {
+            return cached;
+        }
+        ChatArchive loaded = load(chatId, indexSize);
+        openArchives.put(chatId, loaded);
+        return loaded;
+    }
+
+    private long indexSize(UUID chatId) {
+        try {
+            return Files.size(indexPath(chatId));
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading message archive index of chat " + chatId, e);
+        }
+    }
+
+    private ChatArchive load(UUID chatId, long indexSize) {
+        Path segmentPath = segmentPath(chatId);
+        Path indexPath = indexPath(chatId);
+        if (indexSize == 0 || !Files.exists(segmentPath)) {
+            return ChatArchive.EMPTY;
+        }
+        try (FileChannel segment = FileChannel.open(segmentPath, StandardOpenOption.READ);
+             FileChannel index = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            List<IndexEntry> entries = readIndex(index, segment.size());
+            if (entries.isEmpty()) {
+                return new ChatArchive(List.of(), null, indexSize);
+            }
+            // the mapping stays valid after the channel is closed and is released when the buffer is collected
+            MappedByteBuffer mapped = segment.map(FileChannel.MapMode.READ_ONLY, 0, entries.getLast().end());
+            return new ChatArchive(List.copyOf(entries), mapped, indexSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening message archive of chat " + chatId, e);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static List<IndexEntry> readIndex(FileChannel index, long segmentSize) throws IOException {
+        int count = (int) (index.size() / INDEX_ENTRY_BYTES);
+        ByteBuffer buffer = ByteBuffer.allocate(count * INDEX_ENTRY_BYTES);
+        while (buffer.hasRemaining() && index.read(buffer, buffer.position()) >= 0) {
+            // keep reading until the whole index is in
+        }
+        buffer.flip();
+
+        List<IndexEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            IndexEntry entry = new IndexEntry(readKey(buffer), readKey(buffer), buffer.getLong(), buffer.getInt(), buffer.getInt());
+            if (entry.end() > segmentSize) {
+                // entry written but its block never made it to disk
+                break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static void writeEntry(ByteBuffer buffer, IndexEntry entry) {
+        writeKey(buffer, entry.first());
+        writeKey(buffer, entry.last());
+        buffer.putLong(entry.offset());
+        buffer.putInt(entry.length());
+        buffer.putInt(entry.count());
+    }
+
+    private static MessageCursor readKey(ByteBuffer buffer) {
+        LocalDateTime timeStamp = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        return new MessageCursor(timeStamp, new UUID(buffer.getLong(), buffer.getLong()));
+    }
+
+    private static void writeKey(ByteBuffer buffer, MessageCursor key) {
+        buffer.putLong(key.getTimeStamp().toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(key.getTimeStamp().getNano());
+        buffer.putLong(key.getId().getMostSignificantBits());
+        buffer.putLong(key.getId().getLeastSignificantBits());
+    }
+
+    static ByteBuffer encodeBlock(List<MessageDTO> block) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(block.size() * 128);
+        try (DataOutputStream out = new DataOutputStream(raw)) {
+            out.writeInt(block.size());
+            for (MessageDTO message : block) {
+                out.writeLong(message.getId().getMostSignificantBits());
+                out.writeLong(message.getId().getLeastSignificantBits());
+                out.writeLong(message.getTimeStamp().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(message.getTimeStamp().getNano());
+                out.writeLong(message.getUserId().getMostSignificantBits());
+                out.writeLong(message.getUserId().getLeastSignificantBits());
+                out.writeBoolean(Boolean.TRUE.equals(message.getIsRead()));
+                if (message.getContent() == null) {
+                    out.writeInt(-1);
+                } else {
+                    byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(content.length);
+                    out.write(content);
+                }
+            }
+        }
+        byte[] rawBytes = raw.toByteArray();
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(rawBytes);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(rawBytes.length / 3 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            byte[] compressedBytes = compressed.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(compressedBytes);
+            return ByteBuffer.allocate(BLOCK_HEADER_BYTES + compressedBytes.length)
+                    .putInt(BLOCK_MAGIC)
+                    .putInt(rawBytes.length)
+                    .putInt(compressedBytes.length)
+                    .putInt((int) crc.getValue())
+                    .put(compressedBytes)
+                    .flip();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static List<MessageDTO> decodeBlock(UUID chatId, ByteBuffer block) {
+        if (block.getInt() != BLOCK_MAGIC) {
+            throw new IllegalStateException("Corrupt archive block in chat " + chatId + ": bad magic");
+        }
+        int rawLength = block.getInt();
+        int compressedLength = block.getInt();
+        int expectedCrc = block.getInt();
+        ByteBuffer compressed = block.slice(block.position(), compressedLength);
+
+        CRC32 crc = new CRC32();
+        crc.update(compressed.duplicate());
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IllegalStateException("Corrupt archive block in chat " + chatId + ": checksum mismatch");
+        }
+
+        ByteBuffer raw = ByteBuffer.allocate(rawLength);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            inflater.inflate(raw);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt archive block in chat " + chatId, e);
+        } finally {
+            inflater.end();
+        }
+        raw.flip();
+
+        int count = raw.getInt();
+        List<MessageDTO> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(raw.getLong(), raw.getLong());
+            LocalDateTime timeStamp = LocalDateTime.ofEpochSecond(raw.getLong(), raw.getInt(), ZoneOffset.UTC);
+            UUID senderId = new UUID(raw.getLong(), raw.getLong());
+            boolean isRead = raw.get() != 0;
+            int contentLength = raw.getInt();
+            String content = null;
+            if (contentLength >= 0) {
+                content = StandardCharsets.UTF_8.decode(raw.slice(raw.position(), contentLength)).toString();
+                raw.position(raw.position() + contentLength);
+            }
+            messages.add(new MessageDTO(id, content, timeStamp, isRead, senderId, chatId));
+        }
+        return messages;
+    }
+
+    private Path segmentPath(UUID chatId) {
+        return chatDirectory(chatId).resolve(chatId + ".seg");
+    }
+
+    private Path indexPath(UUID chatId) {
+        return chatDirectory(chatId).resolve(chatId + ".idx");
+    }
+
+    // fan out over 256 directories so a big install doesn't end up with a million files in one
+    private Path chatDirectory(UUID chatId) {
+        return Path.of(properties.getDirectory(), chatId.toString().substring(0, 2));
+    }
+
+    record IndexEntry(MessageCursor first, MessageCursor last, long offset, int length, int count) {
+        long end() {
+            return offset + length;
+        }
+    }
+
+    record ChatArchive(List<IndexEntry> entries, MappedByteBuffer segment, long indexSize) {
+        static final ChatArchive EMPTY = new ChatArchive(List.of(), null, 0);
+
+        List<MessageDTO> decode(UUID chatId, int block) {
+            IndexEntry entry = entries.get(block);
+            return decodeBlock(chatId, segment.slice((int) entry.offset(), entry.length()));
+        }
+
+        // index of the newest block whose first message sorts before the cursor, -1 if none
+        int lastBlockStartingBefore(MessageCursor cursor) {
+            int low = 0;
+            int high = entries.size() - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (entries.get(mid).first().compareTo(cursor) < 0) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        // index of the oldest block whose last message sorts after the cursor, entries.size() if none
+        int firstBlockEndingAfter(MessageCursor cursor) {
+            int low = 0;
+            int high = entries.size() - 1;
+            int found = entries.size();
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (entries.get(mid).last().compareTo(cursor) > 0) {
+                    found = mid;
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return found;
+        }
+    }
+}
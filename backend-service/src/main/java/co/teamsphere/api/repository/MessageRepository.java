@@ -1,24 +1,238 @@
 package co.teamsphere.api.repository;
 
+import co.teamsphere.api.DTO.MessageDTO;
 import co.teamsphere.api.models.Messages;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
+import co.teamsphere.api.utils.MessageCursor;
+import co.teamsphere.api.utils.UuidBytes;
+import co.teamsphere.api.utils.UuidV7;
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
+/**
+ * Message storage, split by chat across the shards of {@link MessageShardResolver}. Everything that belongs to
+ * one chat takes the chat's {@link MessageShard} and runs there only; the caller resolves it, usually from the
+ * chat it has already loaded. Plain JDBC rather than JPA since the entity manager only knows the primary.
+ * <p>
+ * On the primary the table is the one Hibernate maps for {@link Messages}, the other shards get the same
+ * columns and history index from {@link #createShardTables()} but no foreign keys, users and chats only exist
+ * on the primary. Ids are assigned here or by the caller, nothing is read back after an insert.
+ */
 @Repository
-public interface MessageRepository  extends JpaRepository<Messages, UUID> {
+public class MessageRepository {
+    private static final String COLUMNS = "id, content, time_stamp, is_read, username_id, chat_id";
 
-    @Query("select m from Messages m join m.chat c where c.id=:chatId order by m.timeStamp asc")
-    List<Messages> findMessageByChatId(@Param("chatId") UUID chatId);
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS messages ("
+            + "id BINARY(16) NOT NULL, content VARCHAR(255), time_stamp DATETIME(6), is_read BOOLEAN, "
+            + "username_id BINARY(16), chat_id BINARY(16), PRIMARY KEY (id), "
+            + "INDEX idx_messages_chat_ts_id (chat_id, time_stamp, id))";
 
-    Optional<Messages> findById(UUID userId);
+    private static final String INSERT_MESSAGE =
+            "INSERT INTO messages (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)";
 
-    void deleteById(UUID messageId);
+    // copies for chat moves, a row that is already there was copied by an earlier attempt
+    private static final String COPY_MESSAGE =
+            "INSERT IGNORE INTO messages (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)";
 
-}
+    // keyset queries over idx_messages_chat_ts_id
+    private static final String SELECT_LATEST = "SELECT " + COLUMNS + " FROM messages WHERE chat_id = ?"
+            + " ORDER BY time_stamp DESC, id DESC LIMIT ?";
+
+    private static final String SELECT_BEFORE = "SELECT " + COLUMNS + " FROM messages WHERE chat_id = ?"
+            + " AND (time_stamp < ? OR (time_stamp = ? AND id < ?))"
+            + " ORDER BY time_stamp DESC, id DESC LIMIT ?";
+
+    private static final String SELECT_FIRST = "SELECT " + COLUMNS + " FROM messages WHERE chat_id = ?"
+            + " ORDER BY time_stamp ASC, id ASC LIMIT ?";
+
+    private static final String SELECT_AFTER = "SELECT " + COLUMNS + " FROM messages WHERE chat_id = ?"
+            + " AND (time_stamp > ? OR (time_stamp = ? AND id > ?))"
+            + " ORDER BY time_stamp ASC, id ASC LIMIT ?";
+
+    private static final String SELECT_BY_ID = "SELECT " + COLUMNS + " FROM messages WHERE id = ?";
+
+    private static final String DELETE_BY_ID = "DELETE FROM messages WHERE chat_id = ? AND id = ?";
+
+    // archiver queries, see MessageArchiveServiceImpl
+    private static final String SELECT_CHATS_WITH_MESSAGES_BEFORE =
+            "SELECT chat_id FROM messages GROUP BY chat_id HAVING MIN(time_stamp) < ? LIMIT ?";
+
+    private static final String SELECT_OLDEST_BEFORE = "SELECT " + COLUMNS + " FROM messages WHERE chat_id = ?"
+            + " AND time_stamp < ? ORDER BY time_stamp ASC, id ASC LIMIT ?";
+
+    private static final String DELETE_UP_TO = "DELETE FROM messages WHERE chat_id = ?"
+            + " AND (time_stamp < ? OR (time_stamp = ? AND id <= ?))";
+
+    private static final int DELETE_BATCH_SIZE = 1_000;
+
+    private static final RowMapper<MessageDTO> MESSAGE_ROW = (rs, rowNum) -> new MessageDTO(
+            UuidBytes.fromBytes(rs.getBytes("id")),
+            rs.getString("content"),
+            rs.getTimestamp("time_stamp").toLocalDateTime(),
+            rs.getBoolean("is_read"),
+            UuidBytes.fromBytes(rs.getBytes("username_id")),
+            UuidBytes.fromBytes(rs.getBytes("chat_id")));
+
+    private final MessageShardResolver messageShardResolver;
+
+    public MessageRepository(MessageShardResolver messageShardResolver) {
+        this.messageShardResolver = messageShardResolver;
+    }
 
+    @PostConstruct
+    public void createShardTables() {
+        for (MessageShard shard : messageShardResolver.all()) {
+            if (!MessageShardResolver.PRIMARY.equals(shard.name())) {
+                shard.jdbcTemplate().execute(CREATE_TABLE);
+            }
+        }
+    }
+
+    /**
+     * Inserts the messages in one transaction on the given shard, they must all belong to chats placed there.
+     */
+    public void insertMessages(MessageShard shard, List<Messages> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        shard.transactionTemplate().executeWithoutResult(status ->
+                shard.jdbcTemplate().batchUpdate(INSERT_MESSAGE, messages, messages.size(), (ps, message) -> {
+                    ps.setBytes(1, UuidBytes.toBytes(message.getId()));
+                    ps.setString(2, message.getContent());
+                    ps.setTimestamp(3, Timestamp.valueOf(message.getTimeStamp()));
+                    ps.setBoolean(4, Boolean.TRUE.equals(message.getIsRead()));
+                    ps.setBytes(5, UuidBytes.toBytes(message.getUsername().getId()));
+                    ps.setBytes(6, UuidBytes.toBytes(message.getChat().getId()));
+                }));
+    }
+
+    public Messages save(MessageShard shard, Messages message) {
+        if (message.getId() == null) {
+            message.setId(UuidV7.generate());
+        }
+        insertMessages(shard, List.of(message));
+        return message;
+    }
+
+    public List<MessageDTO> findLatestByChatId(MessageShard shard, UUID chatId, int limit) {
+        return shard.jdbcTemplate().query(SELECT_LATEST, MESSAGE_ROW, UuidBytes.toBytes(chatId), limit);
+    }
+
+    /**
+     * Up to {@code limit} messages right before the cursor, newest first.
+     */
+    public List<MessageDTO> findByChatIdBefore(MessageShard shard, UUID chatId, MessageCursor cursor, int limit) {
+        Timestamp timeStamp = Timestamp.valueOf(cursor.getTimeStamp());
+        return shard.jdbcTemplate().query(SELECT_BEFORE, MESSAGE_ROW,
+                UuidBytes.toBytes(chatId), timeStamp, timeStamp, UuidBytes.toBytes(cursor.getId()), limit);
+    }
+
+    /**
+     * Up to {@code limit} messages right after the cursor, oldest first. A null cursor starts at the chat's
+     * oldest message.
+     */
+    public List<MessageDTO> findByChatIdAfter(MessageShard shard, UUID chatId, MessageCursor cursor, int limit) {
+        if (cursor == null) {
+            return shard.jdbcTemplate().query(SELECT_FIRST, MESSAGE_ROW, UuidBytes.toBytes(chatId), limit);
+        }
+        Timestamp timeStamp = Timestamp.valueOf(cursor.getTimeStamp());
+        return shard.jdbcTemplate().query(SELECT_AFTER, MESSAGE_ROW,
+                UuidBytes.toBytes(chatId), timeStamp, timeStamp, UuidBytes.toBytes(cursor.getId()), limit);
+    }
+
+    /**
+     * The one lookup without a chat to route by, so it asks every shard in turn. Only used for single message
+     * operations, history reads never come through here.
+     */
+    public Optional<MessageDTO> findById(UUID messageId) {
+        byte[] id = UuidBytes.toBytes(messageId);
+        for (MessageShard shard : messageShardResolver.all()) {
+            List<MessageDTO> found = shard.jdbcTemplate().query(SELECT_BY_ID, MESSAGE_ROW, id);
+            if (!found.isEmpty()) {
+                return Optional.of(found.getFirst());
+            }
+        }
+        return Optional.empty();
+    }
+
+    public int deleteById(MessageShard shard, UUID chatId, UUID messageId) {
+        return shard.jdbcTemplate().update(DELETE_BY_ID, UuidBytes.toBytes(chatId), UuidBytes.toBytes(messageId));
+    }
+
+    /**
+     * Chats holding messages older than the cutoff on any shard. A chat that is being moved can show up on two
+     * shards, it is only listed once.
+     */
+    public List<UUID> findChatIdsWithMessagesBefore(LocalDateTime cutoff, int limit) {
+        Set<UUID> chatIds = new LinkedHashSet<>();
+        for (MessageShard shard : messageShardResolver.all()) {
+            if (chatIds.size() >= limit) {
+                break;
+            }
+            shard.jdbcTemplate().query(SELECT_CHATS_WITH_MESSAGES_BEFORE,
+                    (rs, rowNum) -> UuidBytes.fromBytes(rs.getBytes(1)),
+                    Timestamp.valueOf(cutoff), limit - chatIds.size())
+                    .forEach(chatIds::add);
+        }
+        return new ArrayList<>(chatIds);
+    }
+
+    public List<MessageDTO> findOldestBefore(MessageShard shard, UUID chatId, LocalDateTime cutoff, int limit) {
+        return shard.jdbcTemplate().query(SELECT_OLDEST_BEFORE, MESSAGE_ROW,
+                UuidBytes.toBytes(chatId), Timestamp.valueOf(cutoff), limit);
+    }
+
+    /**
+     * Deletes the chat's messages up to and including the cursor.
+     */
+    public int deleteUpTo(MessageShard shard, UUID chatId, MessageCursor cursor) {
+        Timestamp timeStamp = Timestamp.valueOf(cursor.getTimeStamp());
+        return shard.jdbcTemplate().update(DELETE_UP_TO,
+                UuidBytes.toBytes(chatId), timeStamp, timeStamp, UuidBytes.toBytes(cursor.getId()));
+    }
+
+    /**
+     * Writes already stored messages to another shard, skipping the ones it has.
+     */
+    public void copyMessages(MessageShard shard, List<MessageDTO> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        shard.transactionTemplate().executeWithoutResult(status ->
+                shard.jdbcTemplate().batchUpdate(COPY_MESSAGE, messages, messages.size(), (ps, message) -> {
+                    ps.setBytes(1, UuidBytes.toBytes(message.getId()));
+                    ps.setString(2, message.getContent());
+                    ps.setTimestamp(3, Timestamp.valueOf(message.getTimeStamp()));
+                    ps.setBoolean(4, Boolean.TRUE.equals(message.getIsRead()));
+                    ps.setBytes(5, UuidBytes.toBytes(message.getUserId()));
+                    ps.setBytes(6, UuidBytes.toBytes(message.getChatId()));
+                }));
+    }
+
+    /**
+     * Deletes every message of the chat on the shard, oldest first in bounded batches so a long history is not
+     * one huge transaction.
+     */
+    public int deleteChat(MessageShard shard, UUID chatId) {
+        int deleted = 0;
+        while (true) {
+            List<MessageDTO> oldest = findByChatIdAfter(shard, chatId, null, DELETE_BATCH_SIZE);
+            if (oldest.isEmpty()) {
+                return deleted;
+            }
+            deleted += deleteUpTo(shard, chatId, MessageCursor.of(oldest.getLast()));
+            if (oldest.size() < DELETE_BATCH_SIZE) {
+                return deleted;
+            }
+        }
+    }
+}
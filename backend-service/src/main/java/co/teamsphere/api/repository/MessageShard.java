@@ -0,0 +1,11 @@
+package co.teamsphere.api.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One database holding messages. The primary shard shares the application's data source and transaction
+ * manager, every other shard has its own pool and a {@code DataSourceTransactionManager} over it.
+ */
+public record MessageShard(String name, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+}
@@ -0,0 +1,114 @@
+package co.teamsphere.api.repository;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import co.teamsphere.api.models.Chat;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Knows which database holds a chat's messages. The placement is stored on the chat ({@code chat.message_shard})
+ * and picked by hashing the chat id when the chat is created, so adding a shard never moves an existing chat.
+ * Chats from before sharding have no placement and live on the primary. Moving a chat between shards goes
+ * through {@link co.teamsphere.api.services.MessageShardService}.
+ */
+@Slf4j
+public class MessageShardResolver implements AutoCloseable {
+    public static final String PRIMARY = "primary";
+
+    private final Map<String, MessageShard> shards = new LinkedHashMap<>();
+
+    private final List<MessageShard> newChatShards;
+
+    private final ChatRepository chatRepository;
+
+    public MessageShardResolver(List<MessageShard> shards, Collection<String> newChatShardNames, ChatRepository chatRepository) {
+        for (MessageShard shard : shards) {
+            if (this.shards.putIfAbsent(shard.name(), shard) != null) {
+                throw new IllegalArgumentException("Duplicate message shard name: " + shard.name());
+            }
+        }
+        if (!this.shards.containsKey(PRIMARY)) {
+            throw new IllegalArgumentException("The message shards have to include the primary");
+        }
+        this.newChatShards = newChatShardNames.isEmpty()
+                ? List.copyOf(this.shards.values())
+                : newChatShardNames.stream().map(this::byName).toList();
+        this.chatRepository = chatRepository;
+    }
+
+    public MessageShard primary() {
+        return shards.get(PRIMARY);
+    }
+
+    public Collection<MessageShard> all() {
+        return Collections.unmodifiableCollection(shards.values());
+    }
+
+    public List<MessageShard> newChatShards() {
+        return newChatShards;
+    }
+
+    public MessageShard byName(String name) {
+        MessageShard shard = shards.get(name);
+        if (shard == null) {
+            throw new IllegalArgumentException("Unknown message shard: " + name);
+        }
+        return shard;
+    }
+
+    /**
+     * Shard of an already loaded chat, no query involved.
+     */
+    public MessageShard forChat(Chat chat) {
+        return placedOn(chat.getId(), chat.getMessageShard());
+    }
+
+    public MessageShard forChat(UUID chatId) {
+        return placedOn(chatId, chatRepository.findMessageShard(chatId));
+    }
+
+    /**
+     * Placement for a chat that is being created. The low bits of a UUIDv7 (and of a v4) are random, so chats
+     * spread evenly over the shards taking new chats.
+     */
+    public String assignShard(UUID chatId) {
+        return newChatShards.get(Math.floorMod(chatId.getLeastSignificantBits(), newChatShards.size())).name();
+    }
+
+    private MessageShard placedOn(UUID chatId, String placement) {
+        if (placement == null) {
+            return primary();
+        }
+        MessageShard shard = shards.get(placement);
+        if (shard == null) {
+            // never fall back to the primary here, that would silently serve an empty history and split new messages off
+            throw new IllegalStateException("Chat " + chatId + " is placed on message shard " + placement + " which is not configured");
+        }
+        return shard;
+    }
+
+    @Override
+    public void close() {
+        for (MessageShard shard : shards.values()) {
+            if (PRIMARY.equals(shard.name())) {
+                continue;
+            }
+            DataSource dataSource = shard.jdbcTemplate().getDataSource();
+            if (dataSource instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Error closing the pool of message shard {}", shard.name(), e);
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package co.teamsphere.api.repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import co.teamsphere.api.models.RefreshToken;
@@ -15,4 +21,29 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID
     Optional<RefreshToken> findByUserId(UUID userId);
 
     void deleteByUserId(UUID userId);
+
+    /**
+     * Swaps in a new token hash and expiry only if the presented one still belongs to the user and has not expired.
+     * Two parallel refreshes with the same token race on the row lock and exactly one of them gets 1 back.
+     */
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.refreshToken = :newToken, r.expiredAt = :newExpiry "
+            + "WHERE r.user.id = :userId AND r.refreshToken = :currentToken AND r.expiredAt > :now")
+    int rotate(@Param("userId") UUID userId,
+               @Param("currentToken") String currentToken,
+               @Param("newToken") String newToken,
+               @Param("newExpiry") Instant newExpiry,
+               @Param("now") Instant now);
+
+    /**
+     * Locks the next batch of expired rows. SKIP LOCKED lets reapers on other nodes take a different batch
+     * instead of queueing behind this one.
+     */
+    @Query(value = "SELECT id FROM refresh_token WHERE expired_at < :now "
+            + "ORDER BY expired_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<byte[]> lockExpiredBatch(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "DELETE FROM refresh_token WHERE id IN (:ids)", nativeQuery = true)
+    int deleteByRawIds(@Param("ids") Collection<byte[]> ids);
 }
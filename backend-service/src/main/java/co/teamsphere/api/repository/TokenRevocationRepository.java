@@ -0,0 +1,33 @@
+package co.teamsphere.api.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import co.teamsphere.api.models.TokenRevocation;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, UUID> {
+
+    // the cutoff only moves forward, so a late write from another node can't un-revoke anything
+    @Modifying
+    @Query(value = "INSERT INTO token_revocation (user_id, revoked_before, updated_at) "
+            + "VALUES (:userId, :revokedBefore, :updatedAt) "
+            + "ON DUPLICATE KEY UPDATE revoked_before = GREATEST(revoked_before, VALUES(revoked_before)), "
+            + "updated_at = VALUES(updated_at)", nativeQuery = true)
+    int upsert(@Param("userId") UUID userId, @Param("revokedBefore") Instant revokedBefore, @Param("updatedAt") Instant updatedAt);
+
+    List<TokenRevocation> findByUpdatedAtAfter(Instant updatedAt);
+
+    List<TokenRevocation> findByRevokedBeforeAfter(Instant revokedBefore);
+
+    @Modifying
+    @Query("DELETE FROM TokenRevocation r WHERE r.revokedBefore < :cutoff")
+    int deleteExpired(@Param("cutoff") Instant cutoff);
+}
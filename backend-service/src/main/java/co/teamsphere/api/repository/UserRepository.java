@@ -1,11 +1,16 @@
 package co.teamsphere.api.repository;
 
+import co.teamsphere.api.DTO.UserDTO;
+import co.teamsphere.api.DTO.UserSummaryDTO;
 import co.teamsphere.api.models.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,8 +22,33 @@ public interface UserRepository  extends JpaRepository<User, Integer> {
 
     Optional<User> findByUsername(String username);
 
-    @Query("SELECT u FROM User u WHERE u.username LIKE %:name%")
-    List<User> searchUsers(@Param("name") String name);
+    // full scan, only used until the in-memory search index is built
+    @Query("SELECT u.id FROM User u WHERE u.username LIKE %:name% ORDER BY u.username")
+    List<UUID> searchUserIds(@Param("name") String name, Pageable pageable);
+
+    @Query("SELECT u.id AS id, u.username AS username FROM User u")
+    List<UsernameEntry> findAllUsernames();
+
+    @Query("SELECT u.id AS id, u.username AS username FROM User u WHERE u.lastUpdatedDate > :since")
+    List<UsernameEntry> findUsernamesUpdatedAfter(@Param("since") OffsetDateTime since);
+
+    @Query("SELECT new co.teamsphere.api.DTO.UserSummaryDTO(u.id, u.username, u.profilePicture) FROM User u WHERE u.id IN :ids")
+    List<UserSummaryDTO> findSummariesByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    List<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT new co.teamsphere.api.DTO.UserDTO(u.id, u.username, u.email, u.profilePicture) FROM User u WHERE u.id = :id")
+    Optional<UserDTO> findProfileById(@Param("id") UUID id);
+
+    @Query("SELECT u.email FROM User u WHERE u.id = :id")
+    Optional<String> findEmailById(@Param("id") UUID id);
 
     Optional<User> findById(UUID userId);
-}
\ No newline at end of file
+
+    interface UsernameEntry {
+        UUID getId();
+
+        String getUsername();
+    }
+}
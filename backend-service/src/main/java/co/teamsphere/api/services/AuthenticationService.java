@@ -2,6 +2,7 @@ package co.teamsphere.api.services;
 
 import org.springframework.stereotype.Service;
 
+import co.teamsphere.api.exception.LoginThrottledException;
 import co.teamsphere.api.exception.ProfileImageException;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.request.SignupRequest;
@@ -13,7 +14,7 @@ import jakarta.validation.Valid;
 public interface AuthenticationService {
     AuthResponse signupUser(@Valid SignupRequest request) throws UserException, ProfileImageException;
 
-    AuthResponse loginUser(String username, String password) throws UserException;
+    AuthResponse loginUser(String username, String password, String clientIp) throws UserException, LoginThrottledException;
 
     AuthResponse loginWithGoogle(GoogleAuthRequest request) throws UserException;
 }
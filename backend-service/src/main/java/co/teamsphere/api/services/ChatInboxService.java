@@ -0,0 +1,27 @@
+package co.teamsphere.api.services;
+
+import co.teamsphere.api.models.ChatInbox;
+import co.teamsphere.api.models.Messages;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public interface ChatInboxService {
+
+    void recordMessage(Messages message);
+
+    void markRead(UUID chatId, UUID userId);
+
+    void addMembers(UUID chatId, Collection<UUID> userIds);
+
+    void removeMember(UUID chatId, UUID userId);
+
+    void removeChat(UUID chatId);
+
+    List<ChatInbox> getInbox(UUID userId, int page, int size);
+
+    void flush();
+}
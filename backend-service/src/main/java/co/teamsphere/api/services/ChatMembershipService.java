@@ -0,0 +1,17 @@
+package co.teamsphere.api.services;
+
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+@Service
+public interface ChatMembershipService {
+
+    boolean isMember(UUID chatId, UUID userId);
+
+    boolean isAdmin(UUID chatId, UUID userId);
+
+    void evict(UUID chatId);
+
+    void poll();
+}
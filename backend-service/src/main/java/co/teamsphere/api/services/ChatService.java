@@ -1,10 +1,10 @@
 package co.teamsphere.api.services;
 
+import co.teamsphere.api.DTO.ChatDTO;
 import co.teamsphere.api.DTO.ChatSummaryDTO;
 import co.teamsphere.api.exception.ChatException;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.Chat;
-import co.teamsphere.api.models.User;
 import co.teamsphere.api.request.GroupChatRequest;
 import org.springframework.stereotype.Service;
 
@@ -18,9 +18,9 @@ public interface ChatService{
 
     Chat findChatById(UUID chatId) throws ChatException;
 
-    Chat createGroup(GroupChatRequest req, UUID reqUerId) throws UserException;
+    ChatDTO createGroup(GroupChatRequest req, UUID reqUerId) throws UserException;
 
-    Chat addUserToGroup(UUID userId, UUID chatId, User reqUserId) throws UserException, ChatException;
+    Chat addUserToGroup(UUID userId, UUID chatId, UUID reqUserId) throws UserException, ChatException;
 
     Chat renameGroup(UUID chatId, String groupName, UUID reqUserId) throws ChatException, UserException;
 
@@ -0,0 +1,16 @@
+package co.teamsphere.api.services;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+
+import co.teamsphere.api.utils.GoogleUserInfo;
+
+@Service
+public interface GoogleTokenService {
+    /**
+     * Verifies a Google ID token locally against the cached signing keys and returns the identity it vouches for.
+     *
+     * @throws BadCredentialsException if the token is forged, expired, not meant for us or the email is unverified
+     */
+    GoogleUserInfo verifyIdToken(String idToken) throws BadCredentialsException;
+}
@@ -0,0 +1,14 @@
+package co.teamsphere.api.services;
+
+import org.springframework.stereotype.Service;
+
+import co.teamsphere.api.exception.LoginThrottledException;
+
+@Service
+public interface LoginAttemptService {
+    void checkAllowed(String email, String clientIp) throws LoginThrottledException;
+
+    void recordFailure(String email, String clientIp);
+
+    void recordSuccess(String email);
+}
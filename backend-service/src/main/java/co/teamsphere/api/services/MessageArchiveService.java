@@ -0,0 +1,13 @@
+package co.teamsphere.api.services;
+
+import org.springframework.stereotype.Service;
+
+@Service
+public interface MessageArchiveService {
+
+    /**
+     * Moves messages older than {@code messages.archive.archive-after} out of the messages table and into the
+     * per-chat archive. Returns the number of messages moved.
+     */
+    int archiveOldMessages();
+}
@@ -1,5 +1,7 @@
 package co.teamsphere.api.services;
 
+import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.DTO.MessagePageDTO;
 import co.teamsphere.api.exception.ChatException;
 import co.teamsphere.api.exception.MessageException;
 import co.teamsphere.api.exception.UserException;
@@ -7,7 +9,6 @@ import co.teamsphere.api.models.Messages;
 import co.teamsphere.api.request.SendMessageRequest;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -15,9 +16,9 @@ public interface MessageService {
 
     Messages sendMessage(SendMessageRequest req) throws UserException, ChatException;
 
-    List<Messages> getChatsMessages(UUID chatId, UUID reqUserId) throws ChatException;
+    MessagePageDTO getChatsMessages(UUID chatId, UUID reqUserId, String before, String after, int limit) throws ChatException;
 
-    Messages findMessageById(UUID messageId) throws MessageException;
+    MessageDTO findMessageById(UUID messageId) throws MessageException;
 
     void deleteMessage(UUID messageId, UUID reqUserId) throws MessageException;
 }
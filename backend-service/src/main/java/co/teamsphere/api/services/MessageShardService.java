@@ -0,0 +1,17 @@
+package co.teamsphere.api.services;
+
+import co.teamsphere.api.exception.ChatException;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+@Service
+public interface MessageShardService {
+
+    /**
+     * Moves every message of the chat to the named shard and points the chat's placement at it. The chat stays
+     * usable throughout; the call blocks for at least {@code messages.sharding.move-settle-time}. Returns the
+     * number of messages copied.
+     */
+    int moveChat(UUID chatId, String targetShard) throws ChatException;
+}
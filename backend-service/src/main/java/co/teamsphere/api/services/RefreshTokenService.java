@@ -4,7 +4,7 @@ import java.util.Optional;
 
 import org.springframework.stereotype.Service;
 
-import co.teamsphere.api.exception.RefreshTokenException;
+import co.teamsphere.api.DTO.RefreshTokenRotationDTO;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.RefreshToken;
 
@@ -12,13 +12,11 @@ import co.teamsphere.api.models.RefreshToken;
 public interface RefreshTokenService {
     RefreshToken createRefreshToken(String email) throws UserException;
 
-    Optional<RefreshToken> findRefreshToken(String refreshToken);
+    Optional<RefreshTokenRotationDTO> rotateRefreshToken(String refreshToken);
 
-    RefreshToken verifyExpiration(RefreshToken token) throws RefreshTokenException;
-    
     void deleteRefreshTokenByUserId(String userId);
 
     RefreshToken findByUserId(String userId);
 
-    String replaceRefreshToken(String userId);
+    int purgeExpiredTokens();
 }
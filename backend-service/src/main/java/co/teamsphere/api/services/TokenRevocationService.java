@@ -0,0 +1,12 @@
+package co.teamsphere.api.services;
+
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+@Service
+public interface TokenRevocationService {
+    void revokeAllTokens(UUID userId);
+
+    void poll();
+}
@@ -0,0 +1,25 @@
+package co.teamsphere.api.services;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import co.teamsphere.api.models.User;
+
+@Service
+public interface UserSearchService {
+
+    /**
+     * Ids of the users matching the query, best match first.
+     */
+    List<UUID> search(String query, int page, int size, boolean fuzzy);
+
+    /**
+     * Makes a new or renamed user searchable on this node once the surrounding transaction commits (right away when
+     * there is none); other nodes pick it up on their next refresh.
+     */
+    void index(User user);
+
+    void refresh();
+}
@@ -1,11 +1,14 @@
 package co.teamsphere.api.services;
 
+import co.teamsphere.api.DTO.UserDTO;
+import co.teamsphere.api.DTO.UserSummaryDTO;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.User;
 import co.teamsphere.api.request.UpdateUserRequest;
 
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -20,5 +23,9 @@ public interface UserService{
 
     User findUserById(UUID userId) throws UserException;
 
-    List<User> searchUser(String query);
+    List<UUID> findExistingUserIds(Collection<UUID> userIds);
+
+    UserDTO findUserProfileById(UUID userId) throws UserException;
+
+    List<UserSummaryDTO> searchUser(String query, int page, int size, boolean fuzzy);
 }
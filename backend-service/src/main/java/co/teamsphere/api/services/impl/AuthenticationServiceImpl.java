@@ -1,6 +1,5 @@
 package co.teamsphere.api.services.impl;
 
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.Objects;
@@ -20,6 +19,8 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 
 import co.teamsphere.api.config.JWTTokenProvider;
+import co.teamsphere.api.exception.LoginThrottledException;
+import co.teamsphere.api.exception.PasswordHashingUnavailableException;
 import co.teamsphere.api.exception.ProfileImageException;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.RefreshToken;
@@ -30,7 +31,10 @@ import co.teamsphere.api.response.AuthResponse;
 import co.teamsphere.api.response.CloudflareApiResponse;
 import co.teamsphere.api.services.AuthenticationService;
 import co.teamsphere.api.services.CloudflareApiService;
+import co.teamsphere.api.services.GoogleTokenService;
+import co.teamsphere.api.services.LoginAttemptService;
 import co.teamsphere.api.services.RefreshTokenService;
+import co.teamsphere.api.services.UserSearchService;
 import co.teamsphere.api.utils.GoogleAuthRequest;
 import co.teamsphere.api.utils.GoogleUserInfo;
 import jakarta.validation.Valid;
@@ -47,6 +51,9 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     private final CustomUserDetailsService customUserDetails;
     private final CloudflareApiService cloudflareApiService;
     private final RefreshTokenService refreshTokenService;
+    private final LoginAttemptService loginAttemptService;
+    private final GoogleTokenService googleTokenService;
+    private final UserSearchService userSearchService;
 
     public AuthenticationServiceImpl(
             UserRepository userRepository,
@@ -54,7 +61,10 @@ public class AuthenticationServiceImpl implements AuthenticationService {
             JWTTokenProvider jwtTokenProvider,
             CustomUserDetailsService customUserDetails,
             CloudflareApiService cloudflareApiService,
-            RefreshTokenService refreshTokenService
+            RefreshTokenService refreshTokenService,
+            LoginAttemptService loginAttemptService,
+            GoogleTokenService googleTokenService,
+            UserSearchService userSearchService
     ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
@@ -62,6 +72,9 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         this.customUserDetails = customUserDetails;
         this.cloudflareApiService = cloudflareApiService;
         this.refreshTokenService = refreshTokenService;
+        this.loginAttemptService = loginAttemptService;
+        this.googleTokenService = googleTokenService;
+        this.userSearchService = userSearchService;
     }
 
 
@@ -110,6 +123,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
                     .build();
 
             userRepository.save(newUser);
+            userSearchService.index(newUser);
 
             // auto-login after signup
             Authentication authentication = new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword());
@@ -120,7 +134,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
             log.info("Generating refresh token for user with ID: {}", newUser.getId());
             RefreshToken refreshToken = refreshTokenService.createRefreshToken(newUser.getEmail());
 
-            return new AuthResponse(token, refreshToken.getRefreshToken(), true);
+            return new AuthResponse(token, refreshToken.getRawToken(), true);
         }
         catch (UserException e) {
             log.error("Error during signup process", e);
@@ -128,7 +142,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         } catch (BadCredentialsException e) {
             log.error("Authentication failed for user with username: {}", request.getEmail());
             throw new BadCredentialsException("Invalid username or password.", e);
-        } catch (ProfileImageException e){
+        } catch (ProfileImageException | PasswordHashingUnavailableException e){
             throw e;
         } catch (Exception e) {
             log.error("Unexpected error during signup process", e);
@@ -138,7 +152,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
     @Override
     @Transactional
-    public AuthResponse loginUser(String email, String password) throws UserException {
+    public AuthResponse loginUser(String email, String password, String clientIp) throws UserException, LoginThrottledException {
         try {
 
             if (isEmailInvalid(email)) {
@@ -146,6 +160,9 @@ public class AuthenticationServiceImpl implements AuthenticationService {
                 throw new UserException("InValid email was passed in");
             }
 
+            // reject known-bad sources before paying for a password hash
+            loginAttemptService.checkAllowed(email, clientIp);
+
             Optional<User> optionalUser = userRepository.findByEmail(email);
             if (optionalUser.isEmpty()) {
                 log.warn("User with email={} not found", email);
@@ -160,14 +177,18 @@ public class AuthenticationServiceImpl implements AuthenticationService {
                 throw new BadCredentialsException("Invalid username or password.");
             }
 
+            loginAttemptService.recordSuccess(email);
+            rehashIfOutdated(optionalUser.get(), password);
+
             String token = jwtTokenProvider.generateJwtToken(authentication, optionalUser.get().getId());
 
             log.info("Generating refresh token for user with ID: {}", optionalUser.get().getId());
-            RefreshToken refreshToken = createRefreshToken(optionalUser.get().getId().toString(), email);
+            RefreshToken refreshToken = refreshTokenService.createRefreshToken(email);
 
-            return new AuthResponse(token, refreshToken.getRefreshToken(), true);
+            return new AuthResponse(token, refreshToken.getRawToken(), true);
         } catch (BadCredentialsException e) {
             log.warn("Authentication failed for user with username: {}", email);
+            loginAttemptService.recordFailure(email, clientIp);
             throw new UserException("Invalid username or password.");
         } catch (UserException e) {
             log.error("Unexpected error during login process", e);
@@ -179,7 +200,8 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     @Transactional
     public AuthResponse loginWithGoogle(GoogleAuthRequest request) throws UserException {
         try {
-            GoogleUserInfo googleUserInfo = request.getGoogleUserInfo();
+            // only trust what google signed, never profile fields sent by the client
+            GoogleUserInfo googleUserInfo = googleTokenService.verifyIdToken(request.getIdToken());
 
             String email = googleUserInfo.getEmail();
             String username = googleUserInfo.getName();
@@ -204,6 +226,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
                         .build();
 
                 googleUser = userRepository.saveAndFlush(user);
+                userSearchService.index(googleUser);
                 log.info("New user created with email: {}", email);
             }
 
@@ -214,11 +237,14 @@ public class AuthenticationServiceImpl implements AuthenticationService {
             SecurityContextHolder.setContext(context);
 
             String token = jwtTokenProvider.generateJwtTokenFromEmail(email, googleUser.getId());
-            RefreshToken refreshToken = createRefreshToken(googleUser.getId().toString(), email);
-            return new AuthResponse(token, refreshToken.getRefreshToken(), true);
+            RefreshToken refreshToken = refreshTokenService.createRefreshToken(email);
+            return new AuthResponse(token, refreshToken.getRawToken(), true);
         } catch (BadCredentialsException e) {
             log.error("Error during Google authentication: ", e);
             throw new BadCredentialsException("Error during Google authentication");
+        } catch (PasswordHashingUnavailableException e) {
+            log.warn("Password hashing unavailable during Google authentication");
+            throw e;
         } catch (Exception e) {
             log.error("Error during Google authentication: ", e);
             throw new UserException("Error during Google authentication");
@@ -254,12 +280,19 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         return new UsernamePasswordAuthenticationToken(userDetails, password, userDetails.getAuthorities());
     }
 
-    private RefreshToken createRefreshToken(String userID, String email) throws UserException {
-        RefreshToken refreshToken = refreshTokenService.findByUserId(userID);
-        if (refreshToken == null || refreshToken.getExpiredAt().compareTo(Instant.now()) < 0) {
-            refreshToken = refreshTokenService.createRefreshToken(email);
+    // the plaintext is only in hand right after a successful login, so that's when old-cost hashes get rewritten
+    private void rehashIfOutdated(User user, String password) {
+        if (!passwordEncoder.upgradeEncoding(user.getPassword())) {
+            return;
         }
 
-        return refreshToken;
+        try {
+            user.setPassword(passwordEncoder.encode(password));
+            userRepository.save(user);
+            log.info("Rehashed password for user with ID: {} with current Argon2 parameters", user.getId());
+        } catch (PasswordHashingUnavailableException e) {
+            // not worth failing a good login over, it will be retried next time
+            log.warn("Skipping password rehash for user with ID: {}, hashing pool is busy", user.getId());
+        }
     }
 }
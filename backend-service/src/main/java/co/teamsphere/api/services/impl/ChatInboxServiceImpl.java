@@ -0,0 +1,237 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.properties.InboxProperties;
+import co.teamsphere.api.models.ChatInbox;
+import co.teamsphere.api.models.Messages;
+import co.teamsphere.api.repository.ChatInboxRepository;
+import co.teamsphere.api.repository.ChatMemberBatchRepository;
+import co.teamsphere.api.services.ChatInboxService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@Slf4j
+public class ChatInboxServiceImpl implements ChatInboxService {
+    private static final int PREVIEW_LENGTH = 255;
+
+    private final ChatInboxRepository chatInboxRepository;
+
+    private final ChatMemberBatchRepository chatMemberBatchRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final InboxProperties inboxProperties;
+
+    // chatId -> everything that happened in that chat since the last flush
+    private final ConcurrentHashMap<UUID, PendingChatUpdate> pending = new ConcurrentHashMap<>();
+
+    public ChatInboxServiceImpl(ChatInboxRepository chatInboxRepository,
+                                ChatMemberBatchRepository chatMemberBatchRepository,
+                                PlatformTransactionManager transactionManager,
+                                InboxProperties inboxProperties) {
+        this.chatInboxRepository = chatInboxRepository;
+        this.chatMemberBatchRepository = chatMemberBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.inboxProperties = inboxProperties;
+    }
+
+    @Override
+    public void recordMessage(Messages message) {
+        UUID chatId = message.getChat().getId();
+        UUID senderId = message.getUsername().getId();
+        // only buffer once the message is actually committed, otherwise a rollback would leave a ghost preview
+        afterCommit(() -> pending.compute(chatId, (id, update) -> {
+            PendingChatUpdate next = update != null ? update : new PendingChatUpdate();
+            next.addMessage(message.getId(), preview(message.getContent()), senderId, message.getTimeStamp());
+            return next;
+        }));
+    }
+
+    @Override
+    public void markRead(UUID chatId, UUID userId) {
+        afterCommit(() -> pending.compute(chatId, (id, update) -> {
+            PendingChatUpdate next = update != null ? update : new PendingChatUpdate();
+            next.markSeen(userId);
+            return next;
+        }));
+    }
+
+    @Override
+    @Transactional
+    public void addMembers(UUID chatId, Collection<UUID> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        chatMemberBatchRepository.insertInboxRows(chatId, userIds, LocalDateTime.now());
+        log.debug("Added {} inbox rows for chat with ID: {}", userIds.size(), chatId);
+    }
+
+    @Override
+    @Transactional
+    public void removeMember(UUID chatId, UUID userId) {
+        chatInboxRepository.deleteMember(chatId, userId);
+    }
+
+    @Override
+    @Transactional
+    public void removeChat(UUID chatId) {
+        chatInboxRepository.deleteChat(chatId);
+        afterCommit(() -> pending.remove(chatId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ChatInbox> getInbox(UUID userId, int page, int size) {
+        return chatInboxRepository.findInboxPage(userId, PageRequest.of(page, size));
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${inbox.flush-interval-ms:500}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        int flushed = 0;
+        for (UUID chatId : pending.keySet()) {
+            PendingChatUpdate update = pending.remove(chatId);
+            if (update == null) {
+                continue;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> apply(chatId, update));
+                flushed++;
+            } catch (Exception e) {
+                log.error("Error flushing inbox updates for chat with ID: {}, requeueing", chatId, e);
+                // anything recorded while we were writing is newer than what just failed
+                pending.merge(chatId, update, (newer, failed) -> failed.followedBy(newer));
+            }
+        }
+
+        log.debug("Flushed inbox updates for {} chats", flushed);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing {} pending inbox updates before shutdown", pending.size());
+        flush();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!inboxProperties.isBackfillOnStartup()) {
+            return;
+        }
+
+        try {
+            Integer seeded = transactionTemplate.execute(status -> {
+                int rows = chatInboxRepository.backfillMemberships();
+                chatInboxRepository.backfillLastMessages();
+                return rows;
+            });
+            log.info("Inbox backfill seeded {} rows", seeded);
+        } catch (Exception e) {
+            // summaries for old chats will be missing until the next restart, but the app itself is fine
+            log.error("Error backfilling chat inbox", e);
+        }
+    }
+
+    private void apply(UUID chatId, PendingChatUpdate update) {
+        if (update.messageCount > 0) {
+            chatInboxRepository.applyMessages(chatId, update.lastMessageId, update.lastPreview,
+                    update.lastSenderId, update.lastActivity, update.messageCount);
+        }
+
+        // anyone who sent or read during the window has only missed what came after that point
+        for (Map.Entry<UUID, Integer> seen : update.seenAt.entrySet()) {
+            chatInboxRepository.setUnreadCount(chatId, seen.getKey(), update.messageCount - seen.getValue());
+        }
+    }
+
+    private static String preview(String content) {
+        if (content == null || content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, PREVIEW_LENGTH);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Everything that happened to one chat between two flushes. Only ever mutated inside
+     * {@link ConcurrentHashMap#compute}, so access is serialized per chat.
+     */
+    private static final class PendingChatUpdate {
+        private int messageCount;
+        private UUID lastMessageId;
+        private String lastPreview;
+        private UUID lastSenderId;
+        private LocalDateTime lastActivity;
+        // userId -> how many of this window's messages that user had already seen
+        private final Map<UUID, Integer> seenAt = new HashMap<>();
+
+        void addMessage(UUID messageId, String preview, UUID senderId, LocalDateTime timeStamp) {
+            messageCount++;
+            if (lastActivity == null || !timeStamp.isBefore(lastActivity)) {
+                lastMessageId = messageId;
+                lastPreview = preview;
+                lastSenderId = senderId;
+                lastActivity = timeStamp;
+            }
+            // sending a message means you've seen everything up to it
+            seenAt.put(senderId, messageCount);
+        }
+
+        void markSeen(UUID userId) {
+            seenAt.put(userId, messageCount);
+        }
+
+        PendingChatUpdate followedBy(PendingChatUpdate newer) {
+            PendingChatUpdate merged = new PendingChatUpdate();
+            merged.messageCount = messageCount + newer.messageCount;
+            merged.lastMessageId = lastMessageId;
+            merged.lastPreview = lastPreview;
+            merged.lastSenderId = lastSenderId;
+            merged.lastActivity = lastActivity;
+            if (newer.lastActivity != null && (lastActivity == null || !newer.lastActivity.isBefore(lastActivity))) {
+                merged.lastMessageId = newer.lastMessageId;
+                merged.lastPreview = newer.lastPreview;
+                merged.lastSenderId = newer.lastSenderId;
+                merged.lastActivity = newer.lastActivity;
+            }
+            merged.seenAt.putAll(seenAt);
+            newer.seenAt.forEach((userId, seen) -> merged.seenAt.put(userId, messageCount + seen));
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.properties.MembershipCacheProperties;
+import co.teamsphere.api.models.ChatMembershipChange;
+import co.teamsphere.api.repository.ChatMembershipChangeRepository;
+import co.teamsphere.api.repository.ChatRepository;
+import co.teamsphere.api.services.ChatMembershipService;
+import co.teamsphere.api.utils.CompactUuidSet;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@Slf4j
+public class ChatMembershipServiceImpl implements ChatMembershipService {
+    private static final Duration CLEANUP_INTERVAL = Duration.ofHours(1);
+
+    private final ChatRepository chatRepository;
+
+    private final ChatMembershipChangeRepository chatMembershipChangeRepository;
+
+    private final MembershipCacheProperties membershipCacheProperties;
+
+    // chatId -> member and admin ids, weighted by how many ids each entry holds
+    private final Cache<UUID, ChatMembers> membershipCache;
+
+    // updated_at high-water mark of the last poll, null until the first one
+    private volatile Instant lastPolled;
+
+    private volatile Instant lastCleanup = Instant.EPOCH;
+
+    public ChatMembershipServiceImpl(ChatRepository chatRepository,
+                                     ChatMembershipChangeRepository chatMembershipChangeRepository,
+                                     MembershipCacheProperties membershipCacheProperties,
+                                     MeterRegistry meterRegistry) {
+        this.chatRepository = chatRepository;
+        this.chatMembershipChangeRepository = chatMembershipChangeRepository;
+        this.membershipCacheProperties = membershipCacheProperties;
+        this.membershipCache = Caffeine.newBuilder()
+                .maximumWeight(membershipCacheProperties.getMaximumWeight())
+                .weigher((UUID chatId, ChatMembers members) -> members.weight())
+                .expireAfterWrite(membershipCacheProperties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, membershipCache, "chatMembership");
+    }
+
+    @Override
+    public boolean isMember(UUID chatId, UUID userId) {
+        return load(chatId).members().contains(userId);
+    }
+
+    @Override
+    public boolean isAdmin(UUID chatId, UUID userId) {
+        return load(chatId).admins().contains(userId);
+    }
+
+    @Override
+    @Transactional
+    public void evict(UUID chatId) {
+        // committed together with the membership change itself; the other nodes drop their copy on their next poll
+        chatMembershipChangeRepository.upsert(chatId, Instant.now());
+        membershipCache.invalidate(chatId);
+        // a reader can repopulate the entry from pre-commit data while the change is still in flight, so drop it again once it lands
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    membershipCache.invalidate(chatId);
+                }
+            });
+        }
+        log.debug("Evicted membership cache entry for chat with ID: {}", chatId);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${membership.cache.poll-interval-ms:5000}")
+    @Transactional
+    public void poll() {
+        Instant startedAt = Instant.now();
+
+        // the cache starts out empty, so there is nothing to drop before the first poll
+        if (lastPolled != null) {
+            List<ChatMembershipChange> changed =
+                    chatMembershipChangeRepository.findByUpdatedAtAfter(lastPolled.minus(membershipCacheProperties.getPollOverlap()));
+            for (ChatMembershipChange change : changed) {
+                membershipCache.invalidate(change.getChatId());
+            }
+        }
+        lastPolled = startedAt;
+
+        // an entry loaded before an older change has expired from every node's cache by now
+        if (Duration.between(lastCleanup, startedAt).compareTo(CLEANUP_INTERVAL) >= 0) {
+            Instant cutoff = startedAt.minus(membershipCacheProperties.getTtl()).minus(membershipCacheProperties.getPollOverlap());
+            int deleted = chatMembershipChangeRepository.deleteExpired(cutoff);
+            lastCleanup = startedAt;
+            log.debug("Deleted {} expired chat membership changes", deleted);
+        }
+    }
+
+    private ChatMembers load(UUID chatId) {
+        return membershipCache.get(chatId, id -> {
+            log.debug("Loading membership for chat with ID: {}", id);
+            return new ChatMembers(
+                    CompactUuidSet.of(chatRepository.findMemberIds(id)),
+                    CompactUuidSet.of(chatRepository.findAdminIds(id)));
+        });
+    }
+
+    private record ChatMembers(CompactUuidSet members, CompactUuidSet admins) {
+        int weight() {
+            return 1 + members.size() + admins.size();
+        }
+    }
+}
@@ -1,28 +1,45 @@
 package co.teamsphere.api.services.impl;
 
+import co.teamsphere.api.DTO.ChatDTO;
 import co.teamsphere.api.DTO.ChatSummaryDTO;
-import co.teamsphere.api.DTOmapper.ChatDTOMapper;
+import co.teamsphere.api.DTO.DirectChatPeerDTO;
+import co.teamsphere.api.DTO.MessageDTO;
 import co.teamsphere.api.exception.ChatException;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.Chat;
-import co.teamsphere.api.models.Messages;
+import co.teamsphere.api.models.ChatInbox;
 import co.teamsphere.api.models.User;
+import co.teamsphere.api.repository.ChatMemberBatchRepository;
+import co.teamsphere.api.repository.MessageArchiveRepository;
 import co.teamsphere.api.repository.ChatRepository;
+import co.teamsphere.api.repository.MessageRepository;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
 import co.teamsphere.api.request.GroupChatRequest;
+import co.teamsphere.api.services.ChatInboxService;
+import co.teamsphere.api.services.ChatMembershipService;
 import co.teamsphere.api.services.ChatService;
 import co.teamsphere.api.services.UserService;
+import co.teamsphere.api.utils.UuidV7;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.validation.annotation.Validated;
 
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.ArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Validated
@@ -33,12 +50,34 @@ public class ChatServiceImpl implements ChatService {
 
     private final ChatRepository chatRepository;
 
-    private final ChatDTOMapper chatDTOMapper;
+    private final ChatInboxService chatInboxService;
 
-    public ChatServiceImpl(UserService userService, ChatRepository chatRepository, ChatDTOMapper chatDTOMapper) {
+    private final ChatMembershipService chatMembershipService;
+
+    private final ChatMemberBatchRepository chatMemberBatchRepository;
+
+    private final MessageArchiveRepository messageArchiveRepository;
+
+    private final MessageRepository messageRepository;
+
+    private final MessageShardResolver messageShardResolver;
+
+    public ChatServiceImpl(UserService userService,
+                           ChatRepository chatRepository,
+                           ChatInboxService chatInboxService,
+                           ChatMembershipService chatMembershipService,
+                           ChatMemberBatchRepository chatMemberBatchRepository,
+                           MessageArchiveRepository messageArchiveRepository,
+                           MessageRepository messageRepository,
+                           MessageShardResolver messageShardResolver) {
         this.userService = userService;
         this.chatRepository = chatRepository;
-        this.chatDTOMapper = chatDTOMapper;
+        this.chatMemberBatchRepository = chatMemberBatchRepository;
+        this.chatInboxService = chatInboxService;
+        this.chatMembershipService = chatMembershipService;
+        this.messageArchiveRepository = messageArchiveRepository;
+        this.messageRepository = messageRepository;
+        this.messageShardResolver = messageShardResolver;
     }
 
     @Override
@@ -50,31 +89,61 @@ public class ChatServiceImpl implements ChatService {
             User reqUser = userService.findUserById(reqUserId);
             User user2 = userService.findUserById(userId2);
 
-            Chat isChatExist = chatRepository.findSingleChatByUsersId(user2, reqUser);
-
-            if (isChatExist != null) {
-                log.info("Chat already exists for users: {} and {}", reqUserId, userId2);
-                return isChatExist;
+            if (isGroup) {
+                Chat chat = new Chat();
+                chat.setCreatedBy(reqUser);
+                chat.getUsers().add(reqUser);
+                chat.getUsers().add(user2);
+                chat.setIsGroup(true);
+
+                Chat createdChat = chatRepository.save(chat);
+                // the id only exists once the chat is persisted, the placement goes out with the commit
+                createdChat.setMessageShard(messageShardResolver.assignShard(createdChat.getId()));
+                chatInboxService.addMembers(createdChat.getId(), List.of(reqUserId, userId2));
+                log.info("Chat created successfully. Chat: {}", createdChat);
+                return createdChat;
             }
 
-            Chat chat = new Chat();
-
-            chat.setCreatedBy(reqUser);
-            chat.getUsers().add(reqUser);
-            chat.getUsers().add(user2);
-            chat.setIsGroup(isGroup);
+            String directKey = Chat.directKey(reqUserId, userId2);
 
-            Chat createdChat = chatRepository.save(chat);
+            Optional<Chat> isChatExist = chatRepository.findByDirectKey(directKey);
+            if (isChatExist.isPresent()) {
+                log.info("Chat already exists for users: {} and {}", reqUserId, userId2);
+                return isChatExist.get();
+            }
 
-            log.info("Chat created successfully. Chat: {}", createdChat);
+            // the unique direct_key decides who wins when both users open the DM at once; the loser inserts nothing
+            UUID chatId = UuidV7.generate();
+            if (chatRepository.insertDirectChatIfAbsent(chatId, reqUserId, directKey, messageShardResolver.assignShard(chatId)) == 1) {
+                List<UUID> memberIds = reqUserId.equals(userId2) ? List.of(reqUserId) : List.of(reqUserId, userId2);
+                chatMemberBatchRepository.insertMembers(chatId, memberIds);
+                chatInboxService.addMembers(chatId, memberIds);
+                log.info("Chat created successfully. Chat ID: {}", chatId);
+            } else {
+                log.info("Chat for users: {} and {} was created concurrently, returning that one", reqUserId, userId2);
+            }
 
-            return createdChat;
+            return chatRepository.findByDirectKeyForShare(directKey)
+                    .orElseThrow(() -> new ChatException("Direct chat disappeared after creation: " + directKey));
         } catch (Exception e) {
             log.error("Error creating chat", e);
             throw new UserException("Error creating chat" + e);
         }
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillDirectKeys() {
+        try {
+            int keyed = chatRepository.backfillDirectKeys();
+            if (keyed > 0) {
+                log.info("Backfilled direct_key on {} existing direct chats", keyed);
+            }
+        } catch (Exception e) {
+            // unkeyed old chats are only missed by the lookup, a second chat may get created for those users
+            log.error("Error backfilling direct chat keys", e);
+        }
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Chat findChatById(UUID chatId) throws ChatException {
@@ -106,12 +175,28 @@ public class ChatServiceImpl implements ChatService {
             Chat chat = findChatById(chatId);
 
             // Check if the user has permission to delete the chat
-            if (!chat.getCreatedBy().getId().equals(user.getId()) || (chat.getIsGroup() && chat.getAdmins().stream().noneMatch(u -> u.getId().equals(reqUserId)))) {
+            if (!chat.getCreatedBy().getId().equals(user.getId()) || (chat.getIsGroup() && !chatMembershipService.isAdmin(chatId, reqUserId))) {
                 // If user does not have permission or chat is a group chat, throw an exception
                 throw new ChatException("You don't have permission to delete this chat or the chat is a group chat");
             }
 
+            // resolved before the chat row (and with it the placement) is gone
+            MessageShard messageShard = messageShardResolver.forChat(chat);
+
             chatRepository.deleteById(chat.getId());
+            chatInboxService.removeChat(chat.getId());
+            chatMembershipService.evict(chat.getId());
+            // the archived history goes with the chat, but only once the delete has actually committed
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        deleteMessages(chat.getId(), messageShard);
+                    }
+                });
+            } else {
+                deleteMessages(chat.getId(), messageShard);
+            }
             log.info("Chat deleted successfully. Chat ID: {}, User ID: {}", chatId, userId);
             return chat;
         } catch (UserException | ChatException e) {
@@ -124,46 +209,81 @@ public class ChatServiceImpl implements ChatService {
     }
 
 
+    private void deleteMessages(UUID chatId, MessageShard messageShard) {
+        messageArchiveRepository.deleteChat(chatId);
+        // messages on the primary were removed with the chat row, nothing cascades to the other shards
+        if (!MessageShardResolver.PRIMARY.equals(messageShard.name())) {
+            try {
+                int deleted = messageRepository.deleteChat(messageShard, chatId);
+                log.info("Deleted {} messages of chat with ID: {} from message shard {}", deleted, chatId, messageShard.name());
+            } catch (Exception e) {
+                log.error("Error deleting messages of chat with ID: {} from message shard {}", chatId, messageShard.name(), e);
+            }
+        }
+    }
+
     @Override
-    @Transactional
-    public Chat createGroup(GroupChatRequest req, UUID reqUserId) throws UserException {
+    // failures are rethrown as the checked UserException, which Spring would otherwise commit on
+    @Transactional(rollbackFor = Exception.class)
+    public ChatDTO createGroup(GroupChatRequest req, UUID reqUserId) throws UserException {
         try {
             log.info("Creating group chat. Requested by user with ID: {}", reqUserId);
 
             User reqUser = userService.findUserById(reqUserId);
 
-            Chat chat = new Chat();
-
-            chat.setCreatedBy(reqUser);
-            chat.getUsers().add(reqUser);
+            Set<UUID> requestedIds = new LinkedHashSet<>(req.getUserIds() != null ? req.getUserIds() : List.of());
+            requestedIds.remove(reqUserId);
 
-            // TODO: make this into a stream or something
-            for (UUID userId : req.getUserIds()) {
-                User user = userService.findUserById(userId);
-                if (user != null) {
-                    chat.getUsers().add(user);
-                    log.info("Added user with ID {} to the group chat", userId);
+            // one IN query for every requested member instead of a findUserById per id
+            Set<UUID> foundIds = new HashSet<>(userService.findExistingUserIds(requestedIds));
+            List<UUID> memberIds = new ArrayList<>(foundIds.size());
+            List<UUID> missingUserIds = new ArrayList<>();
+            for (UUID userId : requestedIds) {
+                if (foundIds.contains(userId)) {
+                    memberIds.add(userId);
                 } else {
-                    log.warn("User with ID {} not found while creating the group chat", userId);
+                    missingUserIds.add(userId);
                 }
             }
+            if (!missingUserIds.isEmpty()) {
+                log.warn("{} requested users not found while creating the group chat: {}", missingUserIds.size(), missingUserIds);
+            }
 
-            //TODO: Add builder pattern here
-//            chat.builder().chat_name(req.getChat_name())
-////                    .chat_image(req.getChat_image())
-////                    .is_group(true)
-////                    .admins(reqUser
-////                    .build();
+            Chat chat = new Chat();
+            chat.setCreatedBy(reqUser);
+            chat.getUsers().add(reqUser);
             chat.setChatName(req.getChat_name());
             chat.setChatImage(req.getChat_image());
             chat.setIsGroup(true);
             chat.getAdmins().add(reqUser);
 
-            Chat createdChat = chatRepository.save(chat);
-
-            log.info("Group chat created successfully. Chat ID: {}", createdChat.getId());
-
-            return createdChat;
+            // flushed right away: the JDBC batch below bypasses Hibernate and needs the chat row for its foreign key
+            Chat createdChat = chatRepository.saveAndFlush(chat);
+            // the id only exists once the chat is persisted, the placement goes out with the commit
+            createdChat.setMessageShard(messageShardResolver.assignShard(createdChat.getId()));
+
+            // the rest of the members go in as batched join rows, the chat's user set is never populated with them
+            chatMemberBatchRepository.insertMembers(createdChat.getId(), memberIds);
+
+            List<UUID> allMemberIds = new ArrayList<>(memberIds.size() + 1);
+            allMemberIds.add(reqUserId);
+            allMemberIds.addAll(memberIds);
+            chatInboxService.addMembers(createdChat.getId(), allMemberIds);
+            chatMembershipService.evict(createdChat.getId());
+
+            log.info("Group chat created successfully. Chat ID: {}, members: {}", createdChat.getId(), allMemberIds.size());
+
+            return ChatDTO.builder()
+                    .id(createdChat.getId())
+                    .chatName(createdChat.getChatName())
+                    .chatImage(createdChat.getChatImage())
+                    .isGroup(true)
+                    .admins(Set.of(reqUserId))
+                    .createdBy(reqUserId)
+                    .users(new LinkedHashSet<>(allMemberIds))
+                    .messages(List.of())
+                    .missingUserIds(missingUserIds)
+                    .build();
         } catch (Exception e) {
             log.error("Error creating group chat", e);
             throw new UserException("Error creating group chat" + e);
@@ -173,27 +293,30 @@ public class ChatServiceImpl implements ChatService {
 
     @Override
     @Transactional
-    public Chat addUserToGroup(UUID userId, UUID chatId, User reqUser) throws UserException {
+    public Chat addUserToGroup(UUID userId, UUID chatId, UUID reqUserId) throws UserException {
         try {
             log.info("Adding user with ID {} to group chat with ID: {}", userId, chatId);
 
             Chat chat = findChatById(chatId);
             User newUser = userService.findUserById(userId);
 
-            if (chat.getUsers().stream().noneMatch(u -> u.getId().equals(reqUser.getId())) || !chat.getIsGroup()) {
-                log.error("ERROR: User with ID {} shouldn't be able to add people to chat with ID: {}", reqUser.getId(), chatId);
+            if (!chat.getIsGroup() || !chatMembershipService.isMember(chatId, reqUserId)) {
+                log.error("ERROR: User with ID {} shouldn't be able to add people to chat with ID: {}", reqUserId, chatId);
                 throw new UserException("You are not part of this group chat");
             }
 
-            if (chat.getUsers().stream().anyMatch(u -> u.getId().equals(newUser.getId()))) {
+            if (chatMembershipService.isMember(chatId, newUser.getId())) {
                 log.error("ERROR: User with ID {} is already part of the group chat with ID: {}", userId, chatId);
                 return chat;
             }
 
-            chat.getUsers().add(newUser);
+            // write the join row directly, adding through chat.getUsers() would load every member first
+            chatRepository.addMember(chatId, newUser.getId());
+            chatInboxService.addMembers(chatId, List.of(newUser.getId()));
+            chatMembershipService.evict(chatId);
 
             log.info("User with ID {} added to group chat successfully. Updated chat ID: {}", userId, chatId);
-            return chatRepository.save(chat);
+            return chat;
         } catch (UserException e) {
             log.error("Error adding user to group chat", e);
             // could be bad practice? idc atm
@@ -213,7 +336,7 @@ public class ChatServiceImpl implements ChatService {
             Chat chat = findChatById(chatId);
             User user = userService.findUserById(reqUserId);
 
-            if (chat.getUsers().stream().noneMatch(u -> u.getId().equals(user.getId())) || !chat.getIsGroup()) {
+            if (!chat.getIsGroup() || !chatMembershipService.isMember(chatId, user.getId())) {
                 log.warn("User with ID {} doesn't have permission to rename group chat with ID: {}", reqUserId, chatId);
                 throw new UserException("You don't have permission to rename this group chat");
             } else {
@@ -242,15 +365,17 @@ public class ChatServiceImpl implements ChatService {
             User reqUser = userService.findUserById(reqUserId);
 
             // Horrible way to write this, will fix later
-            if (!user.getId().equals(reqUser.getId()) && chat.getAdmins().stream().anyMatch(u -> u.getId().equals(reqUserId)) && chat.getIsGroup()) {
+            if (!user.getId().equals(reqUser.getId()) && chat.getIsGroup() && chatMembershipService.isAdmin(chatId, reqUserId)) {
                 log.info("User with ID {} removed from group chat successfully. Updated chat ID: {}", reqUserId, chatId);
-                chat.getUsers().remove(reqUser);
+                chatRepository.removeMember(chatId, reqUser.getId());
+                chatInboxService.removeMember(chatId, reqUser.getId());
+                chatMembershipService.evict(chatId);
             } else {
                 log.warn("User with ID {} doesn't have permission to remove user with ID {} from group chat with ID: {}", reqUserId, userId, chatId);
                 throw new UserException("You don't have permission to remove this user from the group chat");
             }
 
-            return chatRepository.save(chat);
+            return chat;
         } catch (Exception e) {
             log.error("Error removing user with ID {} from group chat with ID: {} by user with ID: {}", userId, chatId, reqUserId, e);
             throw new UserException("Error removing user from group chat" + e);
@@ -263,31 +388,46 @@ public class ChatServiceImpl implements ChatService {
         try {
             log.info("Getting chat summaries for user with ID: {}", userId);
 
-            Pageable pageable = PageRequest.of(page, size);
-            Page<Chat> userChatsPage = chatRepository.findChatsByUserId(userId, pageable);
-            List<Chat> userChats = userChatsPage.getContent();
+            // the inbox is already ordered by last activity, so this is one index range scan plus a lookup of the page's chats
+            List<ChatInbox> inbox = chatInboxService.getInbox(userId, page, size);
+            if (inbox.isEmpty()) {
+                log.info("No chat summaries found for user with ID: {}", userId);
+                return List.of();
+            }
+
+            List<UUID> chatIds = inbox.stream().map(ChatInbox::getChatId).toList();
+            Map<UUID, Chat> chatsById = chatRepository.findAllWithCreatorByIdIn(chatIds)
+                    .stream()
+                    .collect(Collectors.toMap(Chat::getId, Function.identity()));
+            Map<UUID, DirectChatPeerDTO> peersByChatId = chatRepository.findDirectChatPeers(chatIds, userId)
+                    .stream()
+                    .collect(Collectors.toMap(DirectChatPeerDTO::chatId, Function.identity(), (first, second) -> first));
 
             List<ChatSummaryDTO> chatSummaries = new ArrayList<>();
-            for (Chat chat : userChats) {
+            for (ChatInbox entry : inbox) {
+                Chat chat = chatsById.get(entry.getChatId());
+                if (chat == null) {
+                    // chat was deleted after the inbox page was read
+                    continue;
+                }
+
                 String[] chatInfo = { chat.getChatName(), chat.getChatImage() };
 
-                if (!chat.getIsGroup()) {
-                    // Use a wrapper object or array to hold mutable state
-                    final String[] chatNameImage = { chat.getChatName(), chat.getChatImage() };
-
-                    chat.getUsers().stream()
-                            .filter(user -> !user.getId().equals(userId))
-                            .findFirst()
-                            .ifPresent(otherUser -> {
-                                chatNameImage[0] = otherUser.getUsername();
-                                chatNameImage[1] = otherUser.getProfilePicture();
-                            });
-                    chatInfo[0] = chatNameImage[0];
-                    chatInfo[1] = chatNameImage[1];
+                DirectChatPeerDTO peer = peersByChatId.get(chat.getId());
+                if (!chat.getIsGroup() && peer != null) {
+                    chatInfo[0] = peer.username();
+                    chatInfo[1] = peer.profilePicture();
                 }
-                Messages lastMessage = null;
-                if (!chat.getMessages().isEmpty()) {
-                    lastMessage = chat.getMessages().getLast();
+
+                MessageDTO lastMessage = null;
+                if (entry.getLastMessageId() != null) {
+                    lastMessage = MessageDTO.builder()
+                            .id(entry.getLastMessageId())
+                            .content(entry.getLastMessagePreview())
+                            .timeStamp(entry.getLastActivity())
+                            .userId(entry.getLastSenderId())
+                            .chatId(entry.getChatId())
+                            .build();
                 }
 
                 ChatSummaryDTO summary = ChatSummaryDTO.builder()
@@ -295,7 +435,9 @@ public class ChatServiceImpl implements ChatService {
                         .chatName(chatInfo[0])
                         .chatImage(chatInfo[1])
                         .createdBy(chat.getCreatedBy().getId())
-                        .lastMessage(lastMessage != null ? chatDTOMapper.toMessageDto(lastMessage) : null)
+                        .lastMessage(lastMessage)
+                        .lastActivity(entry.getLastActivity())
+                        .unreadCount(entry.getUnreadCount())
                         .build();
 
                 chatSummaries.add(summary);
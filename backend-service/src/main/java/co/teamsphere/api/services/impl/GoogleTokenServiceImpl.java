@@ -0,0 +1,85 @@
+package co.teamsphere.api.services.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+
+import co.teamsphere.api.config.GoogleSigningKeys;
+import co.teamsphere.api.config.properties.GoogleAuthProperties;
+import co.teamsphere.api.services.GoogleTokenService;
+import co.teamsphere.api.utils.GoogleUserInfo;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class GoogleTokenServiceImpl implements GoogleTokenService {
+    private final GoogleAuthProperties googleAuthProperties;
+
+    private final JwtParser parser;
+
+    private final Timer verifyTimer;
+
+    public GoogleTokenServiceImpl(GoogleSigningKeys googleSigningKeys,
+                                  GoogleAuthProperties googleAuthProperties,
+                                  MeterRegistry meterRegistry) {
+        this.googleAuthProperties = googleAuthProperties;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(googleSigningKeys)
+                .setAllowedClockSkewSeconds(googleAuthProperties.getClockSkew().toSeconds())
+                .build();
+        this.verifyTimer = Timer.builder("auth.google.verify")
+                .description("Time spent verifying Google ID tokens")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public GoogleUserInfo verifyIdToken(String idToken) throws BadCredentialsException {
+        if (idToken == null || idToken.isBlank()) {
+            throw new BadCredentialsException("Missing Google ID token");
+        }
+
+        long start = System.nanoTime();
+        try {
+            // signature, exp and nbf are checked by jjwt against the cached keys
+            Claims claims = parser.parseClaimsJws(idToken).getBody();
+
+            if (claims.getExpiration() == null) {
+                throw new JwtException("Google ID token has no exp");
+            }
+            if (!googleAuthProperties.getIssuers().contains(claims.getIssuer())) {
+                throw new JwtException("Unexpected issuer: " + claims.getIssuer());
+            }
+            if (!googleAuthProperties.getClientIds().contains(claims.getAudience())) {
+                throw new JwtException("Token was issued to another client: " + claims.getAudience());
+            }
+
+            String email = claims.get("email", String.class);
+            // older tokens carry email_verified as a string
+            if (email == null || !"true".equals(String.valueOf(claims.get("email_verified")))) {
+                throw new JwtException("Google account email is missing or not verified");
+            }
+
+            GoogleUserInfo googleUserInfo = new GoogleUserInfo();
+            googleUserInfo.setId(claims.getSubject());
+            googleUserInfo.setEmail(email);
+            googleUserInfo.setVerified_email(true);
+            googleUserInfo.setName(claims.get("name", String.class));
+            googleUserInfo.setGiven_name(claims.get("given_name", String.class));
+            googleUserInfo.setFamily_name(claims.get("family_name", String.class));
+            googleUserInfo.setPicture(claims.get("picture", String.class));
+            return googleUserInfo;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.warn("Rejected Google ID token: {}", e.getMessage());
+            throw new BadCredentialsException("Invalid Google ID token", e);
+        } finally {
+            verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
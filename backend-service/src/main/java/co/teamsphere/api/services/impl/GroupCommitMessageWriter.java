@@ -0,0 +1,232 @@
+package co.teamsphere.api.services.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+
+import co.teamsphere.api.config.properties.MessageWriterProperties;
+import co.teamsphere.api.models.Messages;
+import co.teamsphere.api.repository.MessageRepository;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
+import co.teamsphere.api.utils.UuidV7;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Group commit for message inserts. Senders hand their message to a bounded queue and block until it is
+ * durable. A single writer thread drains the queue into batches, cut at {@code maxBatchSize} messages or after
+ * {@code linger}, whichever comes first, and inserts each batch in one transaction per message shard. Under load
+ * that turns hundreds of commits into a handful. A lone message costs at most {@code linger} of extra latency.
+ * Only active with {@code messages.group-commit.enabled=true}.
+ */
+@Component
+@Slf4j
+public class GroupCommitMessageWriter {
+    private final MessageRepository messageRepository;
+
+    private final MessageShardResolver messageShardResolver;
+
+    private final MessageWriterProperties properties;
+
+    private final BlockingQueue<PendingMessage> queue;
+
+    private final DistributionSummary batchFill;
+
+    private final Timer commitTimer;
+
+    private final Timer ackTimer;
+
+    private final Counter rejectedCounter;
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    public GroupCommitMessageWriter(MessageRepository messageRepository,
+                                    MessageShardResolver messageShardResolver,
+                                    MessageWriterProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.messageShardResolver = messageShardResolver;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+        this.batchFill = DistributionSummary.builder("messages.group_commit.batch_size")
+                .description("Messages written per group commit")
+                .baseUnit("messages")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("messages.group_commit.commit")
+                .description("Time to insert and commit one batch of messages")
+                .register(meterRegistry);
+        this.ackTimer = Timer.builder("messages.group_commit.ack")
+                .description("Time a sender waited from enqueue until its batch committed")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("messages.group_commit.rejected")
+                .description("Messages turned away because the write queue was full")
+                .register(meterRegistry);
+        Gauge.builder("messages.group_commit.queue.depth", queue, BlockingQueue::size)
+                .description("Messages waiting for the next group commit")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+        running = true;
+        // platform thread: it spends its life in JDBC calls and must not pin a carrier for the virtual threads
+        writerThread = new Thread(this::run, "message-group-commit");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Group commit for messages enabled, maxBatchSize={}, linger={}", properties.getMaxBatchSize(), properties.getLinger());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(properties.getAckTimeout().toMillis());
+    }
+
+    /**
+     * Queues the message and returns once the batch holding it has committed. Assigns the id if the message has
+     * none yet, the insert never reads anything back. {@code afterCommit} runs on the writer thread right after the
+     * commit, also when the sender already gave up waiting, so side effects follow what is actually in the database.
+     */
+    public Messages write(Messages message, Consumer<Messages> afterCommit) {
+        if (message.getId() == null) {
+            message.setId(UuidV7.generate());
+        }
+
+        PendingMessage pending = new PendingMessage(message, afterCommit, System.nanoTime(), new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            rejectedCounter.increment();
+            throw new IllegalStateException("Message write queue is full, please retry shortly");
+        }
+
+        try {
+            pending.committed().get(properties.getAckTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            return message;
+        } catch (TimeoutException e) {
+            if (queue.remove(pending)) {
+                throw new IllegalStateException("Timed out waiting to write message " + message.getId() + ", it was not written");
+            }
+            // already taken into a batch: it may still commit, afterCommit then runs without us
+            throw new IllegalStateException("Timed out waiting for message " + message.getId() + " to commit");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for message " + message.getId() + " to commit");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error writing message " + message.getId(), e.getCause());
+        }
+    }
+
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(properties.getMaxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + properties.getLinger().toNanos();
+                while (batch.size() < properties.getMaxBatchSize()) {
+                    // whatever is already queued goes in without waiting, linger only applies to an empty queue
+                    if (queue.drainTo(batch, properties.getMaxBatchSize() - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop() interrupts to cut the linger short; what was taken is written below and the loop drains the rest
+                log.debug("Group commit writer interrupted, running={}", running);
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    void commit(List<PendingMessage> batch) {
+        // the shards commit independently, a batch spanning several of them becomes one commit on each
+        Map<MessageShard, List<PendingMessage>> byShard = new LinkedHashMap<>();
+        for (PendingMessage pending : batch) {
+            try {
+                byShard.computeIfAbsent(messageShardResolver.forChat(pending.message().getChat()), shard -> new ArrayList<>())
+                        .add(pending);
+            } catch (Exception e) {
+                pending.committed().completeExceptionally(e);
+            }
+        }
+        byShard.forEach(this::commit);
+    }
+
+    private void commit(MessageShard shard, List<PendingMessage> batch) {
+        List<Messages> messages = batch.stream().map(PendingMessage::message).toList();
+        long startedAt = System.nanoTime();
+        try {
+            messageRepository.insertMessages(shard, messages);
+            commitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            batchFill.record(batch.size());
+            batch.forEach(this::acknowledge);
+        } catch (Exception e) {
+            log.warn("Group commit of {} messages on shard {} failed, retrying them one by one", batch.size(), shard.name(), e);
+            // one bad row (e.g. a chat deleted a moment ago) must not take its batch-mates down with it
+            for (PendingMessage pending : batch) {
+                try {
+                    messageRepository.insertMessages(shard, List.of(pending.message()));
+                    batchFill.record(1);
+                    acknowledge(pending);
+                } catch (Exception single) {
+                    pending.committed().completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private void acknowledge(PendingMessage pending) {
+        try {
+            pending.afterCommit().accept(pending.message());
+        } catch (Exception e) {
+            // the message is stored either way, don't report it as failed to the sender
+            log.warn("After-commit action for message {} failed", pending.message().getId(), e);
+        }
+        ackTimer.record(System.nanoTime() - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+        pending.committed().complete(null);
+    }
+
+    record PendingMessage(Messages message, Consumer<Messages> afterCommit, long enqueuedAt, CompletableFuture<Void> committed) {
+    }
+}
@@ -0,0 +1,127 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.properties.LoginThrottleProperties;
+import co.teamsphere.api.exception.LoginThrottledException;
+import co.teamsphere.api.services.LoginAttemptService;
+import co.teamsphere.api.utils.SlidingWindowCounter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts failed logins per email and per client ip over a sliding window so that credential-stuffing
+ * traffic is turned away before it reaches the (deliberately expensive) Argon2 check.
+ */
+@Service
+@Slf4j
+public class LoginAttemptServiceImpl implements LoginAttemptService {
+
+    private final LoginThrottleProperties loginThrottleProperties;
+
+    private final Clock clock;
+
+    private final Cache<String, SlidingWindowCounter> failuresByEmail;
+
+    private final Cache<String, SlidingWindowCounter> failuresByIp;
+
+    private final Counter failureCounter;
+
+    private final Counter throttledByEmailCounter;
+
+    private final Counter throttledByIpCounter;
+
+    @Autowired
+    public LoginAttemptServiceImpl(LoginThrottleProperties loginThrottleProperties, MeterRegistry meterRegistry) {
+        this(loginThrottleProperties, meterRegistry, Clock.systemUTC());
+    }
+
+    LoginAttemptServiceImpl(LoginThrottleProperties loginThrottleProperties, MeterRegistry meterRegistry, Clock clock) {
+        this.loginThrottleProperties = loginThrottleProperties;
+        this.clock = clock;
+        this.failuresByEmail = newCounterCache();
+        this.failuresByIp = newCounterCache();
+        CaffeineCacheMetrics.monitor(meterRegistry, failuresByEmail, "loginFailuresByEmail");
+        CaffeineCacheMetrics.monitor(meterRegistry, failuresByIp, "loginFailuresByIp");
+
+        this.failureCounter = Counter.builder("auth.login.failures")
+                .description("Failed password logins")
+                .register(meterRegistry);
+        this.throttledByEmailCounter = Counter.builder("auth.login.throttled")
+                .description("Login attempts rejected before hashing")
+                .tag("scope", "email")
+                .register(meterRegistry);
+        this.throttledByIpCounter = Counter.builder("auth.login.throttled")
+                .description("Login attempts rejected before hashing")
+                .tag("scope", "ip")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void checkAllowed(String email, String clientIp) throws LoginThrottledException {
+        long now = clock.millis();
+
+        if (clientIp != null) {
+            SlidingWindowCounter ipFailures = failuresByIp.getIfPresent(clientIp);
+            if (ipFailures != null && ipFailures.count(now) >= loginThrottleProperties.getMaxFailuresPerIp()) {
+                throttledByIpCounter.increment();
+                log.warn("Throttling login from ip={} after too many failed attempts", clientIp);
+                throw throttled(ipFailures, loginThrottleProperties.getMaxFailuresPerIp(), now);
+            }
+        }
+
+        SlidingWindowCounter emailFailures = failuresByEmail.getIfPresent(normalize(email));
+        if (emailFailures != null && emailFailures.count(now) >= loginThrottleProperties.getMaxFailuresPerEmail()) {
+            throttledByEmailCounter.increment();
+            log.warn("Throttling login for email={} after too many failed attempts", email);
+            throw throttled(emailFailures, loginThrottleProperties.getMaxFailuresPerEmail(), now);
+        }
+    }
+
+    @Override
+    public void recordFailure(String email, String clientIp) {
+        long now = clock.millis();
+        failureCounter.increment();
+
+        failuresByEmail.get(normalize(email), key -> newCounter()).increment(now);
+        if (clientIp != null) {
+            failuresByIp.get(clientIp, key -> newCounter()).increment(now);
+        }
+    }
+
+    @Override
+    public void recordSuccess(String email) {
+        // the ip window is left alone: one good account does not vouch for everything else coming from that address
+        failuresByEmail.invalidate(normalize(email));
+    }
+
+    private LoginThrottledException throttled(SlidingWindowCounter failures, int limit, long now) {
+        long retryAfterMillis = failures.millisUntilBelow(limit, now);
+        long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999));
+        return new LoginThrottledException("Too many failed login attempts, please try again later.", retryAfterSeconds);
+    }
+
+    private Cache<String, SlidingWindowCounter> newCounterCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(loginThrottleProperties.getMaxTrackedKeys())
+                .expireAfterAccess(loginThrottleProperties.getWindow())
+                .recordStats()
+                .build();
+    }
+
+    private SlidingWindowCounter newCounter() {
+        return new SlidingWindowCounter(loginThrottleProperties.getBuckets(), loginThrottleProperties.getWindow().toMillis());
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,151 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.config.SchedulingConfig;
+import co.teamsphere.api.config.properties.MessageArchiveProperties;
+import co.teamsphere.api.repository.MessageArchiveRepository;
+import co.teamsphere.api.repository.MessageRepository;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
+import co.teamsphere.api.services.MessageArchiveService;
+import co.teamsphere.api.utils.MessageCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Moves old messages from MySQL into {@link MessageArchiveRepository}, a block of rows at a time: read the
+ * oldest rows of a chat, append them to its segment, then delete them. The delete only goes up to what the
+ * archive's watermark says is on disk, so a crash between append and delete just means the next run deletes
+ * rows it already archived, and a crash mid-append leaves nothing the readers can see.
+ * <p>
+ * The watermark is always older than {@code now - archiveAfter}, so a message being sent right now can't land
+ * behind it and the hot and cold tiers never overlap.
+ * <p>
+ * Works through every message shard, each chat is read from and deleted on the shard it is placed on.
+ */
+@Service
+@Slf4j
+public class MessageArchiveServiceImpl implements MessageArchiveService {
+    private static final String LOCK_FILE = "archiver.lock";
+
+    private final MessageRepository messageRepository;
+
+    private final MessageArchiveRepository messageArchiveRepository;
+
+    private final MessageShardResolver messageShardResolver;
+
+    private final MessageArchiveProperties properties;
+
+    private final Counter archivedCounter;
+
+    private final Timer runTimer;
+
+    public MessageArchiveServiceImpl(MessageRepository messageRepository,
+                                     MessageArchiveRepository messageArchiveRepository,
+                                     MessageShardResolver messageShardResolver,
+                                     MessageArchiveProperties properties,
+                                     MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.messageArchiveRepository = messageArchiveRepository;
+        this.messageShardResolver = messageShardResolver;
+        this.properties = properties;
+
+        this.archivedCounter = Counter.builder("messages.archive.archived")
+                .description("Messages moved from the messages table into the archive")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("messages.archive.run")
+                .description("Time taken by one archiver run")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${messages.archive.interval-ms:3600000}", scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public int archiveOldMessages() {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+
+        Path lockPath = Path.of(properties.getDirectory(), LOCK_FILE);
+        try {
+            Files.createDirectories(lockPath.getParent());
+            // only one node archives at a time, the others skip this round
+            try (FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = lockChannel.tryLock()) {
+                if (lock == null) {
+                    log.debug("Another node is archiving messages, skipping this run");
+                    return 0;
+                }
+                return runTimer.record(this::archiveAll);
+            }
+        } catch (Exception e) {
+            log.error("Error archiving old messages", e);
+            return 0;
+        }
+    }
+
+    private int archiveAll() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getArchiveAfter());
+        List<UUID> chatIds = messageRepository.findChatIdsWithMessagesBefore(cutoff, properties.getMaxChatsPerRun());
+
+        int archived = 0;
+        for (UUID chatId : chatIds) {
+            try {
+                archived += archiveChat(chatId, cutoff);
+            } catch (Exception e) {
+                // leave the chat for the next run, whatever was appended is covered by the watermark
+                log.error("Error archiving messages for chat with ID: {}", chatId, e);
+            }
+        }
+
+        if (archived > 0) {
+            log.info("Archived {} messages across {} chats", archived, chatIds.size());
+        }
+        return archived;
+    }
+
+    int archiveChat(UUID chatId, LocalDateTime cutoff) {
+        MessageShard shard = messageShardResolver.forChat(chatId);
+
+        // rows a previous run appended but never got to delete
+        messageArchiveRepository.watermark(chatId).ifPresent(watermark -> deleteUpTo(shard, chatId, watermark));
+
+        int archived = 0;
+        while (archived < properties.getMaxMessagesPerChatPerRun()) {
+            int batch = Math.min(properties.getBlockSize() * 16, properties.getMaxMessagesPerChatPerRun() - archived);
+            List<MessageDTO> oldest = messageRepository.findOldestBefore(shard, chatId, cutoff, batch);
+            if (oldest.isEmpty()) {
+                break;
+            }
+
+            messageArchiveRepository.append(chatId, oldest);
+            Optional<MessageCursor> watermark = messageArchiveRepository.watermark(chatId);
+            watermark.ifPresent(w -> deleteUpTo(shard, chatId, w));
+
+            archived += oldest.size();
+            archivedCounter.increment(oldest.size());
+            if (oldest.size() < batch) {
+                break;
+            }
+        }
+        return archived;
+    }
+
+    private void deleteUpTo(MessageShard shard, UUID chatId, MessageCursor watermark) {
+        int deleted = messageRepository.deleteUpTo(shard, chatId, watermark);
+        log.debug("Deleted {} archived messages from chat with ID: {}", deleted, chatId);
+    }
+}
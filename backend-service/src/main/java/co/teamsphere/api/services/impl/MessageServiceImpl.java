@@ -1,44 +1,86 @@
 package co.teamsphere.api.services.impl;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.DTO.MessagePageDTO;
+import co.teamsphere.api.config.ReadYourWritesTracker;
 import co.teamsphere.api.exception.ChatException;
 import co.teamsphere.api.exception.MessageException;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.Chat;
 import co.teamsphere.api.models.Messages;
 import co.teamsphere.api.models.User;
+import co.teamsphere.api.repository.MessageArchiveRepository;
 import co.teamsphere.api.repository.MessageRepository;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
 import co.teamsphere.api.request.SendMessageRequest;
+import co.teamsphere.api.services.ChatInboxService;
+import co.teamsphere.api.services.ChatMembershipService;
 import co.teamsphere.api.services.ChatService;
 import co.teamsphere.api.services.MessageService;
 import co.teamsphere.api.services.UserService;
+import co.teamsphere.api.utils.MessageCursor;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
 public class MessageServiceImpl implements MessageService {
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final MessageRepository messageRepo;
 
+    private final MessageShardResolver messageShardResolver;
+
     private final UserService userService;
 
     private final ChatService chatService;
 
-    public MessageServiceImpl(MessageRepository messageRepo, UserService userService, ChatService chatService) {
+    private final ChatInboxService chatInboxService;
+
+    private final ChatMembershipService chatMembershipService;
+
+    private final GroupCommitMessageWriter groupCommitMessageWriter;
+
+    private final MessageArchiveRepository messageArchiveRepository;
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    public MessageServiceImpl(MessageRepository messageRepo,
+                              MessageShardResolver messageShardResolver,
+                              UserService userService,
+                              ChatService chatService,
+                              ChatInboxService chatInboxService,
+                              ChatMembershipService chatMembershipService,
+                              GroupCommitMessageWriter groupCommitMessageWriter,
+                              MessageArchiveRepository messageArchiveRepository,
+                              ReadYourWritesTracker readYourWritesTracker) {
         this.messageRepo = messageRepo;
+        this.messageShardResolver = messageShardResolver;
         this.userService = userService;
         this.chatService = chatService;
+        this.chatInboxService = chatInboxService;
+        this.chatMembershipService = chatMembershipService;
+        this.groupCommitMessageWriter = groupCommitMessageWriter;
+        this.messageArchiveRepository = messageArchiveRepository;
+        this.readYourWritesTracker = readYourWritesTracker;
     }
 
+    // no surrounding transaction on purpose: the lookups and the insert each run in their own, and with group
+    // commit on a sender waiting for its batch must not hold a pooled connection the whole time
     @Override
-    @Transactional
     public Messages sendMessage(SendMessageRequest req) throws UserException, ChatException {
         log.info("Attempting to send a message");
 
@@ -49,7 +91,7 @@ public class MessageServiceImpl implements MessageService {
             Chat chat = chatService.findChatById(req.getChatId());
             log.info("Found chat for sending message: {}", chat);
 
-            if (chat.getUsers().stream().noneMatch(u -> u.getId().equals(user.getId()))) {
+            if (!chatMembershipService.isMember(chat.getId(), user.getId())) {
                 log.error("User {} is not part of chat {}", user.getId(), chat.getId());
                 throw new UserException("User is not part of the chat");
             }
@@ -64,7 +106,19 @@ public class MessageServiceImpl implements MessageService {
 
             log.info("Creating and saving the message: {}", messages);
 
-            return messageRepo.save(messages);
+            Messages savedMessage;
+            if (groupCommitMessageWriter.isEnabled()) {
+                // the writer records it once its batch commits, even if we time out waiting for that
+                savedMessage = groupCommitMessageWriter.write(messages, chatInboxService::recordMessage);
+            } else {
+                savedMessage = messageRepo.save(messageShardResolver.forChat(chat), messages);
+                chatInboxService.recordMessage(savedMessage);
+            }
+            // group commit writes on another thread and STOMP sends carry no security context, so the routing
+            // data source can't see this write by itself; keep the sender's next reads on the primary
+            readYourWritesTracker.recordWrite(user.getId());
+
+            return savedMessage;
         } catch (UserException | ChatException e) {
             log.error("Error sending message: {}", e.getMessage());
             throw e;
@@ -80,15 +134,16 @@ public class MessageServiceImpl implements MessageService {
         log.info("Attempting to delete message with ID: {}", messageId);
 
         try {
-            Messages messages = messageRepo.findById(messageId).orElseThrow(() -> new MessageException("Message not found with ID: " + messageId));
-            log.info("Found message for deletion: {}", messages);
+            MessageDTO message = messageRepo.findById(messageId).orElseThrow(() -> new MessageException("Message not found with ID: " + messageId));
+            log.info("Found message for deletion: {}", message);
 
-            if (!messages.getUsername().getId().equals(reqUserId) || (messages.getChat().getIsGroup() && messages.getChat().getAdmins().stream().noneMatch(u -> u.getId().equals(reqUserId)))) {
+            Chat chat = chatService.findChatById(message.getChatId());
+            if (!message.getUserId().equals(reqUserId) || (chat.getIsGroup() && !chatMembershipService.isAdmin(chat.getId(), reqUserId))) {
                 log.error("User {} is not part of the chat", reqUserId);
                 throw new MessageException("User is not part of the chat");
             }
 
-            messageRepo.deleteById(messages.getId());
+            messageRepo.deleteById(messageShardResolver.forChat(chat), chat.getId(), message.getId());
 
             log.info("Message deleted successfully");
         } catch (MessageException e) {
@@ -102,21 +157,70 @@ public class MessageServiceImpl implements MessageService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<Messages> getChatsMessages(UUID chatId, UUID reqUserId) throws ChatException {
+    public MessagePageDTO getChatsMessages(UUID chatId, UUID reqUserId, String before, String after, int limit) throws ChatException {
         log.info("Attempting to retrieve messages for chat with ID: {}", chatId);
         try {
             Chat chat = chatService.findChatById(chatId);
             log.info("Found chat for retrieving messages: {}", chat);
 
-            if (chat.getUsers().stream().noneMatch(u -> u.getId().equals(reqUserId))) {
+            if (!chatMembershipService.isMember(chat.getId(), reqUserId)) {
                 log.error("User {} is not part of chat {}", reqUserId, chatId);
                 throw new ChatException("User is not part of the chat");
             }
 
-            List<Messages> messages = messageRepo.findMessageByChatId(chatId);
-            log.info("Retrieved {} messages for chat with ID: {}", messages.size(), chatId);
+            if (before != null && after != null) {
+                log.warn("Both before and after cursors were passed in for chat with ID: {}", chatId);
+                throw new ChatException("Only one of before or after can be used at a time");
+            }
+
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            // every query below stays on the one shard holding this chat
+            MessageShard shard = messageShardResolver.forChat(chat);
+
+            // anything older than the archive watermark has moved out of the messages table, so a page that runs
+            // out of rows continues in the archive (going back) or starts there (going forward from an old cursor)
+            List<MessageDTO> messages;
+            if (after != null) {
+                MessageCursor cursor = parseCursor(after);
+                // the table is read before the archive: the archiver appends before it deletes, so rows it moves in
+                // between turn up in both reads (and are dropped from the table's) instead of in neither
+                List<MessageDTO> recent = messageRepo.findByChatIdAfter(shard, chatId, cursor, pageSize + 1);
+                messages = new ArrayList<>(messageArchiveRepository.findAfter(chatId, cursor, pageSize + 1));
+                Set<UUID> archivedIds = messages.stream().map(MessageDTO::getId).collect(Collectors.toSet());
+                // everything still in the table is newer than everything archived
+                recent.stream().filter(message -> !archivedIds.contains(message.getId())).forEach(messages::add);
+            } else {
+                MessageCursor cursor = before != null ? parseCursor(before) : null;
+                // fetch one extra row so we know if there is anything past this page
+                messages = new ArrayList<>(cursor != null
+                        ? messageRepo.findByChatIdBefore(shard, chatId, cursor, pageSize + 1)
+                        : messageRepo.findLatestByChatId(shard, chatId, pageSize + 1));
+                if (messages.size() <= pageSize) {
+                    MessageCursor from = messages.isEmpty() ? cursor : MessageCursor.of(messages.getLast());
+                    messages.addAll(messageArchiveRepository.findBefore(chatId, from, pageSize + 1 - messages.size()));
+                }
+            }
+
+            boolean hasMore = messages.size() > pageSize;
+            List<MessageDTO> page = new ArrayList<>(hasMore ? messages.subList(0, pageSize) : messages);
+            if (after == null) {
+                // backwards scans come out newest first, flip them so pages always read oldest first
+                Collections.reverse(page);
+            }
 
-            return messages;
+            boolean reachedNewest = after == null ? before == null : !hasMore;
+            if (reachedNewest) {
+                chatInboxService.markRead(chatId, reqUserId);
+            }
+
+            log.info("Retrieved {} messages for chat with ID: {}", page.size(), chatId);
+
+            return MessagePageDTO.builder()
+                    .messages(page)
+                    .beforeCursor(page.isEmpty() ? null : MessageCursor.of(page.getFirst()).encode())
+                    .afterCursor(page.isEmpty() ? null : MessageCursor.of(page.getLast()).encode())
+                    .hasMore(hasMore)
+                    .build();
         } catch (ChatException e) {
             log.error("Error retrieving messages: {}", e.getMessage());
             throw e;
@@ -128,16 +232,16 @@ public class MessageServiceImpl implements MessageService {
 
     @Override
     @Transactional(readOnly = true)
-    public Messages findMessageById(UUID messageId) throws MessageException {
+    public MessageDTO findMessageById(UUID messageId) throws MessageException {
         log.info("Attempting to find message by ID: {}", messageId);
 
         try {
-            Optional<Messages> optionalMessage = messageRepo.findById(messageId);
+            Optional<MessageDTO> optionalMessage = messageRepo.findById(messageId);
 
             if (optionalMessage.isPresent()) {
-                Messages messages = optionalMessage.get();
-                log.info("Found message for ID {}: {}", messageId, messages);
-                return messages;
+                MessageDTO message = optionalMessage.get();
+                log.info("Found message for ID {}: {}", messageId, message);
+                return message;
             }
 
             log.error("Message with ID {} not found. Unable to retrieve.", messageId);
@@ -151,4 +255,12 @@ public class MessageServiceImpl implements MessageService {
         }
     }
 
+    private MessageCursor parseCursor(String token) throws ChatException {
+        try {
+            return MessageCursor.decode(token);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid message cursor was passed in: {}", token);
+            throw new ChatException("Invalid message cursor");
+        }
+    }
 }
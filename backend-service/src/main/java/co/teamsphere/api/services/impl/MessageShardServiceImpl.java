@@ -0,0 +1,193 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.config.properties.MessageShardingProperties;
+import co.teamsphere.api.exception.ChatException;
+import co.teamsphere.api.repository.ChatRepository;
+import co.teamsphere.api.repository.MessageArchiveRepository;
+import co.teamsphere.api.repository.MessageRepository;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
+import co.teamsphere.api.services.ChatService;
+import co.teamsphere.api.services.MessageShardService;
+import co.teamsphere.api.utils.MessageCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Rebalances a chat between message shards while it stays in use:
+ * <ol>
+ *     <li>copy everything the source shard has for the chat to the target,</li>
+ *     <li>switch the chat's placement, new messages and history reads go to the target from here on,</li>
+ *     <li>wait {@code move-settle-time} for senders that looked the chat up just before the switch,</li>
+ *     <li>copy again whatever reached the source since shortly before the move started,</li>
+ *     <li>delete the chat's messages from the source.</li>
+ * </ol>
+ * Copies are INSERT IGNORE, so a move that failed before the switch can simply be run again. The switch records
+ * the source in {@code message_shard_moving_from} until it is empty, and a move that stops after the switch is
+ * finished by the next move of the chat, to any shard. Moves take a lock on the chat row with an expiry, so only
+ * one node moves a chat at a time. A message that lands on the source after the catch-up copy is lost; the
+ * settle time is what keeps that window empty.
+ */
+@Service
+@Slf4j
+public class MessageShardServiceImpl implements MessageShardService {
+    // messages carry the sending node's clock, the catch-up copy reaches back this far to cover skew between nodes
+    private static final Duration CATCH_UP_OVERLAP = Duration.ofMinutes(1);
+
+    private static final UUID LOWEST_ID = new UUID(0, 0);
+
+    private final ChatService chatService;
+
+    private final ChatRepository chatRepository;
+
+    private final MessageRepository messageRepository;
+
+    private final MessageArchiveRepository messageArchiveRepository;
+
+    private final MessageShardResolver messageShardResolver;
+
+    private final MessageShardingProperties properties;
+
+    private final Counter movedCounter;
+
+    public MessageShardServiceImpl(ChatService chatService,
+                                   ChatRepository chatRepository,
+                                   MessageRepository messageRepository,
+                                   MessageArchiveRepository messageArchiveRepository,
+                                   MessageShardResolver messageShardResolver,
+                                   MessageShardingProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.chatService = chatService;
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.messageArchiveRepository = messageArchiveRepository;
+        this.messageShardResolver = messageShardResolver;
+        this.properties = properties;
+
+        this.movedCounter = Counter.builder("messages.shard.moved")
+                .description("Messages moved from one message shard to another")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int moveChat(UUID chatId, String targetShard) throws ChatException {
+        log.info("Attempting to move messages of chat with ID: {} to shard {}", chatId, targetShard);
+
+        chatService.findChatById(chatId);
+        MessageShard target = shardNamed(targetShard);
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Instant lockedUntil = now.plus(properties.getMoveLockTimeout());
+        if (chatRepository.lockMessageShardMove(chatId, now, lockedUntil) == 0) {
+            throw new ChatException("Chat " + chatId + " is already being moved");
+        }
+        try {
+            // read from the primary rather than the chat loaded above, which may have come off a replica
+            MessageShard source = messageShardResolver.forChat(chatId);
+            int moved = 0;
+            String movingFrom = chatRepository.findMessageShardMovingFrom(chatId);
+            if (movingFrom != null) {
+                log.info("Finishing the earlier move of chat with ID: {} from shard {} to shard {}", chatId, movingFrom, source.name());
+                // everything the old shard still has, the earlier move may have stopped anywhere after the switch
+                moved = finish(chatId, shardNamed(movingFrom), source, null);
+            }
+            if (source.name().equals(target.name())) {
+                log.info("Chat with ID: {} is already on shard {}", chatId, target.name());
+                return moved;
+            }
+            return moved + move(chatId, source, target);
+        } finally {
+            unlock(chatId, lockedUntil);
+        }
+    }
+
+    private int move(UUID chatId, MessageShard source, MessageShard target) throws ChatException {
+        LocalDateTime startedAt = LocalDateTime.now();
+        try {
+            int copied = copy(chatId, source, target, null);
+            chatRepository.updateMessageShard(chatId, target.name(), source.name());
+            log.info("Copied {} messages of chat with ID: {} to shard {}, placement switched", copied, chatId, target.name());
+        } catch (Exception e) {
+            log.error("Error moving chat with ID: {} to shard {}, placement left on {}", chatId, target.name(), source.name(), e);
+            cleanUpCopy(chatId, target);
+            throw new ChatException("Error moving chat with ID: " + chatId + ". " + e.getMessage());
+        }
+
+        return finish(chatId, source, target, new MessageCursor(startedAt.minus(CATCH_UP_OVERLAP), LOWEST_ID));
+    }
+
+    private int finish(UUID chatId, MessageShard source, MessageShard target, MessageCursor catchUpFrom) throws ChatException {
+        try {
+            Thread.sleep(properties.getMoveSettleTime().toMillis());
+
+            copy(chatId, source, target, catchUpFrom);
+            int moved = messageRepository.deleteChat(source, chatId);
+            // the archiver may have archived rows on the source after they were copied, the target must not keep them
+            messageArchiveRepository.watermark(chatId).ifPresent(watermark -> messageRepository.deleteUpTo(target, chatId, watermark));
+            chatRepository.finishMessageShardMove(chatId);
+
+            movedCounter.increment(moved);
+            log.info("Moved {} messages of chat with ID: {} from shard {} to shard {}", moved, chatId, source.name(), target.name());
+            return moved;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted moving chat with ID: {}, its messages on shard {} still have to be copied and deleted, "
+                    + "moving it again finishes that", chatId, source.name());
+            throw new ChatException("Interrupted moving chat with ID: " + chatId);
+        } catch (Exception e) {
+            log.error("Error finishing the move of chat with ID: {}, its messages on shard {} still have to be copied and deleted, "
+                    + "moving it again finishes that", chatId, source.name(), e);
+            throw new ChatException("Error finishing the move of chat with ID: " + chatId + ". " + e.getMessage());
+        }
+    }
+
+    private int copy(UUID chatId, MessageShard source, MessageShard target, MessageCursor from) {
+        int copied = 0;
+        MessageCursor cursor = from;
+        while (true) {
+            List<MessageDTO> batch = messageRepository.findByChatIdAfter(source, chatId, cursor, properties.getMoveBatchSize());
+            if (batch.isEmpty()) {
+                return copied;
+            }
+            messageRepository.copyMessages(target, batch);
+            copied += batch.size();
+            cursor = MessageCursor.of(batch.getLast());
+        }
+    }
+
+    private MessageShard shardNamed(String name) throws ChatException {
+        try {
+            return messageShardResolver.byName(name);
+        } catch (IllegalArgumentException e) {
+            throw new ChatException(e.getMessage());
+        }
+    }
+
+    private void unlock(UUID chatId, Instant lockedUntil) {
+        try {
+            chatRepository.unlockMessageShardMove(chatId, lockedUntil);
+        } catch (Exception e) {
+            // the lock runs out on its own, moves of this chat are refused until then
+            log.warn("Error unlocking chat with ID: {} after its move, it stays locked until {}", chatId, lockedUntil, e);
+        }
+    }
+
+    private void cleanUpCopy(UUID chatId, MessageShard target) {
+        try {
+            messageRepository.deleteChat(target, chatId);
+        } catch (Exception e) {
+            // harmless leftovers, nothing routes to them and a rerun of the move copies over them
+            log.warn("Error removing the partial copy of chat with ID: {} from shard {}", chatId, target.name(), e);
+        }
+    }
+}
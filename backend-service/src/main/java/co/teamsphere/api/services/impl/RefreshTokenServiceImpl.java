@@ -1,30 +1,68 @@
 package co.teamsphere.api.services.impl;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import co.teamsphere.api.exception.RefreshTokenException;
+import co.teamsphere.api.DTO.RefreshTokenRotationDTO;
+import co.teamsphere.api.config.SchedulingConfig;
+import co.teamsphere.api.config.properties.RefreshTokenReaperProperties;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.RefreshToken;
 import co.teamsphere.api.models.User;
 import co.teamsphere.api.repository.RefreshTokenRepository;
 import co.teamsphere.api.repository.UserRepository;
 import co.teamsphere.api.services.RefreshTokenService;
+import co.teamsphere.api.utils.UuidBytes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
 public class RefreshTokenServiceImpl implements RefreshTokenService {
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserRepository userRepository;
-
-    public RefreshTokenServiceImpl(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository) {
+    private final TransactionTemplate transactionTemplate;
+    private final RefreshTokenReaperProperties reaperProperties;
+    private final Counter reapedCounter;
+    private final Timer reapTimer;
+
+    public RefreshTokenServiceImpl(RefreshTokenRepository refreshTokenRepository,
+                                   UserRepository userRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   RefreshTokenReaperProperties reaperProperties,
+                                   MeterRegistry meterRegistry) {
         this.refreshTokenRepository = refreshTokenRepository;
         this.userRepository = userRepository;
+        // each batch commits on its own so locks are released between batches
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reaperProperties = reaperProperties;
+        this.reapedCounter = Counter.builder("auth.refresh_token.reaped")
+                .description("Expired refresh tokens deleted by the background reaper")
+                .register(meterRegistry);
+        this.reapTimer = Timer.builder("auth.refresh_token.reap")
+                .description("Time spent per reaper run")
+                .register(meterRegistry);
     }
 
     @Override
@@ -36,29 +74,51 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
             throw new UserException("User not found with ID: " + email);
         }
 
-        return refreshTokenRepository.save(RefreshToken.builder()
-                .user(user.get())
-                .refreshToken(UUID.randomUUID().toString())
-                .expiredAt(Instant.now().plusSeconds(86400000))
-                .build()
-        );
-    }
+        // one row per user: a new login replaces whatever token the user had before
+        RefreshToken refreshToken = refreshTokenRepository.findByUserId(user.get().getId())
+                .orElseGet(() -> RefreshToken.builder().user(user.get()).build());
 
-    @Override
-    @Transactional(readOnly = true)
-    public Optional<RefreshToken> findRefreshToken(String refreshToken) {
-        return refreshTokenRepository.findByRefreshToken(refreshToken);
+        String rawToken = generateToken(user.get().getId());
+        refreshToken.setRefreshToken(hash(rawToken));
+        refreshToken.setExpiredAt(newExpiry());
+
+        RefreshToken saved = refreshTokenRepository.save(refreshToken);
+        saved.setRawToken(rawToken);
+        return saved;
     }
 
     @Override
     @Transactional
-    public RefreshToken verifyExpiration(RefreshToken token) throws RefreshTokenException {
-        if(token.getExpiredAt().compareTo(Instant.now())<0){
-            refreshTokenRepository.delete(token);
-            return null;
+    public Optional<RefreshTokenRotationDTO> rotateRefreshToken(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return Optional.empty();
+        }
+        // the owner travels in the token and is vouched for by the stored hash, so the update needs no lookup first
+        Optional<UUID> owner = parseOwner(refreshToken);
+        if (owner.isEmpty()) {
+            log.warn("Refresh token is malformed");
+            return Optional.empty();
         }
 
-        return token;
+        String newRawToken = generateToken(owner.get());
+        int rotated = refreshTokenRepository.rotate(owner.get(), hash(refreshToken), hash(newRawToken), newExpiry(), Instant.now());
+        if (rotated == 0) {
+            log.warn("Refresh token is unknown, expired or was already rotated");
+            return Optional.empty();
+        }
+
+        // the access token is issued by email; it stays out of the refresh token and comes from the user row
+        Optional<String> email = userRepository.findEmailById(owner.get());
+        if (email.isEmpty()) {
+            log.warn("Refresh token owner with ID: {} no longer exists", owner.get());
+            return Optional.empty();
+        }
+
+        return Optional.of(RefreshTokenRotationDTO.builder()
+                .userId(owner.get())
+                .email(email.get())
+                .refreshToken(newRawToken)
+                .build());
     }
 
     @Override
@@ -84,19 +144,82 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
     }
 
     @Override
-    @Transactional
-    public String replaceRefreshToken(String oldRefreshToken) {
+    @Scheduled(fixedDelayString = "${refresh-token.reaper.interval-ms:600000}",
+            initialDelayString = "${refresh-token.reaper.initial-delay-ms:60000}",
+            scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public int purgeExpiredTokens() {
+        if (!reaperProperties.isEnabled()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        int purged = 0;
         try {
-            Optional<RefreshToken> token = refreshTokenRepository.findByRefreshToken(oldRefreshToken);
-            if(token.isEmpty() && !token.get().getRefreshToken().equals(oldRefreshToken)){
-                log.error("Refresh token not found with ID: {}", oldRefreshToken);
-                throw new UserException("Refresh token not found with ID: " + oldRefreshToken);
+            for (int batch = 0; batch < reaperProperties.getMaxBatchesPerRun(); batch++) {
+                Integer deleted = transactionTemplate.execute(status -> {
+                    List<byte[]> ids = refreshTokenRepository.lockExpiredBatch(Instant.now(), reaperProperties.getBatchSize());
+                    return ids.isEmpty() ? 0 : refreshTokenRepository.deleteByRawIds(ids);
+                });
+                purged += deleted == null ? 0 : deleted;
+
+                // a short batch means we caught up, or another node holds the rest
+                if (deleted == null || deleted < reaperProperties.getBatchSize()) {
+                    break;
+                }
+                Thread.sleep(reaperProperties.getPauseBetweenBatchesMs());
             }
-            token.get().setRefreshToken(UUID.randomUUID().toString());
-            return refreshTokenRepository.save(token.get()).getRefreshToken();
-        } catch (UserException e) {
-            log.error("Error occurred while replacing refresh token for user with refreshToken: {}", oldRefreshToken);
-            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Refresh token reaper interrupted after purging {} tokens", purged);
+        } catch (Exception e) {
+            log.error("Error while purging expired refresh tokens, purged {} before failing", purged, e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            reapTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            reapedCounter.increment(purged);
+            if (purged > 0) {
+                log.info("Purged {} expired refresh tokens in {} ms", purged, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        }
+
+        return purged;
+    }
+
+    private static Instant newExpiry() {
+        return Instant.now().plusSeconds(86400000);
+    }
+
+    // "<owner>.<secret>": owner is the user's id, secret 256 random bits
+    private static String generateToken(UUID userId) {
+        byte[] secret = new byte[TOKEN_BYTES];
+        SECURE_RANDOM.nextBytes(secret);
+        return ENCODER.encodeToString(UuidBytes.toBytes(userId)) + "." + ENCODER.encodeToString(secret);
+    }
+
+    // tampering with the owner part changes the hash, so a parsed owner is only trusted once the update matched
+    private static Optional<UUID> parseOwner(String token) {
+        int separator = token.indexOf('.');
+        if (separator <= 0) {
+            return Optional.empty();
+        }
+        try {
+            byte[] owner = DECODER.decode(token.substring(0, separator));
+            if (owner.length != 16) {
+                return Optional.empty();
+            }
+            return Optional.of(UuidBytes.fromBytes(owner));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    // tokens hold 256 bits of randomness, so a plain (unsalted, fast) hash is enough to make a leaked table useless
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ENCODER.encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 }
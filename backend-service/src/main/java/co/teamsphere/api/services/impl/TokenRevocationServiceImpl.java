@@ -0,0 +1,89 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.TokenRevocationList;
+import co.teamsphere.api.config.properties.TokenRevocationProperties;
+import co.teamsphere.api.models.TokenRevocation;
+import co.teamsphere.api.repository.TokenRevocationRepository;
+import co.teamsphere.api.services.TokenRevocationService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@Slf4j
+public class TokenRevocationServiceImpl implements TokenRevocationService {
+    private static final Duration CLEANUP_INTERVAL = Duration.ofHours(1);
+
+    private final TokenRevocationRepository tokenRevocationRepository;
+
+    private final TokenRevocationList tokenRevocationList;
+
+    private final TokenRevocationProperties tokenRevocationProperties;
+
+    // updated_at high-water mark of the last poll, null until the first full load
+    private volatile Instant lastPolled;
+
+    private volatile Instant lastCleanup = Instant.EPOCH;
+
+    public TokenRevocationServiceImpl(TokenRevocationRepository tokenRevocationRepository,
+                                      TokenRevocationList tokenRevocationList,
+                                      TokenRevocationProperties tokenRevocationProperties,
+                                      MeterRegistry meterRegistry) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        this.tokenRevocationList = tokenRevocationList;
+        this.tokenRevocationProperties = tokenRevocationProperties;
+        Gauge.builder("jwt.revocation.entries", tokenRevocationList, TokenRevocationList::size)
+                .description("Users with an active access token revocation cutoff on this node")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Transactional
+    public void revokeAllTokens(UUID userId) {
+        Instant now = Instant.now();
+        // compared against the tokens' millisecond issued-at claim, so a login right after this keeps its token
+        // and everything issued before it is rejected, even within the same second
+        Instant revokedBefore = now.truncatedTo(ChronoUnit.MILLIS);
+
+        tokenRevocationRepository.upsert(userId, revokedBefore, now);
+        // this node enforces it right away, the others pick it up on their next poll
+        tokenRevocationList.revokeBefore(userId, revokedBefore.toEpochMilli());
+        log.info("Revoked all access tokens issued to user with ID: {}", userId);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${jwt.revocation.poll-interval-ms:5000}")
+    @Transactional
+    public void poll() {
+        Instant startedAt = Instant.now();
+
+        List<TokenRevocation> changed = lastPolled == null
+                // first run after startup: anything that can still match a live token
+                ? tokenRevocationRepository.findByRevokedBeforeAfter(startedAt.minus(tokenRevocationProperties.getRetention()))
+                : tokenRevocationRepository.findByUpdatedAtAfter(lastPolled.minus(tokenRevocationProperties.getPollOverlap()));
+
+        for (TokenRevocation revocation : changed) {
+            tokenRevocationList.revokeBefore(revocation.getUserId(), revocation.getRevokedBefore().toEpochMilli());
+        }
+        if (lastPolled == null) {
+            log.info("Loaded {} access token revocations", changed.size());
+        }
+        lastPolled = startedAt;
+
+        tokenRevocationList.prune(startedAt.minus(tokenRevocationProperties.getRetention()).toEpochMilli());
+        if (Duration.between(lastCleanup, startedAt).compareTo(CLEANUP_INTERVAL) >= 0) {
+            int deleted = tokenRevocationRepository.deleteExpired(startedAt.minus(tokenRevocationProperties.getRetention()));
+            lastCleanup = startedAt;
+            log.debug("Deleted {} expired access token revocations", deleted);
+        }
+    }
+}
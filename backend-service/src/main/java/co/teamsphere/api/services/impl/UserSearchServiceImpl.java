@@ -0,0 +1,108 @@
+package co.teamsphere.api.services.impl;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import co.teamsphere.api.config.properties.UserSearchProperties;
+import co.teamsphere.api.models.User;
+import co.teamsphere.api.repository.UserRepository;
+import co.teamsphere.api.services.UserSearchService;
+import co.teamsphere.api.utils.TrigramIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+@Service
+@Slf4j
+public class UserSearchServiceImpl implements UserSearchService {
+    private final UserRepository userRepository;
+
+    private final UserSearchProperties userSearchProperties;
+
+    private final TrigramIndex index;
+
+    private final Timer searchTimer;
+
+    // lastUpdatedDate high-water mark of the last refresh, null until the first full load
+    private volatile OffsetDateTime lastRefreshed;
+
+    public UserSearchServiceImpl(UserRepository userRepository,
+                                 UserSearchProperties userSearchProperties,
+                                 MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.userSearchProperties = userSearchProperties;
+        this.index = new TrigramIndex(userSearchProperties.getMaxPrefixCandidates());
+        this.searchTimer = Timer.builder("user.search")
+                .description("Time spent ranking user search results")
+                .register(meterRegistry);
+        Gauge.builder("user.search.index.size", index, TrigramIndex::size)
+                .description("Usernames held in this node's search index")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<UUID> search(String query, int page, int size, boolean fuzzy) {
+        int pageSize = size > 0 ? Math.min(size, userSearchProperties.getMaxPageSize()) : userSearchProperties.getDefaultPageSize();
+        int pageNumber = Math.max(page, 0);
+
+        if (lastRefreshed == null) {
+            // right after startup, before the first load finished
+            log.warn("User search index is not built yet, falling back to a database scan");
+            return userRepository.searchUserIds(query, PageRequest.of(pageNumber, pageSize));
+        }
+
+        return searchTimer.record(() -> index.search(
+                query, pageNumber * pageSize, pageSize, fuzzy, userSearchProperties.getMinSimilarity()).ids());
+    }
+
+    @Override
+    public void index(User user) {
+        if (user.getId() == null || user.getUsername() == null) {
+            return;
+        }
+        UUID id = user.getId();
+        String username = user.getUsername();
+        // a rolled back signup or rename must not leave a phantom entry behind, so only apply it once committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index.put(id, username);
+                }
+            });
+        } else {
+            index.put(id, username);
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${user.search.refresh-interval-ms:10000}")
+    @Transactional(readOnly = true)
+    public void refresh() {
+        OffsetDateTime startedAt = OffsetDateTime.now(ZoneOffset.UTC);
+
+        List<UserRepository.UsernameEntry> changed = lastRefreshed == null
+                ? userRepository.findAllUsernames()
+                : userRepository.findUsernamesUpdatedAfter(lastRefreshed.minus(userSearchProperties.getRefreshOverlap()));
+
+        for (UserRepository.UsernameEntry entry : changed) {
+            if (entry.getUsername() != null) {
+                index.put(entry.getId(), entry.getUsername());
+            }
+        }
+        if (lastRefreshed == null) {
+            log.info("Built user search index with {} users", index.size());
+        }
+        lastRefreshed = startedAt;
+    }
+}
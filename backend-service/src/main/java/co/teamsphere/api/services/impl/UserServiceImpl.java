@@ -3,16 +3,22 @@ package co.teamsphere.api.services.impl;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import co.teamsphere.api.DTO.UserDTO;
+import co.teamsphere.api.DTO.UserSummaryDTO;
 import co.teamsphere.api.config.JWTTokenProvider;
 import co.teamsphere.api.exception.ProfileImageException;
 import co.teamsphere.api.exception.UserException;
@@ -21,6 +27,7 @@ import co.teamsphere.api.repository.UserRepository;
 import co.teamsphere.api.request.UpdateUserRequest;
 import co.teamsphere.api.response.CloudflareApiResponse;
 import co.teamsphere.api.services.CloudflareApiService;
+import co.teamsphere.api.services.UserSearchService;
 import co.teamsphere.api.services.UserService;
 import lombok.extern.slf4j.Slf4j;
 
@@ -31,11 +38,13 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepo;
     private final JWTTokenProvider jwtTokenProvider;
     private final CloudflareApiService cloudflareApiService;
+    private final UserSearchService userSearchService;
 
-    public UserServiceImpl( UserRepository userRepo, JWTTokenProvider jwtTokenProvider, CloudflareApiService cloudflareApiService) {
+    public UserServiceImpl( UserRepository userRepo, JWTTokenProvider jwtTokenProvider, CloudflareApiService cloudflareApiService, UserSearchService userSearchService) {
         this.userRepo = userRepo;
         this.jwtTokenProvider = jwtTokenProvider;
         this.cloudflareApiService = cloudflareApiService;
+        this.userSearchService = userSearchService;
     }
 
     @Override
@@ -96,6 +105,7 @@ public class UserServiceImpl implements UserService {
 
             // Save the updated user
             User updatedUser = userRepo.save(user);
+            userSearchService.index(updatedUser);
             log.info("User updated successfully. Updated user details: {}", updatedUser);
 
             return updatedUser;
@@ -129,6 +139,32 @@ public class UserServiceImpl implements UserService {
         return user;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<UUID> findExistingUserIds(Collection<UUID> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return List.of();
+        }
+        // one IN query instead of a findById round-trip per id, and no entities are hydrated
+        return userRepo.findExistingIds(userIds);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserDTO findUserProfileById(UUID userId) throws UserException {
+        log.info("Attempting to find user profile by ID: {}", userId);
+
+        // projection straight into the DTO, the password hash never leaves the database
+        Optional<UserDTO> opt = userRepo.findProfileById(userId);
+
+        if (opt.isEmpty()) {
+            log.error("ERROR: User profile not found with ID: {}", userId);
+            throw new UserException("user doesnt exist with the id: " + userId);
+        }
+
+        return opt.get();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public User findUserProfile(String jwt) {
@@ -149,16 +185,24 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<User> searchUser(String query) {
-        log.info("Searching users with query: {}", query);
+    public List<UserSummaryDTO> searchUser(String query, int page, int size, boolean fuzzy) {
+        log.info("Searching users with query: {}, page: {}, size: {}, fuzzy: {}", query, page, size, fuzzy);
 
-        List<User> searchResults = userRepo.searchUsers(query);
+        List<UUID> rankedIds = userSearchService.search(query, page, size, fuzzy);
 
-        if (searchResults.isEmpty()) {
+        if (rankedIds.isEmpty()) {
             log.info("No users found matching the query: {}", query);
             return Collections.emptyList();
         }
 
+        // one query for the page, then back into ranked order
+        Map<UUID, UserSummaryDTO> usersById = userRepo.findSummariesByIdIn(rankedIds).stream()
+                .collect(Collectors.toMap(UserSummaryDTO::id, Function.identity()));
+        List<UserSummaryDTO> searchResults = rankedIds.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .toList();
+
         log.info("Found {} user(s) matching the query.", searchResults.size());
         return searchResults;
     }
@@ -0,0 +1,57 @@
+package co.teamsphere.api.utils;
+
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Cost parameters read back out of a PHC-format Argon2 hash, e.g.
+ * {@code $argon2id$v=19$m=65536,t=3,p=1$<salt>$<hash>}, so stored hashes can be compared against the current policy.
+ */
+public record Argon2HashParameters(String type, int version, int memoryCost, int iterations, int parallelism,
+                                   int saltLength, int hashLength) {
+
+    public static Optional<Argon2HashParameters> parse(String encoded) {
+        if (encoded == null || !encoded.startsWith("$argon2")) {
+            return Optional.empty();
+        }
+
+        // "", type, v=19, m=..,t=..,p=.., salt, hash
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 6 || !parts[2].startsWith("v=")) {
+            return Optional.empty();
+        }
+
+        try {
+            int version = Integer.parseInt(parts[2].substring(2));
+            int memoryCost = -1;
+            int iterations = -1;
+            int parallelism = -1;
+            for (String param : parts[3].split(",")) {
+                int eq = param.indexOf('=');
+                if (eq < 0) {
+                    return Optional.empty();
+                }
+                int value = Integer.parseInt(param.substring(eq + 1));
+                switch (param.substring(0, eq)) {
+                    case "m" -> memoryCost = value;
+                    case "t" -> iterations = value;
+                    case "p" -> parallelism = value;
+                    default -> {
+                        return Optional.empty();
+                    }
+                }
+            }
+            if (memoryCost < 0 || iterations < 0 || parallelism < 0) {
+                return Optional.empty();
+            }
+
+            Base64.Decoder decoder = Base64.getDecoder();
+            int saltLength = decoder.decode(parts[4]).length;
+            int hashLength = decoder.decode(parts[5]).length;
+            return Optional.of(new Argon2HashParameters(parts[1], version, memoryCost, iterations, parallelism, saltLength, hashLength));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package co.teamsphere.api.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Immutable set of UUIDs stored as a sorted array of (msb, lsb) pairs. Takes 16 bytes per id instead of
+ * the ~80 a HashSet entry costs, which matters when we cache the member list of every hot group chat.
+ */
+public final class CompactUuidSet {
+    private static final CompactUuidSet EMPTY = new CompactUuidSet(new long[0]);
+
+    // msb/lsb pairs, sorted by msb then lsb
+    private final long[] bits;
+
+    private CompactUuidSet(long[] bits) {
+        this.bits = bits;
+    }
+
+    public static CompactUuidSet of(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return EMPTY;
+        }
+
+        UUID[] sorted = ids.toArray(new UUID[0]);
+        Arrays.sort(sorted, CompactUuidSet::compare);
+
+        long[] bits = new long[sorted.length * 2];
+        int size = 0;
+        for (UUID id : sorted) {
+            // skip duplicates, they are adjacent after sorting
+            if (size > 0 && bits[2 * size - 2] == id.getMostSignificantBits() && bits[2 * size - 1] == id.getLeastSignificantBits()) {
+                continue;
+            }
+            bits[2 * size] = id.getMostSignificantBits();
+            bits[2 * size + 1] = id.getLeastSignificantBits();
+            size++;
+        }
+
+        return new CompactUuidSet(size * 2 == bits.length ? bits : Arrays.copyOf(bits, size * 2));
+    }
+
+    public boolean contains(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(bits[2 * mid], bits[2 * mid + 1], msb, lsb);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return bits.length / 2;
+    }
+
+    public boolean isEmpty() {
+        return bits.length == 0;
+    }
+
+    private static int compare(UUID a, UUID b) {
+        return compare(a.getMostSignificantBits(), a.getLeastSignificantBits(), b.getMostSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    private static int compare(long msbA, long lsbA, long msbB, long lsbB) {
+        int cmp = Long.compare(msbA, msbB);
+        return cmp != 0 ? cmp : Long.compare(lsbA, lsbB);
+    }
+}
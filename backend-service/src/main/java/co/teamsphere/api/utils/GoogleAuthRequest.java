@@ -4,5 +4,6 @@ import lombok.Data;
 
 @Data
 public class GoogleAuthRequest {
-    private GoogleUserInfo googleUserInfo;
+    // the credential returned by Google Identity Services, verified server side
+    private String idToken;
 }
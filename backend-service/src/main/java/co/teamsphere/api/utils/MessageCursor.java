@@ -0,0 +1,63 @@
+package co.teamsphere.api.utils;
+
+import co.teamsphere.api.DTO.MessageDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of a message in a chat's (timeStamp, id) ordering, handed to clients as an opaque
+ * token so they can page through history without us ever running an OFFSET query.
+ */
+@Getter
+@AllArgsConstructor
+public class MessageCursor implements Comparable<MessageCursor> {
+    private static final int TOKEN_BYTES = Long.BYTES + Integer.BYTES + 2 * Long.BYTES;
+
+    private final LocalDateTime timeStamp;
+    private final UUID id;
+
+    public static MessageCursor of(MessageDTO message) {
+        return new MessageCursor(message.getTimeStamp(), message.getId());
+    }
+
+    /**
+     * Same order as the keyset queries: by timeStamp, then by id compared the way MySQL compares binary(16),
+     * byte by byte unsigned (which {@link UUID#compareTo} does not).
+     */
+    @Override
+    public int compareTo(MessageCursor other) {
+        int byTime = timeStamp.compareTo(other.timeStamp);
+        if (byTime != 0) {
+            return byTime;
+        }
+        int byHigh = Long.compareUnsigned(id.getMostSignificantBits(), other.id.getMostSignificantBits());
+        return byHigh != 0 ? byHigh : Long.compareUnsigned(id.getLeastSignificantBits(), other.id.getLeastSignificantBits());
+    }
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(TOKEN_BYTES);
+        buffer.putLong(timeStamp.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(timeStamp.getNano());
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static MessageCursor decode(String token) {
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        if (bytes.length != TOKEN_BYTES) {
+            throw new IllegalArgumentException("Malformed message cursor");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        LocalDateTime timeStamp = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        UUID id = new UUID(buffer.getLong(), buffer.getLong());
+        return new MessageCursor(timeStamp, id);
+    }
+}
@@ -0,0 +1,92 @@
+package co.teamsphere.api.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free event counter over a sliding window split into fixed-width buckets. Each bucket is a single
+ * long packing the bucket's epoch (upper bits) with its count (lower bits), so a stale bucket is reset and
+ * incremented in the same CAS and concurrent callers never block each other.
+ */
+public final class SlidingWindowCounter {
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray buckets;
+
+    private final long bucketMillis;
+
+    public SlidingWindowCounter(int bucketCount, long windowMillis) {
+        if (bucketCount < 1 || windowMillis < bucketCount) {
+            throw new IllegalArgumentException("window must hold at least one millisecond per bucket");
+        }
+        this.buckets = new AtomicLongArray(bucketCount);
+        this.bucketMillis = windowMillis / bucketCount;
+    }
+
+    /**
+     * Records one event and returns the number of events now inside the window.
+     */
+    public int increment(long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int index = (int) (epoch % buckets.length());
+        while (true) {
+            long current = buckets.get(index);
+            long next = epochOf(current) == epoch
+                    ? (epoch << COUNT_BITS) | Math.min(countOf(current) + 1, COUNT_MASK)
+                    : (epoch << COUNT_BITS) | 1;
+            if (buckets.compareAndSet(index, current, next)) {
+                break;
+            }
+        }
+        return count(nowMillis);
+    }
+
+    public int count(long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            long bucket = buckets.get(i);
+            if (isLive(epochOf(bucket), epoch)) {
+                total += countOf(bucket);
+            }
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * How long until enough of the oldest buckets age out for the count to drop below {@code limit}.
+     */
+    public long millisUntilBelow(int limit, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int total = count(nowMillis);
+        // walk from the oldest bucket still in the window towards the current one
+        for (long e = epoch - buckets.length() + 1; e <= epoch && total >= limit; e++) {
+            long bucket = buckets.get((int) (Math.floorMod(e, buckets.length())));
+            if (epochOf(bucket) == e) {
+                total -= (int) countOf(bucket);
+            }
+            if (total < limit) {
+                return Math.max(0, (e + buckets.length()) * bucketMillis - nowMillis);
+            }
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0L);
+        }
+    }
+
+    private boolean isLive(long bucketEpoch, long currentEpoch) {
+        return bucketEpoch <= currentEpoch && bucketEpoch > currentEpoch - buckets.length();
+    }
+
+    private static long epochOf(long bucket) {
+        return bucket >>> COUNT_BITS;
+    }
+
+    private static long countOf(long bucket) {
+        return bucket & COUNT_MASK;
+    }
+}
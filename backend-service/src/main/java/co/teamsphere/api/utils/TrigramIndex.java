@@ -0,0 +1,248 @@
+package co.teamsphere.api.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory name index answering "find names containing this" without scanning every name. Queries of three
+ * or more characters go through trigram posting lists, starting from the rarest trigram, so the work scales
+ * with the number of plausible matches instead of the number of indexed names. Shorter queries are answered
+ * as prefix lookups on a sorted map. With {@code fuzzy} set, names that merely share enough trigrams with the
+ * query are returned too, which catches most single-letter typos.
+ */
+public final class TrigramIndex {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private static final double EXACT_BONUS = 3;
+    private static final double PREFIX_BONUS = 2;
+    private static final double SUBSTRING_BONUS = 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<UUID, Entry> entries = new HashMap<>();
+
+    private final Map<String, Set<Entry>> postings = new HashMap<>();
+
+    private final NavigableMap<String, Set<Entry>> byName = new TreeMap<>();
+
+    private final int maxPrefixCandidates;
+
+    public TrigramIndex(int maxPrefixCandidates) {
+        this.maxPrefixCandidates = maxPrefixCandidates;
+    }
+
+    /**
+     * Adds the name, or replaces the one previously indexed under the same id.
+     */
+    public void put(UUID id, String name) {
+        Entry entry = new Entry(id, normalize(name));
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.put(id, entry);
+            if (previous != null) {
+                unlink(previous);
+            }
+            for (String trigram : entry.trigrams()) {
+                postings.computeIfAbsent(trigram, key -> new HashSet<>()).add(entry);
+            }
+            byName.computeIfAbsent(entry.normalized(), key -> new HashSet<>()).add(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID id) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                unlink(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks matches best first: exact name, then prefix, then substring, then (fuzzy only) near misses, with
+     * trigram similarity breaking ties inside each group so shorter, closer names come first.
+     */
+    public Page search(String query, int offset, int limit, boolean fuzzy, double minSimilarity) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return new Page(List.of(), 0);
+        }
+
+        List<Hit> hits;
+        lock.readLock().lock();
+        try {
+            hits = q.length() < 3 ? prefixHits(q) : trigramHits(q, fuzzy, minSimilarity);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::normalized));
+        int from = Math.min(Math.max(offset, 0), hits.size());
+        int to = Math.min(from + limit, hits.size());
+        return new Page(hits.subList(from, to).stream().map(Hit::id).toList(), hits.size());
+    }
+
+    private List<Hit> prefixHits(String q) {
+        List<Hit> hits = new ArrayList<>();
+        // autocomplete on one or two letters only needs the first screenful, not every name starting with "a"
+        for (Set<Entry> sameName : byName.subMap(q, true, q + Character.MAX_VALUE, false).values()) {
+            for (Entry entry : sameName) {
+                hits.add(hit(entry, q, (double) q.length() / entry.normalized().length()));
+            }
+            if (hits.size() >= maxPrefixCandidates) {
+                break;
+            }
+        }
+        return hits;
+    }
+
+    private List<Hit> trigramHits(String q, boolean fuzzy, double minSimilarity) {
+        Set<String> queryTrigrams = trigrams(q);
+        Set<Entry> candidates = fuzzy ? sharingAnyTrigram(queryTrigrams) : containingAllTrigrams(q);
+
+        List<Hit> hits = new ArrayList<>();
+        for (Entry entry : candidates) {
+            boolean contains = entry.normalized().contains(q);
+            double similarity = similarity(queryTrigrams, entry.trigrams());
+            // exact search is substring only; near misses are what fuzzy asks for
+            if (contains || (fuzzy && similarity >= minSimilarity)) {
+                hits.add(hit(entry, q, similarity));
+            }
+        }
+        return hits;
+    }
+
+    private Set<Entry> containingAllTrigrams(String q) {
+        // every name containing q holds all of q's inner trigrams, so the rarest one is a complete candidate list
+        Set<Entry> rarest = null;
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            Set<Entry> posting = postings.get(q.substring(i, i + 3));
+            if (posting == null) {
+                return Set.of();
+            }
+            if (rarest == null || posting.size() < rarest.size()) {
+                rarest = posting;
+            }
+        }
+        return rarest != null ? rarest : Set.of();
+    }
+
+    private Set<Entry> sharingAnyTrigram(Set<String> queryTrigrams) {
+        Set<Entry> candidates = new HashSet<>();
+        for (String trigram : queryTrigrams) {
+            candidates.addAll(postings.getOrDefault(trigram, Set.of()));
+        }
+        return candidates;
+    }
+
+    private void unlink(Entry entry) {
+        for (String trigram : entry.trigrams()) {
+            Set<Entry> posting = postings.get(trigram);
+            if (posting != null && posting.remove(entry) && posting.isEmpty()) {
+                postings.remove(trigram);
+            }
+        }
+        Set<Entry> sameName = byName.get(entry.normalized());
+        if (sameName != null && sameName.remove(entry) && sameName.isEmpty()) {
+            byName.remove(entry.normalized());
+        }
+    }
+
+    private static Hit hit(Entry entry, String q, double similarity) {
+        String name = entry.normalized();
+        double bonus = name.equals(q) ? EXACT_BONUS
+                : name.startsWith(q) ? PREFIX_BONUS
+                : name.contains(q) ? SUBSTRING_BONUS
+                : 0;
+        return new Hit(entry.id(), name, bonus + similarity);
+    }
+
+    private static double similarity(Set<String> a, Set<String> b) {
+        int shared = 0;
+        for (String trigram : a) {
+            if (b.contains(trigram)) {
+                shared++;
+            }
+        }
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+
+    /**
+     * Trigrams of the name padded like pg_trgm (two spaces in front, one behind), so matches at the start of a
+     * name share more trigrams than matches in the middle.
+     */
+    static Set<String> trigrams(String normalized) {
+        String padded = "  " + normalized + " ";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(name.strip(), Normalizer.Form.NFKD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    public record Page(List<UUID> ids, int total) {
+    }
+
+    // identity equality on purpose: postings hold the exact instance that was indexed
+    private static final class Entry {
+        private final UUID id;
+        private final String normalized;
+        private final Set<String> trigrams;
+
+        Entry(UUID id, String normalized) {
+            this.id = id;
+            this.normalized = normalized;
+            this.trigrams = Set.copyOf(TrigramIndex.trigrams(normalized));
+        }
+
+        UUID id() {
+            return id;
+        }
+
+        String normalized() {
+            return normalized;
+        }
+
+        Set<String> trigrams() {
+            return trigrams;
+        }
+    }
+
+    private record Hit(UUID id, String normalized, double score) {
+    }
+}
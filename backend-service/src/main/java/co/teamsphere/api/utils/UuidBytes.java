@@ -0,0 +1,25 @@
+package co.teamsphere.api.utils;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * UUID to binary(16) conversion for the plain JDBC paths, in the layout Hibernate uses for UUID columns on
+ * MySQL: most significant bits first. Rows written through either path have to be readable by the other.
+ */
+public final class UuidBytes {
+    private UuidBytes() {
+    }
+
+    public static byte[] toBytes(UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,102 @@
+package co.teamsphere.api.benchmark;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sign/verify cost of the access token algorithms jwt.algorithm supports, using the same claims
+ * JWTTokenProvider puts in a real token. Not part of the unit test run, start it with:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtSigningBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtSigningBenchmark {
+
+    @Param({"RS256", "PS256", "ES256", "ES384"})
+    private String algorithm;
+
+    private SignatureAlgorithm signatureAlgorithm;
+    private KeyPair keyPair;
+    private String token;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException {
+        signatureAlgorithm = SignatureAlgorithm.forName(algorithm);
+        keyPair = generateKeyPair(signatureAlgorithm);
+        token = sign();
+    }
+
+    @Benchmark
+    public String sign() {
+        Date now = new Date();
+        return Jwts.builder()
+                .setHeaderParam("typ", "JWT")
+                .setHeaderParam("kid", "primary")
+                .setIssuer("Teamsphere.co")
+                .setSubject(UUID.randomUUID().toString())
+                .setAudience("Teamsphere")
+                .setIssuedAt(now)
+                .setNotBefore(now)
+                .setExpiration(new Date(now.getTime() + 86400000))
+                .claim("email", "bench@teamsphere.co")
+                .claim("authorities", "ROLE_USER")
+                .signWith(keyPair.getPrivate(), signatureAlgorithm)
+                .compact();
+    }
+
+    @Benchmark
+    public Object verify() {
+        return Jwts.parserBuilder()
+                .setSigningKey(keyPair.getPublic())
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    private static KeyPair generateKeyPair(SignatureAlgorithm algorithm) throws NoSuchAlgorithmException {
+        KeyPairGenerator generator;
+        if (algorithm.isEllipticCurve()) {
+            generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(algorithm == SignatureAlgorithm.ES256 ? 256 : algorithm == SignatureAlgorithm.ES384 ? 384 : 521);
+        } else {
+            generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+        }
+        return generator.generateKeyPair();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtSigningBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,126 @@
+package co.teamsphere.api.benchmark;
+
+import co.teamsphere.api.utils.UuidBytes;
+import co.teamsphere.api.utils.UuidV7;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Message insert throughput with random v4 ids against time-ordered v7 ids, into a table that already holds
+ * {@code existingRows} rows so the clustered index is far bigger than one page. Same columns and batch shape as
+ * MessageRepository.insertMessages. Needs a scratch MySQL schema; the bench_messages table is dropped and rebuilt per trial:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=MessageInsertBenchmark \
+ *     "-Dbench.jdbc.url=jdbc:mysql://localhost:3306/teamsphere_bench?rewriteBatchedStatements=true" \
+ *     -Dbench.jdbc.user=root -Dbench.jdbc.password=secret
+ * </pre>
+ *
+ * The gap between the two id types widens once the table outgrows the InnoDB buffer pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class MessageInsertBenchmark {
+    private static final int BATCH_SIZE = 200;
+
+    private static final String INSERT_MESSAGE =
+            "INSERT INTO bench_messages (id, content, time_stamp, is_read, username_id, chat_id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    @Param({"RANDOM_V4", "TIME_ORDERED_V7"})
+    private String idType;
+
+    @Param({"5000000"})
+    private int existingRows;
+
+    private Supplier<UUID> ids;
+    private Connection connection;
+    private PreparedStatement insert;
+    private final byte[] userId = UuidBytes.toBytes(UUID.randomUUID());
+    private final byte[] chatId = UuidBytes.toBytes(UUID.randomUUID());
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        ids = "RANDOM_V4".equals(idType) ? UUID::randomUUID : UuidV7::generate;
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:mysql://localhost:3306/teamsphere_bench?rewriteBatchedStatements=true"),
+                System.getProperty("bench.jdbc.user", "root"),
+                System.getProperty("bench.jdbc.password", ""));
+
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE IF EXISTS bench_messages");
+            ddl.execute("CREATE TABLE bench_messages (id binary(16) NOT NULL PRIMARY KEY, content varchar(255), "
+                    + "time_stamp datetime(6), is_read bit(1), username_id binary(16), chat_id binary(16), "
+                    + "KEY idx_bench_messages_chat_ts_id (chat_id, time_stamp, id)) ENGINE=InnoDB");
+        }
+
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement(INSERT_MESSAGE);
+        // pre-fill with the id type under test, that's what a table that has lived with it for a while looks like
+        for (int i = 0; i < existingRows; i += BATCH_SIZE) {
+            insertBatch();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        insert.close();
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertBatch() throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            insert.setBytes(1, UuidBytes.toBytes(ids.get()));
+            insert.setString(2, "benchmark message body of a typical chat line length");
+            insert.setTimestamp(3, now);
+            insert.setBoolean(4, false);
+            insert.setBytes(5, userId);
+            insert.setBytes(6, chatId);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        connection.commit();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MessageInsertBenchmark.class.getSimpleName())
+                .jvmArgsAppend(
+                        "-Dbench.jdbc.url=" + System.getProperty("bench.jdbc.url", "jdbc:mysql://localhost:3306/teamsphere_bench?rewriteBatchedStatements=true"),
+                        "-Dbench.jdbc.user=" + System.getProperty("bench.jdbc.user", "root"),
+                        "-Dbench.jdbc.password=" + System.getProperty("bench.jdbc.password", ""))
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,67 @@
+package co.teamsphere.api.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Argon2PolicyPasswordEncoderTest {
+
+    // deliberately tiny costs so the test stays fast
+    private final Argon2PolicyPasswordEncoder encoder = new Argon2PolicyPasswordEncoder(16, 32, 1, 1024, 2);
+
+    @Test
+    void upgradeEncoding_FalseForHashWithCurrentParameters() {
+        String hash = encoder.encode("Password123");
+
+        assertTrue(encoder.matches("Password123", hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+    }
+
+    @Test
+    void upgradeEncoding_OnlyForHashesBelowTheFloor() {
+        String stronger = new Argon2PolicyPasswordEncoder(16, 32, 1, 2048, 2).encode("Password123");
+        String weaker = new Argon2PolicyPasswordEncoder(16, 32, 1, 1024, 1).encode("Password123");
+
+        assertFalse(encoder.upgradeEncoding(stronger));
+        assertTrue(encoder.upgradeEncoding(weaker));
+        // old hashes keep working until they are rewritten
+        assertTrue(encoder.matches("Password123", weaker));
+    }
+
+    @Test
+    void upgradeEncoding_NodesCalibratedDifferentlyDoNotRehashEachOther() {
+        // same floor, different calibrated cost per host
+        Argon2PolicyPasswordEncoder fastHost = new Argon2PolicyPasswordEncoder(16, 32, 1, 2048, 3, 1024, 1);
+        Argon2PolicyPasswordEncoder slowHost = new Argon2PolicyPasswordEncoder(16, 32, 1, 1024, 2, 1024, 1);
+
+        String fromFastHost = fastHost.encode("Password123");
+        String fromSlowHost = slowHost.encode("Password123");
+
+        assertFalse(fastHost.upgradeEncoding(fromSlowHost));
+        assertFalse(slowHost.upgradeEncoding(fromFastHost));
+    }
+
+    @Test
+    void upgradeEncoding_FloorAboveOwnCost_NeverFlagsItsOwnHashes() {
+        Argon2PolicyPasswordEncoder calibratedDown = new Argon2PolicyPasswordEncoder(16, 32, 1, 1024, 1, 4096, 3);
+
+        assertFalse(calibratedDown.upgradeEncoding(calibratedDown.encode("Password123")));
+    }
+
+    @Test
+    void upgradeEncoding_TrueWhenShapeDiffers() {
+        String otherParallelism = new Argon2PolicyPasswordEncoder(16, 32, 2, 1024, 2).encode("Password123");
+        String otherHashLength = new Argon2PolicyPasswordEncoder(16, 64, 1, 1024, 2).encode("Password123");
+
+        assertTrue(encoder.upgradeEncoding(otherParallelism));
+        assertTrue(encoder.upgradeEncoding(otherHashLength));
+    }
+
+    @Test
+    void upgradeEncoding_FalseForUnreadableHash() {
+        assertFalse(encoder.upgradeEncoding(null));
+        assertFalse(encoder.upgradeEncoding("$2a$10$notAnArgon2Hash"));
+        assertFalse(encoder.upgradeEncoding("$argon2id$v=19$m=abc,t=1,p=1$c2FsdA$aGFzaA"));
+    }
+}
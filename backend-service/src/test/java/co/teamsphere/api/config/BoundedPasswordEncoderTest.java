@@ -0,0 +1,98 @@
+package co.teamsphere.api.config;
+
+import co.teamsphere.api.exception.PasswordHashingUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private BoundedPasswordEncoder encoder;
+
+    // stands in for Argon2: parks until the test releases it
+    private final PasswordEncoder slowEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoder.destroy();
+    }
+
+    @Test
+    void encode_RunsOnPoolAndRecordsLatency() {
+        release.countDown();
+        encoder = new BoundedPasswordEncoder(slowEncoder, 1, 1, Duration.ofSeconds(5), meterRegistry);
+
+        assertEquals("hashed:secret", encoder.encode("secret"));
+        assertTrue(encoder.matches("secret", "hashed:secret"));
+
+        assertEquals(1, meterRegistry.get("auth.password.hash").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("auth.password.hash").tag("operation", "matches").timer().count());
+        assertEquals(2, meterRegistry.get("auth.password.queue.wait").timer().count());
+    }
+
+    @Test
+    void encode_RejectsImmediatelyWhenPoolAndQueueAreFull() throws Exception {
+        encoder = new BoundedPasswordEncoder(slowEncoder, 1, 1, Duration.ofSeconds(5), meterRegistry);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+        while (meterRegistry.get("auth.password.queue.depth").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(PasswordHashingUnavailableException.class, () -> encoder.encode("third"));
+        assertEquals(1, meterRegistry.get("auth.password.rejected").tag("reason", "saturated").counter().count());
+
+        release.countDown();
+        assertEquals("hashed:first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hashed:second", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void encode_GivesUpAfterMaxWait() {
+        encoder = new BoundedPasswordEncoder(slowEncoder, 1, 1, Duration.ofMillis(50), meterRegistry);
+
+        assertThrows(PasswordHashingUnavailableException.class, () -> encoder.encode("secret"));
+        assertEquals(1, meterRegistry.get("auth.password.rejected").tag("reason", "timeout").counter().count());
+    }
+
+    @Test
+    void upgradeEncoding_DelegatesWithoutQueueing() {
+        encoder = new BoundedPasswordEncoder(slowEncoder, 1, 1, Duration.ofSeconds(5), meterRegistry);
+
+        assertFalse(encoder.upgradeEncoding("hashed:secret"));
+        assertEquals(0, meterRegistry.get("auth.password.queue.wait").timer().count());
+    }
+}
@@ -18,6 +18,7 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import co.teamsphere.api.config.properties.JwtProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import java.io.IOException;
 import java.security.KeyPair;
@@ -69,8 +70,9 @@ public class JWTTokenProviderTest {
         publicKey = keyPair.getPublic();
 
         when(jwtProperties.getAudience()).thenReturn("Teamsphere");
-        tokenValidator = new JWTTokenValidator(publicKey, jwtProperties);
-        tokenProvider = new JWTTokenProvider(privateKey, jwtProperties);
+        JwtKeySet keySet = JwtKeySet.of(publicKey);
+        tokenValidator = new JWTTokenValidator(keySet, jwtProperties, new TokenRevocationList(), 100, new SimpleMeterRegistry());
+        tokenProvider = new JWTTokenProvider(privateKey, jwtProperties, keySet);
         SecurityContextHolder.clearContext();
     }
 
@@ -188,6 +190,8 @@ public class JWTTokenProviderTest {
         assertEquals("ROLE_USER", claims.get("authorities"));
         assertEquals("Teamsphere.co", claims.getIssuer());
         assertNotNull(claims.getIssuedAt());
+        // same instant as iat, down to the millisecond
+        assertEquals(claims.getIssuedAt().getTime() / 1000, claims.get(JWTTokenConst.ISSUED_AT_MILLIS, Long.class) / 1000);
         assertNotNull(claims.getExpiration());
     }
 
@@ -20,6 +20,7 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import co.teamsphere.api.config.properties.JwtProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 import java.io.IOException;
 import java.security.KeyPair;
@@ -38,6 +39,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -64,9 +66,11 @@ public class JWTTokenValidatorTest {
 
     private PrivateKey privateKey;
 
+    private PublicKey publicKey;
+
     @Test
     void populateAuthorities_shouldConvertAuthoritiesToCommaSeparatedString() {
-        JWTTokenProvider jwtTokenProvider1 = new JWTTokenProvider(privateKey, jwtProperties);
+        JWTTokenProvider jwtTokenProvider1 = new JWTTokenProvider(privateKey, jwtProperties, JwtKeySet.of(publicKey));
         Collection<GrantedAuthority> authorities = List.of(
                 new SimpleGrantedAuthority("ROLE_USER"),
                 new SimpleGrantedAuthority("ROLE_ADMIN")
@@ -86,13 +90,13 @@ public class JWTTokenValidatorTest {
         keyPairGenerator.initialize(2048, new SecureRandom());
         KeyPair keyPair = keyPairGenerator.generateKeyPair();
         privateKey = keyPair.getPrivate();
-        PublicKey publicKey = keyPair.getPublic();
+        publicKey = keyPair.getPublic();
     
         when(authentication.getName()).thenReturn("test@example.com");
         when(jwtProperties.getAudience()).thenReturn("Teamsphere");
     
-        jwtTokenProvider = new JWTTokenProvider(privateKey, jwtProperties);
-        jwtTokenValidator = new JWTTokenValidator(publicKey, jwtProperties);
+        jwtTokenProvider = new JWTTokenProvider(privateKey, jwtProperties, JwtKeySet.of(publicKey));
+        jwtTokenValidator = new JWTTokenValidator(JwtKeySet.of(publicKey), jwtProperties, new TokenRevocationList(), 100, new SimpleMeterRegistry());
     }
 
     @Test
@@ -120,6 +124,108 @@ public class JWTTokenValidatorTest {
         verify(filterChain).doFilter(request, response);
     }
 
+    @Test
+    void validToken_shouldPublishJwtPrincipal() throws IOException, ServletException {
+        UUID userId = UUID.randomUUID();
+        String token = jwtTokenProvider.generateJwtToken(authentication, userId);
+
+        when(request.getHeader(JWTTokenConst.HEADER)).thenReturn("Bearer " + token);
+
+        jwtTokenValidator.doFilterInternal(request, response, filterChain);
+
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        assertTrue(principal instanceof JwtPrincipal);
+        assertEquals(userId, ((JwtPrincipal) principal).id());
+        assertEquals("test@example.com", ((JwtPrincipal) principal).email());
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    void repeatedToken_shouldOnlyVerifySignatureOnce() throws IOException, ServletException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JWTTokenValidator cachingValidator = new JWTTokenValidator(JwtKeySet.of(publicKey), jwtProperties, new TokenRevocationList(), 100, meterRegistry);
+        String token = jwtTokenProvider.generateJwtToken(authentication, UUID.randomUUID());
+
+        when(request.getHeader(JWTTokenConst.HEADER)).thenReturn("Bearer " + token);
+
+        cachingValidator.doFilterInternal(request, response, filterChain);
+        cachingValidator.doFilterInternal(request, response, filterChain);
+
+        assertEquals(1, meterRegistry.get("jwt.verify").timer().count());
+        verify(filterChain, times(2)).doFilter(request, response);
+    }
+
+    @Test
+    void cachedToken_shouldStillFailAudienceCheck() throws IOException, ServletException {
+        String token = jwtTokenProvider.generateJwtToken(authentication, UUID.randomUUID());
+
+        when(request.getHeader(JWTTokenConst.HEADER)).thenReturn("Bearer " + token);
+        jwtTokenValidator.doFilterInternal(request, response, filterChain);
+
+        when(jwtProperties.getAudience()).thenReturn("SomeOtherAudience");
+        jwtTokenValidator.doFilterInternal(request, response, filterChain);
+
+        verify(response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid JWT token");
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void revokedUser_shouldRejectTokensIssuedBeforeCutoffEvenWhenCached() throws IOException, ServletException {
+        TokenRevocationList revocations = new TokenRevocationList();
+        JWTTokenValidator revokingValidator = new JWTTokenValidator(JwtKeySet.of(publicKey), jwtProperties, revocations, 100, new SimpleMeterRegistry());
+        UUID userId = UUID.randomUUID();
+        String token = jwtTokenProvider.generateJwtToken(authentication, userId);
+
+        when(request.getHeader(JWTTokenConst.HEADER)).thenReturn("Bearer " + token);
+        revokingValidator.doFilterInternal(request, response, filterChain);
+
+        // logout right after: everything issued before it is dead
+        revocations.revokeBefore(userId, System.currentTimeMillis() + 1);
+        revokingValidator.doFilterInternal(request, response, filterChain);
+
+        verify(response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid JWT token");
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void revokedUser_shouldNotAffectOtherUsers() throws IOException, ServletException {
+        TokenRevocationList revocations = new TokenRevocationList();
+        revocations.revokeBefore(UUID.randomUUID(), System.currentTimeMillis() + 1);
+        JWTTokenValidator revokingValidator = new JWTTokenValidator(JwtKeySet.of(publicKey), jwtProperties, revocations, 100, new SimpleMeterRegistry());
+        String token = jwtTokenProvider.generateJwtToken(authentication, UUID.randomUUID());
+
+        when(request.getHeader(JWTTokenConst.HEADER)).thenReturn("Bearer " + token);
+        revokingValidator.doFilterInternal(request, response, filterChain);
+
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    void keySet_shouldAcceptEs256TokensFromRotatedKeyUntilRetired() throws Exception {
+        KeyPairGenerator ecGenerator = KeyPairGenerator.getInstance("EC");
+        ecGenerator.initialize(256);
+        KeyPair ecKeyPair = ecGenerator.generateKeyPair();
+
+        JwtKeySet keySet = JwtKeySet.of(publicKey);
+        keySet.register("next", "ES256", ecKeyPair.getPublic());
+        JWTTokenValidator rotatingValidator = new JWTTokenValidator(keySet, jwtProperties, new TokenRevocationList(), 100, new SimpleMeterRegistry());
+
+        when(jwtProperties.getAlgorithm()).thenReturn("ES256");
+        when(jwtProperties.getKeyId()).thenReturn("next");
+        JWTTokenProvider ecProvider = new JWTTokenProvider(ecKeyPair.getPrivate(), jwtProperties, keySet);
+        String token = ecProvider.generateJwtToken(authentication, UUID.randomUUID());
+
+        when(request.getHeader(JWTTokenConst.HEADER)).thenReturn("Bearer " + token);
+        rotatingValidator.doFilterInternal(request, response, filterChain);
+        verify(filterChain, times(1)).doFilter(request, response);
+
+        keySet.retire("next");
+        rotatingValidator.doFilterInternal(request, response, filterChain);
+
+        verify(response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid JWT token");
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
     @Test
     void generatedToken_shouldHaveCorrectExpiration() {
         String token = jwtTokenProvider.generateJwtToken(authentication, UUID.randomUUID());
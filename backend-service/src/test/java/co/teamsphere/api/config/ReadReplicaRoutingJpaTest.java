@@ -0,0 +1,131 @@
+package co.teamsphere.api.config;
+
+import co.teamsphere.api.config.properties.ReadReplicaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Id;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routing through a real Hibernate session on two embedded databases standing in for the primary and a replica,
+ * with the EntityManager held open for the whole "request" the way open-in-view does.
+ */
+public class ReadReplicaRoutingJpaTest {
+
+    private DriverManagerDataSource primary;
+
+    private DriverManagerDataSource replica;
+
+    private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private JpaTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, Map.of("replica-0", replica),
+                new ReadYourWritesTracker(new ReadReplicaProperties()), Duration.ofSeconds(2), Duration.ofMinutes(1),
+                new SimpleMeterRegistry()) {
+            @Override
+            Optional<Duration> replicaLag(DataSource replica) {
+                return Optional.of(Duration.ZERO);
+            }
+        };
+        routing.checkReplicaLag();
+
+        Map<String, Object> jpaProperties = new HashMap<>();
+        new ReadReplicaConfig().replicaConnectionHandling().customize(jpaProperties);
+
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(new LazyConnectionDataSourceProxy(routing));
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactoryBean.setManagedTypes(PersistenceManagedTypes.of(Note.class.getName()));
+        entityManagerFactoryBean.setJpaPropertyMap(jpaProperties);
+        entityManagerFactoryBean.afterPropertiesSet();
+        entityManagerFactory = entityManagerFactoryBean.getObject();
+        transactionManager = new JpaTransactionManager(entityManagerFactory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        entityManagerFactoryBean.destroy();
+        new JdbcTemplate(primary).execute("SHUTDOWN");
+        new JdbcTemplate(replica).execute("SHUTDOWN");
+    }
+
+    @Test
+    void readThenWriteInOneRequest_WriteReachesThePrimary() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            // like sendMessage: look things up read-only first, then save
+            Long seen = readOnly.execute(status -> entityManager.createQuery("select count(n) from Note n", Long.class).getSingleResult());
+            readWrite.executeWithoutResult(status -> entityManager.persist(new Note(1L, "hello")));
+
+            assertThat(seen).isZero();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+
+        assertThat(countNotes(primary)).isEqualTo(1);
+        assertThat(countNotes(replica)).isZero();
+    }
+
+    private static DriverManagerDataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new JdbcTemplate(dataSource).execute("CREATE TABLE note (id BIGINT PRIMARY KEY, body VARCHAR(255))");
+        return dataSource;
+    }
+
+    private static Integer countNotes(DataSource dataSource) {
+        return new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM note", Integer.class);
+    }
+
+    @Entity(name = "Note")
+    public static class Note {
+        @Id
+        private Long id;
+
+        private String body;
+
+        protected Note() {
+        }
+
+        Note(Long id, String body) {
+            this.id = id;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package co.teamsphere.api.config;
+
+import co.teamsphere.api.config.properties.ReadReplicaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = mock(DataSource.class);
+
+    private final DataSource replicaA = mock(DataSource.class);
+
+    private final DataSource replicaB = mock(DataSource.class);
+
+    // lag each replica reports on the next check, a missing entry means "not replicating"
+    private final Map<DataSource, Duration> lag = new HashMap<>();
+
+    private ReadYourWritesTracker tracker;
+
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new ReadYourWritesTracker(new ReadReplicaProperties());
+        routing = routing(Duration.ofSeconds(3));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void readOnlyTransactions_RoundRobinOverHealthyReplicas() {
+        lag.put(replicaA, Duration.ZERO);
+        lag.put(replicaB, Duration.ofSeconds(1));
+        routing.checkReplicaLag();
+        readOnlyTransaction();
+
+        assertThat(List.of(routing.determineCurrentLookupKey(), routing.determineCurrentLookupKey()))
+                .containsExactlyInAnyOrder("a", "b");
+    }
+
+    @Test
+    void readWriteTransactions_GoToPrimary() {
+        lag.put(replicaA, Duration.ZERO);
+        routing.checkReplicaLag();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void laggingOrBrokenReplicas_AreSkipped() {
+        lag.put(replicaA, Duration.ofSeconds(30));
+        routing.checkReplicaLag();
+        readOnlyTransaction();
+
+        assertThat(routing.getHealthyReplicas()).isEmpty();
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+
+        lag.put(replicaA, Duration.ZERO);
+        routing.checkReplicaLag();
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("a");
+    }
+
+    @Test
+    void staleLagCheck_SendsReadsToPrimaryUntilTheNextOne() throws InterruptedException {
+        routing = routing(Duration.ofMillis(50));
+        lag.put(replicaA, Duration.ZERO);
+        routing.checkReplicaLag();
+        readOnlyTransaction();
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("a");
+
+        // the scheduler thread was busy elsewhere and no check ran since
+        Thread.sleep(100);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+
+        routing.checkReplicaLag();
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("a");
+    }
+
+    @Test
+    void userWhoJustWrote_ReadsFromPrimary() {
+        lag.put(replicaA, Duration.ZERO);
+        routing.checkReplicaLag();
+        UUID userId = UUID.randomUUID();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new JwtPrincipal(userId, "user@example.com", List.of()), null, List.of()));
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+        assertThat(tracker.isPinned(userId)).isTrue();
+
+        readOnlyTransaction();
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+
+        SecurityContextHolder.clearContext();
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("a");
+    }
+
+    @Test
+    void userWhoJustWroteOnAnotherNode_ReadsFromPrimaryThroughTheCookie() {
+        lag.put(replicaA, Duration.ZERO);
+        routing.checkReplicaLag();
+        UUID userId = UUID.randomUUID();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new JwtPrincipal(userId, "user@example.com", List.of()), null, List.of()));
+
+        // the write is served here and hands the client a cookie
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), writeResponse));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        routing.determineCurrentLookupKey();
+        Cookie lastWrite = writeResponse.getCookie(ReadYourWritesTracker.LAST_WRITE_COOKIE);
+        assertThat(lastWrite).isNotNull();
+
+        // the reload lands on a node that never saw the write
+        tracker = new ReadYourWritesTracker(new ReadReplicaProperties());
+        routing = routing(Duration.ofSeconds(3));
+        routing.checkReplicaLag();
+        readOnlyTransaction();
+        MockHttpServletRequest reload = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(reload, new MockHttpServletResponse()));
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("a");
+
+        reload.setCookies(lastWrite);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void lastWriteHeader_PinsReadsOnlyWithinTheWindow() {
+        lag.put(replicaA, Duration.ZERO);
+        routing.checkReplicaLag();
+        readOnlyTransaction();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        request.addHeader(ReadYourWritesTracker.LAST_WRITE_HEADER, Long.toString(System.currentTimeMillis()));
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+
+        request.removeHeader(ReadYourWritesTracker.LAST_WRITE_HEADER);
+        request.addHeader(ReadYourWritesTracker.LAST_WRITE_HEADER, Long.toString(System.currentTimeMillis() - 60_000));
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("a");
+    }
+
+    private ReplicaRoutingDataSource routing(Duration staleAfter) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("a", replicaA);
+        replicas.put("b", replicaB);
+        return new ReplicaRoutingDataSource(primary, replicas, tracker, Duration.ofSeconds(2), staleAfter, new SimpleMeterRegistry()) {
+            @Override
+            Optional<Duration> replicaLag(DataSource replica) {
+                return Optional.ofNullable(lag.get(replica));
+            }
+        };
+    }
+
+    private static void readOnlyTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+}
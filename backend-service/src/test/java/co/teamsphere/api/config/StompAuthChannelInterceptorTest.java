@@ -0,0 +1,152 @@
+package co.teamsphere.api.config;
+
+import co.teamsphere.api.services.ChatMembershipService;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StompAuthChannelInterceptorTest {
+
+    @Mock
+    private JWTTokenValidator jwtTokenValidator;
+
+    @Mock
+    private ChatMembershipService chatMembershipService;
+
+    @Mock
+    private MessageChannel channel;
+
+    @InjectMocks
+    private StompAuthChannelInterceptor interceptor;
+
+    private final JwtPrincipal principal = new JwtPrincipal(UUID.randomUUID(), "test@example.com", List.of());
+
+    private final Authentication authentication = new UsernamePasswordAuthenticationToken(principal, null, List.of());
+
+    @Test
+    void connect_WithValidToken_BindsPrincipalToSession() {
+        when(jwtTokenValidator.authenticate("valid.jwt")).thenReturn(authentication);
+        StompHeaderAccessor accessor = accessor(StompCommand.CONNECT, null);
+        accessor.setNativeHeader("Authorization", "Bearer valid.jwt");
+
+        Message<?> result = interceptor.preSend(message(accessor), channel);
+
+        StompHeaderAccessor bound = MessageHeaderAccessor.getAccessor(result, StompHeaderAccessor.class);
+        assertThat(bound.getUser()).isSameAs(authentication);
+        assertThat(StompAuthChannelInterceptor.principal(bound.getUser())).isEqualTo(principal);
+    }
+
+    @Test
+    void connect_WithoutToken_IsRejected() {
+        assertThatThrownBy(() -> interceptor.preSend(message(accessor(StompCommand.CONNECT, null)), channel))
+                .isInstanceOf(BadCredentialsException.class);
+        verifyNoInteractions(jwtTokenValidator);
+    }
+
+    @Test
+    void connect_WithInvalidToken_IsRejected() {
+        when(jwtTokenValidator.authenticate("bad.jwt")).thenThrow(new JwtException("bad signature"));
+        StompHeaderAccessor accessor = accessor(StompCommand.CONNECT, null);
+        accessor.setNativeHeader("Authorization", "Bearer bad.jwt");
+
+        assertThatThrownBy(() -> interceptor.preSend(message(accessor), channel))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void subscribe_ToOwnGroup_IsAllowed() {
+        UUID chatId = UUID.randomUUID();
+        when(chatMembershipService.isMember(chatId, principal.id())).thenReturn(true);
+        StompHeaderAccessor accessor = accessor(StompCommand.SUBSCRIBE, "/group/" + chatId);
+        accessor.setUser(authentication);
+
+        interceptor.preSend(message(accessor), channel);
+
+        verify(chatMembershipService).isMember(chatId, principal.id());
+    }
+
+    @Test
+    void subscribe_ToForeignGroup_IsDenied() {
+        UUID chatId = UUID.randomUUID();
+        when(chatMembershipService.isMember(chatId, principal.id())).thenReturn(false);
+        StompHeaderAccessor accessor = accessor(StompCommand.SUBSCRIBE, "/group/" + chatId);
+        accessor.setUser(authentication);
+
+        assertThatThrownBy(() -> interceptor.preSend(message(accessor), channel))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void subscribe_WithoutAuthenticatedSession_IsDenied() {
+        StompHeaderAccessor accessor = accessor(StompCommand.SUBSCRIBE, "/group/" + UUID.randomUUID());
+
+        assertThatThrownBy(() -> interceptor.preSend(message(accessor), channel))
+                .isInstanceOf(AccessDeniedException.class);
+        verifyNoInteractions(chatMembershipService);
+    }
+
+    @Test
+    void send_OnAuthenticatedSession_DoesNoAuthWork() {
+        StompHeaderAccessor accessor = accessor(StompCommand.SEND, "/app/chat/" + UUID.randomUUID());
+        accessor.setUser(authentication);
+
+        interceptor.preSend(message(accessor), channel);
+
+        verifyNoInteractions(jwtTokenValidator, chatMembershipService);
+    }
+
+    @Test
+    void send_StraightToBrokerDestination_IsDenied() {
+        for (String destination : List.of("/group/" + UUID.randomUUID(), "/user/" + UUID.randomUUID() + "/private", "/group/public")) {
+            StompHeaderAccessor accessor = accessor(StompCommand.SEND, destination);
+            accessor.setUser(authentication);
+
+            assertThatThrownBy(() -> interceptor.preSend(message(accessor), channel))
+                    .isInstanceOf(AccessDeniedException.class);
+        }
+        verifyNoInteractions(chatMembershipService);
+    }
+
+    @Test
+    void send_WithoutAuthenticatedSession_IsDenied() {
+        StompHeaderAccessor accessor = accessor(StompCommand.SEND, "/app/chat/" + UUID.randomUUID());
+
+        assertThatThrownBy(() -> interceptor.preSend(message(accessor), channel))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    private static StompHeaderAccessor accessor(StompCommand command, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("session-1");
+        if (destination != null) {
+            accessor.setDestination(destination);
+        }
+        accessor.setLeaveMutable(true);
+        return accessor;
+    }
+
+    private static Message<byte[]> message(StompHeaderAccessor accessor) {
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
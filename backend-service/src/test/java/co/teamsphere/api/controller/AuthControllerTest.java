@@ -1,6 +1,6 @@
 package co.teamsphere.api.controller;
 
-import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,36 +19,31 @@ import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
+import co.teamsphere.api.DTO.RefreshTokenRotationDTO;
 import co.teamsphere.api.config.JWTTokenProvider;
+import co.teamsphere.api.config.JwtPrincipal;
 import co.teamsphere.api.exception.ProfileImageException;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.RefreshToken;
-import co.teamsphere.api.models.User;
-import co.teamsphere.api.repository.UserRepository;
 import co.teamsphere.api.request.LoginRequest;
+import co.teamsphere.api.request.RefreshTokenRequest;
 import co.teamsphere.api.request.SignupRequest;
 import co.teamsphere.api.response.AuthResponse;
 import co.teamsphere.api.services.AuthenticationService;
 import co.teamsphere.api.services.RefreshTokenService;
+import co.teamsphere.api.services.TokenRevocationService;
 import co.teamsphere.api.utils.GoogleAuthRequest;
-import co.teamsphere.api.utils.GoogleUserInfo;
 
 @ExtendWith(MockitoExtension.class)
 public class AuthControllerTest {
 
-    @Mock
-    private UserRepository userRepository;
-
-    @Mock
-    private PasswordEncoder passwordEncoder;
-
     @Mock
     private JWTTokenProvider jwtTokenProvider;
 
@@ -58,6 +53,9 @@ public class AuthControllerTest {
     @Mock
     private RefreshTokenService refreshTokenService;
 
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
     @Mock
     private SecurityContext securityContext;
 
@@ -67,6 +65,8 @@ public class AuthControllerTest {
     @InjectMocks
     private AuthController authController;
 
+    private final MockHttpServletRequest httpRequest = new MockHttpServletRequest();
+
     private SignupRequest signupRequest;
     private LoginRequest loginRequest;
     private AuthResponse successAuthResponse;
@@ -98,13 +98,8 @@ public class AuthControllerTest {
         successAuthResponse = new AuthResponse("jwt.token.here", "refresh.token.here", true);
 
         // Setup GoogleAuthRequest
-        GoogleUserInfo googleUserInfo = new GoogleUserInfo();
-        googleUserInfo.setEmail("test@example.com");
-        googleUserInfo.setName("Test User");
-        googleUserInfo.setPicture("https://example.com/profile.jpg");
-
         googleAuthRequest = new GoogleAuthRequest();
-        googleAuthRequest.setGoogleUserInfo(googleUserInfo);
+        googleAuthRequest.setIdToken("google.id.token");
 
         RefreshToken mockRefreshToken = new RefreshToken();
         mockRefreshToken.setRefreshToken("refresh.token.here");
@@ -182,115 +177,101 @@ public class AuthControllerTest {
     @Test
     void userLoginMethod_ValidCredentials_ReturnsOk() throws Exception {
         // Arrange
-        when(authenticationService.loginUser(loginRequest.getEmail(), loginRequest.getPassword()))
+        when(authenticationService.loginUser(loginRequest.getEmail(), loginRequest.getPassword(), httpRequest.getRemoteAddr()))
                 .thenReturn(successAuthResponse);
 
         // Act
-        ResponseEntity<AuthResponse> response = authController.userLoginMethod(loginRequest);
+        ResponseEntity<AuthResponse> response = authController.userLoginMethod(loginRequest, httpRequest);
 
         // Assert
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(successAuthResponse);
-        verify(authenticationService).loginUser(loginRequest.getEmail(), loginRequest.getPassword());
+        verify(authenticationService).loginUser(loginRequest.getEmail(), loginRequest.getPassword(), httpRequest.getRemoteAddr());
     }
 
     @Test
     void userLoginMethod_InvalidCredentials_ThrowsUserException() throws Exception {
         // Arrange
-        when(authenticationService.loginUser(loginRequest.getEmail(), loginRequest.getPassword()))
+        when(authenticationService.loginUser(loginRequest.getEmail(), loginRequest.getPassword(), httpRequest.getRemoteAddr()))
                 .thenThrow(new BadCredentialsException("Invalid credentials"));
 
         // Act & Assert
-        assertThatThrownBy(() -> authController.userLoginMethod(loginRequest))
+        assertThatThrownBy(() -> authController.userLoginMethod(loginRequest, httpRequest))
                 .isInstanceOf(UserException.class)
                 .hasMessageContaining("Invalid username or password");
 
-        verify(authenticationService).loginUser(loginRequest.getEmail(), loginRequest.getPassword());
+        verify(authenticationService).loginUser(loginRequest.getEmail(), loginRequest.getPassword(), httpRequest.getRemoteAddr());
     }
 
     @Test
-    void authenticateWithGoogleMethod_NewUser_CreatesUserAndReturnsOk() throws UserException {
+    void authenticateWithGoogleMethod_ValidIdToken_ReturnsOk() throws UserException {
         // Arrange
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.empty());
-        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
-
-        var savedUser = User.builder()
-                .id(UUID.randomUUID())
-                .email("test@example.com")
-                .username("Test User")
-                .password("encodedPassword")
-                .profilePicture("https://example.com/profile.jpg")
-                .build();
+        when(authenticationService.loginWithGoogle(googleAuthRequest)).thenReturn(successAuthResponse);
 
-        when(userRepository.save(any(User.class))).thenReturn(savedUser);
+        // Act
+        ResponseEntity<AuthResponse> response = authController.authenticateWithGoogleMethod(googleAuthRequest);
 
-        when(jwtTokenProvider.generateJwtToken(any(Authentication.class), any(UUID.class))).thenReturn("jwt.token.here");
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(successAuthResponse);
+        verify(authenticationService).loginWithGoogle(googleAuthRequest);
+    }
 
-        var mockRefreshToken = RefreshToken.builder()
-                .id(UUID.randomUUID())
-                .user(savedUser)
-                .refreshToken("refresh.token.here")
-                .build();
-        when(refreshTokenService.findByUserId(savedUser.getId().toString())).thenReturn(null);
-        when(refreshTokenService.createRefreshToken("test@example.com")).thenReturn(mockRefreshToken);
+    @Test
+    void authenticateWithGoogleMethod_InvalidIdToken_ReturnsUnauthorized() throws UserException {
+        // Arrange
+        when(authenticationService.loginWithGoogle(googleAuthRequest))
+                .thenThrow(new BadCredentialsException("Invalid Google ID token"));
 
         // Act
         ResponseEntity<AuthResponse> response = authController.authenticateWithGoogleMethod(googleAuthRequest);
 
         // Assert
-        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody().getJwt()).isEqualTo("jwt.token.here");
-        assertThat(response.getBody().getRefreshToken()).isEqualTo("refresh.token.here");
-        assertThat(response.getBody().isStatus()).isTrue();
-
-        verify(userRepository).findByEmail("test@example.com");
-        verify(userRepository).save(any(User.class));
-        verify(jwtTokenProvider).generateJwtToken(any(Authentication.class), any(UUID.class));
-        verify(refreshTokenService).createRefreshToken("test@example.com");
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(response.getBody().isStatus()).isFalse();
+        assertThat(response.getBody().getRefreshToken()).isEqualTo("");
     }
 
     @Test
-    void authenticateWithGoogleMethod_ExistingUser_ReturnsOk() throws UserException {
+    void refreshTest_ValidToken_RotatesAndReturnsOk() throws Exception {
         // Arrange
-        var existingUser = User.builder()
-                .id(UUID.randomUUID())
+        UUID userId = UUID.randomUUID();
+        var rotation = RefreshTokenRotationDTO.builder()
+                .userId(userId)
                 .email("test@example.com")
-                .username("Test User")
-                .profilePicture("https://example.com/profile.jpg")
+                .refreshToken("new.refresh.token")
                 .build();
+        when(refreshTokenService.rotateRefreshToken("old.refresh.token")).thenReturn(Optional.of(rotation));
+        when(jwtTokenProvider.generateJwtTokenFromEmail("test@example.com", userId)).thenReturn("jwt.token.here");
 
-        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(existingUser));
-        when(jwtTokenProvider.generateJwtToken(any(Authentication.class), any(UUID.class))).thenReturn("jwt.token.here");
+        // Act
+        ResponseEntity<?> response = authController.refreshTest(new RefreshTokenRequest("old.refresh.token"));
 
-        var existingRefreshToken = RefreshToken.builder()
-                .id(UUID.randomUUID())
-                .user(existingUser)
-                .refreshToken("existing.refresh.token")
-                .expiredAt(Instant.now().plusSeconds(3600))
-                .build();
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        var body = (AuthResponse) response.getBody();
+        assertThat(body.getJwt()).isEqualTo("jwt.token.here");
+        assertThat(body.getRefreshToken()).isEqualTo("new.refresh.token");
+    }
 
-        when(refreshTokenService.findByUserId(existingUser.getId().toString())).thenReturn(existingRefreshToken);
+    @Test
+    void refreshTest_UnknownExpiredOrReusedToken_ReturnsUnauthorized() throws Exception {
+        // Arrange
+        when(refreshTokenService.rotateRefreshToken("old.refresh.token")).thenReturn(Optional.empty());
 
         // Act
-        ResponseEntity<AuthResponse> response = authController.authenticateWithGoogleMethod(googleAuthRequest);
+        ResponseEntity<?> response = authController.refreshTest(new RefreshTokenRequest("old.refresh.token"));
 
         // Assert
-        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody().getJwt()).isEqualTo("jwt.token.here");
-        assertThat(response.getBody().getRefreshToken()).isEqualTo("existing.refresh.token");
-        assertThat(response.getBody().isStatus()).isTrue();
-
-        verify(userRepository).findByEmail("test@example.com");
-        verify(userRepository, never()).save(any(User.class));
-        verify(jwtTokenProvider).generateJwtToken(any(Authentication.class), any(UUID.class));
-        verify(refreshTokenService).findByUserId(existingUser.getId().toString());
-        verify(refreshTokenService, never()).createRefreshToken(anyString());
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        verify(jwtTokenProvider, never()).generateJwtTokenFromEmail(anyString(), any(UUID.class));
     }
 
     @Test
     void authenticateWithGoogleMethod_Exception_ReturnsInternalServerError() throws UserException {
         // Arrange
-        when(userRepository.findByEmail(anyString())).thenThrow(new RuntimeException("Database error"));
+        when(authenticationService.loginWithGoogle(googleAuthRequest))
+                .thenThrow(new UserException("Error during Google authentication"));
 
         // Act
         ResponseEntity<AuthResponse> response = authController.authenticateWithGoogleMethod(googleAuthRequest);
@@ -300,10 +281,30 @@ public class AuthControllerTest {
         assertThat(response.getBody().isStatus()).isFalse();
         assertThat(response.getBody().getJwt()).contains("Error during Google authentication");
         assertThat(response.getBody().getRefreshToken()).isEqualTo("");
+    }
+
+    @Test
+    void logoutMethod_RevokesAccessAndRefreshTokens() {
+        // Arrange
+        UUID userId = UUID.randomUUID();
+        var principal = new JwtPrincipal(userId, "test@example.com", List.of());
+
+        // Act
+        ResponseEntity<Void> response = authController.logoutMethod(principal);
+
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        verify(tokenRevocationService).revokeAllTokens(userId);
+        verify(refreshTokenService).deleteRefreshTokenByUserId(userId.toString());
+    }
+
+    @Test
+    void logoutMethod_WithoutPrincipal_ReturnsUnauthorized() {
+        // Act
+        ResponseEntity<Void> response = authController.logoutMethod(null);
 
-        // Verify repository was called but not the token services
-        verify(userRepository).findByEmail("test@example.com");
-        verify(jwtTokenProvider, never()).generateJwtToken(any(Authentication.class), any(UUID.class));
-        verify(refreshTokenService, never()).createRefreshToken(anyString());
+        // Assert
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        verify(tokenRevocationService, never()).revokeAllTokens(any(UUID.class));
     }
 }
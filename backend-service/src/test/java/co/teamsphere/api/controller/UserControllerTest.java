@@ -1,8 +1,9 @@
 package co.teamsphere.api.controller;
 
 import co.teamsphere.api.DTO.UserDTO;
+import co.teamsphere.api.DTO.UserSummaryDTO;
 import co.teamsphere.api.DTOmapper.UserDTOMapper;
-import co.teamsphere.api.config.JWTTokenProvider;
+import co.teamsphere.api.config.JwtPrincipal;
 import co.teamsphere.api.config.JWTTokenValidator;
 import co.teamsphere.api.exception.ProfileImageException;
 import co.teamsphere.api.exception.UserException;
@@ -21,7 +22,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
 
@@ -45,12 +45,10 @@ public class UserControllerTest {
     @InjectMocks
     private UserController userController;
 
-    @Mock
-    private JWTTokenProvider jwtTokenProvider;
-
     private User testUser;
     private UserDTO testUserDTO;
     private UUID userId;
+    private JwtPrincipal principal;
 
     @BeforeEach
     void setUp() {
@@ -59,6 +57,7 @@ public class UserControllerTest {
         userId = UUID.randomUUID();
         testUser = TestDataBuilder.buildUser("testUser", "https://example.com/profiles/abc123/public", "password123", "test@example.com");
         testUser.setId(userId);
+        principal = new JwtPrincipal(userId, "test@example.com", List.of());
 
         testUserDTO = new UserDTO();
         testUserDTO.setId(userId);
@@ -72,23 +71,19 @@ public class UserControllerTest {
         // Arrange
         UpdateUserRequest request = new UpdateUserRequest();
         request.setUsername("newUsername");
-        var token = "jwt.valid.token";
-
-        when(jwtTokenProvider.getIdFromToken(token)).thenReturn(testUser.getId());
 
         when(userService.updateUser(eq(userId), any(UpdateUserRequest.class), eq(testUser.getId()))).thenReturn(testUser);
 
         when(userDTOMapper.toUserDTO(testUser)).thenReturn(testUserDTO);
 
         // Act
-        ResponseEntity<UserDTO> response = userController.updateUserHandler(request, userId, token);
+        ResponseEntity<UserDTO> response = userController.updateUserHandler(request, userId, principal);
 
         // Assert
         assertThat(response).isNotNull();
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(testUserDTO);
 
-        verify(jwtTokenProvider).getIdFromToken(token);
         verify(userService).updateUser(eq(userId), any(UpdateUserRequest.class), eq(testUser.getId()));
         verify(userDTOMapper).toUserDTO(testUser);
     }
@@ -99,56 +94,47 @@ public class UserControllerTest {
         // Arrange
         UpdateUserRequest request = new UpdateUserRequest();
         request.setUsername("newUsername");
-        String token = "jwt.valid.token";
-
-        when(jwtTokenProvider.getIdFromToken(token)).thenReturn(testUser.getId());
 
         when(userService.updateUser(eq(userId), any(UpdateUserRequest.class), eq(testUser.getId())))
             .thenThrow(new RuntimeException("Database error"));
 
         // Act & Assert
-        assertThatThrownBy(() -> userController.updateUserHandler(request, userId, token))
+        assertThatThrownBy(() -> userController.updateUserHandler(request, userId, principal))
             .isInstanceOf(UserException.class)
             .hasMessageContaining("Error during update user process");
 
-        verify(jwtTokenProvider).getIdFromToken(token);
         verify(userService).updateUser(eq(userId), any(UpdateUserRequest.class), eq(testUser.getId()));
         verify(userDTOMapper, never()).toUserDTO(any(User.class));
     }
 
     @Test
-    void getUserProfileHandler_Success() {
+    void getUserProfileHandler_Success() throws UserException {
         // Arrange
-        String jwt = "Bearer valid.jwt.token";
-
-        when(userService.findUserProfile(jwt)).thenReturn(testUser);
-        when(userDTOMapper.toUserDTO(testUser)).thenReturn(testUserDTO);
+        when(userService.findUserProfileById(userId)).thenReturn(testUserDTO);
 
         // Act
-        ResponseEntity<UserDTO> response = userController.getUserProfileHandler(jwt);
+        ResponseEntity<UserDTO> response = userController.getUserProfileHandler(principal);
 
         // Assert
         assertThat(response).isNotNull();
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
         assertThat(response.getBody()).isEqualTo(testUserDTO);
 
-        verify(userService).findUserProfile(jwt);
-        verify(userDTOMapper).toUserDTO(testUser);
+        verify(userService).findUserProfileById(userId);
+        verify(userDTOMapper, never()).toUserDTO(any(User.class));
     }
 
     @Test
-    void getUserProfileHandler_ThrowsException() {
+    void getUserProfileHandler_ThrowsException() throws UserException {
         // Arrange
-        String jwt = "Bearer invalid.jwt.token";
-
-        when(userService.findUserProfile(jwt)).thenThrow(new RuntimeException("Invalid token"));
+        when(userService.findUserProfileById(userId)).thenThrow(new UserException("User not found"));
 
         // Act & Assert
-        assertThatThrownBy(() -> userController.getUserProfileHandler(jwt))
+        assertThatThrownBy(() -> userController.getUserProfileHandler(principal))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("Error during get user profile process");
 
-        verify(userService).findUserProfile(jwt);
+        verify(userService).findUserProfileById(userId);
         verify(userDTOMapper, never()).toUserDTO(any(User.class));
     }
 
@@ -156,23 +142,19 @@ public class UserControllerTest {
     void searchUsersByName_Success() {
         // Arrange
         String name = "test";
-        List<User> users = List.of(testUser);
-        HashSet<UserDTO> userDTOs = new HashSet<>();
-        userDTOs.add(testUserDTO);
+        List<UserSummaryDTO> users = List.of(new UserSummaryDTO(userId, "testUser", "https://example.com/profiles/abc123/public"));
 
-        when(userService.searchUser(name)).thenReturn(users);
-        when(userDTOMapper.toUserDtos(any())).thenReturn(userDTOs);
+        when(userService.searchUser(name, 0, 20, false)).thenReturn(users);
 
         // Act
-        ResponseEntity<HashSet<UserDTO>> response = userController.searchUsersByName(name);
+        ResponseEntity<List<UserSummaryDTO>> response = userController.searchUsersByName(name, 0, 20, false);
 
         // Assert
         assertThat(response).isNotNull();
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
-        assertThat(response.getBody()).isEqualTo(userDTOs);
+        assertThat(response.getBody()).isEqualTo(users);
 
-        verify(userService).searchUser(name);
-        verify(userDTOMapper).toUserDtos(any());
+        verify(userService).searchUser(name, 0, 20, false);
     }
 
     @Test
@@ -180,14 +162,13 @@ public class UserControllerTest {
         // Arrange
         String name = "test";
 
-        when(userService.searchUser(name)).thenThrow(new RuntimeException("Database error"));
+        when(userService.searchUser(name, 0, 20, false)).thenThrow(new RuntimeException("Database error"));
 
         // Act & Assert
-        assertThatThrownBy(() -> userController.searchUsersByName(name))
+        assertThatThrownBy(() -> userController.searchUsersByName(name, 0, 20, false))
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("Error during search users process");
 
-        verify(userService).searchUser(name);
-        verify(userDTOMapper, never()).toUserDtos(any());
+        verify(userService).searchUser(name, 0, 20, false);
     }
 }
@@ -0,0 +1,186 @@
+package co.teamsphere.api.repository;
+
+import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.config.properties.MessageArchiveProperties;
+import co.teamsphere.api.utils.MessageCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MessageArchiveRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private MessageArchiveRepository archive;
+
+    private UUID chatId;
+
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @BeforeEach
+    void setUp() {
+        MessageArchiveProperties properties = new MessageArchiveProperties();
+        properties.setDirectory(directory.toString());
+        properties.setBlockSize(10);
+        archive = new MessageArchiveRepository(properties);
+        chatId = UUID.randomUUID();
+    }
+
+    @Test
+    void emptyArchive_HasNoWatermarkOrMessages() {
+        assertThat(archive.watermark(chatId)).isEmpty();
+        assertThat(archive.findBefore(chatId, null, 10)).isEmpty();
+        assertThat(archive.findAfter(chatId, new MessageCursor(start, UUID.randomUUID()), 10)).isEmpty();
+    }
+
+    @Test
+    void append_RoundTripsEveryField() {
+        MessageDTO original = message(0);
+        original.setContent("héllo wörld");
+        original.setIsRead(true);
+        MessageDTO noContent = message(1);
+        noContent.setContent(null);
+
+        archive.append(chatId, List.of(original, noContent));
+
+        List<MessageDTO> read = archive.findAfter(chatId, new MessageCursor(start.minusDays(1), UUID.randomUUID()), 10);
+        assertThat(read).hasSize(2);
+        assertThat(read.get(0).getId()).isEqualTo(original.getId());
+        assertThat(read.get(0).getTimeStamp()).isEqualTo(original.getTimeStamp());
+        assertThat(read.get(0).getContent()).isEqualTo("héllo wörld");
+        assertThat(read.get(0).getIsRead()).isTrue();
+        assertThat(read.get(0).getUserId()).isEqualTo(original.getUserId());
+        assertThat(read.get(0).getChatId()).isEqualTo(chatId);
+        assertThat(read.get(1).getContent()).isNull();
+    }
+
+    @Test
+    void findBefore_PagesBackwardsAcrossBlocksAndAppends() {
+        List<MessageDTO> messages = messages(0, 35);
+        archive.append(chatId, messages.subList(0, 20));
+        archive.append(chatId, messages.subList(20, 35));
+
+        assertThat(ids(archive.findBefore(chatId, null, 5))).containsExactlyElementsOf(ids(reversed(messages.subList(30, 35))));
+
+        MessageCursor cursor = MessageCursor.of(messages.get(22));
+        assertThat(ids(archive.findBefore(chatId, cursor, 15))).containsExactlyElementsOf(ids(reversed(messages.subList(7, 22))));
+        assertThat(archive.findBefore(chatId, MessageCursor.of(messages.getFirst()), 10)).isEmpty();
+    }
+
+    @Test
+    void findAfter_PagesForwardAcrossBlocks() {
+        List<MessageDTO> messages = messages(0, 35);
+        archive.append(chatId, messages);
+
+        MessageCursor cursor = MessageCursor.of(messages.get(8));
+        assertThat(ids(archive.findAfter(chatId, cursor, 12))).containsExactlyElementsOf(ids(messages.subList(9, 21)));
+        assertThat(archive.findAfter(chatId, MessageCursor.of(messages.getLast()), 10)).isEmpty();
+    }
+
+    @Test
+    void watermark_IsTheNewestArchivedMessage() {
+        List<MessageDTO> messages = messages(0, 12);
+        archive.append(chatId, messages);
+
+        assertThat(archive.watermark(chatId)).hasValueSatisfying(watermark ->
+                assertThat(watermark.getId()).isEqualTo(messages.getLast().getId()));
+    }
+
+    @Test
+    void append_OutOfOrder_IsRejected() {
+        archive.append(chatId, messages(10, 20));
+
+        assertThatThrownBy(() -> archive.append(chatId, messages(0, 5)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(archive.findBefore(chatId, null, 100)).hasSize(10);
+    }
+
+    @Test
+    void append_AfterTornWrite_DropsTheUnindexedTail() throws IOException {
+        List<MessageDTO> messages = messages(0, 20);
+        archive.append(chatId, messages.subList(0, 10));
+        Path segment = Files.list(directory.resolve(chatId.toString().substring(0, 2)))
+                .filter(path -> path.toString().endsWith(".seg"))
+                .findFirst()
+                .orElseThrow();
+        // a block that made it to disk without its index entry
+        Files.write(segment, new byte[100], StandardOpenOption.APPEND);
+
+        assertThat(archive.findBefore(chatId, null, 100)).hasSize(10);
+
+        archive.append(chatId, messages.subList(10, 20));
+        assertThat(ids(archive.findBefore(chatId, null, 100))).containsExactlyElementsOf(ids(reversed(messages)));
+    }
+
+    @Test
+    void append_PastMaxSegmentSize_IsRejectedAndLeavesTheArchiveReadable() throws IOException {
+        List<MessageDTO> messages = messages(0, 30);
+        archive.append(chatId, messages.subList(0, 10));
+        Path segment = Files.list(directory.resolve(chatId.toString().substring(0, 2)))
+                .filter(path -> path.toString().endsWith(".seg"))
+                .findFirst()
+                .orElseThrow();
+
+        MessageArchiveProperties properties = new MessageArchiveProperties();
+        properties.setDirectory(directory.toString());
+        properties.setBlockSize(10);
+        // room for one more block but not two
+        properties.setMaxSegmentBytes(Files.size(segment) * 2 + Files.size(segment) / 2);
+        MessageArchiveRepository small = new MessageArchiveRepository(properties);
+
+        assertThatThrownBy(() -> small.append(chatId, messages.subList(10, 30)))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(ids(small.findBefore(chatId, null, 100))).containsExactlyElementsOf(ids(reversed(messages.subList(0, 10))));
+    }
+
+    @Test
+    void deleteChat_RemovesTheArchive() {
+        archive.append(chatId, messages(0, 5));
+
+        archive.deleteChat(chatId);
+
+        assertThat(archive.watermark(chatId)).isEmpty();
+        assertThat(archive.findBefore(chatId, null, 10)).isEmpty();
+    }
+
+    private List<MessageDTO> messages(int from, int to) {
+        List<MessageDTO> messages = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            messages.add(message(i));
+        }
+        return messages;
+    }
+
+    private MessageDTO message(int minute) {
+        return MessageDTO.builder()
+                .id(UUID.randomUUID())
+                .chatId(chatId)
+                .userId(UUID.randomUUID())
+                .content("message " + minute)
+                .timeStamp(start.plusMinutes(minute))
+                .isRead(false)
+                .build();
+    }
+
+    private static List<MessageDTO> reversed(List<MessageDTO> messages) {
+        return new ArrayList<>(messages).reversed();
+    }
+
+    private static List<UUID> ids(List<MessageDTO> messages) {
+        return messages.stream().map(MessageDTO::getId).toList();
+    }
+}
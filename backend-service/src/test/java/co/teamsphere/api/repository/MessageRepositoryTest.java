@@ -0,0 +1,210 @@
+package co.teamsphere.api.repository;
+
+import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.models.Chat;
+import co.teamsphere.api.models.Messages;
+import co.teamsphere.api.models.User;
+import co.teamsphere.api.utils.MessageCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the shard-aware queries against three embedded databases standing in for the primary and two shards.
+ */
+public class MessageRepositoryTest {
+
+    private final List<MessageShard> shards = new ArrayList<>();
+
+    private MessageShard primary;
+
+    private MessageShard shard1;
+
+    private MessageShard shard2;
+
+    private MessageRepository messageRepository;
+
+    private final UUID userId = UUID.randomUUID();
+
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @BeforeEach
+    void setUp() {
+        primary = shard(MessageShardResolver.PRIMARY);
+        shard1 = shard("shard-1");
+        shard2 = shard("shard-2");
+        // on the primary Hibernate owns the table
+        primary.jdbcTemplate().execute(MessageRepository.CREATE_TABLE);
+
+        MessageShardResolver resolver = new MessageShardResolver(shards, List.of(), mock(ChatRepository.class));
+        messageRepository = new MessageRepository(resolver);
+        messageRepository.createShardTables();
+    }
+
+    @AfterEach
+    void tearDown() {
+        shards.forEach(shard -> shard.jdbcTemplate().execute("SHUTDOWN"));
+    }
+
+    @Test
+    void perChatQueries_OnlySeeTheirShard() {
+        UUID chatId = UUID.randomUUID();
+        messageRepository.insertMessages(shard1, List.of(message(chatId, 0), message(chatId, 1)));
+        messageRepository.insertMessages(shard2, List.of(message(chatId, 2)));
+
+        assertThat(messageRepository.findLatestByChatId(shard1, chatId, 10)).extracting(MessageDTO::getContent)
+                .containsExactly("message 1", "message 0");
+        assertThat(messageRepository.findLatestByChatId(shard2, chatId, 10)).extracting(MessageDTO::getContent)
+                .containsExactly("message 2");
+        assertThat(messageRepository.findLatestByChatId(primary, chatId, 10)).isEmpty();
+    }
+
+    @Test
+    void save_AssignsAnIdAndRoundTripsEveryField() {
+        UUID chatId = UUID.randomUUID();
+        Messages message = message(chatId, 0);
+        message.setId(null);
+        message.setIsRead(true);
+
+        messageRepository.save(shard2, message);
+
+        assertThat(message.getId()).isNotNull();
+        MessageDTO stored = messageRepository.findLatestByChatId(shard2, chatId, 1).getFirst();
+        assertThat(stored.getId()).isEqualTo(message.getId());
+        assertThat(stored.getContent()).isEqualTo("message 0");
+        assertThat(stored.getTimeStamp()).isEqualTo(start);
+        assertThat(stored.getIsRead()).isTrue();
+        assertThat(stored.getUserId()).isEqualTo(userId);
+        assertThat(stored.getChatId()).isEqualTo(chatId);
+    }
+
+    @Test
+    void keysetPaging_WalksTheHistoryBothWays() {
+        UUID chatId = UUID.randomUUID();
+        List<Messages> history = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            history.add(message(chatId, i));
+        }
+        messageRepository.insertMessages(shard1, history);
+        messageRepository.insertMessages(shard1, List.of(message(UUID.randomUUID(), 2)));
+
+        List<MessageDTO> latest = messageRepository.findLatestByChatId(shard1, chatId, 2);
+        assertThat(latest).extracting(MessageDTO::getContent).containsExactly("message 4", "message 3");
+
+        List<MessageDTO> before = messageRepository.findByChatIdBefore(shard1, chatId, MessageCursor.of(latest.getLast()), 10);
+        assertThat(before).extracting(MessageDTO::getContent).containsExactly("message 2", "message 1", "message 0");
+
+        List<MessageDTO> first = messageRepository.findByChatIdAfter(shard1, chatId, null, 2);
+        assertThat(first).extracting(MessageDTO::getContent).containsExactly("message 0", "message 1");
+
+        List<MessageDTO> after = messageRepository.findByChatIdAfter(shard1, chatId, MessageCursor.of(first.getLast()), 10);
+        assertThat(after).extracting(MessageDTO::getContent).containsExactly("message 2", "message 3", "message 4");
+    }
+
+    @Test
+    void findById_AsksEveryShard_DeleteByIdOnlyItsOwn() {
+        UUID chatId = UUID.randomUUID();
+        Messages message = message(chatId, 0);
+        messageRepository.insertMessages(shard2, List.of(message));
+
+        assertThat(messageRepository.findById(message.getId()).map(MessageDTO::getChatId)).contains(chatId);
+        assertThat(messageRepository.findById(UUID.randomUUID())).isEmpty();
+
+        assertThat(messageRepository.deleteById(shard1, chatId, message.getId())).isZero();
+        assertThat(messageRepository.deleteById(shard2, chatId, message.getId())).isEqualTo(1);
+        assertThat(messageRepository.findById(message.getId())).isEmpty();
+    }
+
+    @Test
+    void findChatIdsWithMessagesBefore_ListsAChatOnTwoShardsOnce() {
+        UUID moving = UUID.randomUUID();
+        UUID old = UUID.randomUUID();
+        UUID recent = UUID.randomUUID();
+        messageRepository.insertMessages(primary, List.of(message(moving, 0), message(recent, 10)));
+        messageRepository.insertMessages(shard1, List.of(message(moving, 1), message(old, 2)));
+
+        List<UUID> chatIds = messageRepository.findChatIdsWithMessagesBefore(start.plusSeconds(5), 10);
+
+        assertThat(chatIds).containsExactlyInAnyOrder(moving, old);
+        assertThat(messageRepository.findChatIdsWithMessagesBefore(start.plusSeconds(5), 1)).hasSize(1);
+    }
+
+    @Test
+    void archiverQueries_StayWithinTheChat() {
+        UUID chatId = UUID.randomUUID();
+        UUID otherChat = UUID.randomUUID();
+        messageRepository.insertMessages(shard1, List.of(message(chatId, 0), message(chatId, 1), message(chatId, 2), message(otherChat, 0)));
+
+        List<MessageDTO> oldest = messageRepository.findOldestBefore(shard1, chatId, start.plusSeconds(2), 10);
+        assertThat(oldest).extracting(MessageDTO::getContent).containsExactly("message 0", "message 1");
+
+        assertThat(messageRepository.deleteUpTo(shard1, chatId, MessageCursor.of(oldest.getLast()))).isEqualTo(2);
+        assertThat(messageRepository.findLatestByChatId(shard1, chatId, 10)).extracting(MessageDTO::getContent)
+                .containsExactly("message 2");
+        assertThat(messageRepository.findLatestByChatId(shard1, otherChat, 10)).hasSize(1);
+    }
+
+    @Test
+    void copyMessages_SkipsRowsTheShardAlreadyHas() {
+        UUID chatId = UUID.randomUUID();
+        messageRepository.insertMessages(shard1, List.of(message(chatId, 0), message(chatId, 1)));
+        List<MessageDTO> source = messageRepository.findByChatIdAfter(shard1, chatId, null, 10);
+
+        messageRepository.copyMessages(shard2, source.subList(0, 1));
+        messageRepository.copyMessages(shard2, source);
+
+        assertThat(messageRepository.findByChatIdAfter(shard2, chatId, null, 10))
+                .extracting(MessageDTO::getId)
+                .containsExactlyElementsOf(source.stream().map(MessageDTO::getId).toList());
+    }
+
+    @Test
+    void deleteChat_RemovesTheWholeHistoryOnTheShard() {
+        UUID chatId = UUID.randomUUID();
+        List<Messages> history = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            history.add(message(chatId, i));
+        }
+        messageRepository.insertMessages(shard1, history);
+        messageRepository.insertMessages(shard2, List.of(message(chatId, 40)));
+
+        assertThat(messageRepository.deleteChat(shard1, chatId)).isEqualTo(30);
+
+        assertThat(messageRepository.findLatestByChatId(shard1, chatId, 10)).isEmpty();
+        assertThat(messageRepository.findLatestByChatId(shard2, chatId, 10)).hasSize(1);
+    }
+
+    private MessageShard shard(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        MessageShard shard = new MessageShard(name, new JdbcTemplate(dataSource),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        shards.add(shard);
+        return shard;
+    }
+
+    private Messages message(UUID chatId, int second) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        return Messages.builder()
+                .id(UUID.randomUUID())
+                .chat(chat)
+                .username(User.builder().id(userId).build())
+                .content("message " + second)
+                .timeStamp(start.plusSeconds(second))
+                .isRead(false)
+                .build();
+    }
+}
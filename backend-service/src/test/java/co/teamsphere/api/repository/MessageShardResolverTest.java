@@ -0,0 +1,94 @@
+package co.teamsphere.api.repository;
+
+import co.teamsphere.api.models.Chat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageShardResolverTest {
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    private final MessageShard primary = new MessageShard(MessageShardResolver.PRIMARY, null, null);
+
+    private final MessageShard shard1 = new MessageShard("shard-1", null, null);
+
+    private final MessageShard shard2 = new MessageShard("shard-2", null, null);
+
+    @Test
+    void forChat_WithoutPlacement_IsThePrimary() {
+        MessageShardResolver resolver = resolver(List.of());
+        Chat chat = Chat.builder().id(UUID.randomUUID()).build();
+
+        assertThat(resolver.forChat(chat)).isSameAs(primary);
+    }
+
+    @Test
+    void forChat_FollowsThePlacement() {
+        MessageShardResolver resolver = resolver(List.of());
+        UUID chatId = UUID.randomUUID();
+        when(chatRepository.findMessageShard(chatId)).thenReturn("shard-2");
+
+        assertThat(resolver.forChat(Chat.builder().id(chatId).messageShard("shard-1").build())).isSameAs(shard1);
+        assertThat(resolver.forChat(chatId)).isSameAs(shard2);
+    }
+
+    @Test
+    void forChat_UnknownPlacement_FailsInsteadOfFallingBackToThePrimary() {
+        MessageShardResolver resolver = resolver(List.of());
+        Chat chat = Chat.builder().id(UUID.randomUUID()).messageShard("shard-9").build();
+
+        assertThatThrownBy(() -> resolver.forChat(chat))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("shard-9");
+    }
+
+    @Test
+    void constructor_RejectsShardsWithoutThePrimaryOrWithDuplicateNames() {
+        assertThatThrownBy(() -> new MessageShardResolver(List.of(shard1), List.of(), chatRepository))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MessageShardResolver(List.of(primary, shard1, shard1), List.of(), chatRepository))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> resolver(List.of("shard-9")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void assignShard_SpreadsNewChatsOverEveryShard() {
+        MessageShardResolver resolver = resolver(List.of());
+
+        Map<String, Integer> placed = new HashMap<>();
+        for (int i = 0; i < 3_000; i++) {
+            placed.merge(resolver.assignShard(UUID.randomUUID()), 1, Integer::sum);
+        }
+
+        assertThat(placed).containsOnlyKeys(MessageShardResolver.PRIMARY, "shard-1", "shard-2");
+        assertThat(placed.values()).allMatch(count -> count > 800);
+    }
+
+    @Test
+    void assignShard_OnlyUsesTheShardsTakingNewChats() {
+        MessageShardResolver resolver = resolver(List.of("shard-2"));
+        UUID chatId = UUID.randomUUID();
+
+        assertThat(resolver.assignShard(chatId)).isEqualTo("shard-2");
+        assertThat(resolver.assignShard(chatId)).isEqualTo(resolver.assignShard(chatId));
+        assertThat(resolver.byName("shard-1")).isSameAs(shard1);
+    }
+
+    private MessageShardResolver resolver(List<String> newChatShards) {
+        return new MessageShardResolver(List.of(primary, shard1, shard2), newChatShards, chatRepository);
+    }
+}
@@ -1,5 +1,6 @@
 package co.teamsphere.api.repository;
 
+import co.teamsphere.api.DTO.MessageDTO;
 import co.teamsphere.api.models.Chat;
 import co.teamsphere.api.models.Messages;
 import co.teamsphere.api.models.User;
@@ -11,6 +12,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
@@ -123,49 +125,45 @@ public class UserRepositoryTest {
     }
 
     @Test
-    void searchUserTest() {
-        // Setup test data using helper methods
-        User user1 = createUser("john_doe", "john@example.com", "password1", "1112223333");
-        User user2 = createUser("jane_doe", "jane@example.com", "password2", "2223334444");
-        User user3 = createUser("doejohn", "doejohn@example.com", "password3", "3334445555");
-
-        List<User> userList = List.of(user1, user2, user3);
+    void searchUserIdsTest() {
+        // Setup test data
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        Pageable firstPage = PageRequest.of(0, 20);
 
         // Setup mock
-        when(userRepository.searchUsers("doe")).thenReturn(userList);
+        when(userRepository.searchUserIds("doe", firstPage)).thenReturn(ids);
 
         // Test
-        List<User> searchedUsers = userRepository.searchUsers("doe");
+        List<UUID> searchedIds = userRepository.searchUserIds("doe", firstPage);
 
         // Verify
-        assertEquals(3, searchedUsers.size());
-        assertTrue(searchedUsers.stream().anyMatch(u -> u.getUsername().equals("john_doe")));
-        assertTrue(searchedUsers.stream().anyMatch(u -> u.getUsername().equals("jane_doe")));
-        assertTrue(searchedUsers.stream().anyMatch(u -> u.getUsername().equals("doejohn")));
-        verify(userRepository).searchUsers("doe");
+        assertEquals(3, searchedIds.size());
+        assertTrue(searchedIds.containsAll(ids));
+        verify(userRepository).searchUserIds("doe", firstPage);
     }
 
     @Test
-    void findMessageByChatIdTest() {
-        // Setup test data using helper methods
+    void findLatestByChatIdTest() {
+        // Setup test data
         LocalDateTime time1 = LocalDateTime.now().minusMinutes(10);
         LocalDateTime time2 = LocalDateTime.now().minusMinutes(5);
 
-        Messages message1 = createMessage(testChat, "First message", time1);
-        Messages message2 = createMessage(testChat, "Second message", time2);
+        MessageDTO message1 = new MessageDTO(UUID.randomUUID(), "Second message", time2, false, testUser.getId(), testChat.getId());
+        MessageDTO message2 = new MessageDTO(UUID.randomUUID(), "First message", time1, false, testUser.getId(), testChat.getId());
 
-        List<Messages> messagesList = List.of(message1, message2);
+        List<MessageDTO> messagesList = List.of(message1, message2);
+        MessageShard shard = new MessageShard(MessageShardResolver.PRIMARY, null, null);
 
         // Setup mock
-        when(messagesRepository.findMessageByChatId(testChat.getId())).thenReturn(messagesList);
+        when(messagesRepository.findLatestByChatId(shard, testChat.getId(), 50)).thenReturn(messagesList);
 
         // Test
-        List<Messages> messages = messagesRepository.findMessageByChatId(testChat.getId());
+        List<MessageDTO> messages = messagesRepository.findLatestByChatId(shard, testChat.getId(), 50);
 
         // Verify
         assertFalse(messages.isEmpty());
         assertEquals(2, messages.size());
-        verify(messagesRepository).findMessageByChatId(testChat.getId());
+        verify(messagesRepository).findLatestByChatId(shard, testChat.getId(), 50);
     }
 
     @Test
@@ -191,7 +189,7 @@ public class UserRepositoryTest {
     }
 
     @Test
-    void findSingleChatByUsersIdTest() {
+    void findByDirectKeyTest() {
         // Setup test data using helper methods
         User user1 = createUser("user1", "user1@example.com", "pass1", "1112223333");
         user1.setId(UUID.randomUUID());
@@ -203,18 +201,19 @@ public class UserRepositoryTest {
         users.add(user2);
 
         Chat chat = createChat("Direct Chat", users, false);
+        chat.setDirectKey(Chat.directKey(user1.getId(), user2.getId()));
 
         // Setup mock
-        when(chatRepository.findSingleChatByUsersId(user1, user2)).thenReturn(chat);
+        when(chatRepository.findByDirectKey(Chat.directKey(user2.getId(), user1.getId()))).thenReturn(Optional.of(chat));
 
         // Test
-        Chat foundChat = chatRepository.findSingleChatByUsersId(user1, user2);
+        Chat foundChat = chatRepository.findByDirectKey(Chat.directKey(user2.getId(), user1.getId())).orElse(null);
 
         // Verify
         assertNotNull(foundChat);
         assertFalse(foundChat.getIsGroup());
         assertEquals(2, foundChat.getUsers().size());
-        verify(chatRepository).findSingleChatByUsersId(user1, user2);
+        verify(chatRepository).findByDirectKey(chat.getDirectKey());
     }
 
     @Test
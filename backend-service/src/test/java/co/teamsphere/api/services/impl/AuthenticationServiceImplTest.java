@@ -1,6 +1,7 @@
 package co.teamsphere.api.services.impl;
 
 import co.teamsphere.api.config.JWTTokenProvider;
+import co.teamsphere.api.exception.LoginThrottledException;
 import co.teamsphere.api.exception.ProfileImageException;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.RefreshToken;
@@ -10,7 +11,12 @@ import co.teamsphere.api.request.SignupRequest;
 import co.teamsphere.api.response.AuthResponse;
 import co.teamsphere.api.response.CloudflareApiResponse;
 import co.teamsphere.api.services.CloudflareApiService;
+import co.teamsphere.api.services.GoogleTokenService;
+import co.teamsphere.api.services.LoginAttemptService;
 import co.teamsphere.api.services.RefreshTokenService;
+import co.teamsphere.api.services.UserSearchService;
+import co.teamsphere.api.utils.GoogleAuthRequest;
+import co.teamsphere.api.utils.GoogleUserInfo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -35,11 +41,14 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class AuthenticationServiceImplTest {
 
+    private static final String CLIENT_IP = "203.0.113.7";
+
     @Mock
     private UserRepository userRepository;
 
@@ -58,6 +67,15 @@ public class AuthenticationServiceImplTest {
     @Mock
     private CloudflareApiService cloudflareApiService;
 
+    @Mock
+    private LoginAttemptService loginAttemptService;
+
+    @Mock
+    private GoogleTokenService googleTokenService;
+
+    @Mock
+    private UserSearchService userSearchService;
+
     @InjectMocks
     private AuthenticationServiceImpl authenticationService;
 
@@ -141,7 +159,7 @@ public class AuthenticationServiceImplTest {
         var refreshToken = RefreshToken.builder()
                 .id(UUID.randomUUID())
                 .user(testUser)
-                .refreshToken("refreshToken")
+                .rawToken("refreshToken")
                 .build();
         when(refreshTokenService.createRefreshToken(validSignupRequest.getEmail())).thenReturn(refreshToken);
 
@@ -235,22 +253,50 @@ public class AuthenticationServiceImplTest {
         var refreshToken = RefreshToken.builder()
             .id(UUID.randomUUID())
             .user(testUser)
-            .refreshToken("refresh.token.here")
+            .rawToken("refresh.token.here")
             .build();
         when(refreshTokenService.createRefreshToken(email)).thenReturn(refreshToken);
 
         // Act
-        AuthResponse response = authenticationService.loginUser(email, password);
+        AuthResponse response = authenticationService.loginUser(email, password, CLIENT_IP);
 
         // Assert
         assertThat(response).isNotNull();
         assertThat(response.getJwt()).isEqualTo("jwt.token.here");
         assertThat(response.getRefreshToken()).isEqualTo("refresh.token.here");
         assertThat(response.isStatus()).isTrue();
+        verify(loginAttemptService).recordSuccess(email);
+    }
+
+    @Test
+    void loginUser_WithOutdatedHash_RehashesAndSaves() throws Exception {
+        // Arrange
+        String email = "test@example.com";
+        String password = "Password123";
+
+        when(userRepository.findByEmail(email)).thenReturn(Optional.of(testUser));
+        when(customUserDetailsService.loadUserByUsername(email)).thenReturn(userDetails);
+        when(passwordEncoder.matches(password, userDetails.getPassword())).thenReturn(true);
+        when(passwordEncoder.upgradeEncoding(testUser.getPassword())).thenReturn(true);
+        when(passwordEncoder.encode(password)).thenReturn("rehashedPassword");
+        when(jwtTokenProvider.generateJwtToken(any(Authentication.class), any(UUID.class))).thenReturn("jwt.token.here");
+        when(refreshTokenService.createRefreshToken(email)).thenReturn(RefreshToken.builder()
+            .id(UUID.randomUUID())
+            .user(testUser)
+            .rawToken("refresh.token.here")
+            .build());
+
+        // Act
+        authenticationService.loginUser(email, password, CLIENT_IP);
+
+        // Assert
+        ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
+        verify(userRepository).save(userCaptor.capture());
+        assertThat(userCaptor.getValue().getPassword()).isEqualTo("rehashedPassword");
     }
 
     @Test
-    void loginUser_WithExistingRefreshToken_ReturnsAuthResponse() throws Exception {
+    void loginUser_WithExistingRefreshToken_IssuesNewToken() throws Exception {
         // Arrange
         String email = "test@example.com";
         String password = "Password123";
@@ -260,22 +306,25 @@ public class AuthenticationServiceImplTest {
         when(passwordEncoder.matches(password, userDetails.getPassword())).thenReturn(true);
         when(jwtTokenProvider.generateJwtToken(any(Authentication.class), any(UUID.class))).thenReturn("jwt.token.here");
 
-        var existingRefreshToken = RefreshToken.builder()
+        // only the hash of an existing token is stored, so it can't be handed out again
+        var rotatedRefreshToken = RefreshToken.builder()
             .id(UUID.randomUUID())
             .user(testUser)
-            .refreshToken("existing.refresh.token.here")
+            .refreshToken("hashed.refresh.token")
+            .rawToken("new.refresh.token.here")
             .expiredAt(Instant.now().plus(1, ChronoUnit.DAYS))
             .build();
-        when(refreshTokenService.findByUserId(testUser.getId().toString())).thenReturn(existingRefreshToken);
+        when(refreshTokenService.createRefreshToken(email)).thenReturn(rotatedRefreshToken);
 
         // Act
-        AuthResponse response = authenticationService.loginUser(email, password);
+        AuthResponse response = authenticationService.loginUser(email, password, CLIENT_IP);
 
         // Assert
         assertThat(response).isNotNull();
         assertThat(response.getJwt()).isEqualTo("jwt.token.here");
-        assertThat(response.getRefreshToken()).isEqualTo("existing.refresh.token.here");
+        assertThat(response.getRefreshToken()).isEqualTo("new.refresh.token.here");
         assertThat(response.isStatus()).isTrue();
+        verify(refreshTokenService, never()).findByUserId(anyString());
     }
 
     @Test
@@ -285,7 +334,7 @@ public class AuthenticationServiceImplTest {
         String password = "Password123";
 
         // Act & Assert
-        assertThatThrownBy(() -> authenticationService.loginUser(invalidEmail, password))
+        assertThatThrownBy(() -> authenticationService.loginUser(invalidEmail, password, CLIENT_IP))
                 .isInstanceOf(UserException.class)
                 .hasMessageContaining("Unexpected error during login process");
     }
@@ -299,7 +348,7 @@ public class AuthenticationServiceImplTest {
         when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
 
         // Act & Assert
-        assertThatThrownBy(() -> authenticationService.loginUser(email, password))
+        assertThatThrownBy(() -> authenticationService.loginUser(email, password, CLIENT_IP))
                 .isInstanceOf(UserException.class)
                 .hasMessageContaining("Invalid username or password");
     }
@@ -315,8 +364,62 @@ public class AuthenticationServiceImplTest {
         lenient().when(passwordEncoder.matches(wrongPassword, userDetails.getPassword())).thenReturn(false);
 
         // Act & Assert
-        assertThatThrownBy(() -> authenticationService.loginUser(email, wrongPassword))
+        assertThatThrownBy(() -> authenticationService.loginUser(email, wrongPassword, CLIENT_IP))
                 .isInstanceOf(UserException.class)
                 .hasMessageContaining("Invalid username or password");
+        verify(loginAttemptService).recordFailure(email, CLIENT_IP);
+    }
+
+    @Test
+    void loginUser_WhenThrottled_RejectsBeforeHashing() throws Exception {
+        // Arrange
+        String email = "test@example.com";
+        String password = "Password123";
+
+        doThrow(new LoginThrottledException("Too many failed login attempts, please try again later.", 60))
+                .when(loginAttemptService).checkAllowed(email, CLIENT_IP);
+
+        // Act & Assert
+        assertThatThrownBy(() -> authenticationService.loginUser(email, password, CLIENT_IP))
+                .isInstanceOf(LoginThrottledException.class);
+        verify(userRepository, never()).findByEmail(anyString());
+        verify(passwordEncoder, never()).matches(any(), anyString());
+    }
+
+    @Test
+    void loginWithGoogle_VerifiedIdToken_UsesIdentityFromToken() throws Exception {
+        // Arrange
+        GoogleAuthRequest request = new GoogleAuthRequest();
+        request.setIdToken("google.id.token");
+        GoogleUserInfo verified = new GoogleUserInfo();
+        verified.setEmail("test@example.com");
+        verified.setName("Test User");
+        when(googleTokenService.verifyIdToken("google.id.token")).thenReturn(verified);
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        when(jwtTokenProvider.generateJwtTokenFromEmail("test@example.com", testUser.getId())).thenReturn("jwt.token.here");
+        when(refreshTokenService.createRefreshToken("test@example.com"))
+                .thenReturn(RefreshToken.builder().rawToken("refresh.token.here").build());
+
+        // Act
+        AuthResponse response = authenticationService.loginWithGoogle(request);
+
+        // Assert
+        assertThat(response.getJwt()).isEqualTo("jwt.token.here");
+        assertThat(response.getRefreshToken()).isEqualTo("refresh.token.here");
+        verify(userRepository, never()).saveAndFlush(any(User.class));
+    }
+
+    @Test
+    void loginWithGoogle_InvalidIdToken_RejectsBeforeTouchingUsers() {
+        // Arrange
+        GoogleAuthRequest request = new GoogleAuthRequest();
+        request.setIdToken("forged.id.token");
+        when(googleTokenService.verifyIdToken("forged.id.token"))
+                .thenThrow(new BadCredentialsException("Invalid Google ID token"));
+
+        // Act & Assert
+        assertThatThrownBy(() -> authenticationService.loginWithGoogle(request))
+                .isInstanceOf(BadCredentialsException.class);
+        verify(userRepository, never()).findByEmail(anyString());
     }
 }
@@ -0,0 +1,108 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.properties.InboxProperties;
+import co.teamsphere.api.models.Chat;
+import co.teamsphere.api.models.Messages;
+import co.teamsphere.api.models.User;
+import co.teamsphere.api.repository.ChatInboxRepository;
+import co.teamsphere.api.repository.ChatMemberBatchRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatInboxServiceImplTest {
+
+    @Mock
+    private ChatInboxRepository chatInboxRepository;
+
+    @Mock
+    private ChatMemberBatchRepository chatMemberBatchRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ChatInboxServiceImpl chatInboxService;
+
+    private Chat chat;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        chatInboxService = new ChatInboxServiceImpl(chatInboxRepository, chatMemberBatchRepository, transactionManager, new InboxProperties());
+
+        chat = new Chat();
+        chat.setId(UUID.randomUUID());
+        alice = User.builder().id(UUID.randomUUID()).build();
+        bob = User.builder().id(UUID.randomUUID()).build();
+    }
+
+    @Test
+    void flush_CoalescesMessagesIntoOneUpdatePerChat() {
+        LocalDateTime now = LocalDateTime.now();
+        Messages first = message(alice, "hi", now);
+        Messages second = message(bob, "hey", now.plusSeconds(1));
+
+        chatInboxService.recordMessage(first);
+        chatInboxService.recordMessage(second);
+        chatInboxService.flush();
+
+        verify(chatInboxRepository, times(1)).applyMessages(chat.getId(), second.getId(), "hey", bob.getId(), second.getTimeStamp(), 2);
+        // alice only missed bob's reply, bob has seen everything
+        verify(chatInboxRepository).setUnreadCount(chat.getId(), alice.getId(), 1);
+        verify(chatInboxRepository).setUnreadCount(chat.getId(), bob.getId(), 0);
+    }
+
+    @Test
+    void flush_MarkReadResetsUnreadCount() {
+        UUID reader = UUID.randomUUID();
+
+        chatInboxService.recordMessage(message(alice, "hi", LocalDateTime.now()));
+        chatInboxService.markRead(chat.getId(), reader);
+        chatInboxService.flush();
+
+        verify(chatInboxRepository).setUnreadCount(chat.getId(), reader, 0);
+    }
+
+    @Test
+    void flush_RequeuesUpdateWhenWriteFails() {
+        Messages msg = message(alice, "hi", LocalDateTime.now());
+        when(chatInboxRepository.applyMessages(any(), any(), any(), any(), any(), anyInt()))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(1);
+
+        chatInboxService.recordMessage(msg);
+        chatInboxService.flush();
+        chatInboxService.flush();
+
+        verify(chatInboxRepository, times(2)).applyMessages(chat.getId(), msg.getId(), "hi", alice.getId(), msg.getTimeStamp(), 1);
+    }
+
+    @Test
+    void flush_DoesNothingWhenNothingPending() {
+        chatInboxService.flush();
+
+        verifyNoInteractions(chatInboxRepository);
+    }
+
+    private Messages message(User sender, String content, LocalDateTime timeStamp) {
+        return Messages.builder()
+                .id(UUID.randomUUID())
+                .chat(chat)
+                .username(sender)
+                .content(content)
+                .timeStamp(timeStamp)
+                .build();
+    }
+}
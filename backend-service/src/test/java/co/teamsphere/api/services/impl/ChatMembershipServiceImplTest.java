@@ -0,0 +1,98 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.properties.MembershipCacheProperties;
+import co.teamsphere.api.models.ChatMembershipChange;
+import co.teamsphere.api.repository.ChatMembershipChangeRepository;
+import co.teamsphere.api.repository.ChatRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatMembershipServiceImplTest {
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private ChatMembershipChangeRepository chatMembershipChangeRepository;
+
+    private ChatMembershipServiceImpl chatMembershipService;
+
+    private UUID chatId;
+    private UUID memberId;
+    private UUID adminId;
+
+    @BeforeEach
+    void setUp() {
+        chatMembershipService = new ChatMembershipServiceImpl(chatRepository, chatMembershipChangeRepository,
+                new MembershipCacheProperties(), new SimpleMeterRegistry());
+        chatId = UUID.randomUUID();
+        memberId = UUID.randomUUID();
+        adminId = UUID.randomUUID();
+    }
+
+    @Test
+    void isMember_LoadsChatOnceAndServesRepeatChecksFromCache() {
+        when(chatRepository.findMemberIds(chatId)).thenReturn(List.of(memberId, adminId));
+        when(chatRepository.findAdminIds(chatId)).thenReturn(List.of(adminId));
+
+        assertTrue(chatMembershipService.isMember(chatId, memberId));
+        assertTrue(chatMembershipService.isMember(chatId, adminId));
+        assertFalse(chatMembershipService.isMember(chatId, UUID.randomUUID()));
+        assertTrue(chatMembershipService.isAdmin(chatId, adminId));
+        assertFalse(chatMembershipService.isAdmin(chatId, memberId));
+
+        verify(chatRepository, times(1)).findMemberIds(chatId);
+        verify(chatRepository, times(1)).findAdminIds(chatId);
+    }
+
+    @Test
+    void evict_ForcesReloadOnNextCheck() {
+        UUID newMember = UUID.randomUUID();
+        when(chatRepository.findMemberIds(chatId))
+                .thenReturn(List.of(memberId))
+                .thenReturn(List.of(memberId, newMember));
+        when(chatRepository.findAdminIds(chatId)).thenReturn(List.of());
+
+        assertFalse(chatMembershipService.isMember(chatId, newMember));
+
+        chatMembershipService.evict(chatId);
+
+        assertTrue(chatMembershipService.isMember(chatId, newMember));
+        verify(chatRepository, times(2)).findMemberIds(chatId);
+        verify(chatMembershipChangeRepository).upsert(eq(chatId), any(Instant.class));
+    }
+
+    @Test
+    void poll_DropsChatsChangedOnOtherNodes() {
+        when(chatRepository.findMemberIds(chatId))
+                .thenReturn(List.of(memberId))
+                .thenReturn(List.of());
+        when(chatRepository.findAdminIds(chatId)).thenReturn(List.of());
+        chatMembershipService.poll();
+
+        assertTrue(chatMembershipService.isMember(chatId, memberId));
+
+        // another node removed the member and recorded the change
+        when(chatMembershipChangeRepository.findByUpdatedAtAfter(any(Instant.class)))
+                .thenReturn(List.of(new ChatMembershipChange(chatId, Instant.now())));
+        chatMembershipService.poll();
+
+        assertFalse(chatMembershipService.isMember(chatId, memberId));
+        verify(chatRepository, times(2)).findMemberIds(chatId);
+    }
+}
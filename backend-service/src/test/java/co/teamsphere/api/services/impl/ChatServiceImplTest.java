@@ -0,0 +1,223 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.DTO.ChatDTO;
+import co.teamsphere.api.DTO.ChatSummaryDTO;
+import co.teamsphere.api.DTO.DirectChatPeerDTO;
+import co.teamsphere.api.exception.ChatException;
+import co.teamsphere.api.exception.UserException;
+import co.teamsphere.api.models.Chat;
+import co.teamsphere.api.models.ChatInbox;
+import co.teamsphere.api.models.User;
+import co.teamsphere.api.repository.ChatMemberBatchRepository;
+import co.teamsphere.api.repository.ChatRepository;
+import co.teamsphere.api.repository.MessageArchiveRepository;
+import co.teamsphere.api.repository.MessageRepository;
+import co.teamsphere.api.repository.MessageShardResolver;
+import co.teamsphere.api.request.GroupChatRequest;
+import co.teamsphere.api.services.ChatInboxService;
+import co.teamsphere.api.services.ChatMembershipService;
+import co.teamsphere.api.services.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatServiceImplTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private ChatInboxService chatInboxService;
+
+    @Mock
+    private ChatMembershipService chatMembershipService;
+
+    @Mock
+    private ChatMemberBatchRepository chatMemberBatchRepository;
+
+    @Mock
+    private MessageArchiveRepository messageArchiveRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private MessageShardResolver messageShardResolver;
+
+    @InjectMocks
+    private ChatServiceImpl chatService;
+
+    private User creator;
+    private UUID chatId;
+
+    @BeforeEach
+    void setUp() {
+        creator = User.builder().id(UUID.randomUUID()).username("creator").build();
+        chatId = UUID.randomUUID();
+    }
+
+    @Test
+    void createGroup_LargeGroup_ResolvesMembersInOneQueryAndBatchesJoinRows() throws UserException {
+        List<UUID> memberIds = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            memberIds.add(UUID.randomUUID());
+        }
+        when(userService.findUserById(creator.getId())).thenReturn(creator);
+        when(userService.findExistingUserIds(anyCollection())).thenReturn(memberIds);
+        when(chatRepository.saveAndFlush(any(Chat.class))).thenAnswer(invocation -> saved(invocation.getArgument(0)));
+        when(messageShardResolver.assignShard(chatId)).thenReturn("shard-1");
+
+        ChatDTO chat = chatService.createGroup(new GroupChatRequest(memberIds, "team", null), creator.getId());
+
+        assertThat(chat.getId()).isEqualTo(chatId);
+        assertThat(chat.getUsers()).hasSize(501).contains(creator.getId());
+        assertThat(chat.getAdmins()).containsExactly(creator.getId());
+        assertThat(chat.getMissingUserIds()).isEmpty();
+
+        verify(userService, times(1)).findUserById(any(UUID.class));
+        verify(userService, times(1)).findExistingUserIds(anyCollection());
+        verify(chatMemberBatchRepository).insertMembers(chatId, memberIds);
+        verify(chatInboxService, times(1)).addMembers(eq(chatId), anyCollection());
+
+        // only the creator goes through the entity's user set, everyone else is a batched join row
+        ArgumentCaptor<Chat> savedChat = ArgumentCaptor.forClass(Chat.class);
+        verify(chatRepository).saveAndFlush(savedChat.capture());
+        assertThat(savedChat.getValue().getUsers()).containsExactly(creator);
+        assertThat(savedChat.getValue().getMessageShard()).isEqualTo("shard-1");
+    }
+
+    @Test
+    void createGroup_ReportsMissingUsersAndSkipsDuplicates() throws UserException {
+        UUID member = UUID.randomUUID();
+        UUID ghost = UUID.randomUUID();
+        when(userService.findUserById(creator.getId())).thenReturn(creator);
+        when(userService.findExistingUserIds(anyCollection())).thenReturn(List.of(member));
+        when(chatRepository.saveAndFlush(any(Chat.class))).thenAnswer(invocation -> saved(invocation.getArgument(0)));
+
+        GroupChatRequest request = new GroupChatRequest(List.of(member, ghost, member, creator.getId()), "team", null);
+        ChatDTO chat = chatService.createGroup(request, creator.getId());
+
+        assertThat(chat.getMissingUserIds()).containsExactly(ghost);
+        assertThat(chat.getUsers()).containsExactlyInAnyOrder(creator.getId(), member);
+
+        ArgumentCaptor<Collection<UUID>> lookedUp = ArgumentCaptor.forClass(Collection.class);
+        verify(userService).findExistingUserIds(lookedUp.capture());
+        assertThat(lookedUp.getValue()).containsExactly(member, ghost);
+        verify(chatMemberBatchRepository).insertMembers(chatId, List.of(member));
+    }
+
+    @Test
+    void createGroup_UnknownCreator_Fails() throws UserException {
+        when(userService.findUserById(creator.getId())).thenThrow(new UserException("user doesnt exist"));
+
+        assertThatThrownBy(() -> chatService.createGroup(new GroupChatRequest(List.of(), "team", null), creator.getId()))
+                .isInstanceOf(UserException.class);
+
+        verify(chatRepository, never()).saveAndFlush(any(Chat.class));
+        verifyNoInteractions(chatMemberBatchRepository);
+    }
+
+    @Test
+    void directKey_IsTheSameWhicheverUserAsks() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        assertThat(Chat.directKey(a, b)).isEqualTo(Chat.directKey(b, a)).hasSize(64);
+        assertThat(Chat.directKey(a, b)).isNotEqualTo(Chat.directKey(a, UUID.randomUUID()));
+    }
+
+    @Test
+    void createChat_ExistingDirectChat_IsOneIndexedLookup() throws UserException {
+        User other = User.builder().id(UUID.randomUUID()).build();
+        Chat existing = Chat.builder().id(chatId).isGroup(false).directKey(Chat.directKey(creator.getId(), other.getId())).build();
+        when(userService.findUserById(creator.getId())).thenReturn(creator);
+        when(userService.findUserById(other.getId())).thenReturn(other);
+        when(chatRepository.findByDirectKey(existing.getDirectKey())).thenReturn(Optional.of(existing));
+
+        assertThat(chatService.createChat(other.getId(), creator.getId(), false)).isSameAs(existing);
+
+        verify(chatRepository, never()).insertDirectChatIfAbsent(any(), any(), any(), any());
+        verifyNoInteractions(chatMemberBatchRepository, chatInboxService);
+    }
+
+    @Test
+    void createChat_NewDirectChat_InsertsChatAndBothMembers() throws UserException {
+        User other = User.builder().id(UUID.randomUUID()).build();
+        String directKey = Chat.directKey(creator.getId(), other.getId());
+        Chat created = Chat.builder().id(chatId).isGroup(false).directKey(directKey).build();
+        when(userService.findUserById(creator.getId())).thenReturn(creator);
+        when(userService.findUserById(other.getId())).thenReturn(other);
+        when(chatRepository.findByDirectKey(directKey)).thenReturn(Optional.empty());
+        when(messageShardResolver.assignShard(any(UUID.class))).thenReturn("shard-1");
+        when(chatRepository.insertDirectChatIfAbsent(any(UUID.class), eq(creator.getId()), eq(directKey), eq("shard-1"))).thenReturn(1);
+        when(chatRepository.findByDirectKeyForShare(directKey)).thenReturn(Optional.of(created));
+
+        assertThat(chatService.createChat(creator.getId(), other.getId(), false)).isSameAs(created);
+
+        ArgumentCaptor<UUID> insertedId = ArgumentCaptor.forClass(UUID.class);
+        verify(chatRepository).insertDirectChatIfAbsent(insertedId.capture(), eq(creator.getId()), eq(directKey), eq("shard-1"));
+        verify(messageShardResolver).assignShard(insertedId.getValue());
+        verify(chatMemberBatchRepository).insertMembers(insertedId.getValue(), List.of(creator.getId(), other.getId()));
+        verify(chatInboxService).addMembers(insertedId.getValue(), List.of(creator.getId(), other.getId()));
+    }
+
+    @Test
+    void createChat_LosesRaceToConcurrentCreate_ReturnsTheWinnersChat() throws UserException {
+        User other = User.builder().id(UUID.randomUUID()).build();
+        String directKey = Chat.directKey(creator.getId(), other.getId());
+        Chat winner = Chat.builder().id(chatId).isGroup(false).directKey(directKey).build();
+        when(userService.findUserById(creator.getId())).thenReturn(creator);
+        when(userService.findUserById(other.getId())).thenReturn(other);
+        when(chatRepository.findByDirectKey(directKey)).thenReturn(Optional.empty());
+        when(chatRepository.insertDirectChatIfAbsent(any(UUID.class), eq(creator.getId()), eq(directKey), any())).thenReturn(0);
+        when(chatRepository.findByDirectKeyForShare(directKey)).thenReturn(Optional.of(winner));
+
+        assertThat(chatService.createChat(creator.getId(), other.getId(), false)).isSameAs(winner);
+
+        verifyNoInteractions(chatMemberBatchRepository, chatInboxService);
+    }
+
+    @Test
+    void getChatSummaries_NamesDirectChatsAfterThePeerWithoutLoadingMembers() throws ChatException {
+        UUID groupId = UUID.randomUUID();
+        Chat direct = Chat.builder().id(chatId).isGroup(false).createdBy(creator).build();
+        Chat group = Chat.builder().id(groupId).isGroup(true).chatName("team").createdBy(creator).build();
+        when(chatInboxService.getInbox(creator.getId(), 0, 20)).thenReturn(List.of(
+                ChatInbox.builder().userId(creator.getId()).chatId(chatId).build(),
+                ChatInbox.builder().userId(creator.getId()).chatId(groupId).build()));
+        when(chatRepository.findAllWithCreatorByIdIn(List.of(chatId, groupId))).thenReturn(List.of(direct, group));
+        when(chatRepository.findDirectChatPeers(List.of(chatId, groupId), creator.getId()))
+                .thenReturn(List.of(new DirectChatPeerDTO(chatId, "other", "other.png")));
+
+        List<ChatSummaryDTO> summaries = chatService.getChatSummaries(creator.getId(), 0, 20);
+
+        assertThat(summaries).extracting(ChatSummaryDTO::getChatName).containsExactly("other", "team");
+        assertThat(summaries.get(0).getChatImage()).isEqualTo("other.png");
+    }
+
+    private Chat saved(Chat chat) {
+        chat.setId(chatId);
+        return chat;
+    }
+}
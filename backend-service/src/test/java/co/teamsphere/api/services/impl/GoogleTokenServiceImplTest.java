@@ -0,0 +1,190 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.GoogleSigningKeys;
+import co.teamsphere.api.config.properties.GoogleAuthProperties;
+import co.teamsphere.api.utils.GoogleUserInfo;
+import com.sun.net.httpserver.HttpServer;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs against a local stand-in for Google's JWKS endpoint, so nothing here touches the network.
+ */
+public class GoogleTokenServiceImplTest {
+    private static final String CLIENT_ID = "teamsphere-web.apps.googleusercontent.com";
+
+    private HttpServer keyServer;
+
+    private final AtomicInteger keyFetches = new AtomicInteger();
+
+    private volatile int keyServerStatus = 200;
+
+    private KeyPair googleKey;
+
+    private GoogleTokenServiceImpl googleTokenService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        googleKey = generator.generateKeyPair();
+
+        keyServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        keyServer.createContext("/oauth2/v3/certs", exchange -> {
+            keyFetches.incrementAndGet();
+            byte[] body = jwks("key-1", (RSAPublicKey) googleKey.getPublic()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Cache-Control", "public, max-age=21600, must-revalidate, no-transform");
+            exchange.sendResponseHeaders(keyServerStatus, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        keyServer.start();
+
+        GoogleAuthProperties properties = new GoogleAuthProperties();
+        properties.setClientIds(List.of(CLIENT_ID));
+        properties.setJwksUri("http://127.0.0.1:" + keyServer.getAddress().getPort() + "/oauth2/v3/certs");
+
+        googleTokenService = new GoogleTokenServiceImpl(
+                new GoogleSigningKeys(properties, new RestTemplateBuilder()), properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyServer.stop(0);
+    }
+
+    @Test
+    void verifyIdToken_ValidToken_ReturnsIdentityFromClaims() {
+        GoogleUserInfo userInfo = googleTokenService.verifyIdToken(idToken().compact());
+
+        assertThat(userInfo.getId()).isEqualTo("1234567890");
+        assertThat(userInfo.getEmail()).isEqualTo("test@example.com");
+        assertThat(userInfo.getName()).isEqualTo("Test User");
+        assertThat(userInfo.getPicture()).isEqualTo("https://example.com/profile.jpg");
+        assertThat(userInfo.isVerified_email()).isTrue();
+    }
+
+    @Test
+    void verifyIdToken_RepeatedLogins_FetchKeysOnce() {
+        for (int i = 0; i < 5; i++) {
+            googleTokenService.verifyIdToken(idToken().compact());
+        }
+
+        assertThat(keyFetches.get()).isEqualTo(1);
+    }
+
+    @Test
+    void verifyIdToken_UnknownKidFlood_IsRateLimited() throws Exception {
+        googleTokenService.verifyIdToken(idToken().compact());
+        KeyPair attacker = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+
+        for (int i = 0; i < 5; i++) {
+            String forged = idToken().setHeaderParam("kid", "key-" + (i + 2))
+                    .signWith(attacker.getPrivate(), SignatureAlgorithm.RS256)
+                    .compact();
+            assertThatThrownBy(() -> googleTokenService.verifyIdToken(forged))
+                    .isInstanceOf(BadCredentialsException.class);
+        }
+
+        assertThat(keyFetches.get()).isEqualTo(1);
+    }
+
+    @Test
+    void verifyIdToken_KeyServerDown_RejectsWithoutCrashing() {
+        keyServerStatus = 503;
+
+        assertThatThrownBy(() -> googleTokenService.verifyIdToken(idToken().compact()))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void verifyIdToken_ForgedSignature_IsRejected() throws Exception {
+        KeyPair attacker = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        String forged = idToken().signWith(attacker.getPrivate(), SignatureAlgorithm.RS256).compact();
+
+        assertThatThrownBy(() -> googleTokenService.verifyIdToken(forged))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void verifyIdToken_OtherClientsToken_IsRejected() {
+        String token = idToken().setAudience("someone-else.apps.googleusercontent.com").compact();
+
+        assertThatThrownBy(() -> googleTokenService.verifyIdToken(token))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void verifyIdToken_WrongIssuer_IsRejected() {
+        String token = idToken().setIssuer("https://evil.example.com").compact();
+
+        assertThatThrownBy(() -> googleTokenService.verifyIdToken(token))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void verifyIdToken_Expired_IsRejected() {
+        String token = idToken().setExpiration(Date.from(Instant.now().minusSeconds(3600))).compact();
+
+        assertThatThrownBy(() -> googleTokenService.verifyIdToken(token))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void verifyIdToken_UnverifiedEmail_IsRejected() {
+        String token = idToken().claim("email_verified", false).compact();
+
+        assertThatThrownBy(() -> googleTokenService.verifyIdToken(token))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    private JwtBuilder idToken() {
+        Instant now = Instant.now();
+        return Jwts.builder()
+                .setHeaderParam("kid", "key-1")
+                .setIssuer("https://accounts.google.com")
+                .setAudience(CLIENT_ID)
+                .setSubject("1234567890")
+                .claim("email", "test@example.com")
+                .claim("email_verified", true)
+                .claim("name", "Test User")
+                .claim("picture", "https://example.com/profile.jpg")
+                .setIssuedAt(Date.from(now))
+                .setExpiration(Date.from(now.plusSeconds(3600)))
+                .signWith(googleKey.getPrivate(), SignatureAlgorithm.RS256);
+    }
+
+    private static String jwks(String keyId, RSAPublicKey key) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return """
+                {"keys": [{"kty": "RSA", "alg": "RS256", "use": "sig", "kid": "%s", "n": "%s", "e": "%s"}]}
+                """.formatted(
+                keyId,
+                encoder.encodeToString(key.getModulus().toByteArray()),
+                encoder.encodeToString(key.getPublicExponent().toByteArray()));
+    }
+}
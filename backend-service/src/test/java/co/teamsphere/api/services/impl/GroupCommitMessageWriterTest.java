@@ -0,0 +1,240 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.properties.MessageWriterProperties;
+import co.teamsphere.api.models.Chat;
+import co.teamsphere.api.models.Messages;
+import co.teamsphere.api.models.User;
+import co.teamsphere.api.repository.MessageRepository;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class GroupCommitMessageWriterTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private MessageShardResolver messageShardResolver;
+
+    private final MessageShard shard = new MessageShard(MessageShardResolver.PRIMARY, null, null);
+
+    private MessageWriterProperties properties;
+
+    private GroupCommitMessageWriter writer;
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        properties = new MessageWriterProperties();
+        properties.setEnabled(true);
+        properties.setMaxBatchSize(20);
+        properties.setLinger(Duration.ofMillis(50));
+
+        when(messageShardResolver.forChat(any(Chat.class))).thenReturn(shard);
+        doAnswer(invocation -> {
+            List<Messages> batch = invocation.getArgument(1);
+            batchSizes.add(batch.size());
+            return null;
+        }).when(messageRepository).insertMessages(eq(shard), anyList());
+
+        writer = new GroupCommitMessageWriter(messageRepository, messageShardResolver, properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.stop();
+    }
+
+    @Test
+    void write_ConcurrentSenders_ShareCommits() throws Exception {
+        writer.start();
+
+        ExecutorService senders = Executors.newFixedThreadPool(50);
+        try {
+            List<Future<Messages>> acks = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                acks.add(senders.submit(() -> writer.write(message(), committed -> { })));
+            }
+            for (Future<Messages> ack : acks) {
+                assertThat(ack.get().getId()).isNotNull();
+            }
+        } finally {
+            senders.shutdown();
+        }
+
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(50);
+        assertThat(batchSizes.size()).isLessThan(50);
+        assertThat(batchSizes).allMatch(size -> size <= 20);
+    }
+
+    @Test
+    void commit_FailedBatch_RetriesRowsSoOnlyTheBadOneFails() {
+        Messages good = message();
+        good.setId(UUID.randomUUID());
+        Messages bad = message();
+        bad.setId(UUID.randomUUID());
+        doThrow(new DataIntegrityViolationException("chat was deleted"))
+                .when(messageRepository).insertMessages(eq(shard), argThat(batch -> batch.contains(bad)));
+
+        GroupCommitMessageWriter.PendingMessage goodPending = pending(good);
+        GroupCommitMessageWriter.PendingMessage badPending = pending(bad);
+
+        writer.commit(List.of(goodPending, badPending));
+
+        assertThat(goodPending.committed()).isCompleted();
+        assertThat(badPending.committed()).isCompletedExceptionally();
+    }
+
+    @Test
+    void commit_BatchSpanningShards_CommitsOnceOnEach() {
+        MessageShard other = new MessageShard("shard-1", null, null);
+        Messages onPrimary = message();
+        Messages onOther = message();
+        Messages alsoOnPrimary = message();
+        when(messageShardResolver.forChat(onOther.getChat())).thenReturn(other);
+
+        List<GroupCommitMessageWriter.PendingMessage> batch = new ArrayList<>();
+        for (Messages message : List.of(onPrimary, onOther, alsoOnPrimary)) {
+            batch.add(pending(message));
+        }
+
+        writer.commit(batch);
+
+        verify(messageRepository).insertMessages(shard, List.of(onPrimary, alsoOnPrimary));
+        verify(messageRepository).insertMessages(other, List.of(onOther));
+        assertThat(batch).allMatch(pending -> pending.committed().isDone() && !pending.committed().isCompletedExceptionally());
+    }
+
+    @Test
+    void commit_UnresolvableShard_FailsOnlyThatMessage() {
+        Messages good = message();
+        Messages orphan = message();
+        when(messageShardResolver.forChat(orphan.getChat())).thenThrow(new IllegalStateException("Unknown message shard"));
+
+        GroupCommitMessageWriter.PendingMessage goodPending = pending(good);
+        GroupCommitMessageWriter.PendingMessage orphanPending = pending(orphan);
+
+        writer.commit(List.of(goodPending, orphanPending));
+
+        assertThat(goodPending.committed()).isCompleted();
+        assertThat(orphanPending.committed()).isCompletedExceptionally();
+    }
+
+    @Test
+    void write_TimedOutWhileQueued_IsWithdrawnAndNeverWritten() throws Exception {
+        properties.setMaxBatchSize(1);
+        properties.setAckTimeout(Duration.ofMillis(200));
+        Messages blocker = message();
+        Messages queued = message();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // the writer hangs on the first batch, so the second message is still queued when its sender gives up
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(messageRepository).insertMessages(shard, List.of(blocker));
+        List<Messages> recorded = new CopyOnWriteArrayList<>();
+        writer.start();
+
+        ExecutorService sender = Executors.newSingleThreadExecutor();
+        try {
+            Future<Messages> blocked = sender.submit(() -> writer.write(blocker, recorded::add));
+            assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> writer.write(queued, recorded::add))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("was not written");
+
+            release.countDown();
+            assertThatThrownBy(blocked::get).hasCauseInstanceOf(IllegalStateException.class);
+        } finally {
+            release.countDown();
+            sender.shutdown();
+        }
+
+        writer.stop();
+        verify(messageRepository, never()).insertMessages(eq(shard), argThat(batch -> batch.contains(queued)));
+        // the first one did commit after its sender timed out, and still got recorded
+        assertThat(recorded).containsExactly(blocker);
+    }
+
+    @Test
+    void commit_RunsAfterCommitOnlyForStoredMessages() {
+        Messages good = message();
+        Messages bad = message();
+        doThrow(new DataIntegrityViolationException("chat was deleted"))
+                .when(messageRepository).insertMessages(eq(shard), argThat(batch -> batch.contains(bad)));
+        List<Messages> recorded = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> goodAck = new CompletableFuture<>();
+        CompletableFuture<Void> badAck = new CompletableFuture<>();
+
+        // the senders may have timed out already, recording must not depend on anyone waiting for the ack
+        writer.commit(List.of(
+                new GroupCommitMessageWriter.PendingMessage(good, recorded::add, System.nanoTime(), goodAck),
+                new GroupCommitMessageWriter.PendingMessage(bad, recorded::add, System.nanoTime(), badAck)));
+
+        assertThat(recorded).containsExactly(good);
+        assertThat(goodAck).isCompleted();
+        assertThat(badAck).isCompletedExceptionally();
+    }
+
+    @Test
+    void write_WhenNotStarted_IsRejected() {
+        assertThatThrownBy(() -> writer.write(message(), committed -> { }))
+                .isInstanceOf(IllegalStateException.class);
+
+        verifyNoInteractions(messageRepository);
+    }
+
+    private static GroupCommitMessageWriter.PendingMessage pending(Messages message) {
+        return new GroupCommitMessageWriter.PendingMessage(message, committed -> { }, System.nanoTime(), new CompletableFuture<>());
+    }
+
+    private static Messages message() {
+        Chat chat = new Chat();
+        chat.setId(UUID.randomUUID());
+        // Messages.equals compares ids, so each message needs its own for list matching to tell them apart
+        return Messages.builder()
+                .id(UUID.randomUUID())
+                .chat(chat)
+                .username(User.builder().id(UUID.randomUUID()).build())
+                .content("hello")
+                .timeStamp(LocalDateTime.now())
+                .isRead(false)
+                .build();
+    }
+}
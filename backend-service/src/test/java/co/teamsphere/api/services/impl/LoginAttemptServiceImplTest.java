@@ -0,0 +1,98 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.properties.LoginThrottleProperties;
+import co.teamsphere.api.exception.LoginThrottledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class LoginAttemptServiceImplTest {
+
+    private static final String EMAIL = "victim@example.com";
+
+    @Mock
+    private Clock clock;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private LoginAttemptServiceImpl loginAttemptService;
+
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        var properties = new LoginThrottleProperties();
+        properties.setWindow(Duration.ofMinutes(10));
+        properties.setBuckets(10);
+        properties.setMaxFailuresPerEmail(3);
+        properties.setMaxFailuresPerIp(5);
+
+        now = Duration.ofDays(1).toMillis();
+        when(clock.millis()).thenAnswer(invocation -> now);
+
+        meterRegistry = new SimpleMeterRegistry();
+        loginAttemptService = new LoginAttemptServiceImpl(properties, meterRegistry, clock);
+    }
+
+    @Test
+    void checkAllowed_ThrottlesEmailOnceLimitIsReached() {
+        for (int i = 0; i < 3; i++) {
+            loginAttemptService.recordFailure(EMAIL, "198.51.100." + i);
+        }
+
+        // a different case of the same address must hit the same window
+        assertThatThrownBy(() -> loginAttemptService.checkAllowed("Victim@Example.com", "198.51.100.9"))
+                .isInstanceOf(LoginThrottledException.class)
+                .satisfies(e -> assertThat(((LoginThrottledException) e).getRetryAfterSeconds()).isPositive());
+        assertThat(meterRegistry.get("auth.login.throttled").tag("scope", "email").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("auth.login.failures").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void checkAllowed_ThrottlesIpSprayingManyEmails() {
+        for (int i = 0; i < 5; i++) {
+            loginAttemptService.recordFailure("user" + i + "@example.com", "198.51.100.1");
+        }
+
+        assertThatThrownBy(() -> loginAttemptService.checkAllowed("fresh@example.com", "198.51.100.1"))
+                .isInstanceOf(LoginThrottledException.class);
+        assertThatCode(() -> loginAttemptService.checkAllowed("fresh@example.com", "198.51.100.2"))
+                .doesNotThrowAnyException();
+        assertThat(meterRegistry.get("auth.login.throttled").tag("scope", "ip").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void checkAllowed_FailuresAgeOutOfTheWindow() {
+        for (int i = 0; i < 3; i++) {
+            loginAttemptService.recordFailure(EMAIL, null);
+        }
+        assertThatThrownBy(() -> loginAttemptService.checkAllowed(EMAIL, null))
+                .isInstanceOf(LoginThrottledException.class);
+
+        now += Duration.ofMinutes(10).toMillis();
+
+        assertThatCode(() -> loginAttemptService.checkAllowed(EMAIL, null)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void recordSuccess_ClearsEmailWindow() {
+        loginAttemptService.recordFailure(EMAIL, null);
+        loginAttemptService.recordFailure(EMAIL, null);
+        loginAttemptService.recordSuccess(EMAIL);
+        loginAttemptService.recordFailure(EMAIL, null);
+
+        assertThatCode(() -> loginAttemptService.checkAllowed(EMAIL, null)).doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,103 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.config.properties.MessageArchiveProperties;
+import co.teamsphere.api.repository.MessageArchiveRepository;
+import co.teamsphere.api.repository.MessageRepository;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
+import co.teamsphere.api.utils.MessageCursor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class MessageArchiveServiceImplTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private MessageArchiveRepository messageArchiveRepository;
+
+    @Mock
+    private MessageShardResolver messageShardResolver;
+
+    private MessageArchiveProperties properties;
+
+    private MessageArchiveServiceImpl archiveService;
+
+    private final UUID chatId = UUID.randomUUID();
+
+    private final MessageShard shard = new MessageShard("shard-1", null, null);
+
+    @BeforeEach
+    void setUp() {
+        properties = new MessageArchiveProperties();
+        archiveService = new MessageArchiveServiceImpl(messageRepository, messageArchiveRepository, messageShardResolver, properties, new SimpleMeterRegistry());
+        when(messageShardResolver.forChat(chatId)).thenReturn(shard);
+    }
+
+    @Test
+    void archiveOldMessages_Disabled_DoesNothing() {
+        assertThat(archiveService.archiveOldMessages()).isZero();
+
+        verifyNoInteractions(messageRepository, messageArchiveRepository);
+    }
+
+    @Test
+    void archiveChat_AppendsThenDeletesUpToTheWatermark() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(180);
+        List<MessageDTO> oldest = List.of(message(cutoff.minusDays(2)), message(cutoff.minusDays(1)));
+        MessageCursor watermark = MessageCursor.of(oldest.getLast());
+        when(messageArchiveRepository.watermark(chatId)).thenReturn(Optional.empty(), Optional.of(watermark));
+        when(messageRepository.findOldestBefore(eq(shard), eq(chatId), eq(cutoff), anyInt())).thenReturn(oldest);
+
+        assertThat(archiveService.archiveChat(chatId, cutoff)).isEqualTo(2);
+
+        InOrder order = inOrder(messageArchiveRepository, messageRepository);
+        order.verify(messageArchiveRepository).append(chatId, oldest);
+        order.verify(messageRepository).deleteUpTo(shard, chatId, watermark);
+    }
+
+    @Test
+    void archiveChat_AfterCrash_FirstDeletesWhatIsAlreadyArchived() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(180);
+        MessageCursor watermark = new MessageCursor(cutoff.minusDays(3), UUID.randomUUID());
+        when(messageArchiveRepository.watermark(chatId)).thenReturn(Optional.of(watermark));
+        when(messageRepository.findOldestBefore(eq(shard), eq(chatId), eq(cutoff), anyInt())).thenReturn(List.of());
+
+        assertThat(archiveService.archiveChat(chatId, cutoff)).isZero();
+
+        verify(messageRepository).deleteUpTo(shard, chatId, watermark);
+        verify(messageArchiveRepository, never()).append(any(), any());
+    }
+
+    private MessageDTO message(LocalDateTime timeStamp) {
+        return MessageDTO.builder()
+                .id(UUID.randomUUID())
+                .chatId(chatId)
+                .userId(UUID.randomUUID())
+                .content("old")
+                .timeStamp(timeStamp)
+                .build();
+    }
+}
@@ -5,19 +5,31 @@ import static org.mockito.Mockito.*;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
+import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.DTO.MessagePageDTO;
+import co.teamsphere.api.config.ReadYourWritesTracker;
 import co.teamsphere.api.exception.ChatException;
 import co.teamsphere.api.exception.MessageException;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.models.Chat;
 import co.teamsphere.api.models.Messages;
 import co.teamsphere.api.models.User;
+import co.teamsphere.api.repository.MessageArchiveRepository;
 import co.teamsphere.api.repository.MessageRepository;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
 import co.teamsphere.api.request.SendMessageRequest;
+import co.teamsphere.api.services.ChatInboxService;
+import co.teamsphere.api.services.ChatMembershipService;
 import co.teamsphere.api.services.ChatService;
 import co.teamsphere.api.services.UserService;
+import co.teamsphere.api.utils.MessageCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -26,12 +38,30 @@ class MessageServiceImplTest {
     @Mock
     private MessageRepository messageRepo;
 
+    @Mock
+    private MessageShardResolver messageShardResolver;
+
     @Mock
     private UserService userService;
 
     @Mock
     private ChatService chatService;
 
+    @Mock
+    private ChatInboxService chatInboxService;
+
+    @Mock
+    private ChatMembershipService chatMembershipService;
+
+    @Mock
+    private GroupCommitMessageWriter groupCommitMessageWriter;
+
+    @Mock
+    private MessageArchiveRepository messageArchiveRepository;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
     @InjectMocks
     private MessageServiceImpl messageService;
 
@@ -40,6 +70,7 @@ class MessageServiceImplTest {
     private Messages message;
     private UUID messageId;
     private UUID chatId;
+    private final MessageShard shard = new MessageShard(MessageShardResolver.PRIMARY, null, null);
 
     @BeforeEach
     void setUp() {
@@ -61,6 +92,7 @@ class MessageServiceImplTest {
                 .timeStamp(LocalDateTime.now())
                 .isRead(false)
                 .build();
+        when(messageShardResolver.forChat(any(Chat.class))).thenReturn(shard);
     }
 
     @Test
@@ -71,13 +103,11 @@ class MessageServiceImplTest {
         request.setChatId(chat.getId());
         request.setContent("Hello World");
 
-        Set<User> chatUsers = new HashSet<>();
-        chatUsers.add(user);
-        chat.setUsers(chatUsers);
+        when(chatMembershipService.isMember(chat.getId(), user.getId())).thenReturn(true);
 
         when(userService.findUserById(user.getId())).thenReturn(user);
         when(chatService.findChatById(chat.getId())).thenReturn(chat);
-        when(messageRepo.save(any(Messages.class))).thenReturn(message);
+        when(messageRepo.save(eq(shard), any(Messages.class))).thenReturn(message);
 
         // Act
         Messages savedMessage = messageService.sendMessage(request);
@@ -90,23 +120,73 @@ class MessageServiceImplTest {
 
         verify(userService).findUserById(user.getId());
         verify(chatService).findChatById(chat.getId());
-        verify(messageRepo).save(any(Messages.class));
+        verify(messageRepo).save(eq(shard), any(Messages.class));
+        verify(chatInboxService).recordMessage(message);
+        verify(readYourWritesTracker).recordWrite(user.getId());
+    }
+
+
+    @Test
+    void sendMessageThrowsExceptionWhenUserNotInChat() throws UserException, ChatException {
+        SendMessageRequest request = new SendMessageRequest();
+        request.setUserId(user.getId());
+        request.setChatId(chat.getId());
+        request.setContent("Hello World");
+
+        when(userService.findUserById(user.getId())).thenReturn(user);
+        when(chatService.findChatById(chat.getId())).thenReturn(chat);
+        when(chatMembershipService.isMember(chat.getId(), user.getId())).thenReturn(false);
+
+        assertThrows(UserException.class, () -> messageService.sendMessage(request));
+        verify(messageRepo, never()).save(any(), any(Messages.class));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendMessageGoesThroughGroupCommitWhenEnabled() throws UserException, ChatException {
+        SendMessageRequest request = new SendMessageRequest();
+        request.setUserId(user.getId());
+        request.setChatId(chat.getId());
+        request.setContent("Hello World");
+
+        when(userService.findUserById(user.getId())).thenReturn(user);
+        when(chatService.findChatById(chat.getId())).thenReturn(chat);
+        when(chatMembershipService.isMember(chat.getId(), user.getId())).thenReturn(true);
+        when(groupCommitMessageWriter.isEnabled()).thenReturn(true);
+        ArgumentCaptor<Consumer<Messages>> afterCommit = ArgumentCaptor.forClass(Consumer.class);
+        when(groupCommitMessageWriter.write(any(Messages.class), afterCommit.capture())).thenReturn(message);
+
+        Messages savedMessage = messageService.sendMessage(request);
+
+        assertEquals(message, savedMessage);
+        verify(messageRepo, never()).save(any(), any(Messages.class));
+        // recording is left to the writer's commit path
+        verify(chatInboxService, never()).recordMessage(any(Messages.class));
+        afterCommit.getValue().accept(message);
+        verify(chatInboxService).recordMessage(message);
+    }
 
     @Test
-    void deleteMessageRemovesMessageWhenMessageExists() throws MessageException {
-        when(messageRepo.findById(messageId)).thenReturn(Optional.of(message));
+    void deleteMessageRemovesMessageWhenMessageExists() throws MessageException, ChatException {
+        when(messageRepo.findById(messageId)).thenReturn(Optional.of(storedMessage()));
+        when(chatService.findChatById(chatId)).thenReturn(chat);
         messageService.deleteMessage(messageId, user.getId());
-        verify(messageRepo, times(1)).deleteById(messageId);
+        verify(messageRepo, times(1)).deleteById(shard, chatId, messageId);
     }
 
+    @Test
+    void deleteMessageThrowsExceptionWhenUserDidNotSendIt() throws ChatException {
+        when(messageRepo.findById(messageId)).thenReturn(Optional.of(storedMessage()));
+        when(chatService.findChatById(chatId)).thenReturn(chat);
+        assertThrows(MessageException.class, () -> messageService.deleteMessage(messageId, UUID.randomUUID()));
+        verify(messageRepo, never()).deleteById(any(), any(), any());
+    }
 
     @Test
     void deleteMessageThrowsExceptionWhenMessageNotFound() {
         when(messageRepo.findById(messageId)).thenReturn(Optional.empty());
         assertThrows(MessageException.class, () -> messageService.deleteMessage(messageId, user.getId()));
-        verify(messageRepo, never()).deleteById(any());
+        verify(messageRepo, never()).deleteById(any(), any(), any());
     }
 
 
@@ -121,35 +201,171 @@ class MessageServiceImplTest {
 
         Chat chat = new Chat();
         chat.setId(chatId);
-        chat.setUsers(Set.of(user));
 
-        Messages message = new Messages();
-        message.setContent("Hello World");
+        MessageDTO messageDto = MessageDTO.builder()
+                .id(UUID.randomUUID())
+                .content("Hello World")
+                .timeStamp(LocalDateTime.now())
+                .userId(userId)
+                .chatId(chatId)
+                .build();
 
         when(chatService.findChatById(chatId)).thenReturn(chat);
-        when(messageRepo.findMessageByChatId(chatId)).thenReturn(List.of(message));
+        when(chatMembershipService.isMember(chatId, userId)).thenReturn(true);
+        when(messageRepo.findLatestByChatId(eq(shard), eq(chatId), anyInt())).thenReturn(List.of(messageDto));
 
         // Act
-        List<Messages> messagesList = messageService.getChatsMessages(chatId, userId);
+        MessagePageDTO page = messageService.getChatsMessages(chatId, userId, null, null, 50);
 
         // Assert
-        assertNotNull(messagesList);
-        assertFalse(messagesList.isEmpty());
-        assertEquals(1, messagesList.size());
-        assertEquals("Hello World", messagesList.get(0).getContent());
+        assertNotNull(page);
+        assertFalse(page.isHasMore());
+        assertEquals(1, page.getMessages().size());
+        assertEquals("Hello World", page.getMessages().get(0).getContent());
+        // the projected row goes out as is, nothing is re-mapped from an entity
+        assertSame(messageDto, page.getMessages().get(0));
+        assertNotNull(page.getBeforeCursor());
+        assertNotNull(page.getAfterCursor());
+        verify(chatInboxService).markRead(chatId, userId);
+    }
+
+    @Test
+    void getChatsMessagesSetsHasMoreWhenMoreRowsThanLimit() throws ChatException {
+        UUID userId = user.getId();
+        when(chatMembershipService.isMember(chatId, user.getId())).thenReturn(true);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<MessageDTO> newestFirst = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            newestFirst.add(messageDto("message " + i, now.minusMinutes(i)));
+        }
+
+        when(chatService.findChatById(chatId)).thenReturn(chat);
+        when(messageRepo.findLatestByChatId(eq(shard), eq(chatId), eq(3))).thenReturn(newestFirst);
+
+        MessagePageDTO page = messageService.getChatsMessages(chatId, userId, null, null, 2);
+
+        assertTrue(page.isHasMore());
+        // the page should be oldest first, so the before cursor points at the second newest message
+        assertEquals(MessageCursor.of(newestFirst.get(1)).encode(), page.getBeforeCursor());
+        assertEquals(MessageCursor.of(newestFirst.get(0)).encode(), page.getAfterCursor());
+    }
+
+    @Test
+    void getChatsMessagesUsesBeforeCursorWhenProvided() throws ChatException {
+        when(chatMembershipService.isMember(chatId, user.getId())).thenReturn(true);
+        String before = new MessageCursor(message.getTimeStamp(), messageId).encode();
+
+        when(chatService.findChatById(chatId)).thenReturn(chat);
+        when(messageRepo.findByChatIdBefore(eq(shard), eq(chatId), any(MessageCursor.class), eq(51)))
+                .thenReturn(List.of());
+
+        MessagePageDTO page = messageService.getChatsMessages(chatId, user.getId(), before, null, 50);
+
+        assertFalse(page.isHasMore());
+        assertNull(page.getBeforeCursor());
+        verify(messageRepo).findByChatIdBefore(eq(shard), eq(chatId),
+                argThat(cursor -> cursor.getId().equals(messageId) && cursor.getTimeStamp().equals(message.getTimeStamp())), eq(51));
+        verify(messageRepo, never()).findLatestByChatId(any(), any(), anyInt());
+        verify(chatInboxService, never()).markRead(any(), any());
+    }
+
+    @Test
+    void getChatsMessagesContinuesIntoArchiveWhenTableRunsOut() throws ChatException {
+        when(chatMembershipService.isMember(chatId, user.getId())).thenReturn(true);
+        when(chatService.findChatById(chatId)).thenReturn(chat);
+
+        LocalDateTime now = LocalDateTime.now();
+        MessageDTO hot = messageDto("hot", now);
+        MessageDTO archived1 = messageDto("archived 1", now.minusDays(200));
+        MessageDTO archived2 = messageDto("archived 2", now.minusDays(201));
+        when(messageRepo.findLatestByChatId(eq(shard), eq(chatId), eq(3))).thenReturn(List.of(hot));
+        when(messageArchiveRepository.findBefore(eq(chatId), any(MessageCursor.class), eq(2)))
+                .thenReturn(List.of(archived1, archived2));
+
+        MessagePageDTO page = messageService.getChatsMessages(chatId, user.getId(), null, null, 2);
+
+        assertTrue(page.isHasMore());
+        assertEquals(MessageCursor.of(archived1).encode(), page.getBeforeCursor());
+        assertEquals(MessageCursor.of(hot).encode(), page.getAfterCursor());
+        verify(messageArchiveRepository).findBefore(eq(chatId), argThat(cursor -> cursor.getId().equals(hot.getId())), eq(2));
+    }
+
+    @Test
+    void getChatsMessagesAfterOldCursorStartsInArchiveThenTable() throws ChatException {
+        when(chatMembershipService.isMember(chatId, user.getId())).thenReturn(true);
+        when(chatService.findChatById(chatId)).thenReturn(chat);
+
+        LocalDateTime now = LocalDateTime.now();
+        MessageDTO archived = messageDto("archived", now.minusDays(200));
+        MessageDTO hot = messageDto("hot", now);
+        String after = new MessageCursor(now.minusDays(300), UUID.randomUUID()).encode();
+        when(messageArchiveRepository.findAfter(eq(chatId), any(MessageCursor.class), eq(51))).thenReturn(List.of(archived));
+        when(messageRepo.findByChatIdAfter(eq(shard), eq(chatId), any(MessageCursor.class), eq(51))).thenReturn(List.of(hot));
+
+        MessagePageDTO page = messageService.getChatsMessages(chatId, user.getId(), null, after, 50);
+
+        assertFalse(page.isHasMore());
+        assertEquals(MessageCursor.of(archived).encode(), page.getBeforeCursor());
+        assertEquals(MessageCursor.of(hot).encode(), page.getAfterCursor());
+        verify(chatInboxService).markRead(chatId, user.getId());
     }
 
+    @Test
+    void getChatsMessagesAfterCursorWhileArchiverMovesRows_HasNoGapOrDuplicate() throws ChatException {
+        when(chatMembershipService.isMember(chatId, user.getId())).thenReturn(true);
+        when(chatService.findChatById(chatId)).thenReturn(chat);
+
+        LocalDateTime now = LocalDateTime.now();
+        MessageDTO archived = messageDto("archived", now.minusDays(200));
+        MessageDTO moved = messageDto("moved", now.minusDays(100));
+        MessageDTO hot = messageDto("hot", now);
+        String after = new MessageCursor(now.minusDays(300), UUID.randomUUID()).encode();
+        // the table was read just before the archiver moved "moved", the archive just after
+        when(messageRepo.findByChatIdAfter(eq(shard), eq(chatId), any(MessageCursor.class), eq(51))).thenReturn(List.of(moved, hot));
+        when(messageArchiveRepository.findAfter(eq(chatId), any(MessageCursor.class), eq(51))).thenReturn(List.of(archived, moved));
+
+        MessagePageDTO page = messageService.getChatsMessages(chatId, user.getId(), null, after, 50);
+
+        assertEquals(List.of("archived", "moved", "hot"), page.getMessages().stream().map(MessageDTO::getContent).toList());
+        InOrder reads = inOrder(messageRepo, messageArchiveRepository);
+        reads.verify(messageRepo).findByChatIdAfter(eq(shard), eq(chatId), any(MessageCursor.class), eq(51));
+        reads.verify(messageArchiveRepository).findAfter(eq(chatId), any(MessageCursor.class), eq(51));
+    }
+
+    @Test
+    void getChatsMessagesReadsOnlyTheChatsShard() throws ChatException {
+        MessageShard chatShard = new MessageShard("shard-1", null, null);
+        chat.setMessageShard("shard-1");
+        when(messageShardResolver.forChat(chat)).thenReturn(chatShard);
+        when(chatMembershipService.isMember(chatId, user.getId())).thenReturn(true);
+        when(chatService.findChatById(chatId)).thenReturn(chat);
+        when(messageRepo.findLatestByChatId(chatShard, chatId, 51)).thenReturn(List.of(messageDto("on shard 1", LocalDateTime.now())));
+
+        MessagePageDTO page = messageService.getChatsMessages(chatId, user.getId(), null, null, 50);
+
+        assertEquals("on shard 1", page.getMessages().get(0).getContent());
+        verify(messageRepo, never()).findLatestByChatId(eq(shard), any(), anyInt());
+    }
+
+    @Test
+    void getChatsMessagesThrowsExceptionWhenCursorIsInvalid() throws ChatException {
+        when(chatMembershipService.isMember(chatId, user.getId())).thenReturn(true);
+        when(chatService.findChatById(chatId)).thenReturn(chat);
+
+        assertThrows(ChatException.class, () -> messageService.getChatsMessages(chatId, user.getId(), "not-a-cursor", null, 50));
+    }
 
     @Test
     void getChatsMessagesThrowsExceptionWhenChatNotFound() throws ChatException {
         when(chatService.findChatById(chatId)).thenThrow(new ChatException("Chat not found"));
-        assertThrows(ChatException.class, () -> messageService.getChatsMessages(chatId, user.getId()));
-        verify(messageRepo, never()).findMessageByChatId(any());
+        assertThrows(ChatException.class, () -> messageService.getChatsMessages(chatId, user.getId(), null, null, 50));
+        verify(messageRepo, never()).findLatestByChatId(any(), any(), anyInt());
     }
     @Test
     void findMessageByIdReturnsMessageWhenMessageExists() throws MessageException {
-        when(messageRepo.findById(messageId)).thenReturn(Optional.of(message));
-        Messages foundMessage = messageService.findMessageById(messageId);
+        when(messageRepo.findById(messageId)).thenReturn(Optional.of(storedMessage()));
+        MessageDTO foundMessage = messageService.findMessageById(messageId);
         assertNotNull(foundMessage);
         assertEquals("Hello World", foundMessage.getContent());
     }
@@ -158,5 +374,19 @@ class MessageServiceImplTest {
         when(messageRepo.findById(messageId)).thenReturn(Optional.empty());
         assertThrows(MessageException.class, () -> messageService.findMessageById(messageId));
     }
-}
 
+    private MessageDTO storedMessage() {
+        return new MessageDTO(messageId, message.getContent(), message.getTimeStamp(), false, user.getId(), chatId);
+    }
+
+    private MessageDTO messageDto(String content, LocalDateTime timeStamp) {
+        return MessageDTO.builder()
+                .id(UUID.randomUUID())
+                .content(content)
+                .timeStamp(timeStamp)
+                .isRead(false)
+                .userId(user.getId())
+                .chatId(chatId)
+                .build();
+    }
+}
@@ -0,0 +1,276 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.DTO.MessageDTO;
+import co.teamsphere.api.config.properties.MessageShardingProperties;
+import co.teamsphere.api.exception.ChatException;
+import co.teamsphere.api.models.Chat;
+import co.teamsphere.api.models.Messages;
+import co.teamsphere.api.models.User;
+import co.teamsphere.api.repository.ChatRepository;
+import co.teamsphere.api.repository.MessageArchiveRepository;
+import co.teamsphere.api.repository.MessageRepository;
+import co.teamsphere.api.repository.MessageShard;
+import co.teamsphere.api.repository.MessageShardResolver;
+import co.teamsphere.api.services.ChatService;
+import co.teamsphere.api.utils.MessageCursor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Moves chats between two embedded databases; only the chat table is mocked.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class MessageShardServiceImplTest {
+
+    @Mock
+    private ChatService chatService;
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private MessageArchiveRepository messageArchiveRepository;
+
+    private MessageShard shard1;
+
+    private MessageShard shard2;
+
+    private MessageRepository messageRepository;
+
+    private MessageShardServiceImpl messageShardService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final UUID chatId = UUID.randomUUID();
+
+    // the chat's message_shard, message_shard_moving_from and message_shard_move_locked_until columns
+    private final AtomicReference<String> placement = new AtomicReference<>("shard-1");
+
+    private final AtomicReference<String> movingFrom = new AtomicReference<>();
+
+    private final AtomicReference<Instant> lockedUntil = new AtomicReference<>();
+
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @BeforeEach
+    void setUp() throws ChatException {
+        shard1 = shard("shard-1");
+        shard2 = shard("shard-2");
+        MessageShardResolver resolver = new MessageShardResolver(
+                List.of(new MessageShard(MessageShardResolver.PRIMARY, null, null), shard1, shard2), List.of(), chatRepository);
+        messageRepository = new MessageRepository(resolver);
+        messageRepository.createShardTables();
+
+        when(chatService.findChatById(chatId)).thenReturn(Chat.builder().id(chatId).build());
+        when(chatRepository.findMessageShard(chatId)).thenAnswer(invocation -> placement.get());
+        doAnswer(invocation -> {
+            placement.set(invocation.getArgument(1));
+            movingFrom.set(invocation.getArgument(2));
+            return 1;
+        }).when(chatRepository).updateMessageShard(eq(chatId), anyString(), anyString());
+        when(chatRepository.findMessageShardMovingFrom(chatId)).thenAnswer(invocation -> movingFrom.get());
+        when(chatRepository.finishMessageShardMove(chatId)).thenAnswer(invocation -> {
+            movingFrom.set(null);
+            return 1;
+        });
+        when(chatRepository.lockMessageShardMove(eq(chatId), any(), any())).thenAnswer(invocation -> {
+            Instant now = invocation.getArgument(1);
+            if (lockedUntil.get() != null && !lockedUntil.get().isBefore(now)) {
+                return 0;
+            }
+            lockedUntil.set(invocation.getArgument(2));
+            return 1;
+        });
+        when(chatRepository.unlockMessageShardMove(eq(chatId), any())).thenAnswer(invocation -> {
+            if (!invocation.getArgument(1).equals(lockedUntil.get())) {
+                return 0;
+            }
+            lockedUntil.set(null);
+            return 1;
+        });
+        when(messageArchiveRepository.watermark(chatId)).thenReturn(Optional.empty());
+
+        MessageShardingProperties properties = new MessageShardingProperties();
+        properties.setMoveSettleTime(Duration.ZERO);
+        properties.setMoveBatchSize(2);
+        meterRegistry = new SimpleMeterRegistry();
+        messageShardService = new MessageShardServiceImpl(chatService, chatRepository, messageRepository,
+                messageArchiveRepository, resolver, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shard1.jdbcTemplate().execute("SHUTDOWN");
+        shard2.jdbcTemplate().execute("SHUTDOWN");
+    }
+
+    @Test
+    void moveChat_CopiesSwitchesPlacementAndEmptiesTheSource() throws ChatException {
+        List<Messages> history = history(5);
+        UUID otherChat = UUID.randomUUID();
+        messageRepository.insertMessages(shard1, history);
+        messageRepository.insertMessages(shard1, List.of(message(otherChat, 0)));
+
+        assertThat(messageShardService.moveChat(chatId, "shard-2")).isEqualTo(5);
+
+        assertThat(placement.get()).isEqualTo("shard-2");
+        assertThat(movingFrom.get()).isNull();
+        assertThat(lockedUntil.get()).isNull();
+        assertThat(messageRepository.findByChatIdAfter(shard2, chatId, null, 10)).extracting(MessageDTO::getId)
+                .containsExactlyElementsOf(history.stream().map(Messages::getId).toList());
+        assertThat(messageRepository.findLatestByChatId(shard1, chatId, 10)).isEmpty();
+        assertThat(messageRepository.findLatestByChatId(shard1, otherChat, 10)).hasSize(1);
+        assertThat(meterRegistry.get("messages.shard.moved").counter().count()).isEqualTo(5.0);
+    }
+
+    @Test
+    void moveChat_CatchesUpOnMessagesSentToTheSourceDuringTheSwitch() throws ChatException {
+        messageRepository.insertMessages(shard1, history(3));
+        Messages late = message(chatId, 0);
+        late.setTimeStamp(LocalDateTime.now());
+        doAnswer(invocation -> {
+            // a sender that resolved the chat just before the switch
+            messageRepository.insertMessages(shard1, List.of(late));
+            placement.set(invocation.getArgument(1));
+            movingFrom.set(invocation.getArgument(2));
+            return 1;
+        }).when(chatRepository).updateMessageShard(eq(chatId), anyString(), anyString());
+
+        assertThat(messageShardService.moveChat(chatId, "shard-2")).isEqualTo(4);
+
+        assertThat(messageRepository.findLatestByChatId(shard2, chatId, 1)).extracting(MessageDTO::getId)
+                .containsExactly(late.getId());
+        assertThat(messageRepository.findByChatIdAfter(shard2, chatId, null, 10)).hasSize(4);
+        assertThat(messageRepository.findLatestByChatId(shard1, chatId, 10)).isEmpty();
+    }
+
+    @Test
+    void moveChat_DropsWhatTheArchiverAlreadyTookFromTheTarget() throws ChatException {
+        List<Messages> history = history(4);
+        messageRepository.insertMessages(shard1, history);
+        MessageCursor watermark = new MessageCursor(history.get(1).getTimeStamp(), history.get(1).getId());
+        when(messageArchiveRepository.watermark(chatId)).thenReturn(Optional.of(watermark));
+
+        messageShardService.moveChat(chatId, "shard-2");
+
+        assertThat(messageRepository.findByChatIdAfter(shard2, chatId, null, 10)).extracting(MessageDTO::getId)
+                .containsExactly(history.get(2).getId(), history.get(3).getId());
+    }
+
+    @Test
+    void moveChat_ToTheShardItIsOn_DoesNothing() throws ChatException {
+        messageRepository.insertMessages(shard1, history(2));
+
+        assertThat(messageShardService.moveChat(chatId, "shard-1")).isZero();
+
+        verify(chatRepository, never()).updateMessageShard(any(), any(), any());
+        assertThat(messageRepository.findLatestByChatId(shard1, chatId, 10)).hasSize(2);
+    }
+
+    @Test
+    void moveChat_AfterAMoveStoppedPastTheSwitch_FinishesIt() throws ChatException {
+        // a node died after switching the chat to shard-2 and copying part of it; a message also reached shard-1 late
+        List<Messages> history = history(4);
+        messageRepository.insertMessages(shard1, history);
+        messageRepository.insertMessages(shard2, history.subList(0, 2));
+        placement.set("shard-2");
+        movingFrom.set("shard-1");
+
+        assertThat(messageShardService.moveChat(chatId, "shard-2")).isEqualTo(4);
+
+        assertThat(messageRepository.findByChatIdAfter(shard2, chatId, null, 10)).extracting(MessageDTO::getId)
+                .containsExactlyElementsOf(history.stream().map(Messages::getId).toList());
+        assertThat(messageRepository.findLatestByChatId(shard1, chatId, 10)).isEmpty();
+        assertThat(movingFrom.get()).isNull();
+        verify(chatRepository, never()).updateMessageShard(any(), any(), any());
+    }
+
+    @Test
+    void moveChat_HeldByAMoveOnAnotherNode_IsRefused() {
+        messageRepository.insertMessages(shard1, history(2));
+        Instant held = Instant.now().plus(Duration.ofMinutes(5));
+        lockedUntil.set(held);
+
+        assertThatThrownBy(() -> messageShardService.moveChat(chatId, "shard-2"))
+                .isInstanceOf(ChatException.class)
+                .hasMessageContaining("already being moved");
+
+        verify(chatRepository, never()).updateMessageShard(any(), any(), any());
+        assertThat(lockedUntil.get()).isEqualTo(held);
+        assertThat(messageRepository.findLatestByChatId(shard1, chatId, 10)).hasSize(2);
+    }
+
+    @Test
+    void moveChat_UnknownShard_Fails() {
+        assertThatThrownBy(() -> messageShardService.moveChat(chatId, "shard-9"))
+                .isInstanceOf(ChatException.class)
+                .hasMessageContaining("shard-9");
+
+        verify(chatRepository, never()).updateMessageShard(any(), any(), any());
+    }
+
+    @Test
+    void moveChat_UnknownChat_Fails() throws ChatException {
+        UUID missing = UUID.randomUUID();
+        when(chatService.findChatById(missing)).thenThrow(new ChatException("Chat not found"));
+
+        assertThatThrownBy(() -> messageShardService.moveChat(missing, "shard-2"))
+                .isInstanceOf(ChatException.class);
+
+        verify(chatRepository, never()).updateMessageShard(any(), any(), any());
+    }
+
+    private MessageShard shard(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        return new MessageShard(name, new JdbcTemplate(dataSource), new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+    }
+
+    private List<Messages> history(int size) {
+        List<Messages> history = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            history.add(message(chatId, i));
+        }
+        return history;
+    }
+
+    private Messages message(UUID chatId, int second) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        return Messages.builder()
+                .id(UUID.randomUUID())
+                .chat(chat)
+                .username(User.builder().id(UUID.randomUUID()).build())
+                .content("message " + second)
+                .timeStamp(start.plusSeconds(second))
+                .isRead(false)
+                .build();
+    }
+}
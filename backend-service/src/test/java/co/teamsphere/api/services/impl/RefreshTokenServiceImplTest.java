@@ -0,0 +1,195 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.DTO.RefreshTokenRotationDTO;
+import co.teamsphere.api.config.properties.RefreshTokenReaperProperties;
+import co.teamsphere.api.models.RefreshToken;
+import co.teamsphere.api.models.User;
+import co.teamsphere.api.repository.RefreshTokenRepository;
+import co.teamsphere.api.repository.UserRepository;
+import co.teamsphere.api.utils.UuidBytes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RefreshTokenServiceImplTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RefreshTokenReaperProperties reaperProperties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RefreshTokenServiceImpl refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        reaperProperties = new RefreshTokenReaperProperties();
+        reaperProperties.setBatchSize(2);
+        reaperProperties.setMaxBatchesPerRun(10);
+        reaperProperties.setPauseBetweenBatchesMs(0);
+        meterRegistry = new SimpleMeterRegistry();
+
+        refreshTokenService = new RefreshTokenServiceImpl(
+                refreshTokenRepository, userRepository, transactionManager, reaperProperties, meterRegistry);
+    }
+
+    @Test
+    void createRefreshToken_StoresHashAndReturnsRawToken() throws Exception {
+        User user = User.builder().id(UUID.randomUUID()).email("test@example.com").build();
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(refreshTokenRepository.findByUserId(user.getId())).thenReturn(Optional.empty());
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        RefreshToken refreshToken = refreshTokenService.createRefreshToken("test@example.com");
+
+        // owner part, then 32 random bytes base64url without padding
+        assertThat(refreshToken.getRawToken()).contains(".");
+        assertThat(refreshToken.getRawToken().substring(refreshToken.getRawToken().indexOf('.') + 1)).hasSize(43);
+        assertThat(refreshToken.getRefreshToken()).hasSize(43).isNotEqualTo(refreshToken.getRawToken());
+        assertThat(refreshToken.getUser()).isSameAs(user);
+    }
+
+    @Test
+    void rotateRefreshToken_SwapsHashInOneConditionalUpdate() throws Exception {
+        User user = User.builder().id(UUID.randomUUID()).email("test@example.com").build();
+        String presented = issueToken(user);
+        ArgumentCaptor<String> currentHash = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> newHash = ArgumentCaptor.forClass(String.class);
+        when(refreshTokenRepository.rotate(eq(user.getId()), currentHash.capture(), newHash.capture(), any(Instant.class), any(Instant.class))).thenReturn(1);
+        when(userRepository.findEmailById(user.getId())).thenReturn(Optional.of("test@example.com"));
+
+        Optional<RefreshTokenRotationDTO> rotation = refreshTokenService.rotateRefreshToken(presented);
+
+        assertThat(rotation).isPresent();
+        assertThat(rotation.get().getUserId()).isEqualTo(user.getId());
+        assertThat(rotation.get().getEmail()).isEqualTo("test@example.com");
+        assertThat(currentHash.getValue()).hasSize(43).isNotEqualTo(presented);
+        assertThat(newHash.getValue()).hasSize(43).isNotEqualTo(rotation.get().getRefreshToken());
+        // the owner comes from the token, nothing is read back from the token table
+        verify(refreshTokenRepository, times(1)).rotate(any(UUID.class), anyString(), anyString(), any(Instant.class), any(Instant.class));
+        verifyNoMoreInteractions(refreshTokenRepository);
+
+        // the new token carries the owner along too
+        when(refreshTokenRepository.rotate(eq(user.getId()), anyString(), anyString(), any(Instant.class), any(Instant.class))).thenReturn(1);
+        assertThat(refreshTokenService.rotateRefreshToken(rotation.get().getRefreshToken()).map(RefreshTokenRotationDTO::getUserId))
+                .contains(user.getId());
+    }
+
+    @Test
+    void createRefreshToken_TokenCarriesOnlyTheUserId() throws Exception {
+        User user = User.builder().id(UUID.randomUUID()).email("test@example.com").build();
+
+        String token = issueToken(user);
+
+        byte[] owner = Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.')));
+        assertThat(owner).isEqualTo(UuidBytes.toBytes(user.getId()));
+    }
+
+    @Test
+    void rotateRefreshToken_OwnerDeleted_ReturnsEmpty() throws Exception {
+        User user = User.builder().id(UUID.randomUUID()).email("test@example.com").build();
+        String presented = issueToken(user);
+        when(refreshTokenRepository.rotate(eq(user.getId()), anyString(), anyString(), any(Instant.class), any(Instant.class))).thenReturn(1);
+        when(userRepository.findEmailById(user.getId())).thenReturn(Optional.empty());
+
+        assertThat(refreshTokenService.rotateRefreshToken(presented)).isEmpty();
+    }
+
+    @Test
+    void rotateRefreshToken_MalformedOrLegacyToken_IsRejectedWithoutTouchingTheDatabase() {
+        assertThat(refreshTokenService.rotateRefreshToken(UUID.randomUUID().toString())).isEmpty();
+        assertThat(refreshTokenService.rotateRefreshToken("presented.token")).isEmpty();
+        assertThat(refreshTokenService.rotateRefreshToken("!!!.token")).isEmpty();
+
+        verifyNoInteractions(refreshTokenRepository);
+    }
+
+    @Test
+    void rotateRefreshToken_UnknownExpiredOrAlreadyRotated_ReturnsEmpty() throws Exception {
+        String presented = issueToken(User.builder().id(UUID.randomUUID()).email("test@example.com").build());
+        when(refreshTokenRepository.rotate(any(UUID.class), anyString(), anyString(), any(Instant.class), any(Instant.class))).thenReturn(0);
+
+        assertThat(refreshTokenService.rotateRefreshToken(presented)).isEmpty();
+        verify(refreshTokenRepository, times(1)).rotate(any(UUID.class), anyString(), anyString(), any(Instant.class), any(Instant.class));
+    }
+
+    @Test
+    void purgeExpiredTokens_DeletesInBatchesUntilCaughtUp() {
+        when(refreshTokenRepository.lockExpiredBatch(any(Instant.class), eq(2)))
+                .thenReturn(List.of(new byte[16], new byte[16]))
+                .thenReturn(List.of(new byte[16], new byte[16]))
+                .thenReturn(List.of(new byte[16]));
+        when(refreshTokenRepository.deleteByRawIds(anyList())).thenReturn(2, 2, 1);
+
+        int purged = refreshTokenService.purgeExpiredTokens();
+
+        assertThat(purged).isEqualTo(5);
+        verify(refreshTokenRepository, times(3)).lockExpiredBatch(any(Instant.class), eq(2));
+        // one transaction per batch
+        verify(transactionManager, times(3)).commit(any());
+        assertThat(meterRegistry.get("auth.refresh_token.reaped").counter().count()).isEqualTo(5);
+        assertThat(meterRegistry.get("auth.refresh_token.reap").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void purgeExpiredTokens_StopsAtMaxBatchesPerRun() {
+        reaperProperties.setMaxBatchesPerRun(2);
+        when(refreshTokenRepository.lockExpiredBatch(any(Instant.class), anyInt()))
+                .thenReturn(List.of(new byte[16], new byte[16]));
+        when(refreshTokenRepository.deleteByRawIds(anyList())).thenReturn(2);
+
+        assertThat(refreshTokenService.purgeExpiredTokens()).isEqualTo(4);
+        verify(refreshTokenRepository, times(2)).deleteByRawIds(anyList());
+    }
+
+    @Test
+    void purgeExpiredTokens_NothingExpired_SkipsDelete() {
+        when(refreshTokenRepository.lockExpiredBatch(any(Instant.class), anyInt())).thenReturn(List.of());
+
+        assertThat(refreshTokenService.purgeExpiredTokens()).isZero();
+        verify(refreshTokenRepository, never()).deleteByRawIds(anyList());
+    }
+
+    @Test
+    void purgeExpiredTokens_Disabled_DoesNothing() {
+        reaperProperties.setEnabled(false);
+
+        assertThat(refreshTokenService.purgeExpiredTokens()).isZero();
+        verifyNoInteractions(refreshTokenRepository, transactionManager);
+    }
+
+    private String issueToken(User user) throws Exception {
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(refreshTokenRepository.findByUserId(user.getId())).thenReturn(Optional.empty());
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        String rawToken = refreshTokenService.createRefreshToken(user.getEmail()).getRawToken();
+        clearInvocations(refreshTokenRepository);
+        return rawToken;
+    }
+}
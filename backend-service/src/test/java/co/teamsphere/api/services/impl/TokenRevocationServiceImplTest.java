@@ -0,0 +1,97 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.TokenRevocationList;
+import co.teamsphere.api.config.properties.TokenRevocationProperties;
+import co.teamsphere.api.models.TokenRevocation;
+import co.teamsphere.api.repository.TokenRevocationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenRevocationServiceImplTest {
+
+    @Mock
+    private TokenRevocationRepository tokenRevocationRepository;
+
+    private TokenRevocationList tokenRevocationList;
+
+    private TokenRevocationServiceImpl tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        tokenRevocationList = new TokenRevocationList();
+        tokenRevocationService = new TokenRevocationServiceImpl(
+                tokenRevocationRepository, tokenRevocationList, new TokenRevocationProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void revokeAllTokens_PersistsAndAppliesLocallyRightAway() {
+        UUID userId = UUID.randomUUID();
+        long now = Instant.now().toEpochMilli();
+
+        tokenRevocationService.revokeAllTokens(userId);
+
+        verify(tokenRevocationRepository).upsert(eq(userId), any(Instant.class), any(Instant.class));
+        assertTrue(tokenRevocationList.isRevoked(userId, now - 1));
+        assertFalse(tokenRevocationList.isRevoked(userId, now + 5_000));
+    }
+
+    @Test
+    void revokeAllTokens_IsExactWithinTheSameSecond() {
+        UUID userId = UUID.randomUUID();
+
+        long issuedBefore = Instant.now().toEpochMilli() - 1;
+        tokenRevocationService.revokeAllTokens(userId);
+        long reloginIssuedAt = Instant.now().toEpochMilli();
+
+        // both fall in the same second most of the time; only the one issued before the cutoff is dead
+        assertTrue(tokenRevocationList.isRevoked(userId, issuedBefore));
+        assertFalse(tokenRevocationList.isRevoked(userId, reloginIssuedAt));
+    }
+
+    @Test
+    void poll_FirstRunLoadsEverythingLiveThenOnlyChanges() {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        Instant cutoff = Instant.now();
+        when(tokenRevocationRepository.findByRevokedBeforeAfter(any(Instant.class)))
+                .thenReturn(List.of(new TokenRevocation(alice, cutoff, cutoff)));
+        when(tokenRevocationRepository.findByUpdatedAtAfter(any(Instant.class)))
+                .thenReturn(List.of(new TokenRevocation(bob, cutoff, cutoff)));
+
+        tokenRevocationService.poll();
+        tokenRevocationService.poll();
+
+        verify(tokenRevocationRepository, times(1)).findByRevokedBeforeAfter(any(Instant.class));
+        verify(tokenRevocationRepository, times(1)).findByUpdatedAtAfter(any(Instant.class));
+        assertTrue(tokenRevocationList.isRevoked(alice, cutoff.toEpochMilli() - 1));
+        assertTrue(tokenRevocationList.isRevoked(bob, cutoff.toEpochMilli() - 1));
+    }
+
+    @Test
+    void poll_NeverMovesCutoffBackwards() {
+        UUID userId = UUID.randomUUID();
+        Instant newer = Instant.now();
+        tokenRevocationList.revokeBefore(userId, newer.toEpochMilli());
+        when(tokenRevocationRepository.findByRevokedBeforeAfter(any(Instant.class)))
+                .thenReturn(List.of(new TokenRevocation(userId, newer.minusSeconds(600), newer)));
+
+        tokenRevocationService.poll();
+
+        assertTrue(tokenRevocationList.isRevoked(userId, newer.toEpochMilli() - 1));
+    }
+}
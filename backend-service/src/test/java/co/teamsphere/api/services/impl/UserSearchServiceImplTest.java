@@ -0,0 +1,181 @@
+package co.teamsphere.api.services.impl;
+
+import co.teamsphere.api.config.properties.UserSearchProperties;
+import co.teamsphere.api.models.User;
+import co.teamsphere.api.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserSearchServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserSearchServiceImpl userSearchService;
+
+    private final Map<UUID, String> names = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        userSearchService = new UserSearchServiceImpl(userRepository, new UserSearchProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void search_BeforeIndexIsBuilt_FallsBackToDatabase() {
+        UUID id = UUID.randomUUID();
+        when(userRepository.searchUserIds(eq("ann"), any(Pageable.class))).thenReturn(List.of(id));
+
+        assertThat(userSearchService.search("ann", 0, 20, false)).containsExactly(id);
+    }
+
+    @Test
+    void search_RanksExactThenPrefixThenSubstring() {
+        buildIndex("Joanna", "annabel", "Anna", "bob");
+
+        List<UUID> hits = userSearchService.search("anna", 0, 20, false);
+
+        assertThat(usernames(hits)).containsExactly("Anna", "annabel", "Joanna");
+        verify(userRepository, never()).searchUserIds(anyString(), any(Pageable.class));
+    }
+
+    @Test
+    void search_ShortQuery_MatchesPrefixesOnly() {
+        buildIndex("Joanna", "annabel", "Anna", "bob");
+
+        assertThat(usernames(userSearchService.search("an", 0, 20, false))).containsExactly("Anna", "annabel");
+    }
+
+    @Test
+    void search_IgnoresCaseAndAccents() {
+        buildIndex("Jürgen", "bob");
+
+        assertThat(usernames(userSearchService.search("JURG", 0, 20, false))).containsExactly("Jürgen");
+    }
+
+    @Test
+    void search_Fuzzy_ToleratesTypos() {
+        buildIndex("Hannah", "bob");
+
+        assertThat(userSearchService.search("hanah", 0, 20, false)).isEmpty();
+        assertThat(usernames(userSearchService.search("hanah", 0, 20, true))).containsExactly("Hannah");
+    }
+
+    @Test
+    void search_NotFuzzy_OnlyReturnsNamesContainingTheQuery() {
+        // "annanab" holds every trigram of "annab" and is similar enough for fuzzy search, but doesn't contain it
+        buildIndex("annabel", "annanab");
+
+        assertThat(usernames(userSearchService.search("annab", 0, 20, false))).containsExactly("annabel");
+        assertThat(usernames(userSearchService.search("annab", 0, 20, true))).containsExactlyInAnyOrder("annabel", "annanab");
+    }
+
+    @Test
+    void search_PagesThroughRankedResults() {
+        buildIndex("user1", "user2", "user3", "user4", "user5");
+
+        assertThat(usernames(userSearchService.search("user", 0, 2, false))).containsExactly("user1", "user2");
+        assertThat(usernames(userSearchService.search("user", 2, 2, false))).containsExactly("user5");
+    }
+
+    @Test
+    void index_RenamedUser_IsOnlyFoundUnderNewName() {
+        buildIndex("bob");
+        UUID bobId = names.keySet().iterator().next();
+
+        userSearchService.index(User.builder().id(bobId).username("robert").build());
+
+        assertThat(userSearchService.search("bob", 0, 20, false)).isEmpty();
+        assertThat(userSearchService.search("robert", 0, 20, false)).containsExactly(bobId);
+    }
+
+    @Test
+    void index_InsideTransaction_OnlyAppliesAfterCommit() {
+        buildIndex("bob");
+        UUID committedId = UUID.randomUUID();
+        UUID rolledBackId = UUID.randomUUID();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userSearchService.index(User.builder().id(committedId).username("carol").build());
+            assertThat(userSearchService.search("carol", 0, 20, false)).isEmpty();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userSearchService.index(User.builder().id(rolledBackId).username("dave").build());
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(userSearchService.search("carol", 0, 20, false)).containsExactly(committedId);
+        assertThat(userSearchService.search("dave", 0, 20, false)).isEmpty();
+    }
+
+    @Test
+    void refresh_AfterFirstBuild_OnlyLoadsChangedUsers() {
+        buildIndex("bob");
+        UUID newId = UUID.randomUUID();
+        names.put(newId, "carol");
+        when(userRepository.findUsernamesUpdatedAfter(any(OffsetDateTime.class)))
+                .thenReturn(List.of(entry(newId, "carol")));
+
+        userSearchService.refresh();
+
+        verify(userRepository, times(1)).findAllUsernames();
+        assertThat(userSearchService.search("carol", 0, 20, false)).containsExactly(newId);
+    }
+
+    private void buildIndex(String... usernames) {
+        List<UserRepository.UsernameEntry> entries = new ArrayList<>();
+        for (String username : usernames) {
+            UUID id = UUID.randomUUID();
+            names.put(id, username);
+            entries.add(entry(id, username));
+        }
+        when(userRepository.findAllUsernames()).thenReturn(entries);
+        userSearchService.refresh();
+    }
+
+    private List<String> usernames(List<UUID> ids) {
+        return ids.stream().map(names::get).toList();
+    }
+
+    private static UserRepository.UsernameEntry entry(UUID id, String username) {
+        return new UserRepository.UsernameEntry() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public String getUsername() {
+                return username;
+            }
+        };
+    }
+}
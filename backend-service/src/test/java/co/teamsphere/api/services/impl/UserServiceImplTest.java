@@ -1,5 +1,7 @@
 package co.teamsphere.api.services.impl;
 
+import co.teamsphere.api.DTO.UserDTO;
+import co.teamsphere.api.DTO.UserSummaryDTO;
 import co.teamsphere.api.config.JWTTokenProvider;
 import co.teamsphere.api.exception.UserException;
 import co.teamsphere.api.helpers.TestDataBuilder;
@@ -8,6 +10,7 @@ import co.teamsphere.api.repository.UserRepository;
 import co.teamsphere.api.request.UpdateUserRequest;
 import co.teamsphere.api.response.CloudflareApiResponse;
 import co.teamsphere.api.services.CloudflareApiService;
+import co.teamsphere.api.services.UserSearchService;
 import org.assertj.core.api.InstanceOfAssertFactories;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -41,6 +44,9 @@ public class UserServiceImplTest {
     @Mock
     private CloudflareApiService cloudflareApiService;
 
+    @Mock
+    private UserSearchService userSearchService;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -122,21 +128,52 @@ public class UserServiceImplTest {
     }
 
     @Test
-    void searchUser_WhenUsersFound_ReturnsUserList() {
+    void findUserProfileById_WhenUserExists_ReturnsProjection() throws UserException {
+        // Arrange
+        UserDTO profile = new UserDTO(userId, "testUser", "test@example.com", testUser.getProfilePicture());
+        when(userRepository.findProfileById(userId)).thenReturn(Optional.of(profile));
+
+        // Act
+        UserDTO foundProfile = userService.findUserProfileById(userId);
+
+        // Assert
+        assertThat(foundProfile).isEqualTo(profile);
+        verify(userRepository, never()).findById(any(UUID.class));
+    }
+
+    @Test
+    void findUserProfileById_WhenUserDoesNotExist_ThrowsUserException() {
+        // Arrange
+        when(userRepository.findProfileById(userId)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThatThrownBy(() -> userService.findUserProfileById(userId))
+                .isInstanceOf(UserException.class);
+    }
+
+    @Test
+    void searchUser_WhenUsersFound_ReturnsUsersInRankedOrder() {
         // Arrange
         String query = "test";
-        List<User> expectedUsers = List.of(testUser);
+        UUID otherId = UUID.randomUUID();
+        List<UUID> rankedIds = List.of(otherId, userId);
 
-        when(userRepository.searchUsers(query)).thenReturn(expectedUsers);
+        when(userSearchService.search(query, 0, 20, false)).thenReturn(rankedIds);
+        // the database hands rows back in whatever order it likes
+        when(userRepository.findSummariesByIdIn(rankedIds)).thenReturn(List.of(
+                new UserSummaryDTO(userId, "testUser", testUser.getProfilePicture()),
+                new UserSummaryDTO(otherId, "testUser2", "https://example.com/profiles/def456/public")));
 
         // Act
-        List<User> foundUsers = userService.searchUser(query);
+        List<UserSummaryDTO> foundUsers = userService.searchUser(query, 0, 20, false);
 
         // Assert
         assertThat(foundUsers).isNotNull();
-        assertThat(foundUsers.size()).isEqualTo(1);
-        assertThat(foundUsers.get(0).getUsername()).isEqualTo("testUser");
-        verify(userRepository, times(1)).searchUsers(query);
+        assertThat(foundUsers.size()).isEqualTo(2);
+        assertThat(foundUsers.get(0).username()).isEqualTo("testUser2");
+        assertThat(foundUsers.get(1).username()).isEqualTo("testUser");
+        verify(userRepository, times(1)).findSummariesByIdIn(rankedIds);
+        verify(userRepository, never()).findById(any(UUID.class));
     }
 
     @Test
@@ -144,15 +181,15 @@ public class UserServiceImplTest {
         // Arrange
         String query = "nonexistent";
 
-        when(userRepository.searchUsers(query)).thenReturn(Collections.emptyList());
+        when(userSearchService.search(query, 0, 20, false)).thenReturn(Collections.emptyList());
 
         // Act
-        List<User> foundUsers = userService.searchUser(query);
+        List<UserSummaryDTO> foundUsers = userService.searchUser(query, 0, 20, false);
 
         // Assert
         assertThat(foundUsers).isNotNull();
         assertThat(foundUsers).asInstanceOf(InstanceOfAssertFactories.LIST).isEmpty();
-        verify(userRepository, times(1)).searchUsers(query);
+        verify(userRepository, never()).findSummariesByIdIn(any());
     }
 
     @Test
@@ -175,6 +212,7 @@ public class UserServiceImplTest {
         User savedUser = userCaptor.getValue();
         assertThat(savedUser.getUsername()).isEqualTo("newUsername");
         assertThat(savedUser.getLastUpdatedDate()).isNotNull();
+        verify(userSearchService).index(savedUser);
     }
     @Test
     void updateUser_WithProfilePicture_UpdatesProfilePicture() throws Exception {
@@ -0,0 +1,43 @@
+package co.teamsphere.api.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UuidV7Test {
+
+    @Test
+    void generate_SetsVersionAndVariant() {
+        UUID id = UuidV7.generate();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+    }
+
+    @Test
+    void generate_LaterIdsSortAfterEarlierOnesAsStoredBytes() {
+        Instant now = Instant.parse("2025-03-01T12:00:00.000500Z");
+        UUID earlier = UuidV7.generate(now);
+        UUID sameMilliLater = UuidV7.generate(now.plusNanos(300_000));
+        UUID nextMilli = UuidV7.generate(now.plusMillis(1));
+
+        assertThat(Arrays.compareUnsigned(UuidBytes.toBytes(earlier), UuidBytes.toBytes(sameMilliLater))).isNegative();
+        assertThat(Arrays.compareUnsigned(UuidBytes.toBytes(sameMilliLater), UuidBytes.toBytes(nextMilli))).isNegative();
+    }
+
+    @Test
+    void timestampOf_ReadsBackTheMillisecond() {
+        Instant now = Instant.parse("2025-03-01T12:00:00.123456Z");
+
+        assertThat(UuidV7.timestampOf(UuidV7.generate(now))).isEqualTo(Instant.parse("2025-03-01T12:00:00.123Z"));
+    }
+
+    @Test
+    void timestampOf_OldRandomIds_HaveNone() {
+        assertThat(UuidV7.timestampOf(UUID.randomUUID())).isNull();
+    }
+}